@@ -21,6 +21,7 @@ import com.google.api.explorer.client.analytics.AnalyticsManager.AnalyticsEvent;
 import com.google.api.explorer.client.base.ApiRequest;
 import com.google.api.explorer.client.base.ApiResponse;
 import com.google.api.explorer.client.embedded.EmbeddedParameterFormPresenter.RequestFinishedCallback;
+import com.google.api.explorer.client.embedded.RequestLifecycleTracker.Outcome;
 
 /**
  * Base callback that provides common analytics utilities to callbacks.
@@ -44,6 +45,12 @@ public class AnalyticsRequestFinishedCallback implements RequestFinishedCallback
     analytics.trackEventWithValue(classifyResponse(response), request.getMethod().getId());
   }
 
+  @Override
+  public void failed(
+      ApiRequest request, Outcome outcome, String message, long startTime, long endTime) {
+    // Only responses are classified, requests which never received one are not tracked.
+  }
+
   /**
    * Classify what type of success or failure the response was.
    */
@@ -19,23 +19,38 @@ package com.google.api.explorer.client;
 import com.google.api.explorer.client.analytics.AnalyticsManager;
 import com.google.api.explorer.client.analytics.AnalyticsManager.AnalyticsEvent;
 import com.google.api.explorer.client.analytics.AnalyticsManagerImpl;
+import com.google.api.explorer.client.base.ApiRequest;
 import com.google.api.explorer.client.base.ApiServiceFactory;
 import com.google.api.explorer.client.base.Config;
 import com.google.api.explorer.client.base.ExplorerConfig;
 import com.google.api.explorer.client.base.ServiceLoader;
 import com.google.api.explorer.client.embedded.EmbeddedResources;
+import com.google.api.explorer.client.history.HistoryBodyIndex;
 import com.google.api.explorer.client.history.HistoryCache;
+import com.google.api.explorer.client.history.HistoryItemViewCache;
+import com.google.api.explorer.client.history.HistoryRecord;
 import com.google.api.explorer.client.history.JsonPrettifier;
+import com.google.api.explorer.client.history.LatencyStatistics;
+import com.google.api.explorer.client.history.PersistentHistory;
+import com.google.api.explorer.client.history.PersistentHistoryManager;
+import com.google.api.explorer.client.history.PersistentHistoryManager.PreviousSessionsCallback;
 import com.google.api.explorer.client.routing.HistoryWrapper;
 import com.google.api.explorer.client.routing.HistoryWrapperImpl;
 import com.google.api.explorer.client.routing.URLManipulator;
 import com.google.api.explorer.client.routing.handler.HistoryManager;
+import com.google.api.explorer.client.search.CompactSearchResultIndex;
 import com.google.api.explorer.client.search.DirectoryIndexingStrategy;
 import com.google.api.explorer.client.search.DiscoveryFullTextIndexingStrategy;
+import com.google.api.explorer.client.search.FuzzyKeywordMatcher;
 import com.google.api.explorer.client.search.HistoryItemIndexingStrategy;
-import com.google.api.explorer.client.search.KeywordCompletionSuggestOracle;
+import com.google.api.explorer.client.search.IncrementalIndexer;
+import com.google.api.explorer.client.search.PrebuiltSearchIndex;
+import com.google.api.explorer.client.search.PrefixCompletionSuggestOracle;
+import com.google.api.explorer.client.search.SchemaFieldIndex;
 import com.google.api.explorer.client.search.SearchManager;
-import com.google.api.explorer.client.search.SearchResultIndex;
+import com.google.api.explorer.client.search.SearchResult;
+import com.google.api.explorer.client.search.SearchResultIndex.KeywordCallback;
+import com.google.api.explorer.client.search.SearchResultRanker;
 import com.google.common.collect.ImmutableList;
 import com.google.gwt.core.client.EntryPoint;
 import com.google.gwt.core.client.GWT;
@@ -43,6 +58,9 @@ import com.google.gwt.user.client.History;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.RootLayoutPanel;
 
+import java.util.List;
+import java.util.Set;
+
 /**
  * Entry Point for Explorer module.
  *
@@ -61,6 +79,7 @@ public class ExplorerEntryPoint implements EntryPoint {
 
     // Set the API key and application name to use for calls from the Explorer.
     Config.setApiKey(ExplorerConfig.API_KEY);
+    ApiRequest.setTimeoutMillis(ExplorerConfig.REQUEST_TIMEOUT_MILLIS);
 
     // If the URL specifies a base URL, use it.
     // If it specifies an API key, use it as well. If no key is specified (and
@@ -102,11 +121,18 @@ public class ExplorerEntryPoint implements EntryPoint {
     AuthManager authManager = new AuthManager();
     HistoryCache historyCache = new HistoryCache();
     ServiceLoader serviceLoader = new ServiceLoader(ApiServiceFactory.INSTANCE);
-    SearchResultIndex searchIndex = new SearchResultIndex();
-
-    // Set up the keyword completion suggestion oracle.
-    KeywordCompletionSuggestOracle searchKeywords = new KeywordCompletionSuggestOracle();
-    searchIndex.setKeywordCallback(searchKeywords);
+    CompactSearchResultIndex searchIndex = new CompactSearchResultIndex();
+
+    // Set up the keyword completion suggestion oracle and the matcher of misspelled keywords.
+    final PrefixCompletionSuggestOracle searchKeywords = new PrefixCompletionSuggestOracle();
+    final FuzzyKeywordMatcher fuzzyMatcher = new FuzzyKeywordMatcher();
+    searchIndex.setKeywordCallback(new KeywordCallback() {
+      @Override
+      public void newKeywordsAdded(Set<String> keywords) {
+        searchKeywords.newKeywordsAdded(keywords);
+        fuzzyMatcher.newKeywordsAdded(keywords);
+      }
+    });
 
     // Set up the URL routing and responder.
     HistoryWrapper wrapper = new HistoryWrapperImpl();
@@ -119,8 +145,14 @@ public class ExplorerEntryPoint implements EntryPoint {
         searchIndex);
 
     // Construct the UI and add it to the page.
-    FullView fullView = new FullView(manipulator, authManager, analytics, searchKeywords);
+    final FullView fullView = new FullView(manipulator, authManager, analytics, searchKeywords);
     historyManager.delegate = fullView;
+    fullView.setFuzzyMatcher(fuzzyMatcher, searchIndex);
+
+    // Rank search results with the statistics of their fields, computed as they are indexed.
+    SearchResultRanker<SearchResult> searchResultRanker = SearchResultRanker.forSearchResults();
+    searchIndex.setRanker(searchResultRanker);
+    fullView.setSearchResultRanker(searchResultRanker);
 
     // If this in compiled GWT, set up the search capability. If it is hosted mode, search
     // capability is too slow and will be left disabled.
@@ -131,8 +163,56 @@ public class ExplorerEntryPoint implements EntryPoint {
           new DirectoryIndexingStrategy(),
           new HistoryItemIndexingStrategy(),
           ImmutableList.of(fullView, historyManager));
-      serviceLoader.delegate = searchManager;
-      historyCache.observer = searchManager;
+
+      // Index the discovery documents a slice at a time, reporting progress to the search box.
+      IncrementalIndexer incrementalIndexer = new IncrementalIndexer(searchManager);
+      incrementalIndexer.addCallback(fullView);
+      incrementalIndexer.addCallback(searchIndex);
+      serviceLoader.failureDelegate = incrementalIndexer;
+
+      // Search the services of the prebuilt index as soon as it loads, if the build deployed one
+      // for this directory, and only load and index the discovery documents of the services
+      // which it does not cover.
+      PrebuiltSearchIndex prebuiltSearchIndex = new PrebuiltSearchIndex(
+          PrebuiltSearchIndex.getDeployedRevision(), searchIndex, incrementalIndexer,
+          ImmutableList.of(fullView, historyManager));
+
+      // Index the fields of the schemas of loaded services once they are first searched, and then
+      // load the services of the whole directory, including those of the prebuilt index.
+      SchemaFieldIndex schemaFieldIndex = new SchemaFieldIndex(prebuiltSearchIndex);
+      schemaFieldIndex.setServiceLoader(serviceLoader);
+      fullView.setSchemaFieldIndex(schemaFieldIndex);
+      serviceLoader.delegate = schemaFieldIndex;
+      historyCache.addObserver(searchManager);
+
+      // Stop matching the history items which the cache drops.
+      historyCache.addObserver(searchIndex);
+    }
+
+    LatencyStatistics latencyStatistics = new LatencyStatistics();
+    historyCache.addObserver(latencyStatistics);
+    fullView.setLatencyStatistics(latencyStatistics);
+
+    HistoryItemViewCache historyItemViews = new HistoryItemViewCache();
+    historyCache.addObserver(historyItemViews);
+    fullView.setHistoryItemViewCache(historyItemViews);
+
+    HistoryBodyIndex historyBodyIndex = new HistoryBodyIndex();
+    historyCache.addObserver(historyBodyIndex);
+    fullView.setHistoryBodyIndex(historyBodyIndex, historyCache);
+
+    // Requests are only stored across sessions once the user opts in.
+    if (PersistentHistoryManager.isSupported()) {
+      PersistentHistoryManager persistentHistoryManager = new PersistentHistoryManager(historyCache,
+          new PreviousSessionsCallback() {
+            @Override
+            public void previousSessionsLoaded(
+                PersistentHistory persistentHistory, List<HistoryRecord> records) {
+              fullView.setPreviousSessions(persistentHistory, records);
+            }
+          });
+      fullView.setPersistentHistoryManager(persistentHistoryManager);
+      persistentHistoryManager.start();
     }
 
     return new ViewAndHistory(historyManager, fullView);
@@ -17,6 +17,7 @@
 package com.google.api.explorer.client;
 
 import com.google.api.explorer.client.FullViewPresenter.NavigationItem;
+import com.google.api.explorer.client.PagedEntryList.LazyEntry;
 import com.google.api.explorer.client.analytics.AnalyticsManager;
 import com.google.api.explorer.client.auth.AuthView;
 import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
@@ -29,9 +30,24 @@ import com.google.api.explorer.client.context.ExplorerContext;
 import com.google.api.explorer.client.context.ListServiceContext.TagProcessor;
 import com.google.api.explorer.client.embedded.EmbeddedParameterFormPresenter.RequestFinishedCallback;
 import com.google.api.explorer.client.embedded.EmbeddedView;
+import com.google.api.explorer.client.embedded.RequestLifecycleTracker.Outcome;
+import com.google.api.explorer.client.history.DownloadLink;
 import com.google.api.explorer.client.history.EmbeddedHistoryItemView;
+import com.google.api.explorer.client.history.HarFiles;
+import com.google.api.explorer.client.history.HarReader;
+import com.google.api.explorer.client.history.HarReader.ImportedHistory;
+import com.google.api.explorer.client.history.HistoryBodyIndex;
+import com.google.api.explorer.client.history.HistoryBodyIndex.Match;
+import com.google.api.explorer.client.history.HistoryCache;
 import com.google.api.explorer.client.history.HistoryItem;
+import com.google.api.explorer.client.history.HistoryItemViewCache;
+import com.google.api.explorer.client.history.HistoryRecord;
 import com.google.api.explorer.client.history.JsonPrettifier;
+import com.google.api.explorer.client.history.LatencyStatistics;
+import com.google.api.explorer.client.history.LatencyStatisticsView;
+import com.google.api.explorer.client.history.PersistentHistory;
+import com.google.api.explorer.client.history.PersistentHistoryManager;
+import com.google.api.explorer.client.history.RawJsonView;
 import com.google.api.explorer.client.navigation.EntryAggregatorView;
 import com.google.api.explorer.client.navigation.HistoryEntry;
 import com.google.api.explorer.client.navigation.MethodEntry;
@@ -42,22 +58,34 @@ import com.google.api.explorer.client.routing.TitleSupplier.Title;
 import com.google.api.explorer.client.routing.URLManipulator;
 import com.google.api.explorer.client.routing.UrlBuilder.RootNavigationItem;
 import com.google.api.explorer.client.routing.handler.HistoryManager.HistoryManagerDelegate;
+import com.google.api.explorer.client.search.FuzzyKeywordMatcher;
+import com.google.api.explorer.client.search.IncrementalIndexer.IndexingProgressCallback;
+import com.google.api.explorer.client.search.SchemaFieldIndex;
+import com.google.api.explorer.client.search.SchemaFieldIndex.FieldMatch;
 import com.google.api.explorer.client.search.SearchManager.SearchReadyCallback;
 import com.google.api.explorer.client.search.SearchResult;
 import com.google.api.explorer.client.search.SearchResult.MethodBundle;
+import com.google.api.explorer.client.search.SearchResultIndex;
+import com.google.api.explorer.client.search.SearchResultRanker;
 import com.google.api.explorer.client.widgets.PlaceholderTextBox;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.gwt.core.client.Callback;
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.event.dom.client.ChangeEvent;
 import com.google.gwt.event.dom.client.ClickEvent;
-import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.dom.client.HasClickHandlers;
 import com.google.gwt.event.dom.client.KeyCodes;
 import com.google.gwt.event.dom.client.KeyDownEvent;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
 import com.google.gwt.event.logical.shared.SelectionEvent;
+import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.resources.client.CssResource;
 import com.google.gwt.uibinder.client.UiBinder;
 import com.google.gwt.uibinder.client.UiField;
@@ -65,8 +93,11 @@ import com.google.gwt.uibinder.client.UiHandler;
 import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.Anchor;
+import com.google.gwt.user.client.ui.CheckBox;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.DockLayoutPanel;
+import com.google.gwt.user.client.ui.FileUpload;
+import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.gwt.user.client.ui.Image;
 import com.google.gwt.user.client.ui.InlineHyperlink;
 import com.google.gwt.user.client.ui.InlineLabel;
@@ -95,8 +126,8 @@ import javax.annotation.Nullable;
  *
  * @author jasonhall@google.com (Jason Hall)
  */
-public class FullView extends Composite
-    implements FullViewPresenter.Display, HistoryManagerDelegate, SearchReadyCallback {
+public class FullView extends Composite implements FullViewPresenter.Display,
+    HistoryManagerDelegate, SearchReadyCallback, IndexingProgressCallback {
 
   private static FullViewUiBinder uiBinder = GWT.create(FullViewUiBinder.class);
 
@@ -109,6 +140,11 @@ public class FullView extends Composite
   private static final String NEW_TAB_TARGET = "_blank";
   private static final String SETTINGS_MENU_CSS_RULE = "settingsMenu";
   private static final boolean HIDE_AUTH = false;
+  private static final String HAR_FILE_NAME = "explorer-history.har";
+  private static final String IMPORT_ID_PREFIX = "import";
+  private static final int MAX_BODY_MATCHES = 50;
+  private static final int MAX_FIELD_MATCHES = 50;
+  private static final int SEARCH_PAGE_SIZE = 100;
 
   interface FullViewUiBinder extends UiBinder<Widget, FullView> {
   }
@@ -127,13 +163,27 @@ public class FullView extends Composite
   @UiField Image logo;
   @UiField PushButton backButton;
 
-  @UiField Widget searchLoadingIndicator;
+  @UiField InlineLabel searchLoadingIndicator;
   @UiField(provided = true) SuggestBox searchBox;
   @UiField Panel searchErrorPanel;
 
+  @UiField Label partialSearchResults;
   @UiField SectionedAggregator searchResults;
+  @UiField Anchor moreSearchResults;
 
   @UiField EntryAggregatorView drillDownNav;
+  @UiField Widget contentContainer;
+
+  @UiField Panel historyTools;
+  @UiField Anchor showStatistics;
+  @UiField Panel harTools;
+  @UiField CheckBox redactCredentials;
+  @UiField Panel harDownload;
+  @UiField FileUpload harFile;
+  @UiField CheckBox searchBodies;
+  @UiField Panel persistenceTools;
+  @UiField CheckBox persistHistory;
+  @UiField Anchor clearStoredHistory;
 
   @UiField Panel detailHeader;
   @UiField Panel detailTitleContainer;
@@ -156,6 +206,52 @@ public class FullView extends Composite
   private final AuthManager authManager;
   private final AnalyticsManager analytics;
 
+  private PersistentHistoryManager persistentHistoryManager;
+  private PersistentHistory persistentHistory;
+  private List<HistoryRecord> previousSessions = ImmutableList.of();
+  private LatencyStatistics latencyStatistics;
+  private HistoryItemViewCache historyItemViews;
+  private HistoryBodyIndex historyBodyIndex;
+  private HistoryCache historyCache;
+  private FuzzyKeywordMatcher fuzzyMatcher;
+  private SearchResultIndex searchIndex;
+  private SchemaFieldIndex schemaFieldIndex;
+
+  /** Ranker of the search results, which keeps their order until one is set. */
+  private SearchResultRanker<SearchResult> searchResultRanker =
+      SearchResultRanker.forSearchResults();
+
+  /** History item whose view should reveal a path found by a search, and the path. */
+  private String revealItemKey;
+  private String revealPath;
+
+  /** Requests imported from HAR files, oldest first, and their response bodies by identifier. */
+  private final List<HistoryRecord> importedRecords = Lists.newArrayList();
+  private final Map<String, String> importedBodies = Maps.newHashMap();
+  private int importCount = 0;
+
+  /** Entries of the drill down navigation, and of the sections of the search results. */
+  private final PagedEntryList drillDownList;
+  private final List<PagedEntryList> searchResultLists = Lists.newArrayList();
+
+  /** Tags of the services of the directory, generated by the processors that they are keyed by. */
+  private final Map<ServiceDefinition, Set<DescriptionTag>> serviceTags =
+      Maps.newIdentityHashMap();
+  private Set<TagProcessor> taggedBy;
+
+  /** Context of the search results which are being shown, if any, and how many are shown. */
+  private ExplorerContext searchContext;
+  private int searchResultLimit = SEARCH_PAGE_SIZE;
+
+  /** Whether every service which is to be searched has been indexed. */
+  private boolean searchIndexComplete = true;
+
+  /** Context of the request history which is being shown, if any. */
+  private ExplorerContext historyContext;
+
+  /** Object URL of the last exported HAR file. */
+  private String harUrl;
+
   public FullView(URLManipulator urlManipulator, AuthManager authManager,
       AnalyticsManager analytics, SuggestOracle searchKeywords) {
 
@@ -170,6 +266,15 @@ public class FullView extends Composite
     initWidget(uiBinder.createAndBindUi(this));
     setMenuActions();
 
+    // Entries are rendered as the end of the rendered ones is scrolled close to view.
+    drillDownList = new PagedEntryList(drillDownNav);
+    contentContainer.addDomHandler(new ScrollHandler() {
+      @Override
+      public void onScroll(ScrollEvent event) {
+        renderVisibleEntries();
+      }
+    }, ScrollEvent.getType());
+
     // Add a fixed css class name that I can use to be able to style the menu.
     settingsMenu.setStyleName(SETTINGS_MENU_CSS_RULE + " " + settingsMenu.getStyleName());
 
@@ -208,6 +313,42 @@ public class FullView extends Composite
     presenter.clickNavigationItem(NavigationItem.REQUEST_HISTORY);
   }
 
+  @UiHandler("moreSearchResults")
+  void clickMoreSearchResults(ClickEvent event) {
+    searchResultLimit += SEARCH_PAGE_SIZE;
+    setContext(searchContext);
+  }
+
+  @UiHandler("showStatistics")
+  void clickStatistics(ClickEvent event) {
+    showLatencyStatistics();
+  }
+
+  @UiHandler("exportHar")
+  void clickExportHar(ClickEvent event) {
+    exportHar();
+  }
+
+  @UiHandler("harFile")
+  void harFileChanged(ChangeEvent event) {
+    importHar();
+  }
+
+  @UiHandler("searchBodies")
+  void searchBodiesChanged(ValueChangeEvent<Boolean> event) {
+    historyBodyIndex.setEnabled(event.getValue(), historyCache.listHistoryItems());
+  }
+
+  @UiHandler("persistHistory")
+  void persistHistoryChanged(ValueChangeEvent<Boolean> event) {
+    persistentHistoryManager.setEnabled(event.getValue());
+  }
+
+  @UiHandler("clearStoredHistory")
+  void clickClearStoredHistory(ClickEvent event) {
+    persistentHistoryManager.clear();
+  }
+
   @UiHandler("allServicesMenuItem")
   void clickAllVersions(ClickEvent event) {
     presenter.clickNavigationItem(NavigationItem.ALL_VERSIONS);
@@ -260,13 +401,28 @@ public class FullView extends Composite
 
     // Fill in the entry list widget, only the collections that have entries will be shown
     drillDownNav.setVisible(context.isEntryListVisible());
-    drillDownNav.clear();
+    drillDownList.clear();
+    boolean showHistoryTools = context.isEntryListVisible()
+        && context.getRootNavigationItem() == RootNavigationItem.REQUEST_HISTORY;
+    historyTools.setVisible(showHistoryTools);
+    showStatistics.setVisible(latencyStatistics != null);
+    harTools.setVisible(HarFiles.isSupported());
+    searchBodies.setVisible(historyBodyIndex != null);
+    persistenceTools.setVisible(persistentHistoryManager != null);
+    if (persistentHistoryManager != null) {
+      persistHistory.setValue(persistentHistoryManager.isEnabled());
+    }
+    harDownload.clear();
+    historyContext = showHistoryTools ? context : null;
 
     if (context.isEntryListVisible()) {
-      populateHistoryItems("", context.getHistoryItems(), drillDownNav);
-      populateServiceEntries(
-          sortServices(context.getServicesList()), drillDownNav, context.getServiceTagProcessor());
-      populateServiceMethods(context.getService(), context.getMethods(), drillDownNav);
+      populateHistoryItems("", context.getHistoryItems(), drillDownList);
+      if (showHistoryTools) {
+        populatePreviousSessions(drillDownList);
+      }
+      populateServiceEntries(sortServices(context.getServicesList()), drillDownList,
+          context.getServiceTagProcessor());
+      populateServiceMethods(context.getService(), context.getMethods(), drillDownList);
     }
 
     // Fill in the detail pane.
@@ -278,6 +434,11 @@ public class FullView extends Composite
       EmbeddedHistoryItemView view = generateHistoryItemView(item);
 
       detailPane.add(view);
+      if (item.getKey().equals(revealItemKey)) {
+        view.revealPath(revealPath);
+      }
+      revealItemKey = null;
+      revealPath = null;
     } else if (context.isMethodFormVisible()) {
       ApiMethod method = context.getMethod();
 
@@ -311,10 +472,18 @@ public class FullView extends Composite
     // Show the search results.
     searchResults.setVisible(context.isSearchResultsVisible());
     searchResults.clear();
+    searchResultLists.clear();
     searchErrorPanel.setVisible(false);
+    moreSearchResults.setVisible(false);
+    partialSearchResults.setVisible(context.isSearchResultsVisible() && !searchIndexComplete);
+    if (context != searchContext) {
+      searchResultLimit = SEARCH_PAGE_SIZE;
+    }
+    searchContext = context.isSearchResultsVisible() ? context : null;
     if (context.isSearchResultsVisible()) {
       populateSearchResults(context.getSearchResults(), context.getServiceTagProcessor());
     }
+    renderVisibleEntries();
 
     // Show the auth panel.
     authViewPlaceholder.setVisible(context.isAuthVisible());
@@ -348,13 +517,12 @@ public class FullView extends Composite
   }
 
   /**
-   * Generate a view of the provided history item.
+   * Generate a view of the provided history item, or reattach the view which was rendered when it
+   * was last shown.
    */
   private EmbeddedHistoryItemView generateHistoryItemView(HistoryItem item) {
-    EmbeddedHistoryItemView view = new EmbeddedHistoryItemView(item.getRequest());
-    view.complete(item.getResponse(), item.getEndTime() - item.getStartTime(),
-        JsonPrettifier.LOCAL_LINK_FACTORY);
-    return view;
+    return historyItemViews == null
+        ? HistoryItemViewCache.createView(item) : historyItemViews.getView(item);
   }
 
   /**
@@ -398,33 +566,54 @@ public class FullView extends Composite
   }
 
   /**
-   * Display the specified service entries in the container provided, while applying the tags
-   * generated by the tag processor.
+   * Display the specified service entries in the list provided, while applying the tags generated
+   * by the tag processor.
    */
   private void populateServiceEntries(Iterable<ServiceDefinition> services,
-      EntryAggregatorView toPopulate,
-      Set<TagProcessor> tagProcessors) {
+      PagedEntryList toPopulate,
+      final Set<TagProcessor> tagProcessors) {
 
     for (final ServiceDefinition service : services) {
-      String iconUrl = service.getIcons().getIcon16Url();
-      String displayName = NameHelper.generateDisplayTitle(service.getTitle(), service.getName());
-
-      Set<DescriptionTag> tags = Sets.newHashSet();
-      for (TagProcessor processor : tagProcessors) {
-        tags.addAll(processor.process(service));
-      }
+      toPopulate.add(new LazyEntry() {
+        @Override
+        public HasClickHandlers render(EntryAggregatorView aggregator) {
+          String iconUrl = service.getIcons().getIcon16Url();
+          String displayName =
+              NameHelper.generateDisplayTitle(service.getTitle(), service.getName());
+          return aggregator.addEntry(new ServiceEntry(iconUrl, displayName, service.getVersion(),
+              service.getDescription(), getServiceTags(service, tagProcessors)));
+        }
 
-      HasClickHandlers rowHandle = toPopulate.addEntry(new ServiceEntry(
-          iconUrl, displayName, service.getVersion(), service.getDescription(), tags));
-      rowHandle.addClickHandler(new ClickHandler() {
         @Override
-        public void onClick(ClickEvent event) {
+        public void select() {
           presenter.handleClickService(service);
         }
       });
     }
   }
 
+  /**
+   * Returns the tags of a service, which are only generated the first time that they are needed
+   * for each service of the directory.
+   */
+  private Set<DescriptionTag> getServiceTags(
+      ServiceDefinition service, Set<TagProcessor> tagProcessors) {
+    if (tagProcessors != taggedBy) {
+      serviceTags.clear();
+      taggedBy = tagProcessors;
+    }
+
+    Set<DescriptionTag> tags = serviceTags.get(service);
+    if (tags == null) {
+      tags = Sets.newHashSet();
+      for (TagProcessor processor : tagProcessors) {
+        tags.addAll(processor.process(service));
+      }
+      serviceTags.put(service, tags);
+    }
+    return tags;
+  }
+
   /**
    * Display the spcified history items in the aggregator specified.
    *
@@ -434,27 +623,288 @@ public class FullView extends Composite
    * @param aggregator Aggregator that will display rendered history items.
    */
   private void populateHistoryItems(
-      final String prefix, Iterable<HistoryItem> historyItems, EntryAggregatorView aggregator) {
+      final String prefix, Iterable<HistoryItem> historyItems, PagedEntryList aggregator) {
 
     for (final HistoryItem item : historyItems) {
-      ApiRequest request = item.getRequest();
-      HasClickHandlers rowHandler = aggregator.addEntry(new HistoryEntry(request.getMethod()
-          .getId(), request.getHttpMethod().toString() + " " + request.getRequestPath(), item
-          .getEndTime()));
-      rowHandler.addClickHandler(new ClickHandler() {
+      aggregator.add(new LazyEntry() {
         @Override
-        public void onClick(ClickEvent event) {
+        public HasClickHandlers render(EntryAggregatorView aggregator) {
+          ApiRequest request = item.getRequest();
+          return aggregator.addEntry(new HistoryEntry(request.getMethod().getId(),
+              request.getHttpMethod().toString() + " " + request.getRequestPath(),
+              item.getEndTime()));
+        }
+
+        @Override
+        public void select() {
           presenter.handleClickHistoryItem(prefix, item);
         }
       });
     }
   }
 
+  /**
+   * Display matches of request parameters and response values in the aggregator specified. Clicking
+   * a match of a response value shows its history item with the value revealed.
+   */
+  private void populateBodyMatches(Iterable<Match> matches, PagedEntryList aggregator) {
+    for (final Match match : matches) {
+      final HistoryItem item = match.getItem();
+      aggregator.add(new LazyEntry() {
+        @Override
+        public HasClickHandlers render(EntryAggregatorView aggregator) {
+          return aggregator.addEntry(new HistoryEntry(item.getRequest().getMethod().getId(),
+              match.getLocation() + ": " + match.getSnippet(), item.getEndTime()));
+        }
+
+        @Override
+        public void select() {
+          revealItemKey = match.isRequestParameter() ? null : item.getKey();
+          revealPath = match.getLocation();
+          presenter.handleClickHistoryItem("h/", item);
+        }
+      });
+    }
+  }
+
+  /**
+   * Display the methods whose requests or responses contain the fields which matched a search,
+   * with the location of each field.
+   */
+  private void populateFieldMatches(Iterable<FieldMatch> matches, PagedEntryList aggregator) {
+    for (final FieldMatch match : matches) {
+      final ApiService service = match.getService();
+      aggregator.add(new LazyEntry() {
+        @Override
+        public HasClickHandlers render(EntryAggregatorView aggregator) {
+          String location = (match.isRequest() ? "Request: " : "Response: ") + match.getLocation();
+          return aggregator.addEntry(new MethodEntry(match.getMethod().getId(),
+              service.displayTitle() + " " + service.getVersion(), location));
+        }
+
+        @Override
+        public void select() {
+          presenter.handleClickMethod(
+              "m/" + service.getName() + "/" + service.getVersion() + "/", match.getMethod());
+        }
+      });
+    }
+  }
+
+  /**
+   * Set the setting which stores requests across sessions, which is offered with the tools of the
+   * request history.
+   */
+  public void setPersistentHistoryManager(PersistentHistoryManager persistentHistoryManager) {
+    this.persistentHistoryManager = persistentHistoryManager;
+  }
+
+  /**
+   * Set the history of previous sessions, which is listed after the requests of this session.
+   *
+   * @param persistentHistory Persistent history from which response bodies are loaded.
+   * @param previousSessions Records of previous sessions, oldest first.
+   */
+  public void setPreviousSessions(
+      PersistentHistory persistentHistory, List<HistoryRecord> previousSessions) {
+    this.persistentHistory = persistentHistory;
+    this.previousSessions = ImmutableList.copyOf(previousSessions);
+  }
+
+  /**
+   * Display the records of imported requests and then those of previous sessions in the aggregator
+   * specified, newest first.
+   */
+  private void populatePreviousSessions(PagedEntryList aggregator) {
+    Iterable<HistoryRecord> records =
+        Iterables.concat(Lists.reverse(importedRecords), Lists.reverse(previousSessions));
+    for (final HistoryRecord record : records) {
+      aggregator.add(new LazyEntry() {
+        @Override
+        public HasClickHandlers render(EntryAggregatorView aggregator) {
+          String title = record.getMethodId() == null ? "Imported request" : record.getMethodId();
+          return aggregator.addEntry(new HistoryEntry(title,
+              record.getHttpMethod() + " " + record.getRequestPath(), record.getEndTime()));
+        }
+
+        @Override
+        public void select() {
+          showPreviousSessionRecord(record);
+        }
+      });
+    }
+  }
+
+  /**
+   * Show an imported request or a request of a previous session in the detail pane. The stored
+   * response body of a previous session is only loaded now.
+   */
+  private void showPreviousSessionRecord(HistoryRecord record) {
+    final FlowPanel panel = new FlowPanel();
+    String title = record.getMethodId() == null ? record.getRequestPath() : record.getMethodId();
+    panel.add(new Label(title + ": " + record.getStatus() + " " + record.getStatusText()));
+    if (record.getMethodId() != null) {
+      panel.add(new InlineHyperlink("Execute again", record.getMethodUrl()));
+    }
+
+    detailPane.clear();
+    detailPane.add(panel);
+    detailPane.setVisible(true);
+
+    if (importedBodies.containsKey(record.getId())) {
+      showRecordBody(panel, importedBodies.get(record.getId()));
+      return;
+    }
+
+    persistentHistory.loadBody(record.getId(), new Callback<String, String>() {
+      @Override
+      public void onSuccess(String body) {
+        showRecordBody(panel, body);
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        panel.add(new Label("The response body could not be loaded: " + reason));
+      }
+    });
+  }
+
+  private static void showRecordBody(Panel panel, String body) {
+    if (body == null) {
+      panel.add(new Label("The response body was not stored."));
+    } else {
+      panel.add(new RawJsonView(body, Resources.INSTANCE.style()));
+    }
+  }
+
+  /**
+   * Write the requests of this session to a HAR file in the background, and offer it for download
+   * once it is ready.
+   */
+  private void exportHar() {
+    final int requestCount = historyContext.getHistoryItems().size();
+    harDownload.clear();
+    harDownload.add(new Label("Preparing the HAR file..."));
+    HarFiles.export(historyContext.getHistoryItems(), redactCredentials.getValue(),
+        new Callback<String, String>() {
+          @Override
+          public void onSuccess(String url) {
+            if (harUrl != null) {
+              HarFiles.revokeObjectUrl(harUrl);
+            }
+            harUrl = url;
+            harDownload.clear();
+            harDownload.add(
+                new DownloadLink("Download " + requestCount + " requests", HAR_FILE_NAME, url));
+          }
+
+          @Override
+          public void onFailure(String reason) {
+            harDownload.clear();
+            harDownload.add(new Label(reason));
+          }
+        });
+  }
+
+  /**
+   * Read the selected HAR file and list its requests along with the request history.
+   */
+  private void importHar() {
+    HarFiles.readText(harFile.getElement(), new Callback<String, String>() {
+      @Override
+      public void onSuccess(String text) {
+        if (text == null) {
+          return;
+        }
+
+        ImportedHistory imported;
+        try {
+          imported = HarReader.read(text, IMPORT_ID_PREFIX + (++importCount) + "-");
+        } catch (IllegalArgumentException e) {
+          onFailure("The file is not a valid HAR file.");
+          return;
+        }
+        importedRecords.addAll(imported.getRecords());
+        importedBodies.putAll(imported.getBodies());
+        if (historyContext != null) {
+          setContext(historyContext);
+        }
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        harDownload.clear();
+        harDownload.add(new Label(reason));
+      }
+    });
+  }
+
+  /**
+   * Set the statistics of the requests of this session, which can be shown from the request
+   * history.
+   */
+  public void setLatencyStatistics(LatencyStatistics latencyStatistics) {
+    this.latencyStatistics = latencyStatistics;
+  }
+
+  /**
+   * Set the cache of rendered history items, which lets the views of history items be reused when
+   * they are shown again.
+   */
+  public void setHistoryItemViewCache(HistoryItemViewCache historyItemViews) {
+    this.historyItemViews = historyItemViews;
+  }
+
+  /**
+   * Set the index of the values of requests and responses, whose matches are listed with the
+   * search results once it is enabled from the request history.
+   *
+   * @param historyBodyIndex Index which observes the history cache.
+   * @param historyCache History cache whose items are indexed when the index is enabled.
+   */
+  public void setHistoryBodyIndex(HistoryBodyIndex historyBodyIndex, HistoryCache historyCache) {
+    this.historyBodyIndex = historyBodyIndex;
+    this.historyCache = historyCache;
+  }
+
+  /**
+   * Set the matcher which corrects misspelled search queries, whose corrected queries are run
+   * against the search index to add results after the exact ones.
+   */
+  public void setFuzzyMatcher(FuzzyKeywordMatcher fuzzyMatcher, SearchResultIndex searchIndex) {
+    this.fuzzyMatcher = fuzzyMatcher;
+    this.searchIndex = searchIndex;
+  }
+
+  /**
+   * Set the ranker of search results, whose statistics are computed as the results are indexed.
+   */
+  public void setSearchResultRanker(SearchResultRanker<SearchResult> searchResultRanker) {
+    this.searchResultRanker = searchResultRanker;
+  }
+
+  /**
+   * Set the index of the fields of request and response schemas, whose matches are listed with
+   * the search results.
+   */
+  public void setSchemaFieldIndex(SchemaFieldIndex schemaFieldIndex) {
+    this.schemaFieldIndex = schemaFieldIndex;
+  }
+
+  /**
+   * Show a snapshot of the statistics of the requests of this session in the detail pane.
+   */
+  private void showLatencyStatistics() {
+    detailPane.clear();
+    detailPane.add(new LatencyStatisticsView(latencyStatistics, Resources.INSTANCE.style()));
+    detailPane.setVisible(true);
+  }
+
   /**
    * Display all of the methods for the specified service in the aggregator provided.
    */
   private void populateServiceMethods(
-      ApiService service, Iterable<ApiMethod> methods, EntryAggregatorView view) {
+      ApiService service, Iterable<ApiMethod> methods, PagedEntryList view) {
 
     for (final ApiMethod method : methods) {
       populateMethodEntry(method, null, "", view);
@@ -465,22 +915,26 @@ public class FullView extends Composite
    * Add an aggregator line for the particular method specified. When clicked, append the prefix
    * specified and then the method identifier to the current URL.
    */
-  private void populateMethodEntry(final ApiMethod method, @Nullable String serviceTitle,
-      final String prefix, EntryAggregatorView aggregator) {
+  private void populateMethodEntry(final ApiMethod method, @Nullable final String serviceTitle,
+      final String prefix, PagedEntryList aggregator) {
+
+    aggregator.add(new LazyEntry() {
+      @Override
+      public HasClickHandlers render(EntryAggregatorView aggregator) {
+        return aggregator.addEntry(
+            new MethodEntry(method.getId(), serviceTitle, method.getDescription()));
+      }
 
-    HasClickHandlers rowHandler = aggregator.addEntry(
-        new MethodEntry(method.getId(), serviceTitle, method.getDescription()));
-    rowHandler.addClickHandler(new ClickHandler() {
       @Override
-      public void onClick(ClickEvent arg0) {
+      public void select() {
         presenter.handleClickMethod(prefix, method);
       }
     });
   }
 
   /**
-   * Take the list of search results and split them into appropriate aggregators hidden under
-   * disclosure panels.
+   * Take the most relevant of the search results and split them into appropriate aggregators
+   * hidden under disclosure panels, keeping the order of relevance within each.
    */
   private void populateSearchResults(
       Iterable<SearchResult> results, Set<TagProcessor> serviceTagProcessors) {
@@ -488,7 +942,22 @@ public class FullView extends Composite
     List<ServiceDefinition> serviceResults = Lists.newArrayList();
     List<HistoryItem> historyResults = Lists.newArrayList();
 
-    for (SearchResult result : results) {
+    // Only the most relevant results are shown, the rest are shown on request. Results of the
+    // corrected query follow the exact results.
+    List<SearchResult> exactResults = ImmutableList.copyOf(results);
+    List<SearchResult> allResults = fuzzyMatcher == null ? exactResults
+        : fuzzyMatcher.withFuzzyMatches(exactResults, searchBox.getText(), searchIndex);
+    List<SearchResult> rankedResults = Lists.newArrayList(
+        searchResultRanker.top(exactResults, searchBox.getText(), searchResultLimit));
+    for (SearchResult fuzzyResult : allResults.subList(exactResults.size(), allResults.size())) {
+      if (rankedResults.size() >= searchResultLimit) {
+        break;
+      }
+      rankedResults.add(fuzzyResult);
+    }
+    moreSearchResults.setVisible(rankedResults.size() < allResults.size());
+
+    for (SearchResult result : rankedResults) {
       switch(result.getKind()) {
         case HISTORY_ITEM:
           historyResults.add(result.getHistoryItem());
@@ -508,15 +977,15 @@ public class FullView extends Composite
     }
 
     if (!serviceResults.isEmpty()) {
-      EntryAggregatorView serviceAggregator = new EntryAggregatorView();
+      PagedEntryList serviceAggregator = newSearchResultList();
 
       populateServiceEntries(serviceResults, serviceAggregator, serviceTagProcessors);
 
-      searchResults.addSection("Services", serviceAggregator);
+      searchResults.addSection("Services", serviceAggregator.getAggregator());
     }
 
     if (!methodResults.isEmpty()) {
-      EntryAggregatorView methodAggregator = new EntryAggregatorView();
+      PagedEntryList methodAggregator = newSearchResultList();
 
       for (MethodBundle bundle : methodResults) {
         String prefix =
@@ -526,22 +995,68 @@ public class FullView extends Composite
         populateMethodEntry(bundle.getMethod(), serviceTitle, prefix, methodAggregator);
       }
 
-      searchResults.addSection("Methods", methodAggregator);
+      searchResults.addSection("Methods", methodAggregator.getAggregator());
     }
 
     if (!historyResults.isEmpty()) {
-      EntryAggregatorView historyAggregator = new EntryAggregatorView();
+      PagedEntryList historyAggregator = newSearchResultList();
       populateHistoryItems("h/", historyResults, historyAggregator);
-      searchResults.addSection("History", historyAggregator);
+      searchResults.addSection("History", historyAggregator.getAggregator());
     }
 
-    if (serviceResults.isEmpty() && methodResults.isEmpty() && historyResults.isEmpty()) {
+    List<Match> bodyMatches = historyBodyIndex == null ? ImmutableList.<Match>of()
+        : historyBodyIndex.search(searchBox.getText(), MAX_BODY_MATCHES);
+    if (!bodyMatches.isEmpty()) {
+      PagedEntryList bodyAggregator = newSearchResultList();
+      populateBodyMatches(bodyMatches, bodyAggregator);
+      searchResults.addSection("Request and response values", bodyAggregator.getAggregator());
+    }
+
+    List<FieldMatch> fieldMatches = schemaFieldIndex == null ? ImmutableList.<FieldMatch>of()
+        : schemaFieldIndex.search(searchBox.getText(), MAX_FIELD_MATCHES);
+    if (!fieldMatches.isEmpty()) {
+      PagedEntryList fieldAggregator = newSearchResultList();
+      populateFieldMatches(fieldMatches, fieldAggregator);
+      searchResults.addSection("Request and response fields", fieldAggregator.getAggregator());
+    }
+    if (schemaFieldIndex != null && !schemaFieldIndex.isComplete()) {
+      // Fields are matched among the services indexed so far.
+      partialSearchResults.setVisible(true);
+    }
+
+    if (serviceResults.isEmpty() && methodResults.isEmpty() && historyResults.isEmpty()
+        && bodyMatches.isEmpty() && fieldMatches.isEmpty()) {
       // There are no results, show the message
       searchResults.setVisible(false);
       searchErrorPanel.setVisible(true);
     }
   }
 
+  /**
+   * Create a list for a section of the search results, whose entries are rendered as they are
+   * scrolled into view.
+   */
+  private PagedEntryList newSearchResultList() {
+    PagedEntryList list = new PagedEntryList(new EntryAggregatorView());
+    searchResultLists.add(list);
+    return list;
+  }
+
+  /**
+   * Render pages of the entry lists until the rendered entries reach one screen below the bottom
+   * of the content container.
+   */
+  private void renderVisibleEntries() {
+    Element container = contentContainer.getElement();
+    int renderBottom = container.getAbsoluteBottom() + container.getClientHeight();
+    for (PagedEntryList list : Iterables.concat(ImmutableList.of(drillDownList),
+        searchResultLists)) {
+      while (list.renderAbove(renderBottom)) {
+        // Keep rendering pages while the end of the list is close to being shown.
+      }
+    }
+  }
+
   /**
    * Highlight the navigation item for the root navigation item specified.
    */
@@ -576,6 +1091,19 @@ public class FullView extends Composite
     presenter.searchReady();
   }
 
+  @Override
+  public void indexingProgress(int indexed, int total) {
+    searchIndexComplete = indexed >= total;
+    if (searchIndexComplete) {
+      searchLoadingIndicator.setVisible(false);
+      partialSearchResults.setVisible(false);
+    } else {
+      // Searches are answered from the services indexed so far.
+      searchLoadingIndicator.setText("Indexing " + indexed + " of " + total + " APIs...");
+      searchLoadingIndicator.setVisible(true);
+    }
+  }
+
   private List<ServiceDefinition> sortServices(Set<ServiceDefinition> services) {
     List<ServiceDefinition> serviceList = Lists.newArrayList(services);
     Collections.sort(serviceList, new Comparator<ServiceDefinition>() {
@@ -598,17 +1126,29 @@ public class FullView extends Composite
     public EmbeddedView localView;
     public String methodName;
 
+    /**
+     * Views of the requests in flight. Every request ends as either finished or failed exactly
+     * once, so its view is never left behind.
+     */
     private Map<ApiRequest, EmbeddedHistoryItemView> incompleteRequests = Maps.newHashMap();
 
     @Override
     public void finished(ApiRequest request, ApiResponse response, long startTime, long endTime) {
-      EmbeddedHistoryItemView toComplete = incompleteRequests.get(request);
+      EmbeddedHistoryItemView toComplete = incompleteRequests.remove(request);
       toComplete.complete(response, endTime - startTime, JsonPrettifier.LOCAL_LINK_FACTORY);
-      incompleteRequests.remove(request);
 
       delegate.finished(request, response, startTime, endTime);
     }
 
+    @Override
+    public void failed(
+        ApiRequest request, Outcome outcome, String message, long startTime, long endTime) {
+      EmbeddedHistoryItemView toFail = incompleteRequests.remove(request);
+      toFail.fail(message, endTime - startTime, JsonPrettifier.LOCAL_LINK_FACTORY);
+
+      delegate.failed(request, outcome, message, startTime, endTime);
+    }
+
     @Override
     public void starting(ApiRequest request) {
       EmbeddedHistoryItemView incomplete = new EmbeddedHistoryItemView(request);
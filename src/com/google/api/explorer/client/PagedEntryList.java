@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client;
+
+import com.google.api.explorer.client.navigation.EntryAggregatorView;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.HasClickHandlers;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entries which are added to an {@link EntryAggregatorView} a page at a time, as the end of the
+ * entries added so far comes close to being scrolled into view. Showing a long list of services
+ * only builds the rows, computes the tags and requests the icons of the first few services.
+ *
+ * <p>
+ * The rows of all entries share this list as their click handler, which looks up the entry of the
+ * row that was clicked, so no handler is created per row.
+ * </p>
+ *
+ */
+class PagedEntryList implements ClickHandler {
+
+  /** Number of entries added at a time, which should more than fill the viewport. */
+  static final int PAGE_SIZE = 50;
+
+  /**
+   * Entry whose row is only built once it is about to be shown.
+   */
+  interface LazyEntry {
+    /**
+     * Add the row of the entry to the aggregator.
+     *
+     * @return Row which handles clicks on the entry.
+     */
+    HasClickHandlers render(EntryAggregatorView aggregator);
+
+    /** Called when the row of the entry is clicked. */
+    void select();
+  }
+
+  private final EntryAggregatorView aggregator;
+  private final List<LazyEntry> entries = Lists.newArrayList();
+  private final Map<HasClickHandlers, LazyEntry> rows = Maps.newIdentityHashMap();
+  private int renderedCount = 0;
+
+  PagedEntryList(EntryAggregatorView aggregator) {
+    this.aggregator = aggregator;
+  }
+
+  EntryAggregatorView getAggregator() {
+    return aggregator;
+  }
+
+  /**
+   * Add an entry after the others, it is rendered with the page which it belongs to.
+   */
+  void add(LazyEntry entry) {
+    entries.add(entry);
+  }
+
+  boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /**
+   * Remove all of the entries and their rows.
+   */
+  void clear() {
+    aggregator.clear();
+    entries.clear();
+    rows.clear();
+    renderedCount = 0;
+  }
+
+  /**
+   * Render the next page of entries if the end of the rows rendered so far is above the specified
+   * position. The first page is always rendered, no more are rendered while the aggregator is
+   * hidden.
+   *
+   * @param renderBottom Absolute position down to which rows should be rendered.
+   * @return Whether a page was rendered.
+   */
+  boolean renderAbove(int renderBottom) {
+    if (renderedCount == entries.size()) {
+      return false;
+    }
+
+    if (renderedCount > 0) {
+      Element element = aggregator.getElement();
+      if (element.getOffsetHeight() == 0 || element.getAbsoluteBottom() > renderBottom) {
+        return false;
+      }
+    }
+
+    int end = Math.min(renderedCount + PAGE_SIZE, entries.size());
+    for (int i = renderedCount; i < end; i++) {
+      LazyEntry entry = entries.get(i);
+      HasClickHandlers row = entry.render(aggregator);
+      rows.put(row, entry);
+      row.addClickHandler(this);
+    }
+    renderedCount = end;
+    return true;
+  }
+
+  @Override
+  public void onClick(ClickEvent event) {
+    LazyEntry entry = rows.get(event.getSource());
+    if (entry != null) {
+      entry.select();
+    }
+  }
+}
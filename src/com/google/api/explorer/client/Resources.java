@@ -179,6 +179,18 @@ public interface Resources extends ClientBundle {
 
     String jsonCollapsed();
 
+    String jsonTableFilter();
+
+    String jsonTableViewport();
+
+    String jsonTableSpacer();
+
+    String jsonTableRows();
+
+    String jsonTable();
+
+    String statisticsTable();
+
     String responseLine();
 
     String reusableResource();
@@ -77,6 +77,12 @@ public interface ApiDirectory {
     /** Version of the service. */
     String getVersion();
 
+    /**
+     * ETag of the discovery document of the service, which changes whenever the document is
+     * revised, or {@code null} if the directory does not list one.
+     */
+    String getEtag();
+
     /** Description of the service. */
     String getDescription();
 
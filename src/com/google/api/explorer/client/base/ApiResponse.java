@@ -23,6 +23,8 @@ import com.google.gwt.core.client.JsArrayString;
 
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * Represents a response from a call to an API service.
  *
@@ -79,6 +81,14 @@ public class ApiResponse {
     return object.getString("body");
   }
 
+  /**
+   * Replace the body of the response, such as with {@code null} when the body is discarded to save
+   * memory.
+   */
+  public void setBody(@Nullable String body) {
+    object.set("body", body);
+  }
+
   /** Returns the status code of the response. */
   public int getStatus() {
     return object.getInteger("status");
@@ -34,6 +34,15 @@ public abstract class Config {
   public static final String DIRECTORY_REQUEST_PATH =
       "/discovery/" + ApiServiceFactory.DISCOVERY_VERSION + "/apis";
 
+  /** Path, relative to the host page, of the prebuilt search indexes by directory revision. */
+  public static final String SEARCH_INDEX_PATH = "searchindex/";
+
+  /**
+   * Name of the meta tag of the host page whose content is the directory revision of the
+   * deployed prebuilt search index, if any.
+   */
+  public static final String SEARCH_INDEX_META_NAME = "apis-explorer-search-index";
+
   private static String baseUrl = DEFAULT_BASE_URL;
   private static String apiKey = "";
   private static String discoveryAuthToken = null;
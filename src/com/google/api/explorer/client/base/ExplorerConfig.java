@@ -40,4 +40,7 @@ public class ExplorerConfig {
   /** The name of this application. */
   public static final String APP_NAME = "Google APIs Explorer";
 
+  /** Time after which a request which has not received a response is reported as timed out. */
+  public static final int REQUEST_TIMEOUT_MILLIS = 2 * 60 * 1000;
+
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.base;
+
+import com.google.gwt.i18n.client.DateTimeFormat;
+import com.google.gwt.i18n.client.DateTimeFormat.PredefinedFormat;
+import com.google.gwt.i18n.client.TimeZone;
+
+import java.util.Date;
+
+/**
+ * Simple ISO 8601 date formatting interface that allows the formatting to be pluggable (for
+ * testing).
+ *
+ */
+public interface IsoDateFormatter {
+  /**
+   * Returns the specified time as an ISO 8601 date and time in UTC, such as
+   * "2012-03-04T05:06:07.089+00:00".
+   *
+   * @param millis Milliseconds since the epoch.
+   */
+  String format(long millis);
+
+  /**
+   * Default implementation that delegates to the GWT date formatter.
+   */
+  static final IsoDateFormatter DEFAULT = new IsoDateFormatter() {
+    private final TimeZone utc = TimeZone.createTimeZone(0);
+
+    @Override
+    public String format(long millis) {
+      return DateTimeFormat.getFormat(PredefinedFormat.ISO_8601).format(new Date(millis), utc);
+    }
+  };
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.base;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache which holds values up to a total weight, dropping the least recently used values first
+ * when a new value does not fit.
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ *
+ */
+public class LruCache<K, V> {
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  /**
+   * Interface which computes the weight of a value, such as the amount of memory it holds.
+   */
+  public interface Weigher<V> {
+    /**
+     * Returns the weight of the value, which must not be negative.
+     */
+    public int weigh(V value);
+  }
+
+  private static class WeightedValue<V> {
+    final V value;
+    final int weight;
+
+    WeightedValue(V value, int weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  private final Weigher<? super V> weigher;
+  private final long maxWeight;
+
+  /** Entries in access order, the least recently used first. */
+  private final LinkedHashMap<K, WeightedValue<V>> entries =
+      new LinkedHashMap<K, WeightedValue<V>>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+  private long totalWeight = 0;
+
+  /**
+   * Create a cache.
+   *
+   * @param weigher Weigher which is called once for every value put in the cache.
+   * @param maxWeight Total weight of the values which may be held at once.
+   */
+  public LruCache(Weigher<? super V> weigher, long maxWeight) {
+    Preconditions.checkArgument(maxWeight >= 0, "Maximum weight must not be negative.");
+    this.weigher = Preconditions.checkNotNull(weigher);
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Returns the value of the key, marking it as the most recently used, or {@code null} if it is
+   * not cached.
+   */
+  public V get(K key) {
+    WeightedValue<V> entry = entries.get(key);
+    return entry == null ? null : entry.value;
+  }
+
+  /**
+   * Cache the value of a key, replacing any previous value. Values which weigh more than the
+   * maximum weight on their own are not cached.
+   *
+   * @return Whether the value was cached.
+   */
+  public boolean put(K key, V value) {
+    Preconditions.checkNotNull(key);
+    Preconditions.checkNotNull(value);
+
+    int weight = weigher.weigh(value);
+    Preconditions.checkState(weight >= 0, "Weight must not be negative.");
+
+    remove(key);
+    if (weight > maxWeight) {
+      return false;
+    }
+
+    entries.put(key, new WeightedValue<V>(value, weight));
+    totalWeight += weight;
+
+    // Drop the least recently used values, which never reaches the new value since it fits alone.
+    Iterator<Map.Entry<K, WeightedValue<V>>> eldest = entries.entrySet().iterator();
+    while (totalWeight > maxWeight) {
+      totalWeight -= eldest.next().getValue().weight;
+      eldest.remove();
+    }
+    return true;
+  }
+
+  /**
+   * Drop the value of a key, if it is cached.
+   *
+   * @return The value which was dropped, or {@code null}.
+   */
+  public V remove(K key) {
+    WeightedValue<V> entry = entries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    totalWeight -= entry.weight;
+    return entry.value;
+  }
+
+  /**
+   * Drop all values.
+   */
+  public void clear() {
+    entries.clear();
+    totalWeight = 0;
+  }
+
+  /**
+   * Returns the number of cached values.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the total weight of the cached values.
+   */
+  public long getTotalWeight() {
+    return totalWeight;
+  }
+
+  /**
+   * Returns the keys of the cached values, the least recently used first.
+   */
+  public List<K> keys() {
+    return ImmutableList.copyOf(entries.keySet());
+  }
+}
@@ -89,6 +89,12 @@ public interface Schema {
   /** Description of this property, {@code null} if none is given. */
   String getDescription();
 
+  /**
+   * Additional hint about the values of this property, i.e. "uri" or "date-time", or {@code null}
+   * if none is given.
+   */
+  String getFormat();
+
   /**
    * Mapping of an annotation and a set of method identifiers for which that
    * annotation applies to this property.
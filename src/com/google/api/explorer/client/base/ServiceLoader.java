@@ -62,6 +62,20 @@ public class ServiceLoader {
     public void directoryLoaded(Set<ServiceDefinition> directoryServices);
   }
 
+  /**
+   * Delegate format for an observer of services which could not be loaded.
+   */
+  public interface ServiceLoadFailureDelegate {
+    /**
+     * Invoked when a service could not be loaded.
+     *
+     * @param name Name of the service.
+     * @param version Version of the service.
+     * @param reason Message describing the failure.
+     */
+    public void serviceLoadFailed(String name, String version, String reason);
+  }
+
   private final ApiServiceFactory googleApi;
 
   /**
@@ -80,6 +94,17 @@ public class ServiceLoader {
     }
   };
 
+  /**
+   * Delegate property which can be set to be notified of services which could not be loaded.
+   * Default value discards notifications.
+   */
+  public ServiceLoadFailureDelegate failureDelegate = new ServiceLoadFailureDelegate() {
+    @Override
+    public void serviceLoadFailed(String name, String version, String reason) {
+      // Intentionally blank, null implementation.
+    }
+  };
+
   /**
    * List of services that should not be returned by directory because they would provide a bad
    * experience in APIs explorer.
@@ -116,7 +141,8 @@ public class ServiceLoader {
    * @param version Version of the service.
    * @param callback Callback to invoke when loading is complete.
    */
-  public void loadService(String name, String version, Callback<ApiService, String> callback) {
+  public void loadService(final String name, final String version,
+      Callback<ApiService, String> callback) {
     final String cacheKey = generateCacheKey(name, version, CallStyle.REST);
 
     // Handle the request immediately if possible.
@@ -148,6 +174,8 @@ public class ServiceLoader {
               for (Callback<ApiService, String> cb : copyAndClearOutstandingCallbacks(cacheKey)) {
                 cb.onFailure(failureMessage);
               }
+
+              failureDelegate.serviceLoadFailed(name, version, failureMessage);
             }
           });
     }
@@ -63,6 +63,7 @@ public class CrossDomainRequestBuilder {
     for (OutstandingRequest request : outstandingRequests) {
       doMakeRequest(request.request, request.xdr);
     }
+    outstandingRequests.clear();
   }
 
   public void setTimeoutMillis(int timeoutMillis) {
@@ -29,6 +29,7 @@ import com.google.api.explorer.client.base.ApiServiceFactory;
 import com.google.api.explorer.client.base.Config;
 import com.google.api.explorer.client.base.ExplorerConfig;
 import com.google.api.explorer.client.base.ServiceLoader;
+import com.google.api.explorer.client.embedded.RequestLifecycleTracker.Outcome;
 import com.google.api.explorer.client.history.EmbeddedHistoryItemView;
 import com.google.api.explorer.client.history.JsonPrettifier;
 import com.google.api.explorer.client.routing.URLFragment;
@@ -114,6 +115,7 @@ public class EmbeddedEntryPoint implements EntryPoint {
 
     // Set the API key and application name to use for calls from the Explorer.
     Config.setApiKey(ExplorerConfig.API_KEY);
+    ApiRequest.setTimeoutMillis(ExplorerConfig.REQUEST_TIMEOUT_MILLIS);
 
     // Dependencies for the UI
     authManager = new AuthManager();
@@ -170,6 +172,15 @@ public class EmbeddedEntryPoint implements EntryPoint {
       historyItem.complete(response, endTime - startTime, JsonPrettifier.EXTERNAL_LINK_FACTORY);
       localView.showHistoryItem(historyItem);
     }
+
+    @Override
+    public void failed(
+        ApiRequest request, Outcome outcome, String message, long startTime, long endTime) {
+      super.failed(request, outcome, message, startTime, endTime);
+      EmbeddedHistoryItemView historyItem = new EmbeddedHistoryItemView(request);
+      historyItem.fail(message, endTime - startTime, JsonPrettifier.EXTERNAL_LINK_FACTORY);
+      localView.showHistoryItem(historyItem);
+    }
   }
 
   /**
@@ -25,6 +25,8 @@ import com.google.api.explorer.client.base.ApiService;
 import com.google.api.explorer.client.base.ExplorerConfig;
 import com.google.api.explorer.client.base.Schema;
 import com.google.api.explorer.client.base.rest.RestApiRequest;
+import com.google.api.explorer.client.embedded.RequestLifecycleTracker.Outcome;
+import com.google.api.explorer.client.embedded.RequestLifecycleTracker.TrackedRequest;
 import com.google.api.explorer.client.routing.UrlBuilder;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
@@ -32,8 +34,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
-import com.google.gwt.user.client.Window;
-import com.google.gwt.user.client.rpc.AsyncCallback;
 
 import java.util.Collection;
 import java.util.Comparator;
@@ -104,6 +104,19 @@ public class EmbeddedParameterFormPresenter {
      * @param endTime Time at which the request completed.
      */
     public void finished(ApiRequest request, ApiResponse response, long startTime, long endTime);
+
+    /**
+     * Method which is invoked when a request ended without a response. Every request which was
+     * reported as starting is reported either as finished or as failed, exactly once.
+     *
+     * @param request Request object which was executed.
+     * @param outcome How the request ended, which is never {@link Outcome#SUCCEEDED}.
+     * @param message Message which describes the failure to the user.
+     * @param startTime Time at which the request was started.
+     * @param endTime Time at which the request ended.
+     */
+    public void failed(
+        ApiRequest request, Outcome outcome, String message, long startTime, long endTime);
   }
 
   private final AuthManager authManager;
@@ -111,6 +124,7 @@ public class EmbeddedParameterFormPresenter {
   private ApiMethod method;
   private ApiService service;
   private RequestFinishedCallback callback;
+  private final RequestLifecycleTracker tracker;
 
   public EmbeddedParameterFormPresenter(
       AuthManager authManager, Display display, RequestFinishedCallback callback) {
@@ -118,6 +132,7 @@ public class EmbeddedParameterFormPresenter {
     this.authManager = authManager;
     this.display = display;
     this.callback = callback;
+    this.tracker = new RequestLifecycleTracker(new ExecutingStateCallback());
   }
 
   public void selectMethod(ApiService service, ApiMethod method, Multimap<String, String> params) {
@@ -146,7 +161,7 @@ public class EmbeddedParameterFormPresenter {
 
   public void submit() {
     Preconditions.checkState(method != null);
-    final RestApiRequest req = new RestApiRequest(service, method);
+    RestApiRequest req = new RestApiRequest(service, method);
 
     // If the user has declared a body, set it on the request.
     String body = display.getBodyText();
@@ -175,25 +190,35 @@ public class EmbeddedParameterFormPresenter {
 
     display.setExecuting(true);
 
-    final long start = System.currentTimeMillis();
-    req.send(new AsyncCallback<ApiResponse>() {
-      @Override
-      public void onSuccess(ApiResponse response) {
-        display.setExecuting(false);
-        callback.finished(req, response, start, System.currentTimeMillis());
-      }
-
-      @Override
-      public void onFailure(Throwable caught) {
-        display.setExecuting(false);
-        // TODO(jasonhall): Better error handling when request fails (i.e.,
-        // cannot communicate at all).
-        Window.alert("An error occured: " + caught.getMessage());
-      }
-    });
+    TrackedRequest tracked = tracker.track(req);
+    req.send(tracked);
 
     // This has to be after the actual send so that the API key gets initialized properly.
-    callback.starting(req);
+    tracked.reportStarting();
+  }
+
+  /**
+   * Callback which keeps the display executing while any request is in flight, and passes the
+   * events through to the callback of the presenter.
+   */
+  private class ExecutingStateCallback implements RequestFinishedCallback {
+    @Override
+    public void starting(ApiRequest request) {
+      callback.starting(request);
+    }
+
+    @Override
+    public void finished(ApiRequest request, ApiResponse response, long startTime, long endTime) {
+      display.setExecuting(tracker.getInFlightCount() > 0);
+      callback.finished(request, response, startTime, endTime);
+    }
+
+    @Override
+    public void failed(
+        ApiRequest request, Outcome outcome, String message, long startTime, long endTime) {
+      display.setExecuting(tracker.getInFlightCount() > 0);
+      callback.failed(request, outcome, message, startTime, endTime);
+    }
   }
 
   /**
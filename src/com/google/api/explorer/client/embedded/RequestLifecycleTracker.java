@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.embedded;
+
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.base.http.TimeoutException;
+import com.google.api.explorer.client.embedded.EmbeddedParameterFormPresenter.RequestFinishedCallback;
+import com.google.common.base.Preconditions;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+/**
+ * Tracks requests from the moment they are sent, and reports every request to a
+ * {@link RequestFinishedCallback} as starting and then as ending in exactly one way: with a
+ * response, with a failure or with a timeout. Events which arrive after a request has
+ * ended, such as a response after a timeout, are ignored.
+ *
+ * <p>
+ * The tracker keeps counts rather than references to the requests. The state of a request lives
+ * in its {@link TrackedRequest}, which is only referenced by whoever waits for the response, so
+ * the request and anything reported for it can be freed as soon as it has ended.
+ * </p>
+ *
+ */
+public class RequestLifecycleTracker {
+
+  /** Ways in which a request can end. */
+  public enum Outcome {
+    /** A response was received, whatever its status. */
+    SUCCEEDED,
+
+    /** The request could not be made or no response could be read. */
+    FAILED,
+
+    /** No response was received in time. */
+    TIMED_OUT;
+  }
+
+  private final RequestFinishedCallback callback;
+  private final int[] outcomeCounts = new int[Outcome.values().length];
+  private int inFlightCount = 0;
+
+  public RequestLifecycleTracker(RequestFinishedCallback callback) {
+    this.callback = Preconditions.checkNotNull(callback);
+  }
+
+  /**
+   * Start tracking a request, which should be sent with the returned {@link TrackedRequest} as its
+   * callback.
+   */
+  public TrackedRequest track(ApiRequest request) {
+    inFlightCount++;
+    return new TrackedRequest(Preconditions.checkNotNull(request));
+  }
+
+  /**
+   * Returns the number of requests which are tracked and have not ended.
+   */
+  public int getInFlightCount() {
+    return inFlightCount;
+  }
+
+  /**
+   * Returns the number of tracked requests which ended in the specified way.
+   */
+  public int getCount(Outcome outcome) {
+    return outcomeCounts[outcome.ordinal()];
+  }
+
+  /**
+   * A request which is being tracked, and the callback which receives its response.
+   */
+  public class TrackedRequest implements AsyncCallback<ApiResponse> {
+    private final ApiRequest request;
+    private final long startTime = System.currentTimeMillis();
+    private boolean startReported = false;
+
+    // How the request ended, which is held until the start has been reported.
+    private Outcome outcome;
+    private ApiResponse response;
+    private String message;
+    private long endTime;
+
+    private TrackedRequest(ApiRequest request) {
+      this.request = request;
+    }
+
+    /**
+     * Report that the request is starting, which must happen once it has been sent. If the request
+     * has already ended, its end is reported right after.
+     */
+    public void reportStarting() {
+      Preconditions.checkState(!startReported, "The start of the request was already reported.");
+      startReported = true;
+      callback.starting(request);
+      if (outcome != null) {
+        reportEnd();
+      }
+    }
+
+    @Override
+    public void onSuccess(ApiResponse response) {
+      end(Outcome.SUCCEEDED, Preconditions.checkNotNull(response), null);
+    }
+
+    @Override
+    public void onFailure(Throwable caught) {
+      if (caught instanceof TimeoutException) {
+        end(Outcome.TIMED_OUT, null, "The request timed out.");
+      } else {
+        end(Outcome.FAILED, null, "An error occurred: " + caught.getMessage());
+      }
+    }
+
+    /**
+     * Returns whether the request has ended in any way.
+     */
+    public boolean isEnded() {
+      return outcome != null;
+    }
+
+    private void end(Outcome outcome, ApiResponse response, String message) {
+      if (isEnded()) {
+        // Late events, such as a response which arrives after a timeout, are ignored.
+        return;
+      }
+
+      this.outcome = outcome;
+      this.response = response;
+      this.message = message;
+      this.endTime = System.currentTimeMillis();
+      inFlightCount--;
+      outcomeCounts[outcome.ordinal()]++;
+
+      if (startReported) {
+        reportEnd();
+      }
+    }
+
+    private void reportEnd() {
+      ApiResponse endResponse = response;
+      response = null;
+      if (outcome == Outcome.SUCCEEDED) {
+        callback.finished(request, endResponse, startTime, endTime);
+      } else {
+        callback.failed(request, outcome, message, startTime, endTime);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.UrlEncoder;
+import com.google.gwt.user.client.ui.Anchor;
+
+/**
+ * Link which saves text generated by the explorer to a file. The text is embedded in the link as a
+ * data URL or held by the browser behind an object URL, so nothing is sent to a server.
+ *
+ */
+public class DownloadLink extends Anchor {
+
+  private static final String NEW_TAB_TARGET = "_blank";
+
+  /**
+   * Create a link which downloads the specified content.
+   *
+   * @param text Text of the link.
+   * @param fileName Name suggested for the downloaded file.
+   * @param mimeType Type of the content.
+   * @param content Text to save.
+   */
+  public DownloadLink(String text, String fileName, String mimeType, String content) {
+    this(text, fileName, createDataUrl(mimeType, content));
+  }
+
+  /**
+   * Create a link which downloads the content found at the specified URL, such as an object URL of
+   * content which is too large to embed in the link.
+   *
+   * @param text Text of the link.
+   * @param fileName Name suggested for the downloaded file.
+   * @param url URL of the content.
+   */
+  public DownloadLink(String text, String fileName, String url) {
+    super(text, url, NEW_TAB_TARGET);
+    getElement().setAttribute("download", fileName);
+  }
+
+  private static String createDataUrl(String mimeType, String content) {
+    return "data:" + mimeType + ";charset=utf-8,"
+        + UrlEncoder.DEFAULT.encodePathSegment(content);
+  }
+}
@@ -16,28 +16,36 @@
 
 package com.google.api.explorer.client.history;
 
+import com.google.api.explorer.client.Resources;
 import com.google.api.explorer.client.base.ApiMethod.HttpMethod;
 import com.google.api.explorer.client.base.ApiRequest;
 import com.google.api.explorer.client.base.ApiResponse;
 import com.google.api.explorer.client.base.ApiResponse.HeaderValue;
 import com.google.api.explorer.client.base.Config;
 import com.google.api.explorer.client.base.ExplorerConfig;
+import com.google.api.explorer.client.base.dynamicjso.DynamicJsArray;
 import com.google.api.explorer.client.base.dynamicjso.DynamicJso;
 import com.google.api.explorer.client.history.JsonPrettifier.JsonFormatException;
 import com.google.api.explorer.client.history.JsonPrettifier.PrettifierLinkFactory;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JsonUtils;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.dom.client.PreElement;
 import com.google.gwt.dom.client.SpanElement;
 import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.KeyUpEvent;
 import com.google.gwt.i18n.client.DateTimeFormat;
 import com.google.gwt.i18n.client.DateTimeFormat.PredefinedFormat;
 import com.google.gwt.resources.client.CssResource;
 import com.google.gwt.uibinder.client.UiBinder;
 import com.google.gwt.uibinder.client.UiField;
 import com.google.gwt.uibinder.client.UiHandler;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.gwt.user.client.ui.HTMLPanel;
@@ -46,10 +54,12 @@ import com.google.gwt.user.client.ui.InlineLabel;
 import com.google.gwt.user.client.ui.Label;
 import com.google.gwt.user.client.ui.Panel;
 import com.google.gwt.user.client.ui.SimplePanel;
+import com.google.gwt.user.client.ui.TextBox;
 import com.google.gwt.user.client.ui.UIObject;
 import com.google.gwt.user.client.ui.Widget;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 
@@ -62,11 +72,38 @@ public class EmbeddedHistoryItemView extends Composite {
   private static final String CONTENT_TYPE_HEADER = "content-type";
   private static final String AUTH_HEADER = "authorization";
 
+  /**
+   * Responses with more characters than this are shown in the raw view by default, formatting them
+   * would materialize far too many widgets.
+   */
+  static final int RAW_VIEW_THRESHOLD = 1000000;
+
+  /** Arrays of objects with more elements than this are shown in the table view by default. */
+  static final int TABLE_VIEW_THRESHOLD = 1000;
+
+  /** Maximum number of matches listed for a search within the response. */
+  private static final int MAX_SEARCH_RESULTS = 50;
+
+  /** Interval at which a path to reveal waits for the response to be indexed. */
+  private static final int REVEAL_POLL_MILLIS = 50;
+
+  /** Delay after the last keystroke in the search box before the response is searched. */
+  private static final int SEARCH_DELAY_MILLIS = 200;
+
+  /** Ways in which a JSON response body can be shown. */
+  private enum ResponseView {
+    FORMATTED, RAW, TABLE;
+  }
+
   interface HistoryItemUiBinder extends UiBinder<Widget, EmbeddedHistoryItemView> {
   }
 
   interface EmbeddedHistoryItemViewStyle extends CssResource {
     String fadeIn();
+
+    String searchResult();
+
+    String searchHighlight();
   }
 
   @UiField public Panel titleBar;
@@ -77,15 +114,47 @@ public class EmbeddedHistoryItemView extends Composite {
   @UiField public FlowPanel requestBodyDiv;
   @UiField public PreElement statusDiv;
   @UiField public Label showHideHeaders;
+  @UiField public Label showRawToggle;
+  @UiField public Label showTableToggle;
+  @UiField public Label reexecuteLink;
   @UiField public PreElement responseHeadersDiv;
   @UiField public FlowPanel responseBodyDiv;
   @UiField public Panel executing;
   @UiField public HTMLPanel wireContent;
+  @UiField public FlowPanel searchPanel;
+  @UiField public TextBox searchBox;
+  @UiField public InlineLabel searchStatus;
+  @UiField public FlowPanel searchResults;
 
   @UiField EmbeddedHistoryItemViewStyle style;
 
   private final ApiRequest request;
   private final String realPathFragment;
+  private final Date executionDate = new Date();
+  private final String titlePrefix;
+
+  // Kept so that the response body can be redrawn when switching between views.
+  private String responseBody;
+  private String responseContentType;
+  private PrettifierLinkFactory responseLinkFactory;
+  private String responseTableKey;
+  private DynamicJsArray responseTable;
+  private JsonTableView responseTableView;
+  private RawJsonView responseRawView;
+  private ResponseView responseView;
+
+  private ResponseIndex responseIndex;
+  private Widget highlightedMatch;
+
+  /** Searches the response once typing in the search box pauses. */
+  private final Timer searchTimer = new Timer() {
+    @Override
+    public void run() {
+      search();
+    }
+  };
+
+  private int responseLength = 0;
 
   public EmbeddedHistoryItemView(ApiRequest request) {
     initWidget();
@@ -100,16 +169,23 @@ public class EmbeddedHistoryItemView extends Composite {
       request.setApiKey("{YOUR_API_KEY}");
     }
 
-    String prefix = request.getMethod().getId() + " executed ";
-    PrettyDate.keepMakingPretty(new Date(), prefix, title);
+    titlePrefix = request.getMethod().getId() + " executed ";
+    PrettyDate.makePretty(executionDate, titlePrefix, title);
 
     String dateString =
-        DateTimeFormat.getFormat(PredefinedFormat.DATE_TIME_SHORT).format(new Date());
+        DateTimeFormat.getFormat(PredefinedFormat.DATE_TIME_SHORT).format(executionDate);
     title.setTitle(dateString);
 
     requestDiv.setInnerText(getRequestString(request));
   }
 
+  @Override
+  protected void onLoad() {
+    // The title stops being updated whenever the view is detached, such as when a cached view is
+    // replaced, so it is registered again every time the view is shown.
+    PrettyDate.keepMakingPretty(executionDate, titlePrefix, title);
+  }
+
   /**
    * Complete the partially filled history item with the response data.
    *
@@ -127,15 +203,49 @@ public class EmbeddedHistoryItemView extends Composite {
     // Headers are hidden by default.
     UIObject.setVisible(responseHeadersDiv, false);
     responseHeadersDiv.setInnerText(getResponseHeadersString(response));
+    String body = response.getBodyAsString();
+    responseLength = body == null ? 0 : body.length();
+    setRequestBody(linkFactory);
+
+    setResponseContent(request, response, realPathFragment, linkFactory);
+  }
+
+  /**
+   * Complete the partially filled history item with the reason why no response was received.
+   *
+   * @param message Message which describes the failure.
+   * @param timeMillis Time until the request was given up in milliseconds.
+   * @param linkFactory Link factory that is used to generate hyperlink and menu links in the
+   *        request view.
+   */
+  public void fail(String message, long timeMillis, PrettifierLinkFactory linkFactory) {
+    executing.setVisible(false);
+    wireContent.addStyleName(style.fadeIn());
+    time.setInnerText("time to execute: " + timeMillis + " ms");
+    statusDiv.setInnerText("No response");
+    showHideHeaders.setVisible(false);
+    UIObject.setVisible(responseHeadersDiv, false);
+    setRequestBody(linkFactory);
+
+    setErrorMessage(new Label(message));
+  }
+
+  private void setRequestBody(PrettifierLinkFactory linkFactory) {
     try {
-      JsonPrettifier.prettify(
-          request.getService(), requestBodyDiv, request.getRequestBody(), linkFactory);
+      JsonPrettifier.prettify(request.getService(), requestBodyDiv, request.getRequestBody(),
+          linkFactory, request.getService().requestSchema(request.getMethod()));
     } catch (JsonFormatException e) {
       // We should only be generating valid requests
       requestBodyDiv.add(new InlineLabel(request.getRequestBody()));
     }
+  }
 
-    setResponseContent(request, response, realPathFragment, linkFactory);
+  /**
+   * Returns the number of characters in the response body shown by this view. The elements
+   * rendered for the response, and the data kept to redraw and search it, grow in proportion.
+   */
+  public int getResponseLength() {
+    return responseLength;
   }
 
   /**
@@ -171,27 +281,105 @@ public class EmbeddedHistoryItemView extends Composite {
       img.setUrl(Config.getBaseUrl() + originalPath);
       img.setAltText(Config.getBaseUrl() + request.getRequestPath());
       responseBodyDiv.add(img);
+    } else if (response.getBodyAsString() == null) {
+      // The history cache discarded the body to save memory.
+      showDiscardedBody(request, linkFactory);
     } else if (contentType.startsWith(TEXT_TYPE_PREFIX)) {
       // We have non-JSON text, just show it.
       responseBodyDiv.add(new Label(response.getBodyAsString()));
     } else {
       // Treat the response as JSON, although we don't really know what it is
-      try {
-        JsonPrettifier.prettify(
-            request.getService(), responseBodyDiv, response.getBodyAsString(), linkFactory);
-      } catch (JsonFormatException e) {
-        // If JSON processing fails, just say what we know about the data
-        responseBodyDiv.add(new Label("[" + contentType + " data]"));
+      responseBody = response.getBodyAsString();
+      responseContentType = contentType;
+      responseLinkFactory = linkFactory;
+      showRawToggle.setVisible(true);
+
+      // A response which is too large to be formatted is never parsed.
+      boolean tooLarge = responseBody.length() > RAW_VIEW_THRESHOLD;
+      DynamicJso parsed = tooLarge ? null : parseJson(responseBody);
+
+      responseTableKey = parsed == null ? null : JsonTableView.findTableKey(parsed,
+          request.getService().responseSchema(request.getMethod()),
+          request.getService().getSchemas());
+      responseTable =
+          responseTableKey == null ? null : parsed.<DynamicJsArray>get(responseTableKey);
+      showTableToggle.setVisible(responseTable != null);
+
+      // Index the response in the background so that it can be searched, from its text if it is
+      // too large to be parsed.
+      if (parsed != null) {
+        responseIndex = ResponseIndexer.index(parsed);
+        searchPanel.setVisible(true);
+      } else if (tooLarge) {
+        responseIndex = RawResponseIndexer.index(responseBody);
+        searchPanel.setVisible(true);
+      }
+
+      if (tooLarge) {
+        showResponseBody(ResponseView.RAW);
+      } else if (responseTable != null && responseTable.length() > TABLE_VIEW_THRESHOLD) {
+        showResponseBody(ResponseView.TABLE);
+      } else {
+        showResponseBody(ResponseView.FORMATTED);
       }
 
       // Check if there was an error, and, if so, display it to the user.
-      ErrorCase error = getErrorMessage(response);
-      if (error != null) {
-        setErrorMessage(error.getErrorLabel());
+      if (parsed != null && parsed.get("error") != null) {
+        setErrorMessage(ErrorCase.forJsonString(responseBody).getErrorLabel());
       }
     }
   }
 
+  /**
+   * Explain that the response body is gone, and offer to navigate to the method with the same
+   * parameters and request body so that it can be executed again.
+   */
+  private void showDiscardedBody(ApiRequest request, PrettifierLinkFactory linkFactory) {
+    responseBodyDiv.add(new Label("The response body was discarded to save memory."));
+
+    String url = HistoryRecord.createMethodUrl(request.getService().getName(),
+        request.getService().getVersion(), request.getMethod().getId(), request.getParamValues(),
+        request.getRequestBody());
+    reexecuteLink.addClickHandler(linkFactory.generateMenuHandler(url));
+    reexecuteLink.setVisible(true);
+  }
+
+  /**
+   * Render the JSON response body as formatted widgets, as highlighted plain text, or as a table of
+   * the array of objects which it contains.
+   */
+  private void showResponseBody(ResponseView view) {
+    responseView = view;
+    showRawToggle.setText(view == ResponseView.RAW ? "- Show formatted -" : "- Show raw -");
+    showTableToggle.setText(view == ResponseView.TABLE ? "- Show formatted -" : "- Show table -");
+    responseBodyDiv.clear();
+    responseTableView = null;
+    responseRawView = null;
+    highlightedMatch = null;
+
+    switch (view) {
+      case RAW:
+        responseRawView = new RawJsonView(responseBody, Resources.INSTANCE.style());
+        responseBodyDiv.add(responseRawView);
+        break;
+
+      case TABLE:
+        responseTableView = new JsonTableView(responseTable, Resources.INSTANCE.style());
+        responseBodyDiv.add(responseTableView);
+        break;
+
+      default:
+        try {
+          JsonPrettifier.prettify(request.getService(), responseBodyDiv, responseBody,
+              responseLinkFactory, request.getService().responseSchema(request.getMethod()));
+        } catch (JsonFormatException e) {
+          // If JSON processing fails, just say what we know about the data
+          responseBodyDiv.add(new Label("[" + responseContentType + " data]"));
+        }
+        break;
+    }
+  }
+
   protected void initWidget() {
     initWidget(uiBinder.createAndBindUi(this));
   }
@@ -203,6 +391,127 @@ public class EmbeddedHistoryItemView extends Composite {
     UIObject.setVisible(responseHeadersDiv, !UIObject.isVisible(responseHeadersDiv));
   }
 
+  @UiHandler("showRawToggle")
+  public void toggleRaw(ClickEvent event) {
+    showResponseBody(
+        responseView == ResponseView.RAW ? ResponseView.FORMATTED : ResponseView.RAW);
+  }
+
+  @UiHandler("showTableToggle")
+  public void toggleTable(ClickEvent event) {
+    showResponseBody(
+        responseView == ResponseView.TABLE ? ResponseView.FORMATTED : ResponseView.TABLE);
+  }
+
+  @UiHandler("searchBox")
+  public void searchKeyUp(KeyUpEvent event) {
+    // Rescheduling cancels the pending search, so only the last keystroke of a burst searches.
+    searchTimer.schedule(SEARCH_DELAY_MILLIS);
+  }
+
+  /**
+   * Search the response for the value at the specified path, and bring the value into view as
+   * soon as the response has been indexed.
+   */
+  public void revealPath(String path) {
+    if (responseIndex == null) {
+      return;
+    }
+
+    searchBox.setText(path);
+    Scheduler.get().scheduleFixedDelay(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        // Keep waiting while the response is indexed, so that the value can be found.
+        if (!responseIndex.isComplete()) {
+          return true;
+        }
+        searchTimer.cancel();
+        List<Integer> matches = search();
+        if (!matches.isEmpty()) {
+          showMatch(matches.get(0));
+        }
+        return false;
+      }
+    }, REVEAL_POLL_MILLIS);
+  }
+
+  /**
+   * Search the response for the text of the search box, and list the matches.
+   */
+  private List<Integer> search() {
+    searchResults.clear();
+    String query = searchBox.getText().trim();
+    if (query.isEmpty()) {
+      searchStatus.setText("");
+      return ImmutableList.of();
+    }
+
+    // Queries which look like paths are matched against paths first, then searched as text.
+    List<Integer> matches = null;
+    if (query.startsWith("$") || query.contains(".") || query.contains("[")) {
+      JsonPathPattern pattern = JsonPathPattern.parse(query);
+      if (pattern != null) {
+        matches = responseIndex.match(pattern, MAX_SEARCH_RESULTS);
+      }
+    }
+    boolean partial = false;
+    if (matches == null || matches.isEmpty()) {
+      matches = responseIndex.search(query, MAX_SEARCH_RESULTS);
+      partial = responseIndex.isSearchPartial();
+    }
+
+    searchStatus.setText(matches.size() + (matches.size() == MAX_SEARCH_RESULTS ? "+" : "")
+        + " matches" + (responseIndex.isComplete() ? "" : ", still indexing")
+        + (partial ? ", only the start of the response was searched" : ""));
+    for (final int node : matches) {
+      Label result = new Label(responseIndex.getPath(node));
+      result.addStyleName(style.searchResult());
+      result.addClickHandler(new ClickHandler() {
+        @Override
+        public void onClick(ClickEvent event) {
+          showMatch(node);
+        }
+      });
+      searchResults.add(result);
+    }
+    return matches;
+  }
+
+  /**
+   * Bring the node of the response into view. The table view scrolls to the row containing the
+   * node, the raw view to the line of the node if it was indexed from the text, and otherwise the
+   * formatted view is expanded down to the node.
+   */
+  private void showMatch(int node) {
+    String[] keys = responseIndex.getKeys(node);
+    if (responseView == ResponseView.TABLE && keys.length > 1
+        && keys[0].equals(responseTableKey)) {
+      responseTableView.scrollToRow(responseIndex.getOrdinals(node)[1]);
+      return;
+    }
+
+    int line = responseIndex.getLine(node);
+    if (responseView == ResponseView.RAW && line != ResponseIndex.NO_LINE) {
+      responseRawView.reveal(line, style.searchHighlight());
+      return;
+    }
+
+    if (responseView != ResponseView.FORMATTED) {
+      showResponseBody(ResponseView.FORMATTED);
+    }
+
+    Widget match = JsonPrettifier.reveal(responseBodyDiv, responseIndex.getOrdinals(node));
+    if (match != null) {
+      if (highlightedMatch != null) {
+        highlightedMatch.removeStyleName(style.searchHighlight());
+      }
+      highlightedMatch = match;
+      match.addStyleName(style.searchHighlight());
+      match.getElement().scrollIntoView();
+    }
+  }
+
   private static String getRequestString(ApiRequest request) {
     StringBuilder sb = new StringBuilder()
         .append(request.getHttpMethod().name())
@@ -223,18 +532,15 @@ public class EmbeddedHistoryItemView extends Composite {
     return sb.toString();
   }
 
-  private static ErrorCase getErrorMessage(ApiResponse response) {
+  private static DynamicJso parseJson(String body) {
     // This requires a try-catch because there is no way to proactively check
     // that the JSON is both present and valid without just trying to parse it.
     try {
-      DynamicJso jso = JsonUtils.safeEval(response.getBodyAsString());
-      if (jso.get("error") != null) {
-        return ErrorCase.forJsonString(response.getBodyAsString());
-      }
+      return JsonUtils.safeEval(body);
     } catch (IllegalArgumentException e) {
       // Not valid json, definitely not an error payload.
+      return null;
     }
-    return null;
   }
 
   private static String getResponseHeadersString(ApiResponse response) {
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.collect.Lists;
+import com.google.gwt.core.client.Callback;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import com.google.gwt.dom.client.Element;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Moves HTTP Archive (HAR) logs between the explorer and files of the user, using the file APIs of
+ * the browser.
+ *
+ */
+public class HarFiles {
+
+  public static final String HAR_MIME_TYPE = "application/json";
+
+  /** Number of entries written before yielding to the browser. */
+  private static final int ENTRIES_PER_SLICE = 50;
+
+  /** Number of characters of text which are collected before they are handed to the browser. */
+  private static final int CHUNK_CHARS = 64 * 1024;
+
+  private static final Comparator<HistoryItem> BY_START_TIME = new Comparator<HistoryItem>() {
+    @Override
+    public int compare(HistoryItem first, HistoryItem second) {
+      return Long.valueOf(first.getStartTime()).compareTo(second.getStartTime());
+    }
+  };
+
+  /**
+   * Sink which hands the text to the browser in chunks, from which a blob is made at the end, so
+   * that the text of the log is never concatenated into one string.
+   */
+  private static class BlobSink implements JsonWriter.Sink {
+    private final JsArrayString chunks = JavaScriptObject.createArray().cast();
+    private final StringBuilder pending = new StringBuilder();
+
+    @Override
+    public void write(String text) {
+      pending.append(text);
+      if (pending.length() >= CHUNK_CHARS) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (pending.length() > 0) {
+        chunks.push(pending.toString());
+        pending.setLength(0);
+      }
+    }
+
+    String createObjectUrl() {
+      flush();
+      return createObjectUrl(chunks, HAR_MIME_TYPE);
+    }
+
+    private static native String createObjectUrl(JsArrayString chunks, String mimeType) /*-{
+      var blob = new $wnd.Blob(chunks, {type: mimeType});
+      return $wnd.URL.createObjectURL(blob);
+    }-*/;
+  }
+
+  private HarFiles() {
+  } // Not instantiable.
+
+  /**
+   * Write a log of the specified items in the background, a slice of entries at a time.
+   *
+   * @param items Items to write, in any order.
+   * @param redactCredentials Whether to replace the values of authorization and cookie headers
+   *        and of API keys.
+   * @param callback Callback which receives an object URL of the log, which should be released
+   *        with {@link #revokeObjectUrl(String)} once it is no longer needed.
+   */
+  public static void export(List<HistoryItem> items, boolean redactCredentials,
+      final Callback<String, String> callback) {
+
+    final List<HistoryItem> chronological = Lists.newArrayList(items);
+    Collections.sort(chronological, BY_START_TIME);
+
+    final BlobSink sink = new BlobSink();
+    final HarWriter writer = new HarWriter(new JsonWriter(sink), redactCredentials);
+    writer.beginLog();
+
+    Scheduler.get().scheduleIncremental(new RepeatingCommand() {
+      private int written = 0;
+
+      @Override
+      public boolean execute() {
+        int sliceEnd = Math.min(chronological.size(), written + ENTRIES_PER_SLICE);
+        for (; written < sliceEnd; written++) {
+          writer.writeEntry(chronological.get(written));
+        }
+        if (written < chronological.size()) {
+          return true;
+        }
+
+        writer.endLog();
+        try {
+          callback.onSuccess(sink.createObjectUrl());
+        } catch (RuntimeException e) {
+          callback.onFailure("Unable to create the file: " + e.getMessage());
+        }
+        return false;
+      }
+    });
+  }
+
+  /**
+   * Returns whether the browser can create and read files.
+   */
+  public static native boolean isSupported() /*-{
+    return !!($wnd.Blob && $wnd.URL && $wnd.URL.createObjectURL && $wnd.FileReader);
+  }-*/;
+
+  /**
+   * Release the content behind an object URL.
+   */
+  public static native void revokeObjectUrl(String url) /*-{
+    $wnd.URL.revokeObjectURL(url);
+  }-*/;
+
+  /**
+   * Read the file selected in a file input as text.
+   *
+   * @param fileInput Input element of type file.
+   * @param callback Callback which receives the text, or {@code null} if no file was selected.
+   */
+  public static native void readText(Element fileInput, Callback<String, String> callback) /*-{
+    var file = fileInput.files && fileInput.files[0];
+    if (!file) {
+      callback.@com.google.gwt.core.client.Callback::onSuccess(Ljava/lang/Object;)(null);
+      return;
+    }
+
+    var reader = new $wnd.FileReader();
+    reader.onload = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onSuccess(Ljava/lang/Object;)(reader.result);
+    });
+    reader.onerror = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(
+          String(reader.error));
+    });
+    reader.readAsText(file);
+  }-*/;
+}
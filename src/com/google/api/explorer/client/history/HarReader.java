@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.Config;
+import com.google.api.explorer.client.base.dynamicjso.DynamicJsArray;
+import com.google.api.explorer.client.base.dynamicjso.DynamicJso;
+import com.google.api.explorer.client.base.dynamicjso.JsType;
+import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.gwt.core.client.JsonUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader of HTTP Archive (HAR) logs, which turns their entries into {@link HistoryRecord}s that can
+ * be viewed and, for logs written by the {@link HarWriter}, executed again.
+ *
+ * <p>
+ * Entries of logs written by other tools are imported as well, but since they do not say which
+ * method was called they cannot be executed again.
+ * </p>
+ *
+ */
+public class HarReader {
+
+  /** Encoding of response contents which are not text. */
+  private static final String BASE64_ENCODING = "base64";
+
+  /**
+   * Requests read from a log.
+   */
+  public static class ImportedHistory {
+    private final List<HistoryRecord> records;
+    private final Map<String, String> bodies;
+
+    ImportedHistory(List<HistoryRecord> records, Map<String, String> bodies) {
+      this.records = records;
+      this.bodies = bodies;
+    }
+
+    /**
+     * Returns the records of the requests, in the order of the log.
+     */
+    public List<HistoryRecord> getRecords() {
+      return records;
+    }
+
+    /**
+     * Returns the response bodies by record identifier. Records whose response has no text body
+     * are mapped to {@code null}.
+     */
+    public Map<String, String> getBodies() {
+      return bodies;
+    }
+  }
+
+  private HarReader() {
+  } // Not instantiable.
+
+  /**
+   * Read the entries of a log.
+   *
+   * @param har Text of the log.
+   * @param idPrefix Prefix of the identifiers given to the records, which should differ between
+   *        logs.
+   * @throws IllegalArgumentException If the text is not a HAR log.
+   */
+  public static ImportedHistory read(String har, String idPrefix) {
+    DynamicJso root = JsonUtils.safeEval(har);
+    DynamicJso log = getObject(root, "log");
+    DynamicJsArray entries = getArray(log, "entries");
+    if (entries == null) {
+      throw new IllegalArgumentException("The file is not an HTTP archive.");
+    }
+
+    ImmutableList.Builder<HistoryRecord> records = ImmutableList.builder();
+    Map<String, String> bodies = Maps.newHashMap();
+    for (int i = 0; i < entries.length(); i++) {
+      String id = idPrefix + i;
+      DynamicJso entry = entries.get(i);
+      records.add(readRecord(id, entry));
+      bodies.put(id, readBody(getObject(getObject(entry, "response"), "content")));
+    }
+    return new ImportedHistory(records.build(), Collections.unmodifiableMap(bodies));
+  }
+
+  private static HistoryRecord readRecord(String id, DynamicJso entry) {
+    DynamicJso request = getObject(entry, "request");
+    DynamicJso response = getObject(entry, "response");
+    DynamicJso explorer = getObject(entry, HarWriter.EXPLORER_FIELD);
+
+    ListMultimap<String, String> params = ArrayListMultimap.create();
+    DynamicJsArray paramArray = getArray(explorer, "params");
+    for (int i = 0; paramArray != null && i < paramArray.length(); i++) {
+      DynamicJso param = paramArray.get(i);
+      String name = getString(param, "name");
+      if (name != null) {
+        params.put(name, Strings.nullToEmpty(getString(param, "value")));
+      }
+    }
+
+    long startTime = (long) parseDate(getString(entry, "startedDateTime"));
+    return new HistoryRecord(id,
+        getString(explorer, "serviceName"),
+        getString(explorer, "serviceVersion"),
+        getString(explorer, "methodId"),
+        getString(request, "method"),
+        getRequestPath(getString(request, "url")),
+        getString(getObject(request, "postData"), "text"),
+        params,
+        (int) getNumber(response, "status"),
+        getString(response, "statusText"),
+        startTime,
+        startTime + Math.max(0, (long) getNumber(entry, "time")));
+  }
+
+  private static String readBody(DynamicJso content) {
+    if (BASE64_ENCODING.equals(getString(content, "encoding"))) {
+      return null;
+    }
+    return getString(content, "text");
+  }
+
+  /**
+   * Returns the path of a URL of the API which the explorer calls, or the whole URL otherwise.
+   */
+  private static String getRequestPath(String url) {
+    String baseUrl = Config.getBaseUrl();
+    return url != null && url.startsWith(baseUrl) ? url.substring(baseUrl.length()) : url;
+  }
+
+  private static DynamicJso getObject(DynamicJso object, String key) {
+    return object != null && object.typeofKey(key) == JsType.OBJECT
+        ? object.<DynamicJso>get(key) : null;
+  }
+
+  private static DynamicJsArray getArray(DynamicJso object, String key) {
+    return object != null && object.typeofKey(key) == JsType.ARRAY
+        ? object.<DynamicJsArray>get(key) : null;
+  }
+
+  private static String getString(DynamicJso object, String key) {
+    return object != null && object.typeofKey(key) == JsType.STRING ? object.getString(key) : null;
+  }
+
+  private static double getNumber(DynamicJso object, String key) {
+    JsType type = object == null ? null : object.typeofKey(key);
+    return type == JsType.INTEGER || type == JsType.NUMBER ? object.getDouble(key) : 0;
+  }
+
+  /**
+   * Returns the milliseconds since the epoch of an ISO 8601 date, or zero if it is not valid.
+   */
+  private static native double parseDate(String date) /*-{
+    var millis = date ? Date.parse(date) : NaN;
+    return isNaN(millis) ? 0 : millis;
+  }-*/;
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.base.ApiResponse.HeaderValue;
+import com.google.api.explorer.client.base.Config;
+import com.google.api.explorer.client.base.ExplorerConfig;
+import com.google.api.explorer.client.base.IsoDateFormatter;
+import com.google.api.explorer.client.base.UrlEncoder;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.util.Map;
+
+/**
+ * Writer of history items as an HTTP Archive (HAR) 1.2 log, which can be read by performance
+ * analysis tools. Entries are written one at a time to a {@link JsonWriter}, so that a log of many
+ * items never has to be held as a single string.
+ *
+ * <p>
+ * Besides the standard fields, every entry has an {@value #EXPLORER_FIELD} object with the service,
+ * method and parameters of the request, from which {@link HarReader} restores requests which can be
+ * executed again. Only the total time of a request is measured, so the timings attribute it all to
+ * waiting for the response.
+ * </p>
+ *
+ * <p>
+ * Credentials can be redacted, which replaces the values of the authorization and cookie headers
+ * of requests and responses and of the API key in the query, so that a log can be shared.
+ * </p>
+ *
+ */
+public class HarWriter {
+
+  /** Custom field of each entry which holds the data needed to execute the request again. */
+  static final String EXPLORER_FIELD = "_explorer";
+
+  static final String AUTHORIZATION_HEADER = "Authorization";
+  static final String COOKIE_HEADER = "Cookie";
+  static final String SET_COOKIE_HEADER = "Set-Cookie";
+  static final String KEY_PARAMETER = "key";
+  static final String REDACTED_VALUE = "REDACTED";
+
+  private static final String HAR_VERSION = "1.2";
+  private static final String HTTP_VERSION = "HTTP/1.1";
+  private static final String JSON_MIME_TYPE = "application/json";
+  private static final String CONTENT_TYPE_HEADER = "content-type";
+  private static final String EVICTED_COMMENT =
+      "The response body was discarded to save memory.";
+
+  @VisibleForTesting
+  static UrlEncoder urlEncoder = UrlEncoder.DEFAULT;
+
+  @VisibleForTesting
+  static IsoDateFormatter dateFormatter = IsoDateFormatter.DEFAULT;
+
+  private final JsonWriter writer;
+  private final boolean redactCredentials;
+
+  /**
+   * Create a writer of a log.
+   *
+   * @param writer Writer to which the log is written.
+   * @param redactCredentials Whether to replace the values of authorization and cookie headers
+   *        and of API keys.
+   */
+  public HarWriter(JsonWriter writer, boolean redactCredentials) {
+    this.writer = Preconditions.checkNotNull(writer);
+    this.redactCredentials = redactCredentials;
+  }
+
+  /**
+   * Write the start of the log, which has to be followed by the entries and {@link #endLog()}.
+   */
+  public void beginLog() {
+    writer.beginObject()
+        .name("log").beginObject()
+        .name("version").value(HAR_VERSION)
+        .name("creator").beginObject()
+        .name("name").value(ExplorerConfig.APP_NAME)
+        .name("version").value(HAR_VERSION)
+        .endObject()
+        .name("entries").beginArray();
+  }
+
+  /**
+   * Write the end of the log.
+   */
+  public void endLog() {
+    writer.endArray().endObject().endObject();
+  }
+
+  /**
+   * Write the entry of a history item. Entries should be written in the order they were started.
+   */
+  public void writeEntry(HistoryItem item) {
+    ApiRequest request = item.getRequest();
+    long time = Math.max(0, item.getEndTime() - item.getStartTime());
+
+    writer.beginObject()
+        .name("startedDateTime").value(dateFormatter.format(item.getStartTime()))
+        .name("time").value(time)
+        .name("request");
+    writeRequest(request);
+    writer.name("response");
+    writeResponse(item);
+    writer.name("cache").beginObject().endObject()
+        .name("timings").beginObject()
+        .name("send").value(0)
+        .name("wait").value(time)
+        .name("receive").value(0)
+        .endObject()
+        .name(EXPLORER_FIELD);
+    writeExplorerData(request);
+    writer.endObject();
+  }
+
+  private void writeRequest(ApiRequest request) {
+    String body = request.getRequestBody();
+    writer.beginObject()
+        .name("method").value(request.getHttpMethod().name())
+        .name("url").value(Config.getBaseUrl() + redactQuery(request.getRequestPath()))
+        .name("httpVersion").value(HTTP_VERSION)
+        .name("cookies").beginArray().endArray()
+        .name("headers").beginArray();
+    for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+      boolean credential = AUTHORIZATION_HEADER.equalsIgnoreCase(header.getKey())
+          || COOKIE_HEADER.equalsIgnoreCase(header.getKey());
+      writeNameValue(header.getKey(), redact(credential, header.getValue()));
+    }
+    writer.endArray().name("queryString").beginArray();
+    writeQueryString(request.getRequestPath());
+    writer.endArray();
+    if (body != null) {
+      writer.name("postData").beginObject()
+          .name("mimeType").value(JSON_MIME_TYPE)
+          .name("text").value(body)
+          .endObject();
+    }
+    writer.name("headersSize").value(-1)
+        .name("bodySize").value(body == null ? 0 : body.length())
+        .endObject();
+  }
+
+  /**
+   * Write the parameters in the query of the specified path, decoded.
+   */
+  private void writeQueryString(String path) {
+    int queryStart = path.indexOf('?');
+    if (queryStart < 0) {
+      return;
+    }
+
+    for (String param : path.substring(queryStart + 1).split("&")) {
+      if (param.isEmpty()) {
+        continue;
+      }
+      int separator = param.indexOf('=');
+      String name = separator < 0 ? param : param.substring(0, separator);
+      String value = separator < 0 ? "" : param.substring(separator + 1);
+      String decodedName = urlEncoder.decodeQueryString(name);
+      writeNameValue(decodedName,
+          redact(KEY_PARAMETER.equals(decodedName), urlEncoder.decodeQueryString(value)));
+    }
+  }
+
+  /**
+   * Returns the path with the value of the API key in its query redacted, if credentials are
+   * redacted.
+   */
+  private String redactQuery(String path) {
+    int queryStart = path.indexOf('?');
+    if (!redactCredentials || queryStart < 0) {
+      return path;
+    }
+
+    StringBuilder redacted = new StringBuilder(path.substring(0, queryStart + 1));
+    String separator = "";
+    for (String param : path.substring(queryStart + 1).split("&", -1)) {
+      int valueStart = param.indexOf('=');
+      String name = valueStart < 0 ? param : param.substring(0, valueStart);
+      redacted.append(separator);
+      if (valueStart >= 0 && KEY_PARAMETER.equals(urlEncoder.decodeQueryString(name))) {
+        redacted.append(name).append('=').append(REDACTED_VALUE);
+      } else {
+        redacted.append(param);
+      }
+      separator = "&";
+    }
+    return redacted.toString();
+  }
+
+  /**
+   * Returns the value, or a placeholder if it is a credential and credentials are redacted.
+   */
+  private String redact(boolean credential, String value) {
+    return redactCredentials && credential ? REDACTED_VALUE : value;
+  }
+
+  private void writeResponse(HistoryItem item) {
+    ApiResponse response = item.peekResponse();
+    String body = item.getResponseBody();
+    String mimeType = JSON_MIME_TYPE;
+
+    writer.beginObject()
+        .name("status").value(response.getStatus())
+        .name("statusText").value(response.getStatusText())
+        .name("httpVersion").value(HTTP_VERSION)
+        .name("cookies").beginArray().endArray()
+        .name("headers").beginArray();
+    for (Map.Entry<String, HeaderValue> header : response.getHeaders().entrySet()) {
+      String name = header.getValue().getKey();
+      writeNameValue(name,
+          redact(SET_COOKIE_HEADER.equalsIgnoreCase(name), header.getValue().getValue()));
+      if (CONTENT_TYPE_HEADER.equals(header.getKey())) {
+        mimeType = header.getValue().getValue();
+      }
+    }
+    writer.endArray()
+        .name("content").beginObject()
+        .name("size").value(body == null ? -1 : body.length())
+        .name("mimeType").value(mimeType);
+    if (body != null) {
+      writer.name("text").value(body);
+    } else if (item.getBodyState() == HistoryItem.BodyState.EVICTED) {
+      writer.name("comment").value(EVICTED_COMMENT);
+    }
+    writer.endObject()
+        .name("redirectURL").value("")
+        .name("headersSize").value(-1)
+        .name("bodySize").value(-1)
+        .endObject();
+  }
+
+  private void writeExplorerData(ApiRequest request) {
+    writer.beginObject()
+        .name("serviceName").value(request.getService().getName())
+        .name("serviceVersion").value(request.getService().getVersion())
+        .name("methodId").value(request.getMethod().getId())
+        .name("params").beginArray();
+    for (Map.Entry<String, String> param : request.getParamValues().entries()) {
+      writeNameValue(param.getKey(),
+          redact(KEY_PARAMETER.equals(param.getKey()), param.getValue()));
+    }
+    writer.endArray().endObject();
+  }
+
+  private void writeNameValue(String name, String value) {
+    writer.beginObject().name("name").value(name).name("value").value(value).endObject();
+  }
+}
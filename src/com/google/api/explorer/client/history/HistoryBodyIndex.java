@@ -0,0 +1,685 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.history.HistoryCache.HistoryCacheEvictionObserver;
+import com.google.api.explorer.client.history.JsonTokenizer.TokenType;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Full text index of the request parameters and the string and number values of the response
+ * bodies of history items, so that a request can be found by what it sent or returned, i.e. the
+ * call which returned user 12345.
+ *
+ * <p>
+ * Items are indexed in the background after they are added to the {@link HistoryCache}, a short
+ * slice at a time. The index holds at most a fixed number of postings, one for every term of every
+ * value: once the budget is used up the oldest items are dropped from the index, and a single item
+ * may only use part of the budget. Items are pruned when the history cache discards them or their
+ * bodies; searches ignore their postings at once, and the postings are purged in the background.
+ * </p>
+ *
+ */
+public class HistoryBodyIndex implements HistoryCacheEvictionObserver {
+
+  /** Default number of postings held by the index. */
+  public static final int DEFAULT_MAX_POSTINGS = 200000;
+
+  /** Fraction of the postings which a single item may use. */
+  private static final int ITEM_SHARE_DIVISOR = 4;
+
+  /** Terms longer than this, such as encoded binary data, are not indexed. */
+  static final int MAX_TERM_LENGTH = 64;
+
+  /** Values are kept for display up to this many characters. */
+  static final int MAX_SNIPPET_LENGTH = 80;
+
+  /** Milliseconds to spend indexing before yielding to the browser. */
+  private static final int SLICE_MILLIS = 10;
+
+  /** Number of tokens scanned between checks of the time spent. */
+  private static final int TOKENS_PER_STEP = 200;
+
+  /**
+   * Value of a history item which matched a search.
+   */
+  public static class Match {
+    private final HistoryItem item;
+    private final Field field;
+
+    private Match(HistoryItem item, Field field) {
+      this.item = item;
+      this.field = field;
+    }
+
+    public HistoryItem getItem() {
+      return item;
+    }
+
+    /**
+     * Returns whether the value is a request parameter, rather than a value of the response body.
+     */
+    public boolean isRequestParameter() {
+      return field.path == null;
+    }
+
+    /**
+     * Returns the name of the request parameter, or the path of the value in the response body in
+     * the syntax of {@link JsonPathPattern}.
+     */
+    public String getLocation() {
+      return field.path == null ? field.parameterName : field.path;
+    }
+
+    /**
+     * Returns the value, shortened if it is long.
+     */
+    public String getSnippet() {
+      return field.snippet;
+    }
+  }
+
+  /** Request parameter or response value which was indexed. */
+  private static class Field {
+    @Nullable final String path;
+    @Nullable final String parameterName;
+    final String snippet;
+
+    Field(@Nullable String path, @Nullable String parameterName, String value) {
+      this.path = path;
+      this.parameterName = parameterName;
+      this.snippet = value.length() > MAX_SNIPPET_LENGTH
+          ? value.substring(0, MAX_SNIPPET_LENGTH) + "..." : value;
+    }
+  }
+
+  /** Occurrence of a term in a field of an item. */
+  private static class Posting {
+    final IndexedItem item;
+    final int field;
+
+    Posting(IndexedItem item, int field) {
+      this.item = item;
+      this.field = field;
+    }
+  }
+
+  /** Item and the terms under which it is indexed, so that it can be pruned. */
+  private static class IndexedItem {
+    final HistoryItem item;
+    final List<Field> fields = Lists.newArrayList();
+
+    /** Number of postings of each field. */
+    final List<Integer> fieldPostings = Lists.newArrayList();
+    final Set<String> terms = Sets.newHashSet();
+    int postingCount = 0;
+
+    /** Number of fields which are request parameters, which come before the body fields. */
+    int parameterFieldCount = 0;
+
+    IndexedItem(HistoryItem item) {
+      this.item = item;
+    }
+  }
+
+  /** Position within an object or array of the body which is being walked. */
+  private static class Frame {
+    final boolean array;
+    String key;
+    int index = 0;
+
+    Frame(boolean array) {
+      this.array = array;
+    }
+  }
+
+  /**
+   * Walk of the response body of an item, which can be suspended after any number of tokens. The
+   * body is only read, and decompressed if need be, by the first step, so that waiting tasks do
+   * not hold on to bodies. The walk ends as soon as the item holds as many postings as it may.
+   */
+  private class IndexingTask {
+    final IndexedItem indexed;
+    final List<Frame> stack = Lists.newArrayList();
+    String body;
+    JsonTokenizer tokenizer;
+
+    IndexingTask(IndexedItem indexed) {
+      this.indexed = indexed;
+    }
+
+    /**
+     * Read the body, or scan up to the specified number of tokens.
+     *
+     * @return Whether there is more to scan.
+     */
+    boolean step(int maxTokens) {
+      if (isFull()) {
+        return false;
+      }
+      if (tokenizer == null) {
+        body = indexed.item.getResponseBody();
+        if (body == null) {
+          return false;
+        }
+        tokenizer = new JsonTokenizer(body);
+        return true;
+      }
+
+      for (int i = 0; i < maxTokens && tokenizer.hasNext() && !isFull(); i++) {
+        TokenType type = tokenizer.next();
+        switch (type) {
+          case OPEN_OBJECT:
+            stack.add(new Frame(false));
+            break;
+
+          case OPEN_ARRAY:
+            stack.add(new Frame(true));
+            break;
+
+          case CLOSE_OBJECT:
+          case CLOSE_ARRAY:
+            if (!stack.isEmpty()) {
+              stack.remove(stack.size() - 1);
+            }
+            break;
+
+          case COMMA:
+            if (!stack.isEmpty() && stack.get(stack.size() - 1).array) {
+              stack.get(stack.size() - 1).index++;
+            }
+            break;
+
+          case KEY:
+            if (!stack.isEmpty()) {
+              stack.get(stack.size() - 1).key = unquote(getToken());
+            }
+            break;
+
+          case STRING:
+            addBodyValue(unquote(getToken()));
+            break;
+
+          case NUMBER:
+            addBodyValue(getToken());
+            break;
+
+          default:
+            break;
+        }
+      }
+      return tokenizer.hasNext() && !isFull();
+    }
+
+    /** Returns whether the item holds as many postings as it may, so no other value fits. */
+    private boolean isFull() {
+      return indexed.postingCount >= maxItemPostings;
+    }
+
+    private String getToken() {
+      return body.substring(tokenizer.getTokenStart(), tokenizer.getTokenEnd());
+    }
+
+    private void addBodyValue(String value) {
+      List<String> terms = extractTerms(value);
+      if (!terms.isEmpty()) {
+        addField(indexed, new Field(getPath(), null, value), terms);
+      }
+    }
+
+    /**
+     * Returns the path of the current value, in the same syntax as {@link ResponseIndex#getPath}.
+     */
+    private String getPath() {
+      StringBuilder path = new StringBuilder();
+      for (Frame frame : stack) {
+        if (frame.array) {
+          path.append('[').append(frame.index).append(']');
+        } else if (frame.key != null) {
+          if (path.length() > 0) {
+            path.append('.');
+          }
+          path.append(frame.key);
+        }
+      }
+      return path.toString();
+    }
+  }
+
+  /**
+   * Removal of the postings of the fields of an item from a given one on, a term at a time.
+   */
+  private class Purge {
+    final IndexedItem indexed;
+    final int firstField;
+    final Iterator<String> terms;
+
+    Purge(IndexedItem indexed, int firstField, List<String> terms) {
+      this.indexed = indexed;
+      this.firstField = firstField;
+      this.terms = terms.iterator();
+    }
+
+    /**
+     * Purge the postings from the list of the next term.
+     *
+     * @return Whether there are more terms to purge.
+     */
+    boolean step() {
+      if (!terms.hasNext()) {
+        return false;
+      }
+      String term = terms.next();
+      List<Posting> termPostings = postings.get(term);
+      if (termPostings != null) {
+        for (Iterator<Posting> i = termPostings.iterator(); i.hasNext();) {
+          Posting posting = i.next();
+          if (posting.item == indexed && posting.field >= firstField) {
+            i.remove();
+          }
+        }
+        if (termPostings.isEmpty()) {
+          postings.remove(term);
+        }
+      }
+      return terms.hasNext();
+    }
+  }
+
+  private final int maxPostings;
+  private final int maxItemPostings;
+
+  /** Terms and their postings, oldest item first. */
+  private final Map<String, List<Posting>> postings = Maps.newHashMap();
+
+  /** Indexed items by key, oldest first. */
+  private final LinkedHashMap<String, IndexedItem> items = Maps.newLinkedHashMap();
+  private int postingCount = 0;
+
+  /**
+   * Bodies waiting to be indexed, postings of removed fields waiting to be purged, and whether the
+   * background work is scheduled.
+   */
+  private final List<IndexingTask> pending = Lists.newArrayList();
+  private final List<Purge> purges = Lists.newArrayList();
+  private boolean scheduled = false;
+  private boolean enabled = false;
+
+  public HistoryBodyIndex() {
+    this(DEFAULT_MAX_POSTINGS);
+  }
+
+  /**
+   * Create an index which holds up to the specified number of postings.
+   */
+  public HistoryBodyIndex(int maxPostings) {
+    Preconditions.checkArgument(maxPostings > 0);
+    this.maxPostings = maxPostings;
+    this.maxItemPostings = Math.max(1, maxPostings / ITEM_SHARE_DIVISOR);
+  }
+
+  /**
+   * Turn indexing on or off, it is off until turned on. Turning it off drops the whole index,
+   * turning it on indexes the specified items which are already in the history.
+   */
+  public void setEnabled(boolean enabled, Iterable<HistoryItem> existingItems) {
+    if (enabled == this.enabled) {
+      return;
+    }
+    this.enabled = enabled;
+    if (enabled) {
+      // Only the request parameters are indexed right away, the bodies are read in the background.
+      for (HistoryItem item : existingItems) {
+        newHistoryItem(item);
+      }
+    } else {
+      pending.clear();
+      purges.clear();
+      postings.clear();
+      items.clear();
+      postingCount = 0;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public void newHistoryItem(HistoryItem newItem) {
+    if (!enabled) {
+      return;
+    }
+    pending.add(startIndexing(newItem));
+    scheduleIndexing();
+  }
+
+  @Override
+  public void historyItemBodyEvicted(HistoryItem item) {
+    IndexedItem indexed = items.get(item.getKey());
+    if (indexed != null) {
+      cancelTask(indexed);
+      removeFields(indexed, indexed.parameterFieldCount);
+    }
+  }
+
+  @Override
+  public void historyItemRemoved(HistoryItem item) {
+    IndexedItem indexed = items.get(item.getKey());
+    if (indexed != null) {
+      cancelTask(indexed);
+      removeFields(indexed, 0);
+      items.remove(item.getKey());
+    }
+  }
+
+  /**
+   * Index the item right away, instead of in the background.
+   */
+  void indexItem(HistoryItem item) {
+    IndexingTask task = startIndexing(item);
+    while (task.step(TOKENS_PER_STEP)) {
+      // Keep walking until the whole body is indexed.
+    }
+  }
+
+  /**
+   * Find the items which contain every term of the query, the newest first. Terms may be found in
+   * different values of an item, the match reports the value which contains the most of them.
+   *
+   * @param query Text to search for.
+   * @param limit Maximum number of items to return.
+   */
+  public List<Match> search(String query, int limit) {
+    List<String> terms = extractTerms(query);
+    if (terms.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    // Count the query terms found in every field of the items which contain the first term.
+    Map<IndexedItem, int[]> fieldHits = Maps.newHashMap();
+    for (int i = 0; i < terms.size(); i++) {
+      List<Posting> termPostings = postings.get(terms.get(i));
+      if (termPostings == null) {
+        return ImmutableList.of();
+      }
+
+      Set<IndexedItem> found = Sets.newHashSet();
+      for (Posting posting : termPostings) {
+        int[] hits = fieldHits.get(posting.item);
+        if (hits == null && i == 0) {
+          hits = new int[posting.item.fields.size()];
+          fieldHits.put(posting.item, hits);
+        }
+        if (hits != null && posting.field < hits.length) {
+          hits[posting.field]++;
+          found.add(posting.item);
+        }
+      }
+      fieldHits.keySet().retainAll(found);
+    }
+
+    List<IndexedItem> newestFirst = Lists.reverse(Lists.newArrayList(items.values()));
+    List<Match> matches = Lists.newArrayList();
+    for (IndexedItem indexed : newestFirst) {
+      int[] hits = fieldHits.get(indexed);
+      if (hits == null) {
+        continue;
+      }
+
+      int best = 0;
+      for (int field = 1; field < hits.length; field++) {
+        if (hits[field] > hits[best]) {
+          best = field;
+        }
+      }
+      matches.add(new Match(indexed.item, indexed.fields.get(best)));
+      if (matches.size() == limit) {
+        break;
+      }
+    }
+    return matches;
+  }
+
+  /** Returns the number of postings held. */
+  public int getPostingCount() {
+    return postingCount;
+  }
+
+  /** Returns the number of items which are indexed. */
+  public int getItemCount() {
+    return items.size();
+  }
+
+  /**
+   * Index the request parameters of the item, and return the task which indexes its body.
+   */
+  private IndexingTask startIndexing(HistoryItem item) {
+    historyItemRemoved(item);
+    IndexedItem indexed = new IndexedItem(item);
+    items.put(item.getKey(), indexed);
+
+    for (Map.Entry<String, String> param : item.getRequest().getParamValues().entries()) {
+      List<String> terms = extractTerms(param.getKey() + " " + param.getValue());
+      addField(indexed, new Field(null, param.getKey(), param.getValue()), terms);
+    }
+    indexed.parameterFieldCount = indexed.fields.size();
+    return new IndexingTask(indexed);
+  }
+
+  /**
+   * Arrange for the waiting bodies and purges to be worked through in the background, a short slice
+   * at a time.
+   */
+  @VisibleForTesting
+  void scheduleIndexing() {
+    if (scheduled) {
+      return;
+    }
+    scheduled = true;
+    Scheduler.get().scheduleIncremental(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        Duration duration = new Duration();
+        boolean more = true;
+        while (more && duration.elapsedMillis() < SLICE_MILLIS) {
+          more = step();
+        }
+        scheduled = more;
+        return more;
+      }
+    });
+  }
+
+  /**
+   * Purge the postings of a removed field from the list of one term, or else take a step of the
+   * oldest indexing task.
+   *
+   * @return Whether there is more work waiting.
+   */
+  @VisibleForTesting
+  boolean step() {
+    if (!purges.isEmpty()) {
+      if (!purges.get(0).step()) {
+        purges.remove(0);
+      }
+    } else if (!pending.isEmpty()) {
+      if (!pending.get(0).step(TOKENS_PER_STEP)) {
+        pending.remove(0);
+      }
+    }
+    return !purges.isEmpty() || !pending.isEmpty();
+  }
+
+  private void cancelTask(IndexedItem indexed) {
+    for (Iterator<IndexingTask> i = pending.iterator(); i.hasNext();) {
+      if (i.next().indexed == indexed) {
+        i.remove();
+      }
+    }
+  }
+
+  private void addField(IndexedItem indexed, Field field, List<String> terms) {
+    if (indexed.postingCount + terms.size() > maxItemPostings) {
+      return;
+    }
+    while (postingCount + terms.size() > maxPostings) {
+      if (!evictOldest(indexed)) {
+        return;
+      }
+    }
+
+    int fieldIndex = indexed.fields.size();
+    indexed.fields.add(field);
+    indexed.fieldPostings.add(terms.size());
+    for (String term : terms) {
+      List<Posting> termPostings = postings.get(term);
+      if (termPostings == null) {
+        termPostings = Lists.newArrayListWithCapacity(1);
+        postings.put(term, termPostings);
+      }
+      termPostings.add(new Posting(indexed, fieldIndex));
+      indexed.terms.add(term);
+    }
+    indexed.postingCount += terms.size();
+    postingCount += terms.size();
+  }
+
+  /**
+   * Drop the oldest item other than the one being indexed.
+   *
+   * @return Whether an item was dropped.
+   */
+  private boolean evictOldest(IndexedItem current) {
+    for (IndexedItem oldest : items.values()) {
+      if (oldest != current) {
+        historyItemRemoved(oldest.item);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Remove the fields of the item from the specified one on. Their postings stop counting against
+   * the budget and are ignored by searches right away, and are purged from the lists of their terms
+   * in the background.
+   */
+  private void removeFields(IndexedItem indexed, int firstField) {
+    int fieldCount = indexed.fields.size();
+    if (firstField >= fieldCount) {
+      return;
+    }
+
+    int removed = 0;
+    for (int field = firstField; field < fieldCount; field++) {
+      removed += indexed.fieldPostings.get(field);
+    }
+    indexed.postingCount -= removed;
+    postingCount -= removed;
+    indexed.fields.subList(firstField, fieldCount).clear();
+    indexed.fieldPostings.subList(firstField, fieldCount).clear();
+
+    purges.add(new Purge(indexed, firstField, ImmutableList.copyOf(indexed.terms)));
+    if (firstField == 0) {
+      indexed.terms.clear();
+    }
+    scheduleIndexing();
+  }
+
+  /**
+   * Returns the number of distinct terms which have postings, including postings which have not
+   * been purged yet.
+   */
+  @VisibleForTesting
+  int getTermCount() {
+    return postings.size();
+  }
+
+  /**
+   * Split text into distinct lower case terms, which are runs of letters and digits.
+   */
+  static List<String> extractTerms(String text) {
+    Set<String> terms = Sets.newLinkedHashSet();
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (termChar && start < 0) {
+        start = i;
+      } else if (!termChar && start >= 0) {
+        if (i - start <= MAX_TERM_LENGTH) {
+          terms.add(text.substring(start, i).toLowerCase());
+        }
+        start = -1;
+      }
+    }
+    return ImmutableList.copyOf(terms);
+  }
+
+  /**
+   * Returns the content of a quoted JSON string, with escape sequences replaced by the characters
+   * which they stand for.
+   */
+  static String unquote(String token) {
+    int end = token.length() > 1 && token.endsWith("\"") ? token.length() - 1 : token.length();
+    String content = token.substring(Math.min(1, end), end);
+    if (content.indexOf('\\') < 0) {
+      return content;
+    }
+
+    StringBuilder unescaped = new StringBuilder(content.length());
+    for (int i = 0; i < content.length(); i++) {
+      char c = content.charAt(i);
+      if (c != '\\' || i + 1 == content.length()) {
+        unescaped.append(c);
+        continue;
+      }
+
+      char escaped = content.charAt(++i);
+      if (escaped == 'u' && i + 4 < content.length()) {
+        try {
+          unescaped.append((char) Integer.parseInt(content.substring(i + 1, i + 5), 16));
+          i += 4;
+        } catch (NumberFormatException e) {
+          unescaped.append(escaped);
+        }
+      } else if (escaped == 'n' || escaped == 'r' || escaped == 't' || escaped == 'b'
+          || escaped == 'f') {
+        unescaped.append(' ');
+      } else {
+        unescaped.append(escaped);
+      }
+    }
+    return unescaped.toString();
+  }
+}
@@ -18,20 +18,60 @@ package com.google.api.explorer.client.history;
 
 import com.google.api.explorer.client.base.ApiRequest;
 import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.history.HistoryItem.BodyState;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 
-import java.util.Collections;
+import java.util.AbstractList;
 import java.util.List;
-import java.util.SortedMap;
 
 /**
  * Cache which will keep track of all of the history items generated in this run of the APIs
  * explorer.
  *
+ * <p>
+ * Items are appended to a ring buffer and identified by consecutive integer keys, so that adding
+ * and retrieving an item take constant time. Once the maximum number of items is reached the
+ * oldest item is dropped for every new one. The maximum is {@link #DEFAULT_MAX_ITEMS} unless
+ * another is passed to the constructor; it bounds the metadata of a long session, which is kept
+ * even when the bodies are discarded, and the history listing.
+ * </p>
+ *
+ * <p>
+ * Response bodies are kept within a budget of bytes. Once the bodies exceed the budget, the oldest
+ * are compressed, and if that does not suffice the oldest are discarded. The metadata of every
+ * request is kept regardless, and the body of the newest item is never discarded. Compression runs
+ * in the background after an item is added or a compressed body is restored, so the budget may be
+ * exceeded for a moment.
+ * </p>
+ *
+ * <p>
+ * The bytes used by the bodies are kept as a running total, and the oldest items which may still
+ * be compressed or discarded are tracked by key, so that each step of enforcing the budget takes
+ * amortized constant time rather than a walk over every item.
+ * </p>
+ *
  */
 public class HistoryCache {
+
+  /** Default number of bytes which may be used by response bodies. */
+  public static final long DEFAULT_BODY_BUDGET_BYTES = 50L * 1024 * 1024;
+
+  /** Default number of items kept before the oldest are dropped. */
+  public static final int DEFAULT_MAX_ITEMS = 10000;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** Number of digits of the largest key, which is an {@code int}. */
+  private static final int MAX_KEY_DIGITS = 10;
+
+  /** Milliseconds to spend compressing bodies before yielding to the browser. */
+  private static final int SLICE_MILLIS = 10;
+
   /**
    * Interface for an observer of history cache events.
    */
@@ -44,21 +84,105 @@ public class HistoryCache {
     public void newHistoryItem(HistoryItem newItem);
   }
 
-  /** Store the history items in a sorted map so that they remain in chronological order. */
-  private final SortedMap<String, HistoryItem> historyCache = Maps.newTreeMap(
-      Collections.reverseOrder());
+  /**
+   * Observer which is also notified when cached data goes away, so that it can drop whatever it
+   * derived from that data.
+   */
+  public interface HistoryCacheEvictionObserver extends HistoryCacheObserver {
+    /**
+     * Method which is invoked when the response body of a history item is discarded to stay within
+     * the memory budget. Any data derived from the body should be dropped as well.
+     *
+     * @param item History item whose body was discarded.
+     */
+    public void historyItemBodyEvicted(HistoryItem item);
+
+    /**
+     * Method which is invoked when the oldest history item is dropped to make room for a new one.
+     *
+     * @param item History item which is no longer cached.
+     */
+    public void historyItemRemoved(HistoryItem item);
+  }
+
+  /**
+   * Items in chronological order, starting at {@link #head} and wrapping around the end of the
+   * array. The item at offset {@code i} from the head has the key {@code firstKey + i}.
+   */
+  private HistoryItem[] items = new HistoryItem[INITIAL_CAPACITY];
+  private int head = 0;
+  private int size = 0;
+  private int firstKey = 1;
+
+  private final int maxItems;
+  private final long bodyBudgetBytes;
+
+  /** Observers to notify of cache change events, and those which also observe evictions. */
+  private final List<HistoryCacheObserver> observers = Lists.newArrayList();
+  private final List<HistoryCacheEvictionObserver> evictionObservers = Lists.newArrayList();
+
+  /** Bytes used by the response bodies of the cached items. */
+  private long retainedBodyBytes = 0;
+
+  /**
+   * Key of the oldest item whose body may be resident. The bodies of older items were compressed
+   * or discarded, except for those which were restored since and are in {@link #restoredItems}.
+   */
+  private int compressKey = 1;
+
+  /** Key of the oldest item whose body may not have been discarded. */
+  private int evictKey = 1;
+
+  /** Items older than {@link #compressKey} whose bodies were restored, in order of restoration. */
+  private final List<HistoryItem> restoredItems = Lists.newArrayList();
+
+  private boolean budgetScheduled = false;
+
+  public HistoryCache() {
+    this(DEFAULT_MAX_ITEMS, DEFAULT_BODY_BUDGET_BYTES);
+  }
+
+  /**
+   * Create a cache which keeps response bodies within the specified budget.
+   *
+   * @param bodyBudgetBytes Number of bytes which may be used by response bodies.
+   */
+  public HistoryCache(long bodyBudgetBytes) {
+    this(DEFAULT_MAX_ITEMS, bodyBudgetBytes);
+  }
 
-  private int lastKey = 0;
+  /**
+   * Create a cache which keeps a limited number of items, and keeps their response bodies within
+   * the specified budget.
+   *
+   * @param maxItems Number of items kept before the oldest are dropped.
+   * @param bodyBudgetBytes Number of bytes which may be used by response bodies.
+   */
+  public HistoryCache(int maxItems, long bodyBudgetBytes) {
+    Preconditions.checkArgument(maxItems > 0);
+    Preconditions.checkArgument(bodyBudgetBytes >= 0);
+    this.maxItems = maxItems;
+    this.bodyBudgetBytes = bodyBudgetBytes;
+  }
 
   /**
-   * Field which contains the observer to notify of cache change events.
+   * Add an observer which will be notified of cache change events, and also of evictions if it is
+   * a {@link HistoryCacheEvictionObserver}.
    */
-  public HistoryCacheObserver observer = new HistoryCacheObserver() {
-    @Override
-    public void newHistoryItem(HistoryItem newItem) {
-      // Intentionally blank
+  public void addObserver(HistoryCacheObserver observer) {
+    observers.add(Preconditions.checkNotNull(observer));
+    if (observer instanceof HistoryCacheEvictionObserver) {
+      evictionObservers.add((HistoryCacheEvictionObserver) observer);
     }
-  };
+  }
+
+  /**
+   * Remove an observer, which will no longer be notified of cache change events.
+   */
+  public void removeObserver(HistoryCacheObserver observer) {
+    observers.remove(observer);
+    evictionObservers.remove(observer);
+  }
 
   /**
    * Create a new history item and add it to the cache.
@@ -76,15 +200,161 @@ public class HistoryCache {
     Preconditions.checkNotNull(request);
     Preconditions.checkNotNull(response);
 
-    String key = Integer.toString(++lastKey);
-    HistoryItem item = new HistoryItem(key, request, response, startTime, endTime);
-    historyCache.put(key, item);
+    if (size == maxItems) {
+      HistoryItem oldest = items[head];
+      items[head] = null;
+      head = (head + 1) % items.length;
+      size--;
+      firstKey++;
+      retainedBodyBytes -= oldest.getRetainedBodyBytes();
+      for (HistoryCacheEvictionObserver observer : evictionObservers) {
+        observer.historyItemRemoved(oldest);
+      }
+    }
+    if (size == items.length) {
+      grow();
+    }
+
+    String key = Integer.toString(firstKey + size);
+    HistoryItem item = new HistoryItem(key, request, response, startTime, endTime, this);
+    items[(head + size) % items.length] = item;
+    size++;
+    retainedBodyBytes += item.getRetainedBodyBytes();
+
+    // Inform our observers that there is a new item
+    for (HistoryCacheObserver observer : observers) {
+      observer.newHistoryItem(item);
+    }
 
-    // Inform our observer that there is a new item
-    observer.newHistoryItem(item);
+    scheduleBodyBudget();
     return key;
   }
 
+  private void grow() {
+    HistoryItem[] grown = new HistoryItem[Math.min(items.length * 2, Math.max(maxItems, size))];
+    for (int i = 0; i < size; i++) {
+      grown[i] = getChronological(i);
+    }
+    items = grown;
+    head = 0;
+  }
+
+  /**
+   * Returns the item at the specified position in chronological order, where the oldest item is at
+   * position zero.
+   */
+  private HistoryItem getChronological(int position) {
+    return items[(head + position) % items.length];
+  }
+
+  /**
+   * Bring the response bodies back within the budget in the background, a short slice at a time,
+   * so that compressing them does not hold up the request which was just added.
+   */
+  void scheduleBodyBudget() {
+    if (budgetScheduled) {
+      return;
+    }
+    budgetScheduled = true;
+    Scheduler.get().scheduleIncremental(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        Duration duration = new Duration();
+        boolean more = true;
+        while (more && duration.elapsedMillis() < SLICE_MILLIS) {
+          more = enforceBodyBudget();
+        }
+        budgetScheduled = more;
+        return more;
+      }
+    });
+  }
+
+  /**
+   * Compress the oldest resident body if the bodies exceed the budget, or once every body is
+   * compressed discard the oldest. The body of the newest item is compressed but never discarded.
+   *
+   * @return Whether a body was compressed or discarded, and the budget may still be exceeded.
+   */
+  @VisibleForTesting
+  boolean enforceBodyBudget() {
+    if (retainedBodyBytes <= bodyBudgetBytes) {
+      return false;
+    }
+
+    // Restored bodies belong to items older than the cursor, so they are compressed first.
+    while (!restoredItems.isEmpty()) {
+      HistoryItem item = restoredItems.remove(0);
+      if (isCached(item) && item.getBodyState() == BodyState.RESIDENT) {
+        compressBody(item);
+        return true;
+      }
+    }
+
+    for (compressKey = Math.max(compressKey, firstKey); compressKey < firstKey + size;
+        compressKey++) {
+      HistoryItem item = getChronological(compressKey - firstKey);
+      if (item.getBodyState() == BodyState.RESIDENT && item.getRetainedBodyBytes() > 0) {
+        compressBody(item);
+        compressKey++;
+        return true;
+      }
+    }
+
+    // The newest item is never discarded.
+    for (evictKey = Math.max(evictKey, firstKey); evictKey < firstKey + size - 1; evictKey++) {
+      HistoryItem item = getChronological(evictKey - firstKey);
+      if (item.getBodyState() != BodyState.EVICTED) {
+        retainedBodyBytes -= item.getRetainedBodyBytes();
+        item.evictBody();
+        evictKey++;
+        for (HistoryCacheEvictionObserver observer : evictionObservers) {
+          observer.historyItemBodyEvicted(item);
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void compressBody(HistoryItem item) {
+    long residentBytes = item.getRetainedBodyBytes();
+    item.compressBody();
+    retainedBodyBytes += item.getRetainedBodyBytes() - residentBytes;
+  }
+
+  /**
+   * Count the restored body of an item against the budget again, and compress it anew once it is
+   * among the oldest.
+   *
+   * @param item Item whose body was restored.
+   * @param compressedBytes Bytes which the body used while it was compressed.
+   */
+  void bodyRestored(HistoryItem item, long compressedBytes) {
+    if (!isCached(item)) {
+      return;
+    }
+    retainedBodyBytes += item.getRetainedBodyBytes() - compressedBytes;
+    restoredItems.add(item);
+    scheduleBodyBudget();
+  }
+
+  /**
+   * Returns the approximate number of bytes used by the response bodies of all cached items.
+   */
+  @VisibleForTesting
+  long getRetainedBodyBytes() {
+    return retainedBodyBytes;
+  }
+
+  /**
+   * Returns whether the item is held by this cache, rather than one which was dropped.
+   */
+  private boolean isCached(HistoryItem item) {
+    int position = getPosition(item.getKey());
+    return position != -1 && getChronological(position) == item;
+  }
+
   /**
    * Returns a history item retrieved using the key provided.
    *
@@ -93,13 +363,66 @@ public class HistoryCache {
    * @return History item stored associated with the key or {@code null} if none.
    */
   public HistoryItem getHistoryItem(String key) {
-    return historyCache.get(Preconditions.checkNotNull(key));
+    int position = getPosition(Preconditions.checkNotNull(key));
+    return position == -1 ? null : getChronological(position);
+  }
+
+  /**
+   * Returns the position in chronological order of the item with the specified key, or -1 if
+   * there is none. Only keys in the form which this cache hands out are accepted, so "007", "+7"
+   * or " 7" do not find the item with key "7".
+   */
+  private int getPosition(String key) {
+    if (key.isEmpty() || key.length() > MAX_KEY_DIGITS || key.charAt(0) == '0') {
+      return -1;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+    }
+    long position = Long.parseLong(key) - firstKey;
+    return position >= 0 && position < size ? (int) position : -1;
+  }
+
+  /**
+   * Returns the number of cached items.
+   */
+  public int size() {
+    return size;
   }
 
   /**
    * Returns the list of all cached items in reverse chronological order.
    */
   public List<HistoryItem> listHistoryItems() {
-    return ImmutableList.copyOf(historyCache.values());
+    return listHistoryItems(0, size);
+  }
+
+  /**
+   * Returns a page of the cached items in reverse chronological order. The list is a view of the
+   * cache rather than a copy, so it is cheap to create and should not be held across additions to
+   * the cache.
+   *
+   * @param offset Number of the newest items to skip.
+   * @param limit Maximum number of items to return.
+   */
+  public List<HistoryItem> listHistoryItems(final int offset, int limit) {
+    Preconditions.checkArgument(offset >= 0 && limit >= 0);
+    final int pageSize = Math.max(0, Math.min(limit, size - offset));
+    final int newest = size - 1 - offset;
+    return new AbstractList<HistoryItem>() {
+      @Override
+      public HistoryItem get(int index) {
+        Preconditions.checkElementIndex(index, pageSize);
+        return getChronological(newest - index);
+      }
+
+      @Override
+      public int size() {
+        return pageSize;
+      }
+    };
   }
 }
@@ -20,20 +20,46 @@ import com.google.api.explorer.client.base.ApiRequest;
 import com.google.api.explorer.client.base.ApiResponse;
 import com.google.common.base.Preconditions;
 
-import javax.annotation.concurrent.Immutable;
-
 /**
  * A plain old data class which contains a historical record of a request.
  *
+ * <p>
+ * Everything but the response body is immutable. The {@link HistoryCache} may compress the body,
+ * in which case it is restored when the response is next requested, or evict it altogether, in
+ * which case the response is left without a body. A restored body counts against the budget of
+ * the cache again, which compresses it anew once it is among the oldest.
+ * </p>
+ *
  */
-@Immutable
 public final class HistoryItem implements Comparable<HistoryItem> {
+
+  /** Bytes of memory used by each character of a string. */
+  private static final int BYTES_PER_CHAR = 2;
+
+  /** States of the response body. */
+  public enum BodyState {
+    /** The body is held by the response as is. */
+    RESIDENT,
+
+    /** The body is held in compressed form and restored when the response is requested. */
+    COMPRESSED,
+
+    /** The body has been discarded, the request has to be executed again to see it. */
+    EVICTED;
+  }
+
   private final String key;
   private final ApiRequest request;
   private final ApiResponse response;
   private final long startTime;
   private final long endTime;
 
+  /** Cache which holds the item and keeps its body within budget, if any. */
+  private final HistoryCache cache;
+
+  private BodyState bodyState = BodyState.RESIDENT;
+  private String compressedBody;
+
   /**
    * Create a new history item from the specified data.
    *
@@ -48,12 +74,26 @@ public final class HistoryItem implements Comparable<HistoryItem> {
       ApiResponse response,
       long startTime,
       long endTime) {
+    this(key, request, response, startTime, endTime, null);
+  }
+
+  /**
+   * Create a new history item held by the specified cache, which is told when a compressed body
+   * is restored.
+   */
+  HistoryItem(String key,
+      ApiRequest request,
+      ApiResponse response,
+      long startTime,
+      long endTime,
+      HistoryCache cache) {
 
     this.key = Preconditions.checkNotNull(key);
     this.request = Preconditions.checkNotNull(request);
     this.response = Preconditions.checkNotNull(response);
     this.startTime = startTime;
     this.endTime = endTime;
+    this.cache = cache;
   }
 
   /**
@@ -72,12 +112,114 @@ public final class HistoryItem implements Comparable<HistoryItem> {
   }
 
   /**
-   * Returns the response object that was returned when the original request was executed.
+   * Returns the response object that was returned when the original request was executed. A
+   * compressed body is restored first, an evicted body is {@code null}.
    */
   public ApiResponse getResponse() {
+    if (bodyState == BodyState.COMPRESSED) {
+      long compressedBytes = getRetainedBodyBytes();
+      response.setBody(LzCodec.decompress(compressedBody));
+      compressedBody = null;
+      bodyState = BodyState.RESIDENT;
+      if (cache != null) {
+        cache.bodyRestored(this, compressedBytes);
+      }
+    }
     return response;
   }
 
+  /**
+   * Returns the response object without restoring a compressed body, for reading the status and
+   * headers. The body of the returned response is {@code null} unless it is resident.
+   */
+  ApiResponse peekResponse() {
+    return response;
+  }
+
+  /**
+   * Returns the response body without restoring a compressed body in the response, so that reading
+   * the bodies of many items does not undo the compression of the cache.
+   *
+   * @return Response body, or {@code null} if there was none or it was evicted.
+   */
+  public String getResponseBody() {
+    switch (bodyState) {
+      case RESIDENT:
+        return response.getBodyAsString();
+
+      case COMPRESSED:
+        return LzCodec.decompress(compressedBody);
+
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the response body in the compressed form of {@link LzCodec}, reusing the compressed
+   * copy if the cache holds one so that the body is not compressed twice.
+   *
+   * @return Compressed response body, or {@code null} if there was none or it was evicted.
+   */
+  String getCompressedResponseBody() {
+    switch (bodyState) {
+      case RESIDENT:
+        String body = response.getBodyAsString();
+        return body == null ? null : LzCodec.compress(body);
+
+      case COMPRESSED:
+        return compressedBody;
+
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the state of the response body.
+   */
+  public BodyState getBodyState() {
+    return bodyState;
+  }
+
+  /**
+   * Returns the approximate number of bytes used to hold the response body, in its current state.
+   */
+  public long getRetainedBodyBytes() {
+    switch (bodyState) {
+      case RESIDENT:
+        String body = response.getBodyAsString();
+        return body == null ? 0 : (long) body.length() * BYTES_PER_CHAR;
+
+      case COMPRESSED:
+        return (long) compressedBody.length() * BYTES_PER_CHAR;
+
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Replace the response body with a compressed copy, if it is resident.
+   */
+  void compressBody() {
+    String body = response.getBodyAsString();
+    if (bodyState == BodyState.RESIDENT && body != null) {
+      compressedBody = LzCodec.compress(body);
+      response.setBody(null);
+      bodyState = BodyState.COMPRESSED;
+    }
+  }
+
+  /**
+   * Discard the response body, whatever its state.
+   */
+  void evictBody() {
+    response.setBody(null);
+    compressedBody = null;
+    bodyState = BodyState.EVICTED;
+  }
+
   /**
    * Returns the time at which the request was started.
    */
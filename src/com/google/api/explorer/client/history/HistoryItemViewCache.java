@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.LruCache;
+import com.google.api.explorer.client.base.LruCache.Weigher;
+import com.google.api.explorer.client.history.HistoryCache.HistoryCacheEvictionObserver;
+
+/**
+ * Cache of the completed views of history items, so that returning to a history item reattaches
+ * its view instead of parsing and rendering the response again.
+ *
+ * <p>
+ * Views are weighed by the length of the response they show, which the size of their elements
+ * follows, and the least recently shown views are dropped once the budget is exceeded. A view is
+ * also dropped when the {@link HistoryCache} discards the body of its item or the item itself, so
+ * that the view does not keep alive what the history cache gave up.
+ * </p>
+ *
+ */
+public class HistoryItemViewCache implements HistoryCacheEvictionObserver {
+
+  /** Default number of response characters which may be shown by the cached views together. */
+  public static final long DEFAULT_MAX_CHARS = 4000000;
+
+  /** Weight of a view in addition to its response, for the request, headers and controls. */
+  static final int VIEW_OVERHEAD_CHARS = 2000;
+
+  private static final Weigher<EmbeddedHistoryItemView> WEIGHER =
+      new Weigher<EmbeddedHistoryItemView>() {
+        @Override
+        public int weigh(EmbeddedHistoryItemView view) {
+          return VIEW_OVERHEAD_CHARS + view.getResponseLength();
+        }
+      };
+
+  private final LruCache<String, EmbeddedHistoryItemView> views;
+
+  public HistoryItemViewCache() {
+    this(DEFAULT_MAX_CHARS);
+  }
+
+  /**
+   * Create a cache with the specified budget.
+   *
+   * @param maxChars Number of response characters which may be shown by the cached views together.
+   */
+  public HistoryItemViewCache(long maxChars) {
+    views = new LruCache<String, EmbeddedHistoryItemView>(WEIGHER, maxChars);
+  }
+
+  /**
+   * Returns the view of a history item, rendering it only if it is not cached. The view is moved
+   * to the new parent when it is added, so it must not be shown in two places at once.
+   */
+  public EmbeddedHistoryItemView getView(HistoryItem item) {
+    EmbeddedHistoryItemView view = views.get(item.getKey());
+    if (view == null) {
+      view = createView(item);
+      views.put(item.getKey(), view);
+    }
+    return view;
+  }
+
+  /**
+   * Render a new view of a history item.
+   */
+  public static EmbeddedHistoryItemView createView(HistoryItem item) {
+    EmbeddedHistoryItemView view = new EmbeddedHistoryItemView(item.getRequest());
+    view.complete(item.getResponse(), item.getEndTime() - item.getStartTime(),
+        JsonPrettifier.LOCAL_LINK_FACTORY);
+    return view;
+  }
+
+  @Override
+  public void newHistoryItem(HistoryItem newItem) {
+    // Views are rendered when they are first shown.
+  }
+
+  @Override
+  public void historyItemBodyEvicted(HistoryItem item) {
+    views.remove(item.getKey());
+  }
+
+  @Override
+  public void historyItemRemoved(HistoryItem item) {
+    views.remove(item.getKey());
+  }
+}
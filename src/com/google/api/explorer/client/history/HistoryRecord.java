@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.routing.UrlBuilder;
+import com.google.api.explorer.client.routing.UrlBuilder.RootNavigationItem;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Metadata of a request which was executed, without the response body, in a form which can be
+ * persisted and restored in a later session.
+ *
+ */
+@Immutable
+public final class HistoryRecord {
+  private final String id;
+  private final String serviceName;
+  private final String serviceVersion;
+  private final String methodId;
+  private final String httpMethod;
+  private final String requestPath;
+  @Nullable private final String requestBody;
+  private final ImmutableListMultimap<String, String> paramValues;
+  private final int status;
+  private final String statusText;
+  private final long startTime;
+  private final long endTime;
+
+  /**
+   * Create a record from the specified data.
+   *
+   * @param id Identifier of the record, unique across sessions.
+   * @param serviceName Name of the service which was called.
+   * @param serviceVersion Version of the service which was called.
+   * @param methodId Identifier of the method which was called.
+   * @param httpMethod HTTP method of the request.
+   * @param requestPath Path and query of the request.
+   * @param requestBody Body of the request, or {@code null} if there was none.
+   * @param paramValues Parameters of the request.
+   * @param status Status code of the response.
+   * @param statusText Text associated with the status code.
+   * @param startTime Time at which the request was started.
+   * @param endTime Time at which the request completed.
+   */
+  public HistoryRecord(String id,
+      String serviceName,
+      String serviceVersion,
+      String methodId,
+      String httpMethod,
+      String requestPath,
+      @Nullable String requestBody,
+      ListMultimap<String, String> paramValues,
+      int status,
+      String statusText,
+      long startTime,
+      long endTime) {
+
+    this.id = Preconditions.checkNotNull(id);
+    this.serviceName = serviceName;
+    this.serviceVersion = serviceVersion;
+    this.methodId = methodId;
+    this.httpMethod = httpMethod;
+    this.requestPath = requestPath;
+    this.requestBody = requestBody;
+    this.paramValues = ImmutableListMultimap.copyOf(paramValues);
+    this.status = status;
+    this.statusText = statusText;
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  /**
+   * Create a record of the metadata of a history item.
+   *
+   * @param id Identifier of the record, unique across sessions.
+   * @param item History item to record.
+   */
+  public static HistoryRecord fromItem(String id, HistoryItem item) {
+    ApiRequest request = item.getRequest();
+    ApiResponse response = item.peekResponse();
+    return new HistoryRecord(id,
+        request.getService().getName(),
+        request.getService().getVersion(),
+        request.getMethod().getId(),
+        request.getHttpMethod().name(),
+        request.getRequestPath(),
+        request.getRequestBody(),
+        request.getParamValues(),
+        response.getStatus(),
+        response.getStatusText(),
+        item.getStartTime(),
+        item.getEndTime());
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getServiceName() {
+    return serviceName;
+  }
+
+  public String getServiceVersion() {
+    return serviceVersion;
+  }
+
+  public String getMethodId() {
+    return methodId;
+  }
+
+  public String getHttpMethod() {
+    return httpMethod;
+  }
+
+  public String getRequestPath() {
+    return requestPath;
+  }
+
+  @Nullable
+  public String getRequestBody() {
+    return requestBody;
+  }
+
+  public ImmutableListMultimap<String, String> getParamValues() {
+    return paramValues;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public String getStatusText() {
+    return statusText;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public long getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * Returns the history token of the method form, filled in with the parameters and body of this
+   * request so that it can be executed again.
+   */
+  public String getMethodUrl() {
+    return createMethodUrl(serviceName, serviceVersion, methodId, paramValues, requestBody);
+  }
+
+  /**
+   * Returns the history token of the method form, filled in with the specified parameters and
+   * request body.
+   */
+  static String createMethodUrl(String serviceName, String serviceVersion, String methodId,
+      Multimap<String, String> paramValues, @Nullable String requestBody) {
+
+    Multimap<String, String> params = ArrayListMultimap.create(paramValues);
+    if (!Strings.isNullOrEmpty(requestBody)) {
+      params.put(UrlBuilder.BODY_QUERY_PARAM_KEY, requestBody);
+    }
+    return new UrlBuilder()
+        .addRootNavigationItem(RootNavigationItem.ALL_VERSIONS)
+        .addService(serviceName, serviceVersion)
+        .addMethodName(methodId)
+        .addQueryParams(params)
+        .toString();
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.gwt.core.client.Callback;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Asynchronous storage of history records, and of their response bodies which are stored
+ * separately so that the records can be loaded without them.
+ *
+ */
+public interface HistoryStore {
+
+  /**
+   * Store records and response bodies, replacing any with the same identifiers.
+   *
+   * @param records Records to store.
+   * @param bodies Compressed response bodies keyed by record identifier.
+   * @param callback Callback invoked once everything is stored.
+   */
+  void write(List<HistoryRecord> records, Map<String, String> bodies,
+      Callback<Void, String> callback);
+
+  /**
+   * Load every stored record, without the response bodies.
+   *
+   * @param callback Callback which receives the records in no particular order.
+   */
+  void loadRecords(Callback<List<HistoryRecord>, String> callback);
+
+  /**
+   * Load the response body of a record.
+   *
+   * @param id Identifier of the record.
+   * @param callback Callback which receives the compressed body, or {@code null} if there is none.
+   */
+  void loadBody(String id, Callback<String, String> callback);
+
+  /**
+   * Delete records and their response bodies.
+   *
+   * @param ids Identifiers of the records to delete.
+   * @param callback Callback invoked once the records are deleted.
+   */
+  void delete(List<String> ids, Callback<Void, String> callback);
+
+  /**
+   * Delete every record and response body.
+   *
+   * @param callback Callback invoked once the store is empty.
+   */
+  void clear(Callback<Void, String> callback);
+}
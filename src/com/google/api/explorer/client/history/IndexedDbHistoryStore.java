@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.dynamicjso.DynamicJsArray;
+import com.google.api.explorer.client.base.dynamicjso.DynamicJso;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.gwt.core.client.Callback;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayString;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link HistoryStore} backed by the IndexedDB database of the browser. Records are kept in one
+ * object store and the compressed response bodies in another, keyed by record identifier.
+ *
+ */
+public class IndexedDbHistoryStore implements HistoryStore {
+
+  private static final String DATABASE_NAME = "explorerHistory";
+  private static final int DATABASE_VERSION = 1;
+  private static final String RECORDS_STORE = "records";
+  private static final String BODIES_STORE = "bodies";
+
+  private final JavaScriptObject database;
+
+  private IndexedDbHistoryStore(JavaScriptObject database) {
+    this.database = database;
+  }
+
+  /**
+   * Returns whether the browser supports IndexedDB.
+   */
+  public static native boolean isSupported() /*-{
+    return !!$wnd.indexedDB;
+  }-*/;
+
+  /**
+   * Open the database, creating it if this is the first session.
+   *
+   * @param callback Callback which receives the store once the database is open.
+   */
+  public static native void open(Callback<HistoryStore, String> callback) /*-{
+    var recordsStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::RECORDS_STORE;
+    var bodiesStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::BODIES_STORE;
+    var request;
+    try {
+      request = $wnd.indexedDB.open(
+          @com.google.api.explorer.client.history.IndexedDbHistoryStore::DATABASE_NAME,
+          @com.google.api.explorer.client.history.IndexedDbHistoryStore::DATABASE_VERSION);
+    } catch (e) {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(String(e));
+      return;
+    }
+
+    request.onupgradeneeded = function() {
+      var db = request.result;
+      if (!db.objectStoreNames.contains(recordsStore)) {
+        db.createObjectStore(recordsStore, {keyPath: 'id'});
+      }
+      if (!db.objectStoreNames.contains(bodiesStore)) {
+        db.createObjectStore(bodiesStore);
+      }
+    };
+    request.onsuccess = $entry(function() {
+      @com.google.api.explorer.client.history.IndexedDbHistoryStore::opened(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/Callback;)(request.result, callback);
+    });
+    request.onerror = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(
+          String(request.error));
+    });
+  }-*/;
+
+  private static void opened(JavaScriptObject database, Callback<HistoryStore, String> callback) {
+    callback.onSuccess(new IndexedDbHistoryStore(database));
+  }
+
+  @Override
+  public void write(List<HistoryRecord> records, Map<String, String> bodies,
+      Callback<Void, String> callback) {
+
+    DynamicJsArray recordObjects = JavaScriptObject.createArray().cast();
+    for (HistoryRecord record : records) {
+      recordObjects.push(toObject(record));
+    }
+
+    // Identifiers and bodies alternate.
+    DynamicJsArray bodyPairs = JavaScriptObject.createArray().cast();
+    for (Map.Entry<String, String> body : bodies.entrySet()) {
+      bodyPairs.push(body.getKey());
+      bodyPairs.push(body.getValue());
+    }
+
+    write(database, recordObjects, bodyPairs, callback);
+  }
+
+  private static native void write(JavaScriptObject db, JavaScriptObject records,
+      JavaScriptObject bodyPairs, Callback<Void, String> callback) /*-{
+    var recordsStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::RECORDS_STORE;
+    var bodiesStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::BODIES_STORE;
+    try {
+      var transaction = db.transaction([recordsStore, bodiesStore], 'readwrite');
+      var recordObjects = transaction.objectStore(recordsStore);
+      for (var i = 0; i < records.length; i++) {
+        recordObjects.put(records[i]);
+      }
+      var bodyObjects = transaction.objectStore(bodiesStore);
+      for (var j = 0; j + 1 < bodyPairs.length; j += 2) {
+        bodyObjects.put(bodyPairs[j + 1], bodyPairs[j]);
+      }
+    } catch (e) {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(String(e));
+      return;
+    }
+
+    transaction.oncomplete = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onSuccess(Ljava/lang/Object;)(null);
+    });
+    transaction.onabort = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(
+          String(transaction.error));
+    });
+  }-*/;
+
+  @Override
+  public native void loadRecords(Callback<List<HistoryRecord>, String> callback) /*-{
+    var recordsStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::RECORDS_STORE;
+    var records = [];
+    var request;
+    try {
+      request = this.@com.google.api.explorer.client.history.IndexedDbHistoryStore::database
+          .transaction([recordsStore], 'readonly').objectStore(recordsStore).openCursor();
+    } catch (e) {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(String(e));
+      return;
+    }
+
+    request.onsuccess = $entry(function() {
+      var cursor = request.result;
+      if (cursor) {
+        records.push(cursor.value);
+        cursor['continue']();
+      } else {
+        @com.google.api.explorer.client.history.IndexedDbHistoryStore::recordsLoaded(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/Callback;)(records, callback);
+      }
+    });
+    request.onerror = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(
+          String(request.error));
+    });
+  }-*/;
+
+  private static void recordsLoaded(
+      JavaScriptObject objects, Callback<List<HistoryRecord>, String> callback) {
+    DynamicJsArray array = objects.cast();
+    ImmutableList.Builder<HistoryRecord> records = ImmutableList.builder();
+    for (int i = 0; i < array.length(); i++) {
+      records.add(fromObject(array.<DynamicJso>get(i)));
+    }
+    callback.onSuccess(records.build());
+  }
+
+  @Override
+  public native void loadBody(String id, Callback<String, String> callback) /*-{
+    var bodiesStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::BODIES_STORE;
+    var request;
+    try {
+      request = this.@com.google.api.explorer.client.history.IndexedDbHistoryStore::database
+          .transaction([bodiesStore], 'readonly').objectStore(bodiesStore).get(id);
+    } catch (e) {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(String(e));
+      return;
+    }
+
+    request.onsuccess = $entry(function() {
+      var body = request.result === undefined ? null : request.result;
+      callback.@com.google.gwt.core.client.Callback::onSuccess(Ljava/lang/Object;)(body);
+    });
+    request.onerror = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(
+          String(request.error));
+    });
+  }-*/;
+
+  @Override
+  public void delete(List<String> ids, Callback<Void, String> callback) {
+    JsArrayString idArray = JavaScriptObject.createArray().cast();
+    for (String id : ids) {
+      idArray.push(id);
+    }
+    delete(database, idArray, callback);
+  }
+
+  private static native void delete(
+      JavaScriptObject db, JsArrayString ids, Callback<Void, String> callback) /*-{
+    var recordsStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::RECORDS_STORE;
+    var bodiesStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::BODIES_STORE;
+    try {
+      var transaction = db.transaction([recordsStore, bodiesStore], 'readwrite');
+      for (var i = 0; i < ids.length; i++) {
+        transaction.objectStore(recordsStore)['delete'](ids[i]);
+        transaction.objectStore(bodiesStore)['delete'](ids[i]);
+      }
+    } catch (e) {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(String(e));
+      return;
+    }
+
+    transaction.oncomplete = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onSuccess(Ljava/lang/Object;)(null);
+    });
+    transaction.onabort = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(
+          String(transaction.error));
+    });
+  }-*/;
+
+  @Override
+  public native void clear(Callback<Void, String> callback) /*-{
+    var recordsStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::RECORDS_STORE;
+    var bodiesStore = @com.google.api.explorer.client.history.IndexedDbHistoryStore::BODIES_STORE;
+    try {
+      var transaction = this.@com.google.api.explorer.client.history.IndexedDbHistoryStore::database
+          .transaction([recordsStore, bodiesStore], 'readwrite');
+      transaction.objectStore(recordsStore).clear();
+      transaction.objectStore(bodiesStore).clear();
+    } catch (e) {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(String(e));
+      return;
+    }
+
+    transaction.oncomplete = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onSuccess(Ljava/lang/Object;)(null);
+    });
+    transaction.onabort = $entry(function() {
+      callback.@com.google.gwt.core.client.Callback::onFailure(Ljava/lang/Object;)(
+          String(transaction.error));
+    });
+  }-*/;
+
+  private static DynamicJso toObject(HistoryRecord record) {
+    // Parameter names and values alternate.
+    DynamicJsArray params = JavaScriptObject.createArray().cast();
+    for (Map.Entry<String, String> param : record.getParamValues().entries()) {
+      params.push(param.getKey());
+      params.push(param.getValue());
+    }
+
+    DynamicJso object = JavaScriptObject.createObject().cast();
+    return object.set("id", record.getId())
+        .set("serviceName", record.getServiceName())
+        .set("serviceVersion", record.getServiceVersion())
+        .set("methodId", record.getMethodId())
+        .set("httpMethod", record.getHttpMethod())
+        .set("requestPath", record.getRequestPath())
+        .set("requestBody", record.getRequestBody())
+        .set("params", params)
+        .set("status", record.getStatus())
+        .set("statusText", record.getStatusText())
+        .set("startTime", (double) record.getStartTime())
+        .set("endTime", (double) record.getEndTime());
+  }
+
+  private static HistoryRecord fromObject(DynamicJso object) {
+    DynamicJsArray params = object.get("params");
+    ListMultimap<String, String> paramValues = ArrayListMultimap.create();
+    for (int i = 0; params != null && i + 1 < params.length(); i += 2) {
+      paramValues.put(params.getString(i), params.getString(i + 1));
+    }
+
+    return new HistoryRecord(object.getString("id"),
+        object.getString("serviceName"),
+        object.getString("serviceVersion"),
+        object.getString("methodId"),
+        object.getString("httpMethod"),
+        object.getString("requestPath"),
+        object.getString("requestBody"),
+        paramValues,
+        object.getInteger("status"),
+        object.getString("statusText"),
+        (long) object.getDouble("startTime"),
+        (long) object.getDouble("endTime"));
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Simple JSONPath style pattern which identifies nodes in a response, for example
+ * {@code items[*].id} or {@code $.items[0].actor.*}.
+ *
+ * <p>
+ * Supported segments are object keys, {@code *} for any key, {@code [n]} for an array element and
+ * {@code [*]} for any array element. A leading {@code $} denoting the root is optional.
+ * </p>
+ *
+ */
+public class JsonPathPattern {
+  private static final String ROOT = "$";
+  private static final String WILDCARD = "*";
+
+  /** Index used for segments which match array elements by wildcard. */
+  private static final int ANY_INDEX = -1;
+
+  /** Index used for segments whose index is too large to be that of any array element. */
+  private static final int NO_INDEX = -2;
+
+  /**
+   * Single segment of the pattern, which either matches an object key or an array element.
+   */
+  private static class Segment {
+    /** Key to match, {@link #WILDCARD}, or {@code null} if this matches an array element. */
+    @Nullable final String key;
+    final int index;
+
+    Segment(@Nullable String key, int index) {
+      this.key = key;
+      this.index = index;
+    }
+  }
+
+  private final List<Segment> segments;
+
+  private JsonPathPattern(List<Segment> segments) {
+    this.segments = segments;
+  }
+
+  /**
+   * Parse the specified pattern.
+   *
+   * @return The parsed pattern, or {@code null} if the text is not a valid pattern.
+   */
+  @Nullable
+  public static JsonPathPattern parse(String pattern) {
+    String remaining = pattern.trim();
+    if (remaining.startsWith(ROOT)) {
+      remaining = remaining.substring(ROOT.length());
+      if (remaining.startsWith(".")) {
+        remaining = remaining.substring(1);
+      }
+    }
+
+    ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+    int position = 0;
+    boolean expectKey = true;
+    while (position < remaining.length()) {
+      char c = remaining.charAt(position);
+      if (c == '[') {
+        int close = remaining.indexOf(']', position);
+        if (close == -1) {
+          return null;
+        }
+        String index = remaining.substring(position + 1, close).trim();
+        if (WILDCARD.equals(index)) {
+          segments.add(new Segment(null, ANY_INDEX));
+        } else if (isNumber(index)) {
+          segments.add(new Segment(null, parseIndex(index)));
+        } else {
+          return null;
+        }
+        position = close + 1;
+        expectKey = false;
+      } else if (c == '.') {
+        if (expectKey) {
+          // Empty key, as in "a..b" or ".a".
+          return null;
+        }
+        position++;
+        expectKey = true;
+      } else if (expectKey) {
+        int end = position;
+        while (end < remaining.length() && remaining.charAt(end) != '.'
+            && remaining.charAt(end) != '[') {
+          end++;
+        }
+        segments.add(new Segment(remaining.substring(position, end), ANY_INDEX));
+        position = end;
+        expectKey = false;
+      } else {
+        return null;
+      }
+    }
+
+    if (expectKey && position > 0) {
+      // Trailing dot.
+      return null;
+    }
+    return new JsonPathPattern(segments.build());
+  }
+
+  /** Returns the number of segments, which is the depth of the nodes that this matches. */
+  public int size() {
+    return segments.size();
+  }
+
+  /**
+   * Returns whether the segment at the specified position matches an object key.
+   *
+   * @param position Position of the segment in the pattern.
+   * @param key Key to match.
+   */
+  public boolean matchesKey(int position, String key) {
+    Segment segment = segments.get(position);
+    return segment.key != null && (WILDCARD.equals(segment.key) || segment.key.equals(key));
+  }
+
+  /**
+   * Returns whether the segment at the specified position matches an array element.
+   *
+   * @param position Position of the segment in the pattern.
+   * @param index Index of the element to match.
+   */
+  public boolean matchesIndex(int position, int index) {
+    Segment segment = segments.get(position);
+    return segment.key == null && (segment.index == ANY_INDEX || segment.index == index);
+  }
+
+  /**
+   * Returns the value of a string of digits, or {@link #NO_INDEX} if it does not fit in an
+   * {@code int}, since no array element has such an index.
+   */
+  private static int parseIndex(String digits) {
+    try {
+      return Integer.parseInt(digits);
+    } catch (NumberFormatException e) {
+      return NO_INDEX;
+    }
+  }
+
+  private static boolean isNumber(String text) {
+    if (text.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -44,8 +44,12 @@ import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JsonUtils;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.FocusEvent;
+import com.google.gwt.event.dom.client.FocusHandler;
 import com.google.gwt.event.dom.client.MouseOutEvent;
 import com.google.gwt.event.dom.client.MouseOutHandler;
+import com.google.gwt.event.dom.client.MouseOverEvent;
+import com.google.gwt.event.dom.client.MouseOverHandler;
 import com.google.gwt.json.client.JSONObject;
 import com.google.gwt.json.client.JSONString;
 import com.google.gwt.user.client.Window;
@@ -53,7 +57,6 @@ import com.google.gwt.user.client.ui.Anchor;
 import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.gwt.user.client.ui.FocusPanel;
 import com.google.gwt.user.client.ui.Image;
-import com.google.gwt.user.client.ui.InlineHyperlink;
 import com.google.gwt.user.client.ui.InlineLabel;
 import com.google.gwt.user.client.ui.Label;
 import com.google.gwt.user.client.ui.Panel;
@@ -87,6 +90,8 @@ public class JsonPrettifier {
   private static final String PLACEHOLDER_TEXT = "...";
   private static final String SEPARATOR_TEXT = ",";
   private static final String OPEN_IN_NEW_WINDOW = "_blank";
+  private static final String URI_FORMAT = "uri";
+  private static final String URL_FORMAT = "url";
   private static final HistoryWrapper history = new HistoryWrapperImpl();
 
   private static Css style;
@@ -103,9 +108,10 @@ public class JsonPrettifier {
     ClickHandler generateMenuHandler(String fragment);
 
     /**
-     * Generate an anchor widget which will redirect to the fragment specified when clicked.
+     * Generate the URL of a link which leads to the fragment specified, for when it is followed
+     * without a click handler, i.e. when it is opened in a new tab or copied.
      */
-    Widget generateAnchor(String embeddingText, String fragment);
+    String generateHref(String fragment);
   }
 
   /**
@@ -124,8 +130,8 @@ public class JsonPrettifier {
     }
 
     @Override
-    public Widget generateAnchor(String embeddingText, String fragment) {
-      return new InlineHyperlink(embeddingText, fragment);
+    public String generateHref(String fragment) {
+      return "#" + fragment;
     }
   };
 
@@ -145,8 +151,8 @@ public class JsonPrettifier {
     }
 
     @Override
-    public Widget generateAnchor(String embeddingText, String fragment) {
-      return new Anchor(embeddingText, createFullLink(fragment));
+    public String generateHref(String fragment) {
+      return createFullLink(fragment);
     }
 
     private String createFullLink(String fragment) {
@@ -185,6 +191,200 @@ public class JsonPrettifier {
     }
   }
 
+  /**
+   * Link to a URL found in a response. Resolving whether the URL corresponds to a method in the
+   * explorer requires matching it against every method of the service, so it is deferred until the
+   * user shows interest in the link by hovering, focusing or clicking it, and then remembered.
+   */
+  private static class DeferredLink extends Anchor
+      implements MouseOverHandler, FocusHandler, ClickHandler {
+    private final ApiService service;
+    private final String url;
+    private final PrettifierLinkFactory linkFactory;
+
+    private boolean resolved = false;
+    private String explorerLink = null;
+
+    public DeferredLink(ApiService service, String url, PrettifierLinkFactory linkFactory) {
+      super(url, url, OPEN_IN_NEW_WINDOW);
+      this.service = service;
+      this.url = url;
+      this.linkFactory = linkFactory;
+
+      addStyleName(style.jsonStringLink());
+      addMouseOverHandler(this);
+      addFocusHandler(this);
+      addClickHandler(this);
+    }
+
+    @Override
+    public void onMouseOver(MouseOverEvent event) {
+      resolve();
+    }
+
+    @Override
+    public void onFocus(FocusEvent event) {
+      resolve();
+    }
+
+    @Override
+    public void onClick(ClickEvent event) {
+      resolve();
+      if (explorerLink != null) {
+        // Navigate within the explorer instead of following the raw URL.
+        event.preventDefault();
+        linkFactory.generateMenuHandler(explorerLink).onClick(event);
+      }
+    }
+
+    private void resolve() {
+      if (resolved) {
+        return;
+      }
+      resolved = true;
+
+      try {
+        ApiMethod method = getMethodForUrl(service, url);
+        if (method != null) {
+          explorerLink = createExplorerLink(service, url, method);
+
+          // The link now leads into the explorer, also when it is opened in a new tab or copied.
+          setHref(linkFactory.generateHref(explorerLink));
+          getElement().removeAttribute("target");
+          removeStyleName(style.jsonStringLink());
+          addStyleName(style.jsonStringExplorerLink());
+        }
+      } catch (IndexOutOfBoundsException e) {
+        // Intentionally blank - this will only happen when iterating the method
+        // url template in parallel with the url components and you run out of
+        // components
+      }
+    }
+  }
+
+  /**
+   * Handler for the button which discloses the menu of methods that accept a resource. The resource
+   * serialization and the menu itself are only built the first time the button is clicked.
+   */
+  private static class DeferredRequestMenu implements ClickHandler {
+    private final Collection<ApiMethod> methods;
+    private final ApiService service;
+    private final DynamicJso objectToPackage;
+    private final PrettifierLinkFactory linkFactory;
+    private final Widget menuButton;
+
+    private PopupPanel popupMenu = null;
+
+    public DeferredRequestMenu(Collection<ApiMethod> methods, ApiService service,
+        DynamicJso objectToPackage, PrettifierLinkFactory linkFactory, Widget menuButton) {
+      this.methods = methods;
+      this.service = service;
+      this.objectToPackage = objectToPackage;
+      this.linkFactory = linkFactory;
+      this.menuButton = menuButton;
+    }
+
+    @Override
+    public void onClick(ClickEvent event) {
+      if (popupMenu == null) {
+        popupMenu = createPopupMenu();
+      }
+
+      popupMenu.setPopupPositionAndShow(new PositionCallback() {
+        @Override
+        public void setPosition(int offsetWidth, int offsetHeight) {
+          popupMenu.setPopupPosition(
+              menuButton.getAbsoluteLeft() + menuButton.getOffsetWidth() - offsetWidth,
+              menuButton.getAbsoluteTop() + menuButton.getOffsetHeight());
+        }
+      });
+    }
+
+    private PopupPanel createPopupMenu() {
+      // Create the parameters that will be passed to the destination menu.
+      String resourceContents = new JSONObject(objectToPackage).toString();
+      Multimap<String, String> resourceParams =
+          ImmutableMultimap.of(UrlBuilder.BODY_QUERY_PARAM_KEY, resourceContents);
+
+      // Create the menu itself.
+      FlowPanel menuContents = new FlowPanel();
+
+      // Add a description of what the menu does.
+      Label header = new Label("Use this resource in one of the following methods:");
+      header.addStyleName(style.dropDownMenuItem());
+      menuContents.add(header);
+
+      // Add a menu item for each method.
+      for (ApiMethod method : methods) {
+        PushButton methodItem = new PushButton();
+        methodItem.addStyleName(style.dropDownMenuItem());
+        methodItem.addStyleName(style.selectableDropDownMenuItem());
+        methodItem.setText(method.getId());
+        menuContents.add(methodItem);
+
+        // When clicked, Navigate to the menu item.
+        UrlBuilder builder = new UrlBuilder();
+        String newUrl = builder
+            .addRootNavigationItem(RootNavigationItem.ALL_VERSIONS)
+            .addService(service.getName(), service.getVersion())
+            .addMethodName(method.getId())
+            .addQueryParams(resourceParams)
+            .toString();
+        methodItem.addClickHandler(linkFactory.generateMenuHandler(newUrl));
+      }
+
+      // Create the panel which will be disclosed.
+      final PopupPanel popup = new PopupPanel(/* auto hide */ true);
+      popup.setStyleName(style.dropDownMenuPopup());
+
+      FocusPanel focusContents = new FocusPanel();
+      focusContents.addMouseOutHandler(new MouseOutHandler() {
+        @Override
+        public void onMouseOut(MouseOutEvent event) {
+          popup.hide();
+        }
+      });
+      focusContents.setWidget(menuContents);
+
+      popup.setWidget(focusContents);
+      return popup;
+    }
+  }
+
+  /**
+   * Panel holding a formatted object or array, which remembers its parts so that it can be expanded
+   * programmatically.
+   */
+  private static class GroupPanel extends FlowPanel {
+    private final Widget titleLabel;
+    private final FlowPanel contents;
+    private final Widget placeholder;
+
+    /** Number of widgets in the contents which precede the children, i.e. a menu button. */
+    private final int childOffset;
+
+    public GroupPanel(Widget titleLabel, FlowPanel contents, Widget placeholder, int childOffset) {
+      this.titleLabel = titleLabel;
+      this.contents = contents;
+      this.placeholder = placeholder;
+      this.childOffset = childOffset;
+    }
+
+    public void expand() {
+      if (!contents.isVisible()) {
+        Collapser.decorateCollapserControl(titleLabel, true);
+        contents.setVisible(true);
+        placeholder.setVisible(false);
+      }
+    }
+
+    @Nullable
+    public Widget getChild(int ordinal) {
+      int index = childOffset + ordinal;
+      return index < contents.getWidgetCount() ? contents.getWidget(index) : null;
+    }
+  }
+
   /**
    * This abstraction of an array creates formatted widgets from all children.
    */
@@ -193,13 +393,15 @@ public class JsonPrettifier {
     private final int depth;
     private final ApiService service;
     private final PrettifierLinkFactory linkFactory;
+    @Nullable private final Schema itemSchema;
 
-    public JsArrayIterable(
-        ApiService service, DynamicJsArray array, int depth, PrettifierLinkFactory linkFactory) {
+    public JsArrayIterable(ApiService service, DynamicJsArray array, int depth,
+        PrettifierLinkFactory linkFactory, @Nullable Schema itemSchema) {
       this.backingObj = array;
       this.depth = depth;
       this.service = service;
       this.linkFactory = linkFactory;
+      this.itemSchema = itemSchema;
     }
 
     @Override
@@ -222,7 +424,8 @@ public class JsonPrettifier {
               nextOffset,
               depth,
               nextOffset + 1 < backingObj.length(),
-              linkFactory);
+              linkFactory,
+              itemSchema);
           nextOffset++;
           return next;
         }
@@ -243,14 +446,29 @@ public class JsonPrettifier {
     private final int depth;
     private final ApiService service;
     private final PrettifierLinkFactory linkFactory;
+    @Nullable private final Schema schema;
 
-    public JsObjectIterable(
-        ApiService service, DynamicJso obj, int depth, PrettifierLinkFactory linkFactory) {
+    public JsObjectIterable(ApiService service, DynamicJso obj, int depth,
+        PrettifierLinkFactory linkFactory, @Nullable Schema schema) {
 
       this.backingObj = obj;
       this.depth = depth;
       this.service = service;
       this.linkFactory = linkFactory;
+      this.schema = schema;
+    }
+
+    /**
+     * Returns the schema declared for the key, or {@code null} if the schema of this object is not
+     * known.
+     */
+    @Nullable
+    private Schema propertySchema(String key) {
+      if (schema == null) {
+        return null;
+      }
+      Schema property = schema.getProperties() == null ? null : schema.getProperties().get(key);
+      return property != null ? property : schema.getAdditionalProperties();
     }
 
     @Override
@@ -268,9 +486,9 @@ public class JsonPrettifier {
           if (!hasNext()) {
             throw new NoSuchElementException();
           }
-          Widget next =
-              formatValue(service, backingObj, backingObj.keys().get(nextOffset), depth,
-                  nextOffset + 1 < backingObj.keys().length(), linkFactory);
+          String key = backingObj.keys().get(nextOffset);
+          Widget next = formatValue(service, backingObj, key, depth,
+              nextOffset + 1 < backingObj.keys().length(), linkFactory, propertySchema(key));
           nextOffset++;
           return next;
         }
@@ -306,6 +524,23 @@ public class JsonPrettifier {
   public static void prettify(
       ApiService service, Panel destination, String jsonString, PrettifierLinkFactory linkFactory)
       throws JsonFormatException {
+    prettify(service, destination, jsonString, linkFactory, null);
+  }
+
+  /**
+   * Entry point for the formatter when the schema of the JSON is known. The schema is walked
+   * alongside the data, so that only values declared as links are resolved, only objects of a
+   * declared kind get a menu of compatible methods, and keys show their description on hover.
+   *
+   * @param destination Destination GWT object where the results will be placed
+   * @param jsonString String to format
+   * @param linkFactory Which links factory should be used when generating links and navigation
+   *        menus.
+   * @param schema Schema of the root object, or {@code null} to format it without one.
+   * @throws JsonFormatException when parsing the Json causes an error
+   */
+  public static void prettify(ApiService service, Panel destination, String jsonString,
+      PrettifierLinkFactory linkFactory, @Nullable Schema schema) throws JsonFormatException {
 
     // Make sure the user set a style before invoking prettify.
     Preconditions.checkState(style != null, "Must call setStyle before using.");
@@ -329,10 +564,13 @@ public class JsonPrettifier {
 
       try {
         DynamicJso root = JsonUtils.<DynamicJso>safeEval(jsonString);
-        Collection<ApiMethod> compatibleMethods = computeCompatibleMethods(root, service);
+        Schema rootSchema = followRefs(service, schema);
+        Collection<ApiMethod> compatibleMethods =
+            computeCompatibleMethods(root, service, rootSchema);
         Widget menuForMethods = createRequestMenu(compatibleMethods, service, root, linkFactory);
-        JsObjectIterable rootObject = new JsObjectIterable(service, root, 1, linkFactory);
-        Widget object = formatGroup(rootObject, "", 0, "{", "}", false, menuForMethods);
+        JsObjectIterable rootObject =
+            new JsObjectIterable(service, root, 1, linkFactory, rootSchema);
+        Widget object = formatGroup(rootObject, "", 0, "{", "}", false, menuForMethods, null);
         destination.add(object);
       } catch (IllegalArgumentException e) {
         // JsonUtils will throw an IllegalArgumentException when it gets invalid
@@ -342,18 +580,54 @@ public class JsonPrettifier {
     }
   }
 
+  /**
+   * Expand every collapsed ancestor of a node in a formatted response and return the widget for the
+   * node.
+   *
+   * @param destination Panel which was passed to {@link #prettify}.
+   * @param ordinals Positions of the node and its ancestors among their siblings, from the top level
+   *        down, as recorded by {@link ResponseIndex#getOrdinals(int)}.
+   * @return Widget for the node, or {@code null} if the response was not formatted or it does not
+   *         contain the node.
+   */
+  @Nullable
+  public static Widget reveal(FlowPanel destination, int[] ordinals) {
+    Widget node = destination.getWidgetCount() == 0 ? null : destination.getWidget(0);
+    for (int ordinal : ordinals) {
+      if (!(node instanceof GroupPanel)) {
+        // Either the response was not formatted or the path leads through a primitive value.
+        return null;
+      }
+
+      GroupPanel group = (GroupPanel) node;
+      group.expand();
+      node = group.getChild(ordinal);
+    }
+    return node;
+  }
+
   /**
    * Check the provided javascript object for a "kind" key and, and find all methods from the
    * provided service that accept the specified type for the request body.
    *
    * @param object Object which is checked against other methods.
    * @param service Service for which we want to find compatible methods.
+   * @param schema Schema of the object, or {@code null} if it is not known.
    * @return Matching methods that accept the object type as an input, or an empty collection.
    */
   private static Collection<ApiMethod> computeCompatibleMethods(
-      DynamicJso object, ApiService service) {
+      DynamicJso object, ApiService service, @Nullable Schema schema) {
+
+    String kind;
+    if (schema != null) {
+      // The schema declares which kind the object is, if any, so the object need not be inspected.
+      Schema kindProperty =
+          schema.getProperties() == null ? null : schema.getProperties().get(Schema.KIND_KEY);
+      kind = kindProperty == null ? null : kindProperty.getDefault();
+    } else {
+      kind = object.getString(Schema.KIND_KEY);
+    }
 
-    String kind = object.getString(Schema.KIND_KEY);
     if (kind != null) {
       return service.usagesOfKind(kind);
     } else {
@@ -370,9 +644,8 @@ public class JsonPrettifier {
       String openGroup,
       String closeGroup,
       boolean hasSeparator,
-      @Nullable Widget menuButtonForReuse) {
-
-    FlowPanel object = new FlowPanel();
+      @Nullable Widget menuButtonForReuse,
+      @Nullable String description) {
 
     FlowPanel titlePanel = new FlowPanel();
     Label paddingSpaces = new InlineLabel(indentation(depth));
@@ -380,11 +653,12 @@ public class JsonPrettifier {
 
     Label titleLabel = new InlineLabel(title + openGroup);
     titleLabel.addStyleName(style.jsonKey());
+    if (!Strings.isNullOrEmpty(description)) {
+      titleLabel.setTitle(description);
+    }
     Collapser.decorateCollapserControl(titleLabel, true);
     titlePanel.add(titleLabel);
 
-    object.add(titlePanel);
-
     FlowPanel objectContents = new FlowPanel();
 
     if (menuButtonForReuse != null) {
@@ -395,9 +669,13 @@ public class JsonPrettifier {
     for (Widget child : objIterable) {
       objectContents.add(child);
     }
-    object.add(objectContents);
 
     InlineLabel placeholder = new InlineLabel(indentation(depth + 1) + PLACEHOLDER_TEXT);
+    FlowPanel object = new GroupPanel(
+        titleLabel, objectContents, placeholder, menuButtonForReuse == null ? 0 : 1);
+    object.add(titlePanel);
+    object.add(objectContents);
+
     ClickHandler collapsingHandler = new Collapser(objectContents, placeholder, titleLabel);
     placeholder.setVisible(false);
     placeholder.addClickHandler(collapsingHandler);
@@ -420,44 +698,49 @@ public class JsonPrettifier {
       int index,
       int depth,
       boolean hasSeparator,
-      PrettifierLinkFactory linkFactory) {
+      PrettifierLinkFactory linkFactory,
+      @Nullable Schema itemSchema) {
 
     JsType type = obj.typeofIndex(index);
     if (type == null) {
-      return simpleInline("", "null", style.jsonNull(), depth, hasSeparator);
+      return simpleInline("", "null", style.jsonNull(), depth, hasSeparator, null);
     }
     String title = "";
     switch (type) {
       case NUMBER:
-        return simpleInline(
-            title, String.valueOf(obj.getDouble(index)), style.jsonNumber(), depth, hasSeparator);
+        return simpleInline(title, String.valueOf(obj.getDouble(index)), style.jsonNumber(),
+            depth, hasSeparator, null);
 
       case INTEGER:
-        return simpleInline(
-            title, String.valueOf(obj.getInteger(index)), style.jsonNumber(), depth, hasSeparator);
+        return simpleInline(title, String.valueOf(obj.getInteger(index)), style.jsonNumber(),
+            depth, hasSeparator, null);
 
       case BOOLEAN:
-        return simpleInline(
-            title, String.valueOf(obj.getBoolean(index)), style.jsonBoolean(), depth, hasSeparator);
+        return simpleInline(title, String.valueOf(obj.getBoolean(index)), style.jsonBoolean(),
+            depth, hasSeparator, null);
 
       case STRING:
-        return inlineWidget(
-            title, formatString(service, obj.getString(index), linkFactory), depth, hasSeparator);
+        return inlineWidget(title,
+            formatString(service, obj.getString(index), linkFactory, null, itemSchema), depth,
+            hasSeparator, null);
 
       case ARRAY:
-        return formatGroup(
-            new JsArrayIterable(service, obj.<DynamicJsArray>get(index), depth + 1, linkFactory),
-            title, depth, "[", "]", hasSeparator, null);
+        return formatGroup(new JsArrayIterable(
+            service, obj.<DynamicJsArray>get(index), depth + 1, linkFactory, itemSchema),
+            title, depth, "[", "]", hasSeparator, null, null);
 
       case OBJECT:
         DynamicJso subObject = obj.<DynamicJso>get(index);
 
         // Determine if this object can be used as the request parameter for another method.
-        Collection<ApiMethod> compatibleMethods = computeCompatibleMethods(subObject, service);
+        Collection<ApiMethod> compatibleMethods =
+            computeCompatibleMethods(subObject, service, itemSchema);
         Widget menuFromMethods =
             createRequestMenu(compatibleMethods, service, subObject, linkFactory);
-        JsObjectIterable objIter = new JsObjectIterable(service, subObject, depth + 1, linkFactory);
-        return formatGroup(objIter, title, depth, "{", "}", hasSeparator, menuFromMethods);
+        JsObjectIterable objIter =
+            new JsObjectIterable(service, subObject, depth + 1, linkFactory, itemSchema);
+        return formatGroup(
+            objIter, title, depth, "{", "}", hasSeparator, menuFromMethods, null);
     }
     return new FlowPanel();
   }
@@ -467,61 +750,73 @@ public class JsonPrettifier {
       String key,
       int depth,
       boolean hasSeparator,
-      PrettifierLinkFactory linkFactory) {
+      PrettifierLinkFactory linkFactory,
+      @Nullable Schema property) {
+
+    // The description of the property is more specific than that of the schema it references.
+    Schema valueSchema = followRefs(service, property);
+    String description = property == null ? null : property.getDescription();
+    if (description == null && valueSchema != null) {
+      description = valueSchema.getDescription();
+    }
 
     JsType type = obj.typeofKey(key);
     if (type == null) {
-      return simpleInline(titleString(key), "null", style.jsonNull(), depth, hasSeparator);
+      return simpleInline(
+          titleString(key), "null", style.jsonNull(), depth, hasSeparator, description);
     }
     String title = titleString(key);
     switch (type) {
       case NUMBER:
-        return simpleInline(
-            title, String.valueOf(obj.getDouble(key)), style.jsonNumber(), depth, hasSeparator);
+        return simpleInline(title, String.valueOf(obj.getDouble(key)), style.jsonNumber(), depth,
+            hasSeparator, description);
 
       case INTEGER:
-        return simpleInline(
-            title, String.valueOf(obj.getInteger(key)), style.jsonNumber(), depth, hasSeparator);
+        return simpleInline(title, String.valueOf(obj.getInteger(key)), style.jsonNumber(), depth,
+            hasSeparator, description);
 
       case BOOLEAN:
-        return simpleInline(
-            title, String.valueOf(obj.getBoolean(key)), style.jsonBoolean(), depth, hasSeparator);
+        return simpleInline(title, String.valueOf(obj.getBoolean(key)), style.jsonBoolean(),
+            depth, hasSeparator, description);
 
       case STRING:
-        return inlineWidget(
-            title, formatString(service, obj.getString(key), linkFactory), depth, hasSeparator);
+        return inlineWidget(title,
+            formatString(service, obj.getString(key), linkFactory, key, valueSchema), depth,
+            hasSeparator, description);
 
       case ARRAY:
-        return formatGroup(
-            new JsArrayIterable(service, obj.<DynamicJsArray>get(key), depth + 1, linkFactory),
-            title, depth, "[", "]", hasSeparator, null);
+        Schema itemSchema = valueSchema == null ? null : followRefs(service, valueSchema.getItems());
+        return formatGroup(new JsArrayIterable(
+            service, obj.<DynamicJsArray>get(key), depth + 1, linkFactory, itemSchema),
+            title, depth, "[", "]", hasSeparator, null, description);
 
       case OBJECT:
         DynamicJso subObject = obj.<DynamicJso>get(key);
-
-        // Determine if this object can be used as the request parameter for another method.
-        Collection<ApiMethod> compatibleMethods = computeCompatibleMethods(subObject, service);
-        JsObjectIterable objIter = new JsObjectIterable(service, subObject, depth + 1, linkFactory);
-        return formatGroup(objIter, title, depth, "{", "}", hasSeparator, null);
+        JsObjectIterable objIter =
+            new JsObjectIterable(service, subObject, depth + 1, linkFactory, valueSchema);
+        return formatGroup(objIter, title, depth, "{", "}", hasSeparator, null, description);
     }
     return new FlowPanel();
   }
 
-  private static Widget simpleInline(
-      String title, String inlineText, String style, int depth, boolean hasSeparator) {
+  private static Widget simpleInline(String title, String inlineText, String style, int depth,
+      boolean hasSeparator, @Nullable String description) {
     Widget valueLabel = new InlineLabel(inlineText);
     valueLabel.addStyleName(style);
-    return inlineWidget(title, Lists.newArrayList(valueLabel), depth, hasSeparator);
+    return inlineWidget(title, Lists.newArrayList(valueLabel), depth, hasSeparator, description);
   }
 
-  private static Widget inlineWidget(
-      String title, List<Widget> inlineWidgets, int depth, boolean hasSeparator) {
+  private static Widget inlineWidget(String title, List<Widget> inlineWidgets, int depth,
+      boolean hasSeparator, @Nullable String description) {
 
     FlowPanel inlinePanel = new FlowPanel();
 
     StringBuilder keyText = new StringBuilder(indentation(depth)).append(title);
     InlineLabel keyLabel = new InlineLabel(keyText.toString());
     keyLabel.addStyleName(style.jsonKey());
+    if (!Strings.isNullOrEmpty(description)) {
+      keyLabel.setTitle(description);
+    }
     inlinePanel.add(keyLabel);
 
     for (Widget child : inlineWidgets) {
@@ -539,35 +834,13 @@ public class JsonPrettifier {
     return Strings.repeat(" ", depth);
   }
 
-  private static List<Widget> formatString(
-      ApiService service, String rawText, PrettifierLinkFactory linkFactory) {
+  private static List<Widget> formatString(ApiService service, String rawText,
+      PrettifierLinkFactory linkFactory, @Nullable String key, @Nullable Schema schema) {
 
-    if (isLink(rawText)) {
+    if (mayBeLink(key, schema) && isLink(rawText)) {
       List<Widget> response = Lists.newArrayList();
       response.add(new InlineLabel("\""));
-
-      boolean createdExplorerLink = false;
-      try {
-        ApiMethod method = getMethodForUrl(service, rawText);
-        if (method != null) {
-          String explorerLink = createExplorerLink(service, rawText, method);
-          Widget linkObject = linkFactory.generateAnchor(rawText, explorerLink);
-          linkObject.addStyleName(style.jsonStringExplorerLink());
-          response.add(linkObject);
-          createdExplorerLink = true;
-        }
-      } catch (IndexOutOfBoundsException e) {
-        // Intentionally blank - this will only happen when iterating the method
-        // url template in parallel with the url components and you run out of
-        // components
-      }
-
-      if (!createdExplorerLink) {
-        Anchor linkObject = new Anchor(rawText, rawText, OPEN_IN_NEW_WINDOW);
-        linkObject.addStyleName(style.jsonStringLink());
-        response.add(linkObject);
-      }
-
+      response.add(new DeferredLink(service, rawText, linkFactory));
       response.add(new InlineLabel("\""));
       return response;
     } else {
@@ -578,6 +851,33 @@ public class JsonPrettifier {
     }
   }
 
+  /**
+   * Returns whether a string value could be a link. When the schema of the value is known, only
+   * values which it declares as URIs, or properties named like {@code selfLink}, are considered.
+   * Without a schema every value is a candidate.
+   */
+  @VisibleForTesting
+  static boolean mayBeLink(@Nullable String key, @Nullable Schema schema) {
+    if (schema == null) {
+      return true;
+    }
+
+    String format = schema.getFormat();
+    if (URI_FORMAT.equals(format) || URL_FORMAT.equals(format)) {
+      return true;
+    }
+    return key != null && (key.endsWith("Link") || key.endsWith("Url") || key.equals("url")
+        || key.equals("href"));
+  }
+
+  /**
+   * If the schema is a reference, return the schema that it references.
+   */
+  @Nullable
+  private static Schema followRefs(ApiService service, @Nullable Schema schema) {
+    return schema == null ? null : schema.followRefs(service.getSchemas());
+  }
+
   private static String titleString(String name) {
     return "\"" + name + "\": ";
   }
@@ -669,7 +969,8 @@ public class JsonPrettifier {
 
   /**
    * Create a drop down menu that allows the user to navigate to compatible methods for the
-   * specified resource.
+   * specified resource. Only the button is created here, the menu contents are built the first time
+   * that the button is clicked.
    *
    * @param methods Methods for which to build the menu.
    * @param service Service to which the methods correspond.
@@ -678,78 +979,19 @@ public class JsonPrettifier {
    * @return A button that will show the menu that was generated or {@code null} if there are no
    *         compatible methods.
    */
-  private static PushButton createRequestMenu(final Collection<ApiMethod> methods,
-      final ApiService service, DynamicJso objectToPackage, PrettifierLinkFactory linkFactory) {
+  private static PushButton createRequestMenu(Collection<ApiMethod> methods,
+      ApiService service, DynamicJso objectToPackage, PrettifierLinkFactory linkFactory) {
 
     // Determine if a menu even needs to be generated.
     if (methods.isEmpty()) {
       return null;
     }
 
-    // Create the parameters that will be passed to the destination menu.
-    String resourceContents = new JSONObject(objectToPackage).toString();
-    final Multimap<String, String> resourceParams =
-        ImmutableMultimap.of(UrlBuilder.BODY_QUERY_PARAM_KEY, resourceContents);
-
-    // Create the menu itself.
-    FlowPanel menuContents = new FlowPanel();
-
-    // Add a description of what the menu does.
-    Label header = new Label("Use this resource in one of the following methods:");
-    header.addStyleName(style.dropDownMenuItem());
-    menuContents.add(header);
-
-    // Add a menu item for each method.
-    for (ApiMethod method : methods) {
-      PushButton methodItem = new PushButton();
-      methodItem.addStyleName(style.dropDownMenuItem());
-      methodItem.addStyleName(style.selectableDropDownMenuItem());
-      methodItem.setText(method.getId());
-      menuContents.add(methodItem);
-
-      // When clicked, Navigate to the menu item.
-      UrlBuilder builder = new UrlBuilder();
-      String newUrl = builder
-          .addRootNavigationItem(RootNavigationItem.ALL_VERSIONS)
-          .addService(service.getName(), service.getVersion())
-          .addMethodName(method.getId())
-          .addQueryParams(resourceParams)
-          .toString();
-      methodItem.addClickHandler(linkFactory.generateMenuHandler(newUrl));
-    }
-
-    // Create the panel which will be disclosed.
-    final PopupPanel popupMenu = new PopupPanel(/* auto hide */ true);
-    popupMenu.setStyleName(style.dropDownMenuPopup());
-
-    FocusPanel focusContents = new FocusPanel();
-    focusContents.addMouseOutHandler(new MouseOutHandler() {
-      @Override
-      public void onMouseOut(MouseOutEvent event) {
-        popupMenu.hide();
-      }
-    });
-    focusContents.setWidget(menuContents);
-
-    popupMenu.setWidget(focusContents);
-
     // Create the button which will disclose the menu.
-    final PushButton menuButton = new PushButton(new Image(resources.downArrow()));
+    PushButton menuButton = new PushButton(new Image(resources.downArrow()));
     menuButton.addStyleName(style.reusableResourceButton());
-
-    menuButton.addClickHandler(new ClickHandler() {
-      @Override
-      public void onClick(ClickEvent event) {
-        popupMenu.setPopupPositionAndShow(new PositionCallback() {
-          @Override
-          public void setPosition(int offsetWidth, int offsetHeight) {
-            popupMenu.setPopupPosition(
-                menuButton.getAbsoluteLeft() + menuButton.getOffsetWidth() - offsetWidth,
-                menuButton.getAbsoluteTop() + menuButton.getOffsetHeight());
-          }
-        });
-      }
-    });
+    menuButton.addClickHandler(
+        new DeferredRequestMenu(methods, service, objectToPackage, linkFactory, menuButton));
 
     // Return only the button to the caller.
     return menuButton;
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Model backing a table view of an array of objects. Each object is a row and the union of the top
+ * level keys of all objects are the columns.
+ *
+ * <p>
+ * Cell values are only read from the {@link RowSource} when a column is first sorted or filtered
+ * on, at which point an index of that column is built and kept for the lifetime of the model.
+ * </p>
+ *
+ */
+public class JsonTableModel {
+
+  /**
+   * Source of the rows in the table.
+   */
+  public interface RowSource {
+    /** Returns the number of rows. */
+    int getRowCount();
+
+    /** Returns the top level keys of the specified row. */
+    Iterable<String> getKeys(int row);
+
+    /** Returns the text to display for the cell, or {@code null} if the row has no such key. */
+    @Nullable
+    String getCellText(int row, String column);
+
+    /** Returns the numeric value of the cell, or {@link Double#NaN} if it is not a number. */
+    double getCellNumber(int row, String column);
+  }
+
+  /**
+   * Text and numeric values of a single column, by row.
+   */
+  private class ColumnIndex {
+    private final String[] texts;
+    private final String[] lowerCaseTexts;
+    private final double[] numbers;
+    private int[] ascendingOrder;
+
+    ColumnIndex(String column) {
+      int rowCount = source.getRowCount();
+      texts = new String[rowCount];
+      lowerCaseTexts = new String[rowCount];
+      numbers = new double[rowCount];
+      for (int row = 0; row < rowCount; row++) {
+        String text = source.getCellText(row, column);
+        texts[row] = text;
+        lowerCaseTexts[row] = text == null ? null : text.toLowerCase();
+        numbers[row] = source.getCellNumber(row, column);
+      }
+    }
+
+    int compare(int row1, int row2) {
+      // Missing values always sort last.
+      if (texts[row1] == null || texts[row2] == null) {
+        return texts[row1] == null ? (texts[row2] == null ? 0 : 1) : -1;
+      }
+      if (!Double.isNaN(numbers[row1]) && !Double.isNaN(numbers[row2])) {
+        return Double.compare(numbers[row1], numbers[row2]);
+      }
+      return texts[row1].compareTo(texts[row2]);
+    }
+
+    int[] getAscendingOrder() {
+      if (ascendingOrder == null) {
+        Integer[] rows = new Integer[texts.length];
+        for (int i = 0; i < rows.length; i++) {
+          rows[i] = i;
+        }
+        Arrays.sort(rows, new Comparator<Integer>() {
+          @Override
+          public int compare(Integer row1, Integer row2) {
+            return ColumnIndex.this.compare(row1, row2);
+          }
+        });
+
+        ascendingOrder = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+          ascendingOrder[i] = rows[i];
+        }
+      }
+      return ascendingOrder;
+    }
+
+    boolean contains(int row, String lowerCaseFilter) {
+      return lowerCaseTexts[row] != null && lowerCaseTexts[row].contains(lowerCaseFilter);
+    }
+  }
+
+  private final RowSource source;
+  private final List<String> columns;
+  private final Map<String, ColumnIndex> columnIndices = Maps.newHashMap();
+
+  private String sortColumn = null;
+  private boolean sortAscending = true;
+  private String filter = "";
+
+  /** Whether each row matches the current filter. */
+  private boolean[] matches;
+
+  /** Rows in display order. */
+  private int[] view;
+  private int viewSize;
+
+  public JsonTableModel(RowSource source) {
+    this.source = Preconditions.checkNotNull(source);
+
+    // Preserve the order in which keys are first seen, it usually follows the schema.
+    Set<String> keys = Sets.newLinkedHashSet();
+    for (int row = 0; row < source.getRowCount(); row++) {
+      for (String key : source.getKeys(row)) {
+        keys.add(key);
+      }
+    }
+    this.columns = ImmutableList.copyOf(keys);
+
+    matches = new boolean[source.getRowCount()];
+    Arrays.fill(matches, true);
+    view = new int[source.getRowCount()];
+    updateView();
+  }
+
+  /** Returns the columns of the table, in display order. */
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  /** Returns the column by which rows are sorted, or {@code null} if they are in source order. */
+  @Nullable
+  public String getSortColumn() {
+    return sortColumn;
+  }
+
+  public boolean isSortAscending() {
+    return sortAscending;
+  }
+
+  /**
+   * Sort rows by the specified column, or restore the source order if the column is {@code null}.
+   */
+  public void setSort(@Nullable String column, boolean ascending) {
+    Preconditions.checkArgument(column == null || columns.contains(column));
+    sortColumn = column;
+    sortAscending = ascending;
+    updateView();
+  }
+
+  /**
+   * Only show rows where at least one cell contains the filter text, ignoring case.
+   */
+  public void setFilter(String newFilter) {
+    String lowerCaseFilter = newFilter.toLowerCase();
+    if (lowerCaseFilter.equals(filter)) {
+      return;
+    }
+
+    // A filter which contains the previous one can only match a subset of its rows.
+    boolean narrowing = lowerCaseFilter.contains(filter);
+    for (int row = 0; row < matches.length; row++) {
+      if (narrowing && !matches[row]) {
+        continue;
+      }
+      matches[row] = rowContains(row, lowerCaseFilter);
+    }
+
+    filter = lowerCaseFilter;
+    updateView();
+  }
+
+  /** Returns the number of rows which pass the filter. */
+  public int getViewRowCount() {
+    return viewSize;
+  }
+
+  /**
+   * Returns the source row which is displayed at the specified position.
+   */
+  public int getViewRow(int position) {
+    Preconditions.checkElementIndex(position, viewSize);
+    return view[position];
+  }
+
+  private boolean rowContains(int row, String lowerCaseFilter) {
+    if (lowerCaseFilter.isEmpty()) {
+      return true;
+    }
+    for (String column : columns) {
+      if (getColumnIndex(column).contains(row, lowerCaseFilter)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ColumnIndex getColumnIndex(String column) {
+    ColumnIndex index = columnIndices.get(column);
+    if (index == null) {
+      index = new ColumnIndex(column);
+      columnIndices.put(column, index);
+    }
+    return index;
+  }
+
+  private void updateView() {
+    int[] order = sortColumn == null ? null : getColumnIndex(sortColumn).getAscendingOrder();
+    int rowCount = matches.length;
+    viewSize = 0;
+    for (int i = 0; i < rowCount; i++) {
+      int row;
+      if (order == null) {
+        row = i;
+      } else {
+        row = sortAscending ? order[i] : order[rowCount - 1 - i];
+      }
+
+      if (matches[row]) {
+        view[viewSize++] = row;
+      }
+    }
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.Resources.Css;
+import com.google.api.explorer.client.base.Schema;
+import com.google.api.explorer.client.base.dynamicjso.DynamicJsArray;
+import com.google.api.explorer.client.base.dynamicjso.DynamicJso;
+import com.google.api.explorer.client.base.dynamicjso.JsType;
+import com.google.api.explorer.client.history.JsonTableModel.RowSource;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.KeyUpEvent;
+import com.google.gwt.event.dom.client.KeyUpHandler;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
+import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
+import com.google.gwt.user.client.ui.Composite;
+import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.HTML;
+import com.google.gwt.user.client.ui.ScrollPanel;
+import com.google.gwt.user.client.ui.TextBox;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Table view of an array of objects found in a response. Only the rows which are scrolled into view
+ * are rendered, and cells are formatted as they are rendered, so the cost of showing the table does
+ * not depend on the length of the array.
+ *
+ */
+public class JsonTableView extends Composite {
+
+  /** Height of every row, rows must not wrap for the scroll offsets to line up. */
+  private static final int ROW_HEIGHT_PX = 20;
+  private static final int VISIBLE_ROWS = 20;
+
+  /** Rows rendered below the visible ones so that small scrolls do not show blank space. */
+  private static final int OVERSCAN_ROWS = 10;
+
+  /** Number of elements inspected when inferring whether an array holds objects. */
+  private static final int INFERENCE_SAMPLE_SIZE = 20;
+  private static final int MIN_TABLE_ROWS = 2;
+
+  private static final String COLUMN_ATTRIBUTE = "data-column";
+  private static final String ITEMS_KEY = "items";
+
+  /**
+   * Row source which reads cells straight from the parsed array.
+   */
+  private static class JsoRowSource implements RowSource {
+    private final DynamicJsArray array;
+
+    JsoRowSource(DynamicJsArray array) {
+      this.array = array;
+    }
+
+    @Override
+    public int getRowCount() {
+      return array.length();
+    }
+
+    @Override
+    public Iterable<String> getKeys(int row) {
+      DynamicJso object = getRow(row);
+      if (object == null) {
+        return ImmutableList.of();
+      }
+
+      JsArrayString keys = object.keys();
+      ImmutableList.Builder<String> builder = ImmutableList.builder();
+      for (int i = 0; i < keys.length(); i++) {
+        builder.add(keys.get(i));
+      }
+      return builder.build();
+    }
+
+    @Override
+    public String getCellText(int row, String column) {
+      DynamicJso object = getRow(row);
+      JsType type = object == null ? null : object.typeofKey(column);
+      if (type == null) {
+        return null;
+      }
+
+      switch (type) {
+        case ARRAY:
+          return "[" + object.<DynamicJsArray>get(column).length() + "]";
+        case OBJECT:
+          return "{...}";
+        case BOOLEAN:
+          return String.valueOf(object.getBoolean(column));
+        case INTEGER:
+          return String.valueOf(object.getInteger(column));
+        case NUMBER:
+          return String.valueOf(object.getDouble(column));
+        default:
+          return object.getString(column);
+      }
+    }
+
+    @Override
+    public double getCellNumber(int row, String column) {
+      DynamicJso object = getRow(row);
+      JsType type = object == null ? null : object.typeofKey(column);
+      return type == JsType.INTEGER || type == JsType.NUMBER
+          ? object.getDouble(column) : Double.NaN;
+    }
+
+    private String getCellStyle(int row, String column, Css style) {
+      DynamicJso object = getRow(row);
+      JsType type = object == null ? null : object.typeofKey(column);
+      if (type == null) {
+        return style.jsonNull();
+      }
+
+      switch (type) {
+        case BOOLEAN:
+          return style.jsonBoolean();
+        case INTEGER:
+        case NUMBER:
+          return style.jsonNumber();
+        case STRING:
+          return style.jsonString();
+        default:
+          return style.jsonObject();
+      }
+    }
+
+    private DynamicJso getRow(int row) {
+      return array.typeofIndex(row) == JsType.OBJECT ? array.<DynamicJso>get(row) : null;
+    }
+  }
+
+  private final Css style;
+  private final JsoRowSource source;
+  private final JsonTableModel model;
+
+  private final TextBox filterBox = new TextBox();
+  private final ScrollPanel viewport = new ScrollPanel();
+  private final FlowPanel spacer = new FlowPanel();
+  private final HTML rows = new HTML();
+
+  public JsonTableView(DynamicJsArray array, Css style) {
+    this.style = style;
+    this.source = new JsoRowSource(array);
+    this.model = new JsonTableModel(source);
+
+    filterBox.addStyleName(style.jsonTableFilter());
+    filterBox.addKeyUpHandler(new KeyUpHandler() {
+      @Override
+      public void onKeyUp(KeyUpEvent event) {
+        model.setFilter(filterBox.getText());
+        viewport.setVerticalScrollPosition(0);
+        render();
+      }
+    });
+
+    rows.addStyleName(style.jsonTableRows());
+    rows.addClickHandler(new ClickHandler() {
+      @Override
+      public void onClick(ClickEvent event) {
+        Element target = Element.as(event.getNativeEvent().getEventTarget());
+        String columnAttribute = target.getAttribute(COLUMN_ATTRIBUTE);
+        if (!Strings.isNullOrEmpty(columnAttribute)) {
+          String column = model.getColumns().get(Integer.parseInt(columnAttribute));
+          boolean ascending = !column.equals(model.getSortColumn()) || !model.isSortAscending();
+          model.setSort(column, ascending);
+          render();
+        }
+      }
+    });
+
+    spacer.addStyleName(style.jsonTableSpacer());
+    spacer.add(rows);
+    viewport.add(spacer);
+    viewport.addStyleName(style.jsonTableViewport());
+    viewport.addScrollHandler(new ScrollHandler() {
+      @Override
+      public void onScroll(ScrollEvent event) {
+        render();
+      }
+    });
+
+    FlowPanel container = new FlowPanel();
+    container.add(filterBox);
+    container.add(viewport);
+    initWidget(container);
+
+    render();
+  }
+
+  /**
+   * Scroll the row of the specified array element into view, clearing the filter if it hides the
+   * row.
+   */
+  public void scrollToRow(int row) {
+    int position = findPosition(row);
+    if (position == -1) {
+      filterBox.setText("");
+      model.setFilter("");
+      position = findPosition(row);
+    }
+
+    if (position != -1) {
+      viewport.setVerticalScrollPosition(position * ROW_HEIGHT_PX);
+      render();
+    }
+  }
+
+  private int findPosition(int row) {
+    for (int position = 0; position < model.getViewRowCount(); position++) {
+      if (model.getViewRow(position) == row) {
+        return position;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Render the header and the rows which are currently scrolled into view.
+   */
+  private void render() {
+    int rowCount = model.getViewRowCount();
+    spacer.getElement().getStyle().setHeight((rowCount + 1) * ROW_HEIGHT_PX, Unit.PX);
+
+    int first = Math.min(viewport.getVerticalScrollPosition() / ROW_HEIGHT_PX, rowCount);
+    int last = Math.min(first + VISIBLE_ROWS + OVERSCAN_ROWS, rowCount);
+    List<String> columns = model.getColumns();
+
+    SafeHtmlBuilder html = new SafeHtmlBuilder();
+    html.appendHtmlConstant("<table class=\"" + style.jsonTable() + "\"><tr>");
+    for (int i = 0; i < columns.size(); i++) {
+      String column = columns.get(i);
+      html.appendHtmlConstant("<th " + COLUMN_ATTRIBUTE + "=\"" + i + "\">");
+      html.appendEscaped(column);
+      if (column.equals(model.getSortColumn())) {
+        html.appendEscaped(model.isSortAscending() ? " \u25B2" : " \u25BC");
+      }
+      html.appendHtmlConstant("</th>");
+    }
+    html.appendHtmlConstant("</tr>");
+
+    for (int position = first; position < last; position++) {
+      int row = model.getViewRow(position);
+      html.appendHtmlConstant("<tr>");
+      for (String column : columns) {
+        String text = source.getCellText(row, column);
+        html.appendHtmlConstant("<td><span class=\"" + source.getCellStyle(row, column, style)
+            + "\">");
+        html.appendEscaped(text == null ? "" : text);
+        html.appendHtmlConstant("</span></td>");
+      }
+      html.appendHtmlConstant("</tr>");
+    }
+    html.appendHtmlConstant("</table>");
+
+    rows.setHTML(html.toSafeHtml());
+    rows.getElement().getStyle().setTop(first * ROW_HEIGHT_PX, Unit.PX);
+  }
+
+  /**
+   * Find the top level key of the response whose value should be shown as a table. The response
+   * schema is consulted first, and if that does not identify an array of objects the first few
+   * elements of each top level array are inspected instead.
+   *
+   * @param response Parsed response.
+   * @param responseSchema Schema of the response, or {@code null} if there is none.
+   * @param allSchemas All schemas of the service, used to follow references.
+   * @return Key of the array to show as a table, or {@code null} if there is none.
+   */
+  @Nullable
+  public static String findTableKey(
+      DynamicJso response, @Nullable Schema responseSchema, Map<String, Schema> allSchemas) {
+    Schema schema = responseSchema == null ? null : responseSchema.followRefs(allSchemas);
+    if (schema != null && schema.getProperties() != null) {
+      String found = null;
+      for (Map.Entry<String, Schema> property : schema.getProperties().entrySet()) {
+        Schema propertySchema = property.getValue().followRefs(allSchemas);
+        Schema items = propertySchema == null || propertySchema.getType() != Schema.Type.ARRAY
+            ? null : propertySchema.getItems();
+        Schema itemSchema = items == null ? null : items.followRefs(allSchemas);
+        if (itemSchema != null && itemSchema.getType() == Schema.Type.OBJECT
+            && isTableArray(response, property.getKey(), MIN_TABLE_ROWS)) {
+          // List responses conventionally keep their elements under "items".
+          if (ITEMS_KEY.equals(property.getKey())) {
+            return ITEMS_KEY;
+          }
+          found = found == null ? property.getKey() : found;
+        }
+      }
+      if (found != null) {
+        return found;
+      }
+    }
+
+    JsArrayString keys = response.keys();
+    for (int i = 0; i < keys.length(); i++) {
+      if (isTableArray(response, keys.get(i), INFERENCE_SAMPLE_SIZE)) {
+        return keys.get(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether the value of the key is an array with enough elements, and whether the first
+   * elements, up to the number specified, are all objects.
+   */
+  private static boolean isTableArray(DynamicJso response, String key, int sampleSize) {
+    if (response.typeofKey(key) != JsType.ARRAY) {
+      return false;
+    }
+
+    DynamicJsArray array = response.get(key);
+    if (array.length() < MIN_TABLE_ROWS) {
+      return false;
+    }
+
+    int sampled = Math.min(sampleSize, array.length());
+    for (int i = 0; i < sampled; i++) {
+      if (array.typeofIndex(i) != JsType.OBJECT) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
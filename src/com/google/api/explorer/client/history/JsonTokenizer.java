@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.base.Preconditions;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Single pass tokenizer for JSON text which never materializes the values it scans. Tokens are
+ * reported as offsets into the original string so that callers can highlight them without parsing
+ * the document.
+ *
+ * <p>
+ * While scanning, brackets are matched to compute which lines an object or array spans so that the
+ * lines can be collapsed. The tokenizer is lenient, anything which it does not understand is
+ * reported as {@link TokenType#UNKNOWN}.
+ * </p>
+ *
+ */
+public class JsonTokenizer {
+  /** Types of tokens which can be reported. */
+  public enum TokenType {
+    OPEN_OBJECT,
+    CLOSE_OBJECT,
+    OPEN_ARRAY,
+    CLOSE_ARRAY,
+    COLON,
+    COMMA,
+    KEY,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    WHITESPACE,
+    NEWLINE,
+    UNKNOWN,
+  }
+
+  private static final int NO_FOLD = -1;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String text;
+
+  private int position = 0;
+  private int tokenStart = 0;
+  private int tokenEnd = 0;
+  private int line = 0;
+
+  /** Lines on which the currently open brackets were opened. */
+  private int[] openLines = new int[INITIAL_CAPACITY];
+  private int openDepth = 0;
+
+  /** Line on which the bracket opened on the line of the index was closed, or {@link #NO_FOLD}. */
+  private int[] foldEnds = new int[INITIAL_CAPACITY];
+
+  public JsonTokenizer(String text) {
+    this.text = Preconditions.checkNotNull(text);
+  }
+
+  /**
+   * Returns whether there is any text left to tokenize.
+   */
+  public boolean hasNext() {
+    return position < text.length();
+  }
+
+  /**
+   * Scan the next token and return its type. The bounds of the token are then available from
+   * {@link #getTokenStart()} and {@link #getTokenEnd()}.
+   */
+  public TokenType next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    // The newline of the previous token belongs to the previous line.
+    if (tokenEnd > 0 && text.charAt(tokenEnd - 1) == '\n') {
+      line++;
+    }
+
+    tokenStart = position;
+    char c = text.charAt(position);
+    switch (c) {
+      case '{':
+        position++;
+        openBracket();
+        return finish(TokenType.OPEN_OBJECT);
+
+      case '[':
+        position++;
+        openBracket();
+        return finish(TokenType.OPEN_ARRAY);
+
+      case '}':
+        position++;
+        closeBracket();
+        return finish(TokenType.CLOSE_OBJECT);
+
+      case ']':
+        position++;
+        closeBracket();
+        return finish(TokenType.CLOSE_ARRAY);
+
+      case ':':
+        position++;
+        return finish(TokenType.COLON);
+
+      case ',':
+        position++;
+        return finish(TokenType.COMMA);
+
+      case '\n':
+        position++;
+        return finish(TokenType.NEWLINE);
+
+      case '"':
+        scanString();
+        return finish(isFollowedByColon() ? TokenType.KEY : TokenType.STRING);
+
+      default:
+        if (isWhitespace(c)) {
+          while (position < text.length() && isWhitespace(text.charAt(position))) {
+            position++;
+          }
+          return finish(TokenType.WHITESPACE);
+        } else if (c == '-' || isDigit(c)) {
+          scanNumber();
+          return finish(TokenType.NUMBER);
+        } else if (text.startsWith("true", position)) {
+          position += 4;
+          return finish(TokenType.BOOLEAN);
+        } else if (text.startsWith("false", position)) {
+          position += 5;
+          return finish(TokenType.BOOLEAN);
+        } else if (text.startsWith("null", position)) {
+          position += 4;
+          return finish(TokenType.NULL);
+        } else {
+          position++;
+          return finish(TokenType.UNKNOWN);
+        }
+    }
+  }
+
+  /** Returns the offset of the first character of the last token scanned. */
+  public int getTokenStart() {
+    return tokenStart;
+  }
+
+  /** Returns the offset after the last character of the last token scanned. */
+  public int getTokenEnd() {
+    return tokenEnd;
+  }
+
+  /** Returns the zero based line on which the last token scanned starts. */
+  public int getLine() {
+    return line;
+  }
+
+  /**
+   * Returns the line on which the object or array opened on the specified line is closed, or
+   * {@code -1} if nothing spanning multiple lines was opened there or it has not been closed yet.
+   * When several brackets are opened on the same line, the outermost one wins.
+   */
+  public int getFoldEnd(int openLine) {
+    return openLine < foldEnds.length && foldEnds[openLine] > openLine
+        ? foldEnds[openLine] : NO_FOLD;
+  }
+
+  private TokenType finish(TokenType type) {
+    tokenEnd = position;
+    return type;
+  }
+
+  private void openBracket() {
+    if (openDepth == openLines.length) {
+      openLines = grow(openLines, openDepth * 2);
+    }
+    openLines[openDepth++] = line;
+  }
+
+  private void closeBracket() {
+    if (openDepth == 0) {
+      // Unbalanced, nothing to match.
+      return;
+    }
+
+    int openLine = openLines[--openDepth];
+    if (openLine >= foldEnds.length) {
+      foldEnds = grow(foldEnds, Math.max(openLine + 1, foldEnds.length * 2));
+    }
+
+    // Outer brackets close last, so they replace inner ones opened on the same line.
+    if (line > openLine) {
+      foldEnds[openLine] = line;
+    }
+  }
+
+  private void scanString() {
+    // Skip the opening quote.
+    position++;
+    while (position < text.length()) {
+      char c = text.charAt(position);
+      if (c == '\\') {
+        position += 2;
+      } else if (c == '"') {
+        position++;
+        break;
+      } else if (c == '\n') {
+        // Unterminated string, stop at the end of the line.
+        break;
+      } else {
+        position++;
+      }
+    }
+    position = Math.min(position, text.length());
+  }
+
+  private void scanNumber() {
+    position++;
+    while (position < text.length()) {
+      char c = text.charAt(position);
+      if (isDigit(c) || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+        position++;
+      } else {
+        break;
+      }
+    }
+  }
+
+  private boolean isFollowedByColon() {
+    for (int i = position; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == ':') {
+        return true;
+      } else if (!isWhitespace(c)) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\r';
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static int[] grow(int[] array, int newLength) {
+    int[] grown = new int[newLength];
+    System.arraycopy(array, 0, grown, 0, array.length);
+    return grown;
+  }
+}
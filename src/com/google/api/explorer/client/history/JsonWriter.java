@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Writer which produces compact JSON text one token at a time, handing it to a {@link Sink} as it
+ * goes so that large documents never have to be built up as a tree first.
+ *
+ */
+public class JsonWriter {
+
+  /**
+   * Destination of the JSON text.
+   */
+  public interface Sink {
+    /**
+     * Append the specified text to the output.
+     */
+    void write(String text);
+  }
+
+  /**
+   * Sink which collects the text in memory.
+   */
+  public static class StringSink implements Sink {
+    private final StringBuilder builder = new StringBuilder();
+
+    @Override
+    public void write(String text) {
+      builder.append(text);
+    }
+
+    @Override
+    public String toString() {
+      return builder.toString();
+    }
+  }
+
+  private enum Scope {
+    OBJECT, ARRAY
+  }
+
+  private static final String HEX_DIGITS = "0123456789abcdef";
+  private static final char LINE_SEPARATOR = 0x2028;
+  private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+  /** Largest magnitude below which every whole double can be written as a long. */
+  private static final double MAX_EXACT_WHOLE = 1e15;
+
+  private final Sink sink;
+
+  /** Open objects and arrays, innermost last. */
+  private final List<Scope> scopes = Lists.newArrayList();
+
+  /** Whether the innermost scope already holds a value, and the next one needs a separator. */
+  private boolean hasValue = false;
+
+  /** Whether a name was written in the innermost object, whose value has yet to follow. */
+  private boolean hasName = false;
+
+  public JsonWriter(Sink sink) {
+    this.sink = Preconditions.checkNotNull(sink);
+  }
+
+  public JsonWriter beginObject() {
+    beforeValue();
+    return open(Scope.OBJECT, "{");
+  }
+
+  public JsonWriter endObject() {
+    Preconditions.checkState(!hasName, "Name without a value");
+    return close(Scope.OBJECT, "}");
+  }
+
+  public JsonWriter beginArray() {
+    beforeValue();
+    return open(Scope.ARRAY, "[");
+  }
+
+  public JsonWriter endArray() {
+    return close(Scope.ARRAY, "]");
+  }
+
+  /**
+   * Write the name of the next member of the innermost object.
+   */
+  public JsonWriter name(String name) {
+    Preconditions.checkNotNull(name);
+    Preconditions.checkState(currentScope() == Scope.OBJECT && !hasName, "Unexpected name");
+    if (hasValue) {
+      sink.write(",");
+    }
+    sink.write(quote(name));
+    sink.write(":");
+    hasName = true;
+    return this;
+  }
+
+  /**
+   * Write a string, or {@code null} if the value is {@code null}.
+   */
+  public JsonWriter value(@Nullable String value) {
+    beforeValue();
+    sink.write(value == null ? "null" : quote(value));
+    return this;
+  }
+
+  public JsonWriter value(long value) {
+    beforeValue();
+    sink.write(Long.toString(value));
+    return this;
+  }
+
+  /**
+   * Write a number, or {@code null} if the value is not finite since JSON has no representation for
+   * those.
+   */
+  public JsonWriter value(double value) {
+    beforeValue();
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      sink.write("null");
+    } else if (value == Math.rint(value) && Math.abs(value) < MAX_EXACT_WHOLE) {
+      sink.write(Long.toString((long) value));
+    } else {
+      sink.write(Double.toString(value));
+    }
+    return this;
+  }
+
+  public JsonWriter value(boolean value) {
+    beforeValue();
+    sink.write(value ? "true" : "false");
+    return this;
+  }
+
+  public JsonWriter nullValue() {
+    beforeValue();
+    sink.write("null");
+    return this;
+  }
+
+  private JsonWriter open(Scope scope, String bracket) {
+    sink.write(bracket);
+    scopes.add(scope);
+    hasValue = false;
+    return this;
+  }
+
+  private JsonWriter close(Scope scope, String bracket) {
+    Preconditions.checkState(currentScope() == scope, "Mismatched %s", bracket);
+    sink.write(bracket);
+    scopes.remove(scopes.size() - 1);
+    hasValue = true;
+    return this;
+  }
+
+  /**
+   * Write the separator which precedes a value, and check that a value is allowed here.
+   */
+  private void beforeValue() {
+    Scope scope = currentScope();
+    if (scope == Scope.OBJECT) {
+      Preconditions.checkState(hasName, "Value without a name");
+      hasName = false;
+    } else if (scope == Scope.ARRAY) {
+      if (hasValue) {
+        sink.write(",");
+      }
+    } else {
+      Preconditions.checkState(!hasValue, "Only one top level value may be written");
+    }
+    hasValue = true;
+  }
+
+  @Nullable
+  private Scope currentScope() {
+    return scopes.isEmpty() ? null : scopes.get(scopes.size() - 1);
+  }
+
+  /**
+   * Returns the specified text as a quoted JSON string.
+   */
+  static String quote(String text) {
+    StringBuilder quoted = new StringBuilder(text.length() + 2);
+    quoted.append('"');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '"':
+          quoted.append("\\\"");
+          break;
+        case '\\':
+          quoted.append("\\\\");
+          break;
+        case '\n':
+          quoted.append("\\n");
+          break;
+        case '\r':
+          quoted.append("\\r");
+          break;
+        case '\t':
+          quoted.append("\\t");
+          break;
+        default:
+          // Line and paragraph separators are valid JSON but not valid JavaScript.
+          if (c < 0x20 || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+            quoted.append("\\u")
+                .append(HEX_DIGITS.charAt((c >> 12) & 0xf))
+                .append(HEX_DIGITS.charAt((c >> 8) & 0xf))
+                .append(HEX_DIGITS.charAt((c >> 4) & 0xf))
+                .append(HEX_DIGITS.charAt(c & 0xf));
+          } else {
+            quoted.append(c);
+          }
+      }
+    }
+    return quoted.append('"').toString();
+  }
+}
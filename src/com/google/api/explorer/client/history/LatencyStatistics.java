@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.history.HistoryCache.HistoryCacheEvictionObserver;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Observer of the {@link HistoryCache} which keeps statistics of the latency and response size of
+ * the requests executed in this session, per method and per class of status code.
+ *
+ * <p>
+ * Every group of requests is summarized by a pair of {@link LogHistogram}s, so the statistics take
+ * the same amount of memory however many requests are executed. Items dropped from the cache stay
+ * counted, the statistics cover the whole session.
+ * </p>
+ *
+ */
+public class LatencyStatistics implements HistoryCacheEvictionObserver {
+
+  /** Status code reported when the request did not reach the server. */
+  private static final int NO_RESPONSE_STATUS = 0;
+  private static final int FIRST_ERROR_STATUS = 400;
+
+  /** Percentiles reported for every histogram. */
+  private static final int[] PERCENTILES = {50, 90, 99};
+
+  /**
+   * Statistics of a group of requests.
+   */
+  public static class RequestStatistics {
+    private final LogHistogram latencyMillis = new LogHistogram();
+    private final LogHistogram responseSize = new LogHistogram();
+    private long errorCount = 0;
+
+    void record(long latency, long size, boolean error) {
+      latencyMillis.record(latency);
+      responseSize.record(size);
+      if (error) {
+        errorCount++;
+      }
+    }
+
+    public long getRequestCount() {
+      return latencyMillis.getCount();
+    }
+
+    public long getErrorCount() {
+      return errorCount;
+    }
+
+    /**
+     * Returns the fraction of the requests which failed, between zero and one.
+     */
+    public double getErrorRate() {
+      long requests = getRequestCount();
+      return requests == 0 ? 0 : (double) errorCount / requests;
+    }
+
+    /**
+     * Returns the histogram of the time between starting and completing a request, in milliseconds.
+     */
+    public LogHistogram getLatencyMillis() {
+      return latencyMillis;
+    }
+
+    /**
+     * Returns the histogram of the length of the response bodies, in characters.
+     */
+    public LogHistogram getResponseSize() {
+      return responseSize;
+    }
+  }
+
+  private final RequestStatistics overall = new RequestStatistics();
+  private final Map<String, RequestStatistics> byMethod = Maps.newTreeMap();
+  private final Map<String, RequestStatistics> byStatusClass = Maps.newTreeMap();
+
+  @Override
+  public void newHistoryItem(HistoryItem newItem) {
+    long latency = Math.max(0, newItem.getEndTime() - newItem.getStartTime());
+    String body = newItem.getResponseBody();
+    long size = body == null ? 0 : body.length();
+    int status = newItem.peekResponse().getStatus();
+    boolean error = status == NO_RESPONSE_STATUS || status >= FIRST_ERROR_STATUS;
+
+    String methodId = Strings.nullToEmpty(newItem.getRequest().getMethod().getId());
+
+    overall.record(latency, size, error);
+    getOrCreate(byMethod, methodId).record(latency, size, error);
+    getOrCreate(byStatusClass, getStatusClass(status)).record(latency, size, error);
+  }
+
+  @Override
+  public void historyItemBodyEvicted(HistoryItem item) {
+    // The size of the body was recorded when the item was added.
+  }
+
+  @Override
+  public void historyItemRemoved(HistoryItem item) {
+    // Statistics are kept for the whole session.
+  }
+
+  private static RequestStatistics getOrCreate(Map<String, RequestStatistics> groups, String key) {
+    RequestStatistics statistics = groups.get(key);
+    if (statistics == null) {
+      statistics = new RequestStatistics();
+      groups.put(key, statistics);
+    }
+    return statistics;
+  }
+
+  /**
+   * Returns the name of the class of a status code, such as "2xx".
+   */
+  static String getStatusClass(int status) {
+    return status >= 100 && status < 600 ? (status / 100) + "xx" : "other";
+  }
+
+  /**
+   * Returns the statistics of all requests.
+   */
+  public RequestStatistics getOverall() {
+    return overall;
+  }
+
+  /**
+   * Returns the identifiers of the methods which were executed, in alphabetical order.
+   */
+  public Set<String> getMethodIds() {
+    return byMethod.keySet();
+  }
+
+  /**
+   * Returns the statistics of the requests of the specified method, or {@code null} if none.
+   */
+  public RequestStatistics getMethodStatistics(String methodId) {
+    return byMethod.get(methodId);
+  }
+
+  /**
+   * Returns the classes of the status codes which were received, such as "2xx", in order.
+   */
+  public Set<String> getStatusClasses() {
+    return byStatusClass.keySet();
+  }
+
+  /**
+   * Returns the statistics of the requests with a status in the specified class, or {@code null}
+   * if none.
+   */
+  public RequestStatistics getStatusClassStatistics(String statusClass) {
+    return byStatusClass.get(statusClass);
+  }
+
+  /**
+   * Write all of the statistics as a JSON object. Histograms are summarized by their percentiles,
+   * and the response size histograms also list their non-empty buckets.
+   */
+  public void writeJson(JsonWriter writer) {
+    writer.beginObject().name("overall");
+    writeStatistics(writer, overall);
+    writer.name("methods");
+    writeGroups(writer, byMethod);
+    writer.name("statusClasses");
+    writeGroups(writer, byStatusClass);
+    writer.endObject();
+  }
+
+  /**
+   * Returns all of the statistics as JSON text.
+   */
+  public String toJson() {
+    JsonWriter.StringSink sink = new JsonWriter.StringSink();
+    writeJson(new JsonWriter(sink));
+    return sink.toString();
+  }
+
+  private static void writeGroups(JsonWriter writer, Map<String, RequestStatistics> groups) {
+    writer.beginObject();
+    for (Map.Entry<String, RequestStatistics> group : groups.entrySet()) {
+      writer.name(group.getKey());
+      writeStatistics(writer, group.getValue());
+    }
+    writer.endObject();
+  }
+
+  private static void writeStatistics(JsonWriter writer, RequestStatistics statistics) {
+    writer.beginObject()
+        .name("requests").value(statistics.getRequestCount())
+        .name("errors").value(statistics.getErrorCount())
+        .name("errorRate").value(statistics.getErrorRate())
+        .name("latencyMillis");
+    writeHistogram(writer, statistics.getLatencyMillis(), false);
+    writer.name("responseSize");
+    writeHistogram(writer, statistics.getResponseSize(), true);
+    writer.endObject();
+  }
+
+  private static void writeHistogram(JsonWriter writer, LogHistogram histogram, boolean buckets) {
+    writer.beginObject()
+        .name("min").value(histogram.getMin())
+        .name("mean").value(histogram.getMean());
+    for (int percentile : PERCENTILES) {
+      writer.name("p" + percentile).value(histogram.getPercentile(percentile));
+    }
+    writer.name("max").value(histogram.getMax());
+
+    if (buckets) {
+      writer.name("buckets").beginArray();
+      for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+        if (histogram.getFrequency(bucket) > 0) {
+          writer.beginObject()
+              .name("upTo").value(histogram.getUpperBound(bucket))
+              .name("count").value(histogram.getFrequency(bucket))
+              .endObject();
+        }
+      }
+      writer.endArray();
+    }
+    writer.endObject();
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.Resources.Css;
+import com.google.api.explorer.client.history.LatencyStatistics.RequestStatistics;
+import com.google.gwt.user.client.ui.Composite;
+import com.google.gwt.user.client.ui.FlexTable;
+import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.Label;
+
+/**
+ * View of the {@link LatencyStatistics} of this session, with a table of the requests of every
+ * method and every class of status code, and a link to export the statistics as JSON.
+ *
+ */
+public class LatencyStatisticsView extends Composite {
+
+  private static final String EXPORT_FILE_NAME = "request-statistics.json";
+  private static final String JSON_MIME_TYPE = "application/json";
+
+  private static final String[] COLUMNS = {"Requests", "Errors", "p50 ms", "p90 ms", "p99 ms",
+      "Max ms", "p50 size", "p99 size", "Max size"};
+
+  private final Css style;
+
+  /**
+   * Create a view of a snapshot of the specified statistics.
+   */
+  public LatencyStatisticsView(LatencyStatistics statistics, Css style) {
+    this.style = style;
+
+    FlowPanel panel = new FlowPanel();
+    if (statistics.getOverall().getRequestCount() == 0) {
+      panel.add(new Label("No requests have been executed yet."));
+    } else {
+      panel.add(new DownloadLink(
+          "Export as JSON", EXPORT_FILE_NAME, JSON_MIME_TYPE, statistics.toJson()));
+
+      FlexTable methods = createTable("Method");
+      for (String methodId : statistics.getMethodIds()) {
+        addRow(methods, methodId, statistics.getMethodStatistics(methodId));
+      }
+      addRow(methods, "All methods", statistics.getOverall());
+      panel.add(methods);
+
+      FlexTable statusClasses = createTable("Status");
+      for (String statusClass : statistics.getStatusClasses()) {
+        addRow(statusClasses, statusClass, statistics.getStatusClassStatistics(statusClass));
+      }
+      panel.add(statusClasses);
+    }
+    initWidget(panel);
+  }
+
+  private FlexTable createTable(String groupTitle) {
+    FlexTable table = new FlexTable();
+    table.addStyleName(style.statisticsTable());
+    table.setText(0, 0, groupTitle);
+    for (int i = 0; i < COLUMNS.length; i++) {
+      table.setText(0, i + 1, COLUMNS[i]);
+    }
+    return table;
+  }
+
+  private static void addRow(FlexTable table, String title, RequestStatistics statistics) {
+    LogHistogram latency = statistics.getLatencyMillis();
+    LogHistogram size = statistics.getResponseSize();
+    int row = table.getRowCount();
+    int column = 0;
+    table.setText(row, column++, title);
+    table.setText(row, column++, Long.toString(statistics.getRequestCount()));
+    table.setText(row, column++, formatErrors(statistics));
+    table.setText(row, column++, Long.toString(latency.getPercentile(50)));
+    table.setText(row, column++, Long.toString(latency.getPercentile(90)));
+    table.setText(row, column++, Long.toString(latency.getPercentile(99)));
+    table.setText(row, column++, Long.toString(latency.getMax()));
+    table.setText(row, column++, Long.toString(size.getPercentile(50)));
+    table.setText(row, column++, Long.toString(size.getPercentile(99)));
+    table.setText(row, column, Long.toString(size.getMax()));
+  }
+
+  /**
+   * Returns the number of errors followed by the error rate as a whole percentage.
+   */
+  private static String formatErrors(RequestStatistics statistics) {
+    long percent = Math.round(statistics.getErrorRate() * 100);
+    return statistics.getErrorCount() + " (" + percent + "%)";
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Histogram of non-negative values with logarithmically sized buckets, from which percentiles can
+ * be read while values are still being recorded.
+ *
+ * <p>
+ * Values below {@link #SUB_BUCKETS} have a bucket each. Every power of two above that is split into
+ * {@link #SUB_BUCKETS} buckets of equal width, so a percentile is reported within an eighth of the
+ * actual value. The histogram uses the same fixed amount of memory however many values are
+ * recorded, values beyond the largest bucket are counted in the largest bucket.
+ * </p>
+ *
+ */
+public class LogHistogram {
+
+  /** Number of buckets every power of two is split into. */
+  static final int SUB_BUCKETS = 8;
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /** Largest power of two which has its own buckets. */
+  private static final int MAX_EXPONENT = 40;
+
+  private static final int BUCKET_COUNT =
+      SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final int[] frequencies = new int[BUCKET_COUNT];
+  private long count = 0;
+  private long sum = 0;
+  private long min = 0;
+  private long max = 0;
+
+  /**
+   * Record a value.
+   *
+   * @param value Value to record, which must not be negative.
+   */
+  public void record(long value) {
+    Preconditions.checkArgument(value >= 0, "Negative value: %s", value);
+    frequencies[bucketOf(value)]++;
+    min = count == 0 ? value : Math.min(min, value);
+    max = count == 0 ? value : Math.max(max, value);
+    count++;
+    sum += value;
+  }
+
+  /**
+   * Returns the number of values recorded.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the smallest value recorded, or zero if none were recorded.
+   */
+  public long getMin() {
+    return min;
+  }
+
+  /**
+   * Returns the largest value recorded, or zero if none were recorded.
+   */
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Returns the mean of the values recorded, or zero if none were recorded.
+   */
+  public double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  /**
+   * Returns the value below which the specified percentage of the recorded values fall. The value
+   * is the upper bound of the bucket in which the percentile falls, but never more than the largest
+   * recorded value.
+   *
+   * @param percentile Percentage between zero and one hundred.
+   * @return Percentile, or zero if no values were recorded.
+   */
+  public long getPercentile(double percentile) {
+    Preconditions.checkArgument(percentile >= 0 && percentile <= 100);
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += frequencies[bucket];
+      if (seen >= rank) {
+        return Math.max(min, Math.min(max, getUpperBound(bucket)));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Returns the number of buckets of the histogram.
+   */
+  public int getBucketCount() {
+    return BUCKET_COUNT;
+  }
+
+  /**
+   * Returns the number of recorded values which fell in the specified bucket.
+   */
+  public int getFrequency(int bucket) {
+    return frequencies[bucket];
+  }
+
+  /**
+   * Returns the largest value which falls in the specified bucket.
+   */
+  public long getUpperBound(int bucket) {
+    Preconditions.checkElementIndex(bucket, BUCKET_COUNT);
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+    long subBucket = SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * Returns the bucket in which the specified value falls.
+   */
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    // The shift which leaves the value with as many bits as a sub bucket index.
+    int shift = 0;
+    while ((value >> shift) >= 2 * SUB_BUCKETS) {
+      shift++;
+    }
+    if (shift > MAX_EXPONENT - SUB_BUCKET_BITS) {
+      return BUCKET_COUNT - 1;
+    }
+    return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * LZW style compression of strings into strings, used to keep old response bodies around in a
+ * fraction of the memory. JSON responses repeat the same keys over and over again, so they
+ * typically shrink to a fifth of their size or less.
+ *
+ * <p>
+ * Characters are introduced into the dictionary by literal codes when they are first used, so that
+ * any UTF-16 text can be compressed. Codes are written with as few bits as the decoder's
+ * dictionary requires, and the bits are packed 15 to a character so that the compressed form never
+ * contains surrogates and remains a well formed string.
+ * </p>
+ *
+ */
+public final class LzCodec {
+
+  private static final int LITERAL_8 = 0;
+  private static final int LITERAL_16 = 1;
+  private static final int END = 2;
+  private static final int FIRST_CODE = 3;
+
+  private static final int BITS_PER_CHAR = 15;
+
+  /** Prefix used in the dictionary for phrases of a single character. */
+  private static final int NO_PREFIX = -1;
+
+  private LzCodec() {
+  }
+
+  /**
+   * Compress the specified text.
+   *
+   * @param text Text to compress.
+   * @return Compressed form, which can be restored by {@link #decompress(String)}.
+   */
+  public static String compress(String text) {
+    Preconditions.checkNotNull(text);
+    Dictionary dictionary = new Dictionary();
+    BitWriter out = new BitWriter(text.length() / 4);
+    boolean[] literalWritten = new boolean[Character.MAX_VALUE + 1];
+
+    // Number of codes which the decoder knows about when it reads the next code, this determines
+    // how many bits are used to write it.
+    int decoderSize = FIRST_CODE;
+    int written = 0;
+
+    int phrase = -1;
+    int phraseLength = 0;
+    char phraseStart = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      int single = dictionary.find(NO_PREFIX, c);
+      if (single == -1) {
+        single = dictionary.add(NO_PREFIX, c);
+      }
+
+      if (phrase == -1) {
+        phrase = single;
+        phraseLength = 1;
+        phraseStart = c;
+        continue;
+      }
+
+      int extended = dictionary.find(phrase, c);
+      if (extended != -1) {
+        phrase = extended;
+        phraseLength++;
+        continue;
+      }
+
+      // The phrase can not be extended, write it and start a new one with this character.
+      int width = bitLength(decoderSize);
+      if (phraseLength == 1 && !literalWritten[phraseStart]) {
+        writeLiteral(out, phraseStart, width);
+        literalWritten[phraseStart] = true;
+        decoderSize++;
+      } else {
+        out.write(phrase, width);
+      }
+      decoderSize += written++ > 0 ? 1 : 0;
+
+      dictionary.add(phrase, c);
+      phrase = single;
+      phraseLength = 1;
+      phraseStart = c;
+    }
+
+    if (phrase != -1) {
+      int width = bitLength(decoderSize);
+      if (phraseLength == 1 && !literalWritten[phraseStart]) {
+        writeLiteral(out, phraseStart, width);
+        decoderSize++;
+      } else {
+        out.write(phrase, width);
+      }
+      decoderSize += written > 0 ? 1 : 0;
+    }
+
+    out.write(END, bitLength(decoderSize));
+    return out.finish();
+  }
+
+  /**
+   * Restore text compressed by {@link #compress(String)}.
+   *
+   * @param compressed Compressed form of the text.
+   * @return Original text.
+   * @throws IllegalArgumentException if the argument was not produced by
+   *         {@link #compress(String)}.
+   */
+  public static String decompress(String compressed) {
+    Preconditions.checkNotNull(compressed);
+    BitReader in = new BitReader(compressed);
+    List<String> dictionary = Lists.newArrayList();
+    StringBuilder text = new StringBuilder(compressed.length() * 4);
+
+    String previous = null;
+    while (true) {
+      int size = FIRST_CODE + dictionary.size();
+      int code = in.read(bitLength(size));
+      if (code == END) {
+        return text.toString();
+      }
+
+      String entry;
+      if (code == LITERAL_8 || code == LITERAL_16) {
+        entry = String.valueOf((char) in.read(code == LITERAL_8 ? 8 : 16));
+        dictionary.add(entry);
+      } else if (code < size) {
+        entry = dictionary.get(code - FIRST_CODE);
+      } else if (code == size && previous != null) {
+        // The code is for the entry which is about to be added, which starts with the previous one.
+        entry = previous + previous.charAt(0);
+      } else {
+        throw new IllegalArgumentException("Invalid code " + code + " at dictionary size " + size);
+      }
+
+      text.append(entry);
+      if (previous != null) {
+        dictionary.add(previous + entry.charAt(0));
+      }
+      previous = entry;
+    }
+  }
+
+  private static void writeLiteral(BitWriter out, char c, int width) {
+    if (c < 256) {
+      out.write(LITERAL_8, width);
+      out.write(c, 8);
+    } else {
+      out.write(LITERAL_16, width);
+      out.write(c, 16);
+    }
+  }
+
+  /** Returns the number of bits needed to write any code up to and including the value. */
+  private static int bitLength(int value) {
+    return 32 - Integer.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Dictionary of the compressor, which maps a phrase code and the next character to the code of
+   * the longer phrase. This is an open addressing hash table over parallel arrays, to avoid
+   * building a string for every phrase.
+   */
+  private static class Dictionary {
+    private int size = 0;
+    private int next = FIRST_CODE;
+    private int[] prefixes = new int[1024];
+    private char[] chars = new char[1024];
+    private int[] codes = newCodes(1024);
+
+    int find(int prefix, char c) {
+      int mask = codes.length - 1;
+      for (int slot = hash(prefix, c) & mask; codes[slot] != -1; slot = (slot + 1) & mask) {
+        if (prefixes[slot] == prefix && chars[slot] == c) {
+          return codes[slot];
+        }
+      }
+      return -1;
+    }
+
+    int add(int prefix, char c) {
+      if (size * 2 >= codes.length) {
+        rehash(codes.length * 2);
+      }
+      insert(prefix, c, next);
+      size++;
+      return next++;
+    }
+
+    private void insert(int prefix, char c, int code) {
+      int mask = codes.length - 1;
+      int slot = hash(prefix, c) & mask;
+      while (codes[slot] != -1) {
+        slot = (slot + 1) & mask;
+      }
+      prefixes[slot] = prefix;
+      chars[slot] = c;
+      codes[slot] = code;
+    }
+
+    private void rehash(int capacity) {
+      int[] oldPrefixes = prefixes;
+      char[] oldChars = chars;
+      int[] oldCodes = codes;
+      prefixes = new int[capacity];
+      chars = new char[capacity];
+      codes = newCodes(capacity);
+      for (int i = 0; i < oldCodes.length; i++) {
+        if (oldCodes[i] != -1) {
+          insert(oldPrefixes[i], oldChars[i], oldCodes[i]);
+        }
+      }
+    }
+
+    private static int[] newCodes(int capacity) {
+      int[] codes = new int[capacity];
+      for (int i = 0; i < capacity; i++) {
+        codes[i] = -1;
+      }
+      return codes;
+    }
+
+    private static int hash(int prefix, char c) {
+      // Only shifts and small multipliers, which are exact in compiled JavaScript.
+      int h = prefix * 31 + c;
+      h ^= (h >>> 16) ^ (h << 7);
+      return h ^ (h >>> 9);
+    }
+  }
+
+  /**
+   * Packs codes of varying widths into characters, least significant bits first.
+   */
+  private static class BitWriter {
+    private final StringBuilder out;
+    private int buffer = 0;
+    private int bits = 0;
+
+    BitWriter(int expectedLength) {
+      out = new StringBuilder(expectedLength);
+    }
+
+    void write(int value, int width) {
+      while (width > 0) {
+        int taken = Math.min(width, BITS_PER_CHAR - bits);
+        buffer |= (value & ((1 << taken) - 1)) << bits;
+        value >>>= taken;
+        width -= taken;
+        bits += taken;
+        if (bits == BITS_PER_CHAR) {
+          out.append((char) buffer);
+          buffer = 0;
+          bits = 0;
+        }
+      }
+    }
+
+    String finish() {
+      if (bits > 0) {
+        out.append((char) buffer);
+      }
+      return out.toString();
+    }
+  }
+
+  /**
+   * Reads codes packed by {@link BitWriter}.
+   */
+  private static class BitReader {
+    private final String in;
+    private int position = 0;
+    private int bits = 0;
+
+    BitReader(String in) {
+      this.in = in;
+    }
+
+    int read(int width) {
+      int value = 0;
+      int shift = 0;
+      while (width > 0) {
+        if (position >= in.length()) {
+          throw new IllegalArgumentException("Compressed text is truncated");
+        }
+        int available = BITS_PER_CHAR - bits;
+        int taken = Math.min(width, available);
+        int chunk = (in.charAt(position) >>> bits) & ((1 << taken) - 1);
+        value |= chunk << shift;
+        shift += taken;
+        width -= taken;
+        bits += taken;
+        if (bits == BITS_PER_CHAR) {
+          position++;
+          bits = 0;
+        }
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.history.HistoryCache.HistoryCacheEvictionObserver;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gwt.core.client.Callback;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Observer of the {@link HistoryCache} which persists every new item to a {@link HistoryStore}, so
+ * that requests can be looked up again in later sessions.
+ *
+ * <p>
+ * Items are written in batches, either once enough of them are waiting or shortly after the first
+ * of them arrived, and only one batch is written at a time. Response bodies are compressed and
+ * stored apart from the records, so that restoring the history at startup only loads the records
+ * and the bodies are loaded when they are looked at.
+ * </p>
+ *
+ * <p>
+ * Waiting items are held by reference rather than by a copy of their bodies, and the bodies of a
+ * batch are compressed one per scheduler step right before it is written, reusing the compressed
+ * copy of the cache where there is one. A batch which fails to be written is put back in front of
+ * the waiting items and tried again later, up to {@link #MAX_WRITE_ATTEMPTS} times.
+ * </p>
+ *
+ */
+public class PersistentHistory implements HistoryCacheEvictionObserver {
+
+  /** Number of waiting items which are written without waiting for the delay. */
+  @VisibleForTesting
+  static final int BATCH_SIZE = 20;
+
+  /** Maximum number of records kept in the store, the oldest are deleted beyond this. */
+  @VisibleForTesting
+  static final int MAX_PERSISTED_RECORDS = 1000;
+
+  /** Number of times a batch is tried before it is dropped. */
+  @VisibleForTesting
+  static final int MAX_WRITE_ATTEMPTS = 3;
+
+  private static final int FLUSH_DELAY_MILLIS = 2000;
+
+  private static final Comparator<HistoryRecord> CHRONOLOGICAL = new Comparator<HistoryRecord>() {
+    @Override
+    public int compare(HistoryRecord first, HistoryRecord second) {
+      return Long.valueOf(first.getStartTime()).compareTo(second.getStartTime());
+    }
+  };
+
+  private final HistoryStore store;
+
+  /** Prefix of the identifiers of records written in this session. */
+  private final String sessionPrefix;
+
+  private final List<HistoryRecord> pendingRecords = Lists.newArrayList();
+
+  /** Items whose bodies have yet to be compressed to be written, by record identifier. */
+  private final Map<String, HistoryItem> pendingItems = Maps.newLinkedHashMap();
+
+  /** Compressed bodies waiting to be written, by record identifier. */
+  private final Map<String, String> pendingBodies = Maps.newHashMap();
+
+  /** Identifiers of the stored records, oldest first. */
+  private final List<String> persistedIds = Lists.newArrayList();
+
+  private boolean flushScheduled = false;
+  private boolean compressing = false;
+  private boolean writing = false;
+
+  /** Number of times in a row that the batch being written failed. */
+  private int failedWrites = 0;
+
+  public PersistentHistory(HistoryStore store) {
+    this(store, Long.toString(System.currentTimeMillis()));
+  }
+
+  /**
+   * Create an instance which identifies the records of this session by the specified identifier.
+   */
+  @VisibleForTesting
+  PersistentHistory(HistoryStore store, String sessionId) {
+    this.store = store;
+    this.sessionPrefix = sessionId + "-";
+  }
+
+  /**
+   * Load the records of previous sessions.
+   *
+   * @param callback Callback which receives the records, oldest first.
+   */
+  public void restore(final Callback<List<HistoryRecord>, String> callback) {
+    store.loadRecords(new Callback<List<HistoryRecord>, String>() {
+      @Override
+      public void onSuccess(List<HistoryRecord> records) {
+        List<HistoryRecord> previous = Lists.newArrayList();
+        for (HistoryRecord record : records) {
+          if (!record.getId().startsWith(sessionPrefix)) {
+            previous.add(record);
+          }
+        }
+        Collections.sort(previous, CHRONOLOGICAL);
+
+        List<String> previousIds = Lists.newArrayList();
+        for (HistoryRecord record : previous) {
+          previousIds.add(record.getId());
+        }
+        persistedIds.addAll(0, previousIds);
+        pruneRecords();
+
+        callback.onSuccess(ImmutableList.copyOf(previous));
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        callback.onFailure(reason);
+      }
+    });
+  }
+
+  /**
+   * Load the response body of a record.
+   *
+   * @param id Identifier of the record.
+   * @param callback Callback which receives the body, or {@code null} if none was stored.
+   */
+  public void loadBody(String id, final Callback<String, String> callback) {
+    store.loadBody(id, new Callback<String, String>() {
+      @Override
+      public void onSuccess(String compressed) {
+        callback.onSuccess(compressed == null ? null : LzCodec.decompress(compressed));
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        callback.onFailure(reason);
+      }
+    });
+  }
+
+  /**
+   * Delete every stored record, of this session and of previous ones, and drop the items which are
+   * waiting to be written.
+   *
+   * @param callback Callback invoked once the store is empty.
+   */
+  public void clear(Callback<Void, String> callback) {
+    pendingRecords.clear();
+    pendingItems.clear();
+    pendingBodies.clear();
+    compressing = false;
+    persistedIds.clear();
+    store.clear(callback);
+  }
+
+  @Override
+  public void newHistoryItem(HistoryItem newItem) {
+    String id = sessionPrefix + newItem.getKey();
+    pendingRecords.add(HistoryRecord.fromItem(id, newItem));
+    pendingItems.put(id, newItem);
+
+    if (pendingRecords.size() >= BATCH_SIZE) {
+      flush();
+    } else if (!flushScheduled) {
+      flushScheduled = true;
+      scheduleFlush();
+    }
+  }
+
+  @Override
+  public void historyItemBodyEvicted(HistoryItem item) {
+    // The stored copy of the body is kept, it is only dropped from memory.
+  }
+
+  @Override
+  public void historyItemRemoved(HistoryItem item) {
+    // Stored records are pruned separately.
+  }
+
+  /**
+   * Arrange for {@link #flush()} to be called after a short delay.
+   */
+  @VisibleForTesting
+  void scheduleFlush() {
+    Scheduler.get().scheduleFixedDelay(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        flush();
+        return false;
+      }
+    }, FLUSH_DELAY_MILLIS);
+  }
+
+  /**
+   * Arrange for {@link #compressNextBody()} to be called until it returns {@code false}.
+   */
+  @VisibleForTesting
+  void scheduleCompression() {
+    Scheduler.get().scheduleIncremental(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        return compressNextBody();
+      }
+    });
+  }
+
+  /**
+   * Compress the bodies of the waiting items and write them to the store, unless a batch is being
+   * compressed or written already in which case they are written once that completes.
+   */
+  @VisibleForTesting
+  void flush() {
+    flushScheduled = false;
+    if (compressing || writing || pendingRecords.isEmpty()) {
+      return;
+    }
+
+    if (pendingItems.isEmpty()) {
+      write();
+    } else {
+      compressing = true;
+      scheduleCompression();
+    }
+  }
+
+  /**
+   * Compress the body of one waiting item, and write the waiting items once every body is
+   * compressed.
+   *
+   * @return Whether there are bodies left to compress.
+   */
+  @VisibleForTesting
+  boolean compressNextBody() {
+    if (!compressing) {
+      // The waiting items were cleared.
+      return false;
+    }
+
+    Iterator<Map.Entry<String, HistoryItem>> items = pendingItems.entrySet().iterator();
+    if (items.hasNext()) {
+      Map.Entry<String, HistoryItem> item = items.next();
+      items.remove();
+      String body = item.getValue().getCompressedResponseBody();
+      if (body != null) {
+        pendingBodies.put(item.getKey(), body);
+      }
+    }
+    if (!pendingItems.isEmpty()) {
+      return true;
+    }
+
+    compressing = false;
+    write();
+    return false;
+  }
+
+  private void write() {
+    final List<HistoryRecord> records = ImmutableList.copyOf(pendingRecords);
+    final Map<String, String> bodies = ImmutableMap.copyOf(pendingBodies);
+    pendingRecords.clear();
+    pendingBodies.clear();
+
+    writing = true;
+    store.write(records, bodies, new Callback<Void, String>() {
+      @Override
+      public void onSuccess(Void result) {
+        writing = false;
+        failedWrites = 0;
+        for (HistoryRecord record : records) {
+          persistedIds.add(record.getId());
+        }
+        pruneRecords();
+        flush();
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        writing = false;
+        GWT.log("Unable to store history: " + reason);
+        if (++failedWrites < MAX_WRITE_ATTEMPTS) {
+          // Try the batch again later, ahead of the items which arrived in the meantime.
+          pendingRecords.addAll(0, records);
+          pendingBodies.putAll(bodies);
+          if (!flushScheduled) {
+            flushScheduled = true;
+            scheduleFlush();
+          }
+        } else {
+          GWT.log("Dropping " + records.size() + " history items after " + failedWrites
+              + " failed writes");
+          failedWrites = 0;
+          flush();
+        }
+      }
+    });
+  }
+
+  /**
+   * Delete the oldest stored records beyond the maximum.
+   */
+  private void pruneRecords() {
+    if (persistedIds.size() <= MAX_PERSISTED_RECORDS) {
+      return;
+    }
+
+    List<String> expired = persistedIds.subList(0, persistedIds.size() - MAX_PERSISTED_RECORDS);
+    List<String> expiredIds = ImmutableList.copyOf(expired);
+    expired.clear();
+    store.delete(expiredIds, new Callback<Void, String>() {
+      @Override
+      public void onSuccess(Void result) {
+        // Nothing else to do.
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        GWT.log("Unable to delete history: " + reason);
+      }
+    });
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gwt.core.client.Callback;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.storage.client.Storage;
+
+import java.util.List;
+
+/**
+ * Setting which turns the {@link PersistentHistory} on and off, and which remembers the choice of
+ * the user in the local storage of the browser.
+ *
+ * <p>
+ * Requests are only stored once the user opts in, the setting is off until then. The store is not
+ * opened and the history cache is not observed while it is off, and turning it off again stops
+ * writing new requests but keeps those already stored until the stored history is cleared.
+ * </p>
+ *
+ */
+public class PersistentHistoryManager {
+
+  /**
+   * Receiver of the records of previous sessions.
+   */
+  public interface PreviousSessionsCallback {
+    /**
+     * Invoked when the records of previous sessions are loaded, and when they are cleared.
+     *
+     * @param persistentHistory Persistent history from which response bodies are loaded.
+     * @param records Records of previous sessions, oldest first.
+     */
+    void previousSessionsLoaded(PersistentHistory persistentHistory, List<HistoryRecord> records);
+  }
+
+  /** Key of the setting in the local storage of the browser. */
+  private static final String SETTING_KEY = "explorer.persistHistory";
+
+  private final HistoryCache historyCache;
+  private final PreviousSessionsCallback callback;
+  private final Storage settings;
+
+  private PersistentHistory persistentHistory;
+  private boolean enabled = false;
+  private boolean opening = false;
+
+  /**
+   * Create an instance, which must only be done if {@link #isSupported()}.
+   *
+   * @param historyCache Cache of the requests of this session, which are stored once enabled.
+   * @param callback Receiver of the records of previous sessions.
+   */
+  public PersistentHistoryManager(HistoryCache historyCache, PreviousSessionsCallback callback) {
+    this.historyCache = historyCache;
+    this.callback = callback;
+    this.settings = Storage.getLocalStorageIfSupported();
+  }
+
+  /**
+   * Returns whether the browser can store the history and remember the setting.
+   */
+  public static boolean isSupported() {
+    return IndexedDbHistoryStore.isSupported() && Storage.isLocalStorageSupported();
+  }
+
+  /**
+   * Turn the setting on if the user turned it on in an earlier session, which restores the
+   * history of previous sessions.
+   */
+  public void start() {
+    if (Boolean.parseBoolean(settings.getItem(SETTING_KEY))) {
+      setEnabled(true);
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Turn storing requests on or off, and remember the choice for later sessions.
+   */
+  public void setEnabled(boolean enabled) {
+    if (enabled == this.enabled) {
+      return;
+    }
+    this.enabled = enabled;
+    settings.setItem(SETTING_KEY, Boolean.toString(enabled));
+
+    if (!enabled) {
+      if (persistentHistory != null) {
+        historyCache.removeObserver(persistentHistory);
+        persistentHistory.flush();
+      }
+    } else if (persistentHistory != null) {
+      historyCache.addObserver(persistentHistory);
+    } else {
+      openAndRestore();
+    }
+  }
+
+  /**
+   * Delete every stored request, of this session and of previous ones. The setting is left as it
+   * is.
+   */
+  public void clear() {
+    if (persistentHistory == null) {
+      // Only opened when the setting was turned on, open it now to clear an earlier session.
+      IndexedDbHistoryStore.open(new Callback<HistoryStore, String>() {
+        @Override
+        public void onSuccess(HistoryStore store) {
+          new PersistentHistory(store).clear(new LoggingCallback("clear"));
+        }
+
+        @Override
+        public void onFailure(String reason) {
+          GWT.log("Unable to open history database: " + reason);
+        }
+      });
+    } else {
+      persistentHistory.clear(new LoggingCallback("clear"));
+    }
+    callback.previousSessionsLoaded(persistentHistory, ImmutableList.<HistoryRecord>of());
+  }
+
+  /**
+   * Open the store, observe the history cache if the setting is still on, and hand the records of
+   * previous sessions to the callback.
+   */
+  private void openAndRestore() {
+    if (opening) {
+      return;
+    }
+    opening = true;
+    IndexedDbHistoryStore.open(new Callback<HistoryStore, String>() {
+      @Override
+      public void onSuccess(HistoryStore store) {
+        opening = false;
+        persistentHistory = new PersistentHistory(store);
+        if (enabled) {
+          historyCache.addObserver(persistentHistory);
+        }
+        persistentHistory.restore(new Callback<List<HistoryRecord>, String>() {
+          @Override
+          public void onSuccess(List<HistoryRecord> records) {
+            callback.previousSessionsLoaded(persistentHistory, records);
+          }
+
+          @Override
+          public void onFailure(String reason) {
+            GWT.log("Unable to restore history: " + reason);
+          }
+        });
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        opening = false;
+        GWT.log("Unable to open history database: " + reason);
+      }
+    });
+  }
+
+  /** Callback which only logs failures. */
+  private static class LoggingCallback implements Callback<Void, String> {
+    private final String action;
+
+    LoggingCallback(String action) {
+      this.action = action;
+    }
+
+    @Override
+    public void onSuccess(Void result) {
+      // Nothing else to do.
+    }
+
+    @Override
+    public void onFailure(String reason) {
+      GWT.log("Unable to " + action + " history: " + reason);
+    }
+  }
+}
@@ -16,11 +16,14 @@
 
 package com.google.api.explorer.client.history;
 
+import com.google.gwt.dom.client.BodyElement;
+import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.user.client.Timer;
 
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -40,8 +43,10 @@ public abstract class PrettyDate {
 
     if (diff < 0) {
       return "in the future?";
-    } else if (diff < 60) {
+    } else if (diff < 10) {
       return "moments ago";
+    } else if (diff < 60) {
+      return diff / 10 * 10 + " seconds ago";
     } else if (diff < 120) {
       return "one minute ago";
     } else if (diff < 3600) {
@@ -66,35 +71,128 @@ public abstract class PrettyDate {
     element.setInnerText(prefix + getPrettyText(date));
   }
 
-  private static final Map<Element, Timer> TIMERS = new HashMap<Element, Timer>();
+  /** Interval between updates while the text counts seconds. */
+  private static final long SECONDS_INTERVAL_MILLIS = 10 * 1000;
+
+  /** Interval between updates while the text counts minutes. */
+  private static final long MINUTES_INTERVAL_MILLIS = 60 * 1000;
+
+  /** Age after which the text is updated no more. */
+  private static final long MAX_UPDATE_AGE_MILLIS = 60 * 60 * 1000;
+
+  /** Date whose text is kept up to date in an element. */
+  private static class Registration {
+    final Date date;
+    final String prefix;
+    final Element element;
+    long nextUpdate;
+
+    Registration(Date date, String prefix, Element element, long nextUpdate) {
+      this.date = date;
+      this.prefix = prefix;
+      this.element = element;
+      this.nextUpdate = nextUpdate;
+    }
+  }
+
+  private static final Map<Element, Registration> REGISTRATIONS =
+      new LinkedHashMap<Element, Registration>();
+
+  /** Single timer which updates all of the registered elements which are due. */
+  private static final Timer TICKER = new Timer() {
+    @Override
+    public void run() {
+      tick();
+    }
+  };
+
+  /** Time at which the ticker is scheduled to run, or {@link Long#MAX_VALUE} if it is not. */
+  private static long scheduledTick = Long.MAX_VALUE;
 
   /**
-   * Schedules a repeating timer to continually update the text with the
-   * pretty-date, every minute until the text is more than an hour old, at which
-   * point it stops. The assumption is that nobody will wait for 60+ minutes for
-   * "one hour ago" to turn into "2 hours ago"
+   * Keeps the text of the element up to date with the pretty-date, which is updated every ten
+   * seconds while it counts seconds and every minute after that, until the text is an hour old, at
+   * which point it stops. The assumption is that nobody will wait for 60+ minutes for "one hour
+   * ago" to turn into "2 hours ago".
+   *
+   * <p>
+   * All registered elements share a single timer, and elements which are no longer attached to
+   * the document are dropped when it next runs. An element which is attached again has to be
+   * registered again.
+   * </p>
    */
-  public static void keepMakingPretty(final Date date, final String prefix, final Element element) {
+  public static void keepMakingPretty(Date date, String prefix, Element element) {
     makePretty(date, prefix, element);
-    if (!TIMERS.containsKey(element)) {
-      Timer timer = new Timer() {
-        @Override
-        public void run() {
-          makePretty(date, prefix, element);
-          if (element.getInnerText().contains("hour")) {
-            stopMakingPretty(element);
-          }
-        }
-      };
-      timer.scheduleRepeating(60000);
-      TIMERS.put(element, timer);
+
+    long now = System.currentTimeMillis();
+    long nextUpdate = getNextUpdate(date, now);
+    if (nextUpdate < 0) {
+      REGISTRATIONS.remove(element);
+      return;
     }
+    REGISTRATIONS.put(element, new Registration(date, prefix, element, nextUpdate));
+    schedule(nextUpdate, now);
   }
 
   public static void stopMakingPretty(Element element) {
-    if (TIMERS.containsKey(element)) {
-      TIMERS.get(element).cancel();
-      TIMERS.remove(element);
+    REGISTRATIONS.remove(element);
+  }
+
+  /**
+   * Returns the time at which the text of the date next changes, or -1 if it is old enough to be
+   * left alone.
+   */
+  private static long getNextUpdate(Date date, long now) {
+    long age = now - date.getTime();
+    if (age < 0) {
+      return now + SECONDS_INTERVAL_MILLIS;
+    } else if (age >= MAX_UPDATE_AGE_MILLIS) {
+      return -1;
+    }
+
+    // Updates are aligned with the changes of the text, so that every update changes it.
+    long interval =
+        age < MINUTES_INTERVAL_MILLIS ? SECONDS_INTERVAL_MILLIS : MINUTES_INTERVAL_MILLIS;
+    return date.getTime() + (age / interval + 1) * interval;
+  }
+
+  private static void schedule(long time, long now) {
+    if (time < scheduledTick) {
+      scheduledTick = time;
+      TICKER.schedule((int) Math.max(1, time - now));
+    }
+  }
+
+  /**
+   * Update the text of every registered element which is due, in one batch, and schedule the
+   * ticker for the next element which will be due.
+   */
+  private static void tick() {
+    scheduledTick = Long.MAX_VALUE;
+    long now = System.currentTimeMillis();
+    long earliestUpdate = Long.MAX_VALUE;
+
+    BodyElement body = Document.get().getBody();
+    for (Iterator<Registration> i = REGISTRATIONS.values().iterator(); i.hasNext();) {
+      Registration registration = i.next();
+      if (!body.isOrHasChild(registration.element)) {
+        i.remove();
+        continue;
+      }
+
+      if (registration.nextUpdate <= now) {
+        makePretty(registration.date, registration.prefix, registration.element);
+        registration.nextUpdate = getNextUpdate(registration.date, now);
+        if (registration.nextUpdate < 0) {
+          i.remove();
+          continue;
+        }
+      }
+      earliestUpdate = Math.min(earliestUpdate, registration.nextUpdate);
+    }
+
+    if (earliestUpdate != Long.MAX_VALUE) {
+      schedule(earliestUpdate, now);
     }
   }
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.Resources.Css;
+import com.google.api.explorer.client.history.JsonTokenizer.TokenType;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.SpanElement;
+import com.google.gwt.dom.client.Style.Display;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
+import com.google.gwt.user.client.ui.Widget;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain text view of a JSON document which is meant for payloads that are too large to be
+ * formatted by the {@link JsonPrettifier}. The text is highlighted as it is tokenized, without
+ * parsing, and is rendered a slice of characters at a time while the view is attached so that the
+ * browser stays responsive, even when the whole payload is a single line.
+ *
+ * <p>
+ * Objects and arrays which span multiple lines can be collapsed by clicking on the line where
+ * they were opened. A line can be revealed by line number, i.e. to show a search match, which
+ * expands the regions that hide it.
+ * </p>
+ *
+ */
+public class RawJsonView extends Widget implements ClickHandler {
+
+  /** Number of characters which are rendered before yielding to the browser. */
+  private static final int CHARACTERS_PER_SLICE = 32 * 1024;
+
+  private static final String LINE_ATTRIBUTE = "data-line";
+
+  private static final int NO_LINE = -1;
+
+  private final String json;
+  private final Css style;
+  private final JsonTokenizer tokenizer;
+
+  /** Element for each line which has been rendered so far, by line number. */
+  private final List<Element> lines = Lists.newArrayList();
+
+  /** Number of collapsed regions which hide each line. */
+  private int[] hiddenCounts = new int[0];
+
+  /** Markers of the collapsed regions, by the line on which they were opened. */
+  private final Map<Integer, Element> collapsedMarkers = Maps.newHashMap();
+
+  /** Line to reveal once it has been rendered, or {@link #NO_LINE}. */
+  private int pendingReveal = NO_LINE;
+  private String highlightStyle;
+  private Element highlightedLine;
+
+  /** Whether the last line which was rendered continues in the next slice. */
+  private boolean lineOpen = false;
+
+  /** Whether the last line which was rendered has a collapse marker. */
+  private boolean lineHasMarker = false;
+
+  private boolean rendering = false;
+
+  public RawJsonView(String json, Css style) {
+    this.json = json;
+    this.style = style;
+    this.tokenizer = new JsonTokenizer(json);
+
+    setElement(Document.get().createDivElement());
+    addDomHandler(this, ClickEvent.getType());
+  }
+
+  @Override
+  protected void onLoad() {
+    super.onLoad();
+    scheduleRendering();
+  }
+
+  /**
+   * Render the rest of the text a slice at a time, until it is all rendered or the view is
+   * detached. A view which is attached again resumes where it stopped.
+   */
+  private void scheduleRendering() {
+    if (rendering || !tokenizer.hasNext()) {
+      return;
+    }
+    rendering = true;
+    Scheduler.get().scheduleIncremental(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        rendering = isAttached() && renderSlice();
+        return rendering;
+      }
+    });
+  }
+
+  /**
+   * Tokenize and render the next slice of characters.
+   *
+   * @return whether there is more text left to render.
+   */
+  private boolean renderSlice() {
+    // Tokens which continue the last line of the previous slice are added to its element.
+    SafeHtmlBuilder continuation = lineOpen ? new SafeHtmlBuilder() : null;
+    SafeHtmlBuilder html = new SafeHtmlBuilder();
+    SafeHtmlBuilder current = lineOpen ? continuation : html;
+    int renderedCharacters = 0;
+
+    while (tokenizer.hasNext() && renderedCharacters < CHARACTERS_PER_SLICE) {
+      TokenType type = tokenizer.next();
+      if (!lineOpen) {
+        html.appendHtmlConstant("<div>");
+        lineOpen = true;
+        lineHasMarker = false;
+      }
+
+      String text = json.substring(tokenizer.getTokenStart(), tokenizer.getTokenEnd());
+      renderedCharacters += text.length();
+      switch (type) {
+        case NEWLINE:
+          if (current == html) {
+            html.appendHtmlConstant("</div>");
+          }
+          current = html;
+          lineOpen = false;
+          break;
+
+        case OPEN_OBJECT:
+        case OPEN_ARRAY:
+          // Only the outermost bracket on a line can be collapsed.
+          if (!lineHasMarker) {
+            current.appendHtmlConstant("<span class=\"" + style.jsonExpanded() + "\" "
+                + LINE_ATTRIBUTE + "=\"" + tokenizer.getLine() + "\">");
+            current.appendEscaped(text);
+            current.appendHtmlConstant("</span>");
+            lineHasMarker = true;
+          } else {
+            current.appendEscaped(text);
+          }
+          break;
+
+        case KEY:
+          appendStyled(current, style.jsonKey(), text);
+          break;
+
+        case STRING:
+          appendStyled(current, style.jsonString(), text);
+          break;
+
+        case NUMBER:
+          appendStyled(current, style.jsonNumber(), text);
+          break;
+
+        case BOOLEAN:
+          appendStyled(current, style.jsonBoolean(), text);
+          break;
+
+        case NULL:
+          appendStyled(current, style.jsonNull(), text);
+          break;
+
+        default:
+          current.appendEscaped(text);
+          break;
+      }
+    }
+
+    if (lineOpen && current == html) {
+      html.appendHtmlConstant("</div>");
+    }
+
+    if (continuation != null) {
+      SpanElement span = Document.get().createSpanElement();
+      span.setInnerHTML(continuation.toSafeHtml().asString());
+      lines.get(lines.size() - 1).appendChild(span);
+    }
+
+    DivElement slice = Document.get().createDivElement();
+    slice.setInnerHTML(html.toSafeHtml().asString());
+    getElement().appendChild(slice);
+    for (Element line = slice.getFirstChildElement(); line != null;
+        line = line.getNextSiblingElement()) {
+      lines.add(line);
+    }
+
+    if (pendingReveal != NO_LINE && pendingReveal < lines.size()) {
+      revealPending();
+    }
+    return tokenizer.hasNext();
+  }
+
+  private static void appendStyled(SafeHtmlBuilder html, String styleName, String text) {
+    html.appendHtmlConstant("<span class=\"" + styleName + "\">");
+    html.appendEscaped(text);
+    html.appendHtmlConstant("</span>");
+  }
+
+  @Override
+  public void onClick(ClickEvent event) {
+    Element target = Element.as(event.getNativeEvent().getEventTarget());
+    String lineAttribute = target.getAttribute(LINE_ATTRIBUTE);
+    if (Strings.isNullOrEmpty(lineAttribute)) {
+      return;
+    }
+
+    int openLine = Integer.parseInt(lineAttribute);
+    setCollapsed(target, openLine, !collapsedMarkers.containsKey(openLine));
+  }
+
+  /**
+   * Bring the zero based line into view and highlight it, expanding the collapsed regions which
+   * hide it. A line which has not been rendered yet is revealed as soon as it is.
+   *
+   * @param line Line to reveal.
+   * @param highlightStyle Style name which marks the revealed line, until another is revealed.
+   */
+  public void reveal(int line, String highlightStyle) {
+    this.pendingReveal = line;
+    this.highlightStyle = highlightStyle;
+    if (line < lines.size()) {
+      revealPending();
+    } else {
+      scheduleRendering();
+    }
+  }
+
+  private void revealPending() {
+    int line = pendingReveal;
+    pendingReveal = NO_LINE;
+    for (Map.Entry<Integer, Element> marker : Lists.newArrayList(collapsedMarkers.entrySet())) {
+      int openLine = marker.getKey();
+      if (openLine < line && line < tokenizer.getFoldEnd(openLine)) {
+        setCollapsed(marker.getValue(), openLine, false);
+      }
+    }
+
+    if (highlightedLine != null) {
+      highlightedLine.removeClassName(highlightStyle);
+    }
+    highlightedLine = lines.get(line);
+    highlightedLine.addClassName(highlightStyle);
+    highlightedLine.scrollIntoView();
+  }
+
+  /**
+   * Collapse or expand the region opened by the marker on the specified line.
+   */
+  private void setCollapsed(Element marker, int openLine, boolean collapse) {
+    int foldEnd = tokenizer.getFoldEnd(openLine);
+    if (foldEnd == -1) {
+      // Either the structure fits on one line or it has not been closed yet.
+      return;
+    }
+
+    if (hiddenCounts.length < lines.size()) {
+      int[] grown = new int[lines.size()];
+      System.arraycopy(hiddenCounts, 0, grown, 0, hiddenCounts.length);
+      hiddenCounts = grown;
+    }
+
+    marker.setClassName(collapse ? style.jsonCollapsed() : style.jsonExpanded());
+    if (collapse) {
+      collapsedMarkers.put(openLine, marker);
+    } else {
+      collapsedMarkers.remove(openLine);
+    }
+
+    // The closing line stays visible so that the bracket pairs remain readable.
+    for (int i = openLine + 1; i < foldEnd; i++) {
+      if (collapse) {
+        if (hiddenCounts[i]++ == 0) {
+          lines.get(i).getStyle().setDisplay(Display.NONE);
+        }
+      } else if (--hiddenCounts[i] == 0) {
+        lines.get(i).getStyle().clearDisplay();
+      }
+    }
+  }
+}
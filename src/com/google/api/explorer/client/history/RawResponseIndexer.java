@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.history.JsonTokenizer.TokenType;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+import java.util.List;
+
+/**
+ * Adds every node of a response to a {@link ResponseIndex} from the tokens of its text, for
+ * responses which are too large to be parsed and are only shown in the {@link RawJsonView}. Nodes
+ * are numbered as the {@link ResponseIndexer} numbers them, and also record the line on which they
+ * start so that matches can be revealed in the raw view.
+ *
+ * <p>
+ * Like the tokenizer, the indexer is lenient: values which are not where JSON allows them are
+ * skipped, along with everything they contain.
+ * </p>
+ *
+ */
+public class RawResponseIndexer implements RepeatingCommand {
+
+  /** Milliseconds to spend indexing before yielding to the browser. */
+  private static final int SLICE_MILLIS = 15;
+
+  /** Node of the values which are skipped. */
+  private static final int SKIPPED = -2;
+
+  /**
+   * Object or array whose members are still being indexed.
+   */
+  private static class Frame {
+    final int node;
+    final boolean array;
+    int next = 0;
+
+    /** Key of the object member whose value comes next, and the line on which it was found. */
+    String key;
+    int keyLine;
+
+    Frame(int node, boolean array) {
+      this.node = node;
+      this.array = array;
+    }
+  }
+
+  private final String json;
+  private final JsonTokenizer tokenizer;
+  private final ResponseIndex index;
+  private final List<Frame> stack = Lists.newArrayList();
+
+  /** Whether the top level value has been seen, everything after it is ignored. */
+  private boolean started = false;
+
+  @VisibleForTesting
+  RawResponseIndexer(String json, ResponseIndex index) {
+    this.json = json;
+    this.tokenizer = new JsonTokenizer(json);
+    this.index = index;
+  }
+
+  /**
+   * Start indexing the response text in the background.
+   *
+   * @param json Text of the response.
+   * @return Index which is filled as the text is tokenized, and marked complete when done.
+   */
+  public static ResponseIndex index(String json) {
+    ResponseIndex index = new ResponseIndex();
+    Scheduler.get().scheduleIncremental(new RawResponseIndexer(json, index));
+    return index;
+  }
+
+  @Override
+  public boolean execute() {
+    Duration duration = new Duration();
+    boolean more = true;
+    while (more && duration.elapsedMillis() < SLICE_MILLIS) {
+      more = step();
+    }
+    return more;
+  }
+
+  /**
+   * Index the next token of the text.
+   *
+   * @return Whether there are tokens left, otherwise the index has been marked complete.
+   */
+  @VisibleForTesting
+  boolean step() {
+    if (!tokenizer.hasNext() || (started && stack.isEmpty())) {
+      index.setComplete();
+      return false;
+    }
+
+    TokenType type = tokenizer.next();
+    switch (type) {
+      case OPEN_OBJECT:
+      case OPEN_ARRAY:
+        boolean array = type == TokenType.OPEN_ARRAY;
+        if (stack.isEmpty()) {
+          // The members of the top level value are the top level nodes.
+          stack.add(new Frame(ResponseIndex.ROOT, array));
+          started = true;
+        } else {
+          stack.add(new Frame(addValue(), array));
+        }
+        break;
+
+      case CLOSE_OBJECT:
+      case CLOSE_ARRAY:
+        if (!stack.isEmpty()) {
+          stack.remove(stack.size() - 1);
+        }
+        break;
+
+      case KEY:
+        if (!stack.isEmpty()) {
+          Frame frame = stack.get(stack.size() - 1);
+          frame.key = unquote(tokenizer.getTokenStart(), tokenizer.getTokenEnd());
+          frame.keyLine = tokenizer.getLine();
+        }
+        break;
+
+      case STRING:
+        int node = addValue();
+        if (node >= 0) {
+          index.addTerm(node, unquote(tokenizer.getTokenStart(), tokenizer.getTokenEnd()));
+        }
+        break;
+
+      case NUMBER:
+      case BOOLEAN:
+      case NULL:
+        addValue();
+        break;
+
+      default:
+        // Punctuation and whitespace carry no nodes.
+        break;
+    }
+    return true;
+  }
+
+  /**
+   * Add a node for the value which was just scanned, as the next member of the innermost object
+   * or array.
+   *
+   * @return The new node, or {@link #SKIPPED} if the value is not where JSON allows one.
+   */
+  private int addValue() {
+    if (stack.isEmpty()) {
+      // A top level value which is not an object or array has no nodes.
+      started = true;
+      return SKIPPED;
+    }
+
+    Frame frame = stack.get(stack.size() - 1);
+    if (frame.node == SKIPPED || (!frame.array && frame.key == null)) {
+      return SKIPPED;
+    }
+
+    int node = index.addNode(frame.node, frame.array ? null : frame.key, frame.next++);
+    index.setLine(node, frame.array ? tokenizer.getLine() : frame.keyLine);
+    frame.key = null;
+    return node;
+  }
+
+  /**
+   * Returns the value of the quoted string between the offsets, with its escapes decoded.
+   */
+  private String unquote(int start, int end) {
+    // Unterminated strings have no closing quote.
+    int contentEnd = end - start > 1 && json.charAt(end - 1) == '"' ? end - 1 : end;
+    String content = json.substring(start + 1, contentEnd);
+    if (content.indexOf('\\') == -1) {
+      return content;
+    }
+
+    StringBuilder value = new StringBuilder(content.length());
+    for (int i = 0; i < content.length(); i++) {
+      char c = content.charAt(i);
+      if (c != '\\' || i + 1 == content.length()) {
+        value.append(c);
+        continue;
+      }
+
+      char escaped = content.charAt(++i);
+      switch (escaped) {
+        case 'b':
+          value.append('\b');
+          break;
+        case 'f':
+          value.append('\f');
+          break;
+        case 'n':
+          value.append('\n');
+          break;
+        case 'r':
+          value.append('\r');
+          break;
+        case 't':
+          value.append('\t');
+          break;
+        case 'u':
+          int code = i + 5 <= content.length() ? parseHex(content.substring(i + 1, i + 5)) : -1;
+          if (code < 0) {
+            value.append(escaped);
+          } else {
+            value.append((char) code);
+            i += 4;
+          }
+          break;
+        default:
+          // Quotes, backslashes and slashes stand for themselves.
+          value.append(escaped);
+          break;
+      }
+    }
+    return value.toString();
+  }
+
+  private static int parseHex(String digits) {
+    try {
+      return Integer.parseInt(digits, 16);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
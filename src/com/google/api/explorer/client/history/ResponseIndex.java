@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Inverted index of the keys and string values in a response, which can be searched by substring or
+ * by {@link JsonPathPattern}.
+ *
+ * <p>
+ * Every node of the response is identified by an integer which is assigned in document order. Nodes
+ * only record their parent, their key or array index, and their position among their siblings, so
+ * that paths are reconstructed on demand instead of being stored for every node.
+ * </p>
+ *
+ */
+public class ResponseIndex {
+
+  /** Parent of top level nodes. */
+  public static final int ROOT = -1;
+
+  /** Line of nodes which were not indexed from the text of the response. */
+  public static final int NO_LINE = -1;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * Maximum number of terms whose text is scanned for a substring by a single search, so that
+   * the work per keystroke stays bounded on responses with very many distinct values. Terms are
+   * scanned in the order in which they first occur in the response.
+   */
+  static final int MAX_SCANNED_TERMS = 20000;
+
+  private int size = 0;
+  private int[] parents = new int[INITIAL_CAPACITY];
+  private int[] ordinals = new int[INITIAL_CAPACITY];
+  private int[] depths = new int[INITIAL_CAPACITY];
+  private String[] keys = new String[INITIAL_CAPACITY];
+  private int[] lines = new int[INITIAL_CAPACITY];
+
+  /**
+   * Node ids containing each lower case term, in document order. Terms are kept in the order of
+   * their first occurrence, so that a bounded scan covers the start of the response rather than
+   * whichever terms happen to hash first.
+   */
+  private final Map<String, List<Integer>> postings = Maps.newLinkedHashMap();
+
+  private boolean complete = false;
+
+  /**
+   * Add a node to the index. Nodes must be added in document order, after their parent.
+   *
+   * @param parent Parent node, or {@link #ROOT} for top level values.
+   * @param key Key of the node in its parent object, or {@code null} if it is an array element.
+   * @param ordinal Position of the node among its siblings, which is the index for array elements.
+   * @return Identifier of the new node.
+   */
+  public int addNode(int parent, @Nullable String key, int ordinal) {
+    Preconditions.checkArgument(parent >= ROOT && parent < size);
+    if (size == parents.length) {
+      int capacity = size * 2;
+      parents = grow(parents, capacity);
+      ordinals = grow(ordinals, capacity);
+      depths = grow(depths, capacity);
+      lines = grow(lines, capacity);
+      String[] grownKeys = new String[capacity];
+      System.arraycopy(keys, 0, grownKeys, 0, size);
+      keys = grownKeys;
+    }
+
+    parents[size] = parent;
+    ordinals[size] = ordinal;
+    depths[size] = parent == ROOT ? 1 : depths[parent] + 1;
+    keys[size] = key;
+    lines[size] = NO_LINE;
+    if (key != null) {
+      addTerm(size, key);
+    }
+    return size++;
+  }
+
+  /**
+   * Make the node searchable by the specified text, such as its string value.
+   */
+  public void addTerm(int node, String text) {
+    String term = text.toLowerCase();
+    List<Integer> nodes = postings.get(term);
+    if (nodes == null) {
+      nodes = Lists.newArrayListWithCapacity(1);
+      postings.put(term, nodes);
+    }
+
+    // A node can be added more than once for the same term, i.e. {"id": "id"}.
+    if (nodes.isEmpty() || nodes.get(nodes.size() - 1) != node) {
+      nodes.add(node);
+    }
+  }
+
+  /**
+   * Record the zero based line of the response text on which the node starts, so that it can be
+   * revealed in the {@link RawJsonView}.
+   */
+  public void setLine(int node, int line) {
+    Preconditions.checkElementIndex(node, size);
+    lines[node] = line;
+  }
+
+  /**
+   * Returns the zero based line of the response text on which the node starts, or
+   * {@link #NO_LINE} if the node was indexed from the parsed response.
+   */
+  public int getLine(int node) {
+    Preconditions.checkElementIndex(node, size);
+    return lines[node];
+  }
+
+  /** Returns the number of nodes in the index. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns whether every node of the response has been added. */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /** Mark the index as containing every node of the response. */
+  public void setComplete() {
+    complete = true;
+  }
+
+  /**
+   * Returns whether substring searches only scan some of the terms, and so may miss matches
+   * towards the end of the response.
+   */
+  public boolean isSearchPartial() {
+    return postings.size() > MAX_SCANNED_TERMS;
+  }
+
+  /**
+   * Find the nodes whose key or value contains the query, ignoring case. The nodes of the term
+   * which equals the query are always found, those of other terms only among the first
+   * {@link #MAX_SCANNED_TERMS} terms of the response, see {@link #isSearchPartial}.
+   *
+   * @param query Text to search for.
+   * @param limit Maximum number of nodes to return.
+   * @return Matching nodes, in document order.
+   */
+  public List<Integer> search(String query, int limit) {
+    String lowerCaseQuery = query.toLowerCase();
+    boolean[] matched = new boolean[size];
+    List<Integer> exact = postings.get(lowerCaseQuery);
+    if (exact != null) {
+      for (int node : exact) {
+        matched[node] = true;
+      }
+    }
+
+    int scanned = 0;
+    for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+      if (scanned++ == MAX_SCANNED_TERMS) {
+        break;
+      }
+      if (entry.getKey().contains(lowerCaseQuery)) {
+        for (int node : entry.getValue()) {
+          matched[node] = true;
+        }
+      }
+    }
+
+    List<Integer> results = Lists.newArrayList();
+    for (int node = 0; node < size && results.size() < limit; node++) {
+      if (matched[node]) {
+        results.add(node);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Find the nodes whose path matches the pattern.
+   *
+   * @param pattern Pattern to match.
+   * @param limit Maximum number of nodes to return.
+   * @return Matching nodes, in document order.
+   */
+  public List<Integer> match(JsonPathPattern pattern, int limit) {
+    List<Integer> results = Lists.newArrayList();
+    for (int node = 0; node < size && results.size() < limit; node++) {
+      if (depths[node] == pattern.size() && matches(pattern, node)) {
+        results.add(node);
+      }
+    }
+    return results;
+  }
+
+  private boolean matches(JsonPathPattern pattern, int node) {
+    int current = node;
+    for (int position = pattern.size() - 1; position >= 0; position--) {
+      boolean segmentMatches = keys[current] == null
+          ? pattern.matchesIndex(position, ordinals[current])
+          : pattern.matchesKey(position, keys[current]);
+      if (!segmentMatches) {
+        return false;
+      }
+      current = parents[current];
+    }
+    return true;
+  }
+
+  /**
+   * Returns the positions among their siblings of the node and its ancestors, from the top level
+   * down to the node itself.
+   */
+  public int[] getOrdinals(int node) {
+    Preconditions.checkElementIndex(node, size);
+    int[] path = new int[depths[node]];
+    int current = node;
+    for (int i = path.length - 1; i >= 0; i--) {
+      path[i] = ordinals[current];
+      current = parents[current];
+    }
+    return path;
+  }
+
+  /**
+   * Returns the key of the node and its ancestors, from the top level down to the node itself.
+   * Array elements have {@code null} keys.
+   */
+  public String[] getKeys(int node) {
+    Preconditions.checkElementIndex(node, size);
+    String[] path = new String[depths[node]];
+    int current = node;
+    for (int i = path.length - 1; i >= 0; i--) {
+      path[i] = keys[current];
+      current = parents[current];
+    }
+    return path;
+  }
+
+  /**
+   * Returns the path of the node in the same syntax as {@link JsonPathPattern}, i.e.
+   * {@code items[2].id}.
+   */
+  public String getPath(int node) {
+    String[] pathKeys = getKeys(node);
+    int[] pathOrdinals = getOrdinals(node);
+    StringBuilder path = new StringBuilder();
+    for (int i = 0; i < pathKeys.length; i++) {
+      if (pathKeys[i] == null) {
+        path.append('[').append(pathOrdinals[i]).append(']');
+      } else {
+        if (i > 0) {
+          path.append('.');
+        }
+        path.append(pathKeys[i]);
+      }
+    }
+    return path.toString();
+  }
+
+  private static int[] grow(int[] array, int newLength) {
+    int[] grown = new int[newLength];
+    System.arraycopy(array, 0, grown, 0, array.length);
+    return grown;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.dynamicjso.DynamicJsArray;
+import com.google.api.explorer.client.base.dynamicjso.DynamicJso;
+import com.google.api.explorer.client.base.dynamicjso.JsType;
+import com.google.common.collect.Lists;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+import java.util.List;
+
+/**
+ * Walks a parsed response and adds every node to a {@link ResponseIndex}. The walk is split into
+ * short slices which are scheduled incrementally, so indexing a large response does not block the
+ * browser.
+ *
+ */
+public class ResponseIndexer implements RepeatingCommand {
+
+  /** Milliseconds to spend indexing before yielding to the browser. */
+  private static final int SLICE_MILLIS = 15;
+
+  /**
+   * Position within an object or array whose children are still being indexed.
+   */
+  private static class Frame {
+    final int node;
+    final DynamicJso object;
+    final JsArrayString keys;
+    final DynamicJsArray array;
+    int next = 0;
+
+    Frame(int node, DynamicJso object) {
+      this.node = node;
+      this.object = object;
+      this.keys = object.keys();
+      this.array = null;
+    }
+
+    Frame(int node, DynamicJsArray array) {
+      this.node = node;
+      this.object = null;
+      this.keys = null;
+      this.array = array;
+    }
+
+    boolean hasNext() {
+      return next < (array == null ? keys.length() : array.length());
+    }
+  }
+
+  private final ResponseIndex index;
+  private final List<Frame> stack = Lists.newArrayList();
+
+  private ResponseIndexer(DynamicJso root, ResponseIndex index) {
+    this.index = index;
+    stack.add(new Frame(ResponseIndex.ROOT, root));
+  }
+
+  /**
+   * Start indexing the response in the background.
+   *
+   * @param root Parsed response.
+   * @return Index which is filled as the response is walked, and marked complete when done.
+   */
+  public static ResponseIndex index(DynamicJso root) {
+    ResponseIndex index = new ResponseIndex();
+    Scheduler.get().scheduleIncremental(new ResponseIndexer(root, index));
+    return index;
+  }
+
+  @Override
+  public boolean execute() {
+    Duration duration = new Duration();
+    while (!stack.isEmpty() && duration.elapsedMillis() < SLICE_MILLIS) {
+      Frame frame = stack.get(stack.size() - 1);
+      if (!frame.hasNext()) {
+        stack.remove(stack.size() - 1);
+        continue;
+      }
+
+      int ordinal = frame.next++;
+      if (frame.array == null) {
+        indexValue(frame.object, frame.keys.get(ordinal), frame.node, ordinal);
+      } else {
+        indexElement(frame.array, frame.node, ordinal);
+      }
+    }
+
+    if (stack.isEmpty()) {
+      index.setComplete();
+      return false;
+    }
+    return true;
+  }
+
+  private void indexValue(DynamicJso object, String key, int parent, int ordinal) {
+    int node = index.addNode(parent, key, ordinal);
+    JsType type = object.typeofKey(key);
+    if (type == JsType.STRING) {
+      index.addTerm(node, object.getString(key));
+    } else if (type == JsType.OBJECT) {
+      stack.add(new Frame(node, object.<DynamicJso>get(key)));
+    } else if (type == JsType.ARRAY) {
+      stack.add(new Frame(node, object.<DynamicJsArray>get(key)));
+    }
+  }
+
+  private void indexElement(DynamicJsArray array, int parent, int ordinal) {
+    int node = index.addNode(parent, null, ordinal);
+    JsType type = array.typeofIndex(ordinal);
+    if (type == JsType.STRING) {
+      index.addTerm(node, array.getString(ordinal));
+    } else if (type == JsType.OBJECT) {
+      stack.add(new Frame(node, array.<DynamicJso>get(ordinal)));
+    } else if (type == JsType.ARRAY) {
+      stack.add(new Frame(node, array.<DynamicJsArray>get(ordinal)));
+    }
+  }
+}
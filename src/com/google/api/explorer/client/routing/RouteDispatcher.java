@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.routing;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gwt.regexp.shared.MatchResult;
+import com.google.gwt.regexp.shared.RegExp;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Dispatcher of URL fragments to the routes of a {@link RegexMatchRouter}, which finds the routes
+ * that can match a fragment without trying the pattern of every route.
+ *
+ * <p>
+ * Routes are defined by URL definitions such as "s/{serviceName}/{serviceVersion}/{method}", with
+ * a regular expression for every identifier. The literal text before the first identifier, i.e.
+ * "s/", files the route in a trie of characters. Every node of the trie keeps the routes filed at
+ * it and at its ancestors, in the order in which they were added, so a fragment only walks the
+ * trie along its own characters to the deepest node it reaches, whose routes are the candidates
+ * whatever the number of routes under other prefixes. Each candidate is checked by a single
+ * pattern compiled from its whole template, which also extracts the identifiers. The first
+ * candidate which matches wins, as when every route is tried in turn.
+ * </p>
+ *
+ * @param <T> Type of the handlers of the routes.
+ *
+ */
+public class RouteDispatcher<T> {
+
+  private static final char IDENTIFIER_START = '{';
+  private static final char IDENTIFIER_END = '}';
+
+  /**
+   * Route which matched a fragment, with the values of its identifiers.
+   */
+  public static class Match<T> {
+    private final T handler;
+    private final Map<String, String> identifiers;
+
+    private Match(T handler, Map<String, String> identifiers) {
+      this.handler = handler;
+      this.identifiers = identifiers;
+    }
+
+    public T getHandler() {
+      return handler;
+    }
+
+    /** Returns the values of the identifiers of the template, keyed by their names. */
+    public Map<String, String> getIdentifiers() {
+      return identifiers;
+    }
+  }
+
+  /** Route and the pattern compiled from its template. */
+  private static class Route<T> {
+    final T handler;
+    final RegExp pattern;
+    final List<String> identifierNames;
+    final List<Integer> identifierGroups;
+
+    Route(T handler, RegExp pattern, List<String> identifierNames,
+        List<Integer> identifierGroups) {
+      this.handler = handler;
+      this.pattern = pattern;
+      this.identifierNames = identifierNames;
+      this.identifierGroups = identifierGroups;
+    }
+  }
+
+  /**
+   * Node of the trie, with the routes whose literal prefix ends at it or at one of its ancestors,
+   * in the order in which they were added.
+   */
+  private static class Node<T> {
+    final Map<Character, Node<T>> children = Maps.newHashMap();
+    final List<Route<T>> routes;
+
+    Node(List<Route<T>> routes) {
+      this.routes = routes;
+    }
+  }
+
+  private final Node<T> root = new Node<T>(Lists.<Route<T>>newArrayList());
+  private int routeCount = 0;
+
+  /**
+   * Add a URL definition, which is tried after the definitions that were added before it.
+   *
+   * @param template Template of the fragments of the route, with identifiers in braces.
+   * @param handler Handler of the route.
+   * @param identifierRegexes Regular expression of every identifier of the template, in order.
+   */
+  public void addUrlDefinition(String template, T handler, String... identifierRegexes) {
+    List<String> identifierNames = Lists.newArrayList();
+    List<Integer> identifierGroups = Lists.newArrayList();
+    StringBuilder pattern = new StringBuilder("^");
+    int group = 1;
+    int literalStart = 0;
+    int prefixEnd = -1;
+    for (int start = template.indexOf(IDENTIFIER_START); start != -1;
+        start = template.indexOf(IDENTIFIER_START, literalStart)) {
+      int end = template.indexOf(IDENTIFIER_END, start);
+      Preconditions.checkArgument(end != -1, "Unterminated identifier in template: %s", template);
+      Preconditions.checkArgument(identifierNames.size() < identifierRegexes.length,
+          "Missing regular expression for an identifier of template: %s", template);
+      if (prefixEnd == -1) {
+        prefixEnd = start;
+      }
+
+      // Every identifier is wrapped in a group of its own, after the groups of those before it.
+      String regex = identifierRegexes[identifierNames.size()];
+      pattern.append(RegExp.quote(template.substring(literalStart, start)))
+          .append('(').append(regex).append(')');
+      identifierNames.add(template.substring(start + 1, end));
+      identifierGroups.add(group);
+      group += 1 + countGroups(regex);
+      literalStart = end + 1;
+    }
+    Preconditions.checkArgument(identifierNames.size() == identifierRegexes.length,
+        "Too many regular expressions for the identifiers of template: %s", template);
+    pattern.append(RegExp.quote(template.substring(literalStart))).append('$');
+
+    String prefix = template.substring(0, prefixEnd == -1 ? template.length() : prefixEnd);
+    Node<T> node = root;
+    for (int i = 0; i < prefix.length(); i++) {
+      Node<T> child = node.children.get(prefix.charAt(i));
+      if (child == null) {
+        // A new node starts with the routes of its ancestors, which were all added before.
+        child = new Node<T>(Lists.newArrayList(node.routes));
+        node.children.put(prefix.charAt(i), child);
+      }
+      node = child;
+    }
+    addToSubtree(node, new Route<T>(handler, RegExp.compile(pattern.toString()), identifierNames,
+        identifierGroups));
+    routeCount++;
+  }
+
+  /**
+   * Append a route to the routes of a node and of all of its descendants, after the routes which
+   * were added before it.
+   */
+  private static <T> void addToSubtree(Node<T> node, Route<T> route) {
+    node.routes.add(route);
+    for (Node<T> child : node.children.values()) {
+      addToSubtree(child, route);
+    }
+  }
+
+  /**
+   * Returns the first route which matches the fragment, or {@code null} if none does.
+   */
+  @Nullable
+  public Match<T> dispatch(String fragment) {
+    // The deepest node which the fragment reaches holds every route whose literal prefix the
+    // fragment starts with.
+    Node<T> node = root;
+    for (int i = 0; i < fragment.length(); i++) {
+      Node<T> child = node.children.get(fragment.charAt(i));
+      if (child == null) {
+        break;
+      }
+      node = child;
+    }
+
+    List<Route<T>> candidates = node.routes;
+    for (int i = 0; i < candidates.size(); i++) {
+      Route<T> route = candidates.get(i);
+      MatchResult result = route.pattern.exec(fragment);
+      if (result != null) {
+        return createMatch(route, result);
+      }
+    }
+    return null;
+  }
+
+  private Match<T> createMatch(Route<T> route, MatchResult result) {
+    ImmutableMap.Builder<String, String> identifiers = ImmutableMap.builder();
+    for (int i = 0; i < route.identifierNames.size(); i++) {
+      String value = result.getGroup(route.identifierGroups.get(i));
+      identifiers.put(route.identifierNames.get(i), value == null ? "" : value);
+    }
+    return new Match<T>(route.handler, identifiers.build());
+  }
+
+  /**
+   * Returns the number of URL definitions which have been added.
+   */
+  public int getRouteCount() {
+    return routeCount;
+  }
+
+  /**
+   * Returns the number of capturing groups of a regular expression, which are the opening
+   * parentheses that are neither escaped, nor in a character class, nor followed by "?".
+   */
+  static int countGroups(String regex) {
+    int groups = 0;
+    boolean inClass = false;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (inClass) {
+        inClass = c != ']';
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == '(' && (i + 1 == regex.length() || regex.charAt(i + 1) != '?')) {
+        groups++;
+      }
+    }
+    return groups;
+  }
+}
@@ -0,0 +1,366 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.LruCache;
+import com.google.api.explorer.client.base.LruCache.Weigher;
+import com.google.api.explorer.client.history.HistoryCache.HistoryCacheEvictionObserver;
+import com.google.api.explorer.client.history.HistoryItem;
+import com.google.api.explorer.client.search.IncrementalIndexer.IndexingProgressCallback;
+import com.google.api.explorer.client.search.SearchResultIndex.KeywordCallback;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keyword index of search results which takes the place of {@link SearchResultIndex}, keeping its
+ * postings as {@link PostingList}s of dense integer identifiers instead of sets of results.
+ *
+ * <p>
+ * Every result gets the next identifier when it is first indexed, so the postings of a new result
+ * are appended to the end of their lists. Queries intersect the lists of their keywords starting
+ * from the shortest one, and skip ahead in the longer lists to the next candidate instead of
+ * walking or hashing every posting.
+ * </p>
+ *
+ * <p>
+ * The results of recent queries are cached, stamped with the generation of the index, which
+ * changes whenever documents are added or results are removed. A cached query is reused as it is
+ * while the generation is unchanged. If results were only added since, its postings are checked
+ * from the first new identifier onwards and the new matches appended, since new results always
+ * get higher identifiers. Any other change discards the cached results.
+ * </p>
+ *
+ * <p>
+ * Posting lists are appended to while documents are indexed, and frozen for reading once every
+ * service of the directory has been indexed.
+ * </p>
+ *
+ * <p>
+ * The index observes the history cache, so that the result of a history item which the cache drops
+ * stops matching.
+ * </p>
+ *
+ */
+public class CompactSearchResultIndex extends SearchResultIndex
+    implements IndexingProgressCallback, HistoryCacheEvictionObserver {
+
+  private static final Comparator<PostingList> SHORTEST_FIRST = new Comparator<PostingList>() {
+    @Override
+    public int compare(PostingList a, PostingList b) {
+      return a.size() - b.size();
+    }
+  };
+
+  /** Total number of matches, plus one per query, which the query cache holds at most. */
+  static final int MAX_CACHED_WEIGHT = 20000;
+
+  private static final Joiner SPACE_JOINER = Joiner.on(' ');
+
+  /**
+   * Results of a query, and the state of the index which they reflect.
+   */
+  private static class CachedQuery {
+    final int generation;
+    final int invalidation;
+    final int checkedResults;
+    final List<SearchResult> matches;
+
+    CachedQuery(int generation, int invalidation, int checkedResults,
+        List<SearchResult> matches) {
+      this.generation = generation;
+      this.invalidation = invalidation;
+      this.checkedResults = checkedResults;
+      this.matches = matches;
+    }
+  }
+
+  private static final Weigher<CachedQuery> WEIGHER = new Weigher<CachedQuery>() {
+    @Override
+    public int weigh(CachedQuery value) {
+      return value.matches.size() + 1;
+    }
+  };
+
+  private final KeywordTokenizer tokenizer = new KeywordTokenizer();
+
+  private final Map<SearchResult, Integer> ids = Maps.newHashMap();
+  /** Results by identifier, {@code null} where a result was removed. */
+  private final List<SearchResult> results = Lists.newArrayList();
+  private final Map<String, PostingList> postings = Maps.newHashMap();
+
+  private final LruCache<String, CachedQuery> queryCache =
+      new LruCache<String, CachedQuery>(WEIGHER, MAX_CACHED_WEIGHT);
+
+  /** Changes whenever documents are added or results are removed. */
+  private int generation = 0;
+
+  /** Changes whenever the index changes in a way which cached matches cannot be extended for. */
+  private int invalidation = 0;
+
+  private KeywordCallback keywordCallback;
+
+  private SearchResultRanker<SearchResult> ranker;
+
+  /**
+   * Set the callback which is told about the keywords of every document which were not in the
+   * index before.
+   */
+  @Override
+  public void setKeywordCallback(KeywordCallback keywordCallback) {
+    this.keywordCallback = keywordCallback;
+  }
+
+  /**
+   * Set the ranker which is handed every result when it is first indexed, so that the statistics
+   * of its fields are computed once, and which forgets the results that are removed.
+   */
+  public void setRanker(SearchResultRanker<SearchResult> ranker) {
+    this.ranker = ranker;
+  }
+
+  /**
+   * Index the search entries which the strategy generates for the document.
+   */
+  @Override
+  public <T> void addDocument(T document, IndexingStrategy<T> strategy) {
+    generation++;
+    int firstNewId = results.size();
+    Set<String> newKeywords = Sets.newHashSet();
+    for (SearchEntry entry : strategy.index(document)) {
+      int id = getId(entry.getSearchResult());
+      for (String keyword : entry.getKeywords()) {
+        PostingList list = postings.get(keyword);
+        if (list == null) {
+          list = new PostingList();
+          postings.put(keyword, list);
+          newKeywords.add(keyword);
+        }
+
+        if (id > list.getLast()) {
+          list.add(id);
+        } else if (list.cursor().advanceTo(id) != id) {
+          // A result which was indexed before gained a keyword, which is rare enough to rebuild.
+          postings.put(keyword, insert(list, id));
+        } else {
+          continue;
+        }
+
+        // Cached queries only check the new results, so they miss old results with new keywords.
+        if (id < firstNewId) {
+          invalidation++;
+        }
+      }
+    }
+
+    if (keywordCallback != null) {
+      keywordCallback.newKeywordsAdded(newKeywords);
+    }
+  }
+
+  /**
+   * Remove a result from the index, so that it is no longer returned by any query.
+   *
+   * @return Whether the result was indexed.
+   */
+  public boolean removeResult(SearchResult result) {
+    Integer id = ids.remove(result);
+    if (id == null) {
+      return false;
+    }
+
+    // The postings of the result are left in place, and skipped by queries.
+    results.set(id, null);
+    if (ranker != null) {
+      ranker.remove(result);
+    }
+    generation++;
+    invalidation++;
+    return true;
+  }
+
+  /**
+   * Remove the result of a history item from the index, if it was indexed.
+   *
+   * @return Whether the result of the history item was indexed.
+   */
+  public boolean removeHistoryItem(HistoryItem item) {
+    // Only history results point back to their item, so they are found by a scan, which is only
+    // paid once for every item which the history cache drops.
+    for (SearchResult result : results) {
+      if (result != null && result.getKind() == SearchResult.Kind.HISTORY_ITEM
+          && result.getHistoryItem() == item) {
+        return removeResult(result);
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void newHistoryItem(HistoryItem newItem) {
+    // New history items are indexed by the search manager.
+  }
+
+  @Override
+  public void historyItemBodyEvicted(HistoryItem item) {
+    // History results are indexed by request, which outlives the response body.
+  }
+
+  @Override
+  public void historyItemRemoved(HistoryItem item) {
+    removeHistoryItem(item);
+  }
+
+  /**
+   * Returns the results which were indexed with every keyword of the query, in the order in which
+   * they were first indexed.
+   */
+  @Override
+  public List<SearchResult> search(String query) {
+    Set<String> keywords = tokenizer.asSet(query);
+    if (keywords.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    String key = SPACE_JOINER.join(keywords);
+    CachedQuery cached = queryCache.get(key);
+    if (cached != null && cached.generation == generation) {
+      return cached.matches;
+    }
+
+    List<SearchResult> matches;
+    if (cached != null && cached.invalidation == invalidation) {
+      matches = ImmutableList.<SearchResult>builder()
+          .addAll(cached.matches)
+          .addAll(intersect(keywords, cached.checkedResults))
+          .build();
+    } else {
+      matches = ImmutableList.copyOf(intersect(keywords, 0));
+    }
+    queryCache.put(key, new CachedQuery(generation, invalidation, results.size(), matches));
+    return matches;
+  }
+
+  @Override
+  public void indexingProgress(int indexed, int total) {
+    if (indexed >= total) {
+      freeze();
+    }
+  }
+
+  /**
+   * Freeze the posting list of every keyword, so that queries do not pay for it.
+   */
+  void freeze() {
+    for (PostingList list : postings.values()) {
+      list.freeze();
+    }
+  }
+
+  /**
+   * Returns the generation of the index, which changes whenever documents are added or results
+   * are removed.
+   */
+  public int getGeneration() {
+    return generation;
+  }
+
+  /** Returns the number of queries whose results are cached. */
+  int getCachedQueryCount() {
+    return queryCache.size();
+  }
+
+  /**
+   * Returns the results which were indexed with every keyword, from the given identifier onwards.
+   */
+  private List<SearchResult> intersect(Set<String> keywords, int firstId) {
+    List<PostingList> lists = Lists.newArrayListWithCapacity(keywords.size());
+    for (String keyword : keywords) {
+      PostingList list = postings.get(keyword);
+      if (list == null) {
+        return ImmutableList.of();
+      }
+      lists.add(list);
+    }
+    Collections.sort(lists, SHORTEST_FIRST);
+
+    List<PostingList.Cursor> cursors = Lists.newArrayListWithCapacity(lists.size());
+    for (PostingList list : lists) {
+      cursors.add(list.cursor());
+    }
+
+    // Leapfrog: a candidate from the shortest list is confirmed by every other list, or the list
+    // which passed it names the next candidate.
+    List<SearchResult> matches = Lists.newArrayList();
+    PostingList.Cursor shortest = cursors.get(0);
+    int candidate = shortest.advanceTo(firstId);
+    candidates:
+    while (candidate != -1) {
+      for (int i = 1; i < cursors.size(); i++) {
+        int id = cursors.get(i).advanceTo(candidate);
+        if (id == -1) {
+          break candidates;
+        }
+        if (id != candidate) {
+          candidate = shortest.advanceTo(id);
+          continue candidates;
+        }
+      }
+      if (results.get(candidate) != null) {
+        matches.add(results.get(candidate));
+      }
+      candidate = shortest.next();
+    }
+    return matches;
+  }
+
+  /** Returns the number of results which are indexed. */
+  public int getResultCount() {
+    return ids.size();
+  }
+
+  /** Returns the number of keywords which are indexed. */
+  public int getKeywordCount() {
+    return postings.size();
+  }
+
+  private int getId(SearchResult result) {
+    Integer id = ids.get(result);
+    if (id == null) {
+      id = results.size();
+      ids.put(result, id);
+      results.add(result);
+      if (ranker != null) {
+        ranker.add(result);
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Returns a copy of the list with the identifier inserted.
+   */
+  private static PostingList insert(PostingList list, int inserted) {
+    PostingList copy = new PostingList();
+    PostingList.Cursor cursor = list.cursor();
+    for (int id = cursor.next(); id != -1; id = cursor.next()) {
+      if (inserted != -1 && inserted < id) {
+        copy.add(inserted);
+        inserted = -1;
+      }
+      copy.add(id);
+    }
+    if (inserted != -1) {
+      copy.add(inserted);
+    }
+    return copy;
+  }
+}
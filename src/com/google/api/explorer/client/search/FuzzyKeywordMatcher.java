@@ -0,0 +1,303 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.search.SearchResultIndex.KeywordCallback;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matcher of misspelled search keywords, i.e. "calender" to "calendar", which learns the keywords
+ * of the search index as documents are added to it.
+ *
+ * <p>
+ * Keywords are indexed by their trigrams. The keywords which share the most trigrams with a word
+ * are its candidates, and those within a small Damerau-Levenshtein distance of it are its matches.
+ * The postings scanned and the candidates checked per word are capped, rarest trigrams first, so
+ * the work per query stays bounded however many keywords the index holds.
+ * </p>
+ *
+ */
+public class FuzzyKeywordMatcher implements KeywordCallback {
+
+  /** Words shorter than this are only matched exactly. */
+  static final int MIN_WORD_LENGTH = 3;
+
+  /** Words up to this length may contain one error, longer words two. */
+  static final int MAX_SINGLE_ERROR_LENGTH = 4;
+
+  /** Maximum number of trigram postings scanned for a single word. */
+  private static final int MAX_SCANNED_POSTINGS = 20000;
+
+  /** Maximum number of candidates whose edit distance is computed for a single word. */
+  private static final int MAX_CANDIDATES = 100;
+
+  /** Maximum number of matches used in place of a misspelled query word. */
+  private static final int MAX_MATCHES_PER_WORD = 3;
+
+  /** Maximum number of corrected queries run for a single query. */
+  private static final int MAX_CORRECTED_QUERIES = 6;
+
+  private static final String BOUNDARY = "$$";
+
+  private static final Joiner SPACE_JOINER = Joiner.on(' ');
+
+  /**
+   * Keyword which shares trigrams with a word.
+   */
+  private static class Candidate {
+    final int id;
+    int sharedTrigrams;
+
+    Candidate(int id) {
+      this.id = id;
+    }
+  }
+
+  private static final Comparator<Candidate> MOST_SHARED_FIRST = new Comparator<Candidate>() {
+    @Override
+    public int compare(Candidate a, Candidate b) {
+      return a.sharedTrigrams != b.sharedTrigrams
+          ? b.sharedTrigrams - a.sharedTrigrams : a.id - b.id;
+    }
+  };
+
+  private final KeywordTokenizer tokenizer = new KeywordTokenizer();
+
+  private final List<String> keywords = Lists.newArrayList();
+  private final Set<String> known = Sets.newHashSet();
+  private final Map<String, PostingList> trigrams = Maps.newHashMap();
+
+  @Override
+  public void newKeywordsAdded(Set<String> newKeywords) {
+    for (String keyword : newKeywords) {
+      if (!known.add(keyword)) {
+        continue;
+      }
+
+      int id = keywords.size();
+      keywords.add(keyword);
+      for (String trigram : getTrigrams(keyword)) {
+        PostingList postings = trigrams.get(trigram);
+        if (postings == null) {
+          postings = new PostingList();
+          trigrams.put(trigram, postings);
+        }
+        // A keyword can contain a trigram more than once.
+        if (postings.getLast() != id) {
+          postings.add(id);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether the keyword is in the index.
+   */
+  public boolean contains(String keyword) {
+    return known.contains(keyword);
+  }
+
+  /**
+   * Returns the keywords which are within the allowed edit distance of a word, the closest first.
+   *
+   * @param word Lower case word to match.
+   * @param limit Maximum number of keywords to return.
+   */
+  public List<String> match(String word, int limit) {
+    if (word.length() < MIN_WORD_LENGTH || limit <= 0) {
+      return ImmutableList.of();
+    }
+    int maxDistance = word.length() <= MAX_SINGLE_ERROR_LENGTH ? 1 : 2;
+
+    // Count the trigrams which each keyword shares with the word, rarest trigrams first, until
+    // the budget of postings is spent.
+    List<PostingList> lists = Lists.newArrayList();
+    for (String trigram : Sets.newHashSet(getTrigrams(word))) {
+      PostingList postings = trigrams.get(trigram);
+      if (postings != null) {
+        lists.add(postings);
+      }
+    }
+    Collections.sort(lists, new Comparator<PostingList>() {
+      @Override
+      public int compare(PostingList a, PostingList b) {
+        return a.size() - b.size();
+      }
+    });
+
+    Map<Integer, Candidate> candidates = Maps.newHashMap();
+    int scanned = 0;
+    for (PostingList postings : lists) {
+      if (scanned + postings.size() > MAX_SCANNED_POSTINGS) {
+        break;
+      }
+      scanned += postings.size();
+
+      PostingList.Cursor cursor = postings.cursor();
+      for (int id = cursor.next(); id != -1; id = cursor.next()) {
+        // Keywords whose length is too different can never be close enough.
+        if (Math.abs(keywords.get(id).length() - word.length()) > maxDistance) {
+          continue;
+        }
+        Candidate candidate = candidates.get(id);
+        if (candidate == null) {
+          candidate = new Candidate(id);
+          candidates.put(id, candidate);
+        }
+        candidate.sharedTrigrams++;
+      }
+    }
+
+    List<Candidate> ordered = Lists.newArrayList(candidates.values());
+    Collections.sort(ordered, MOST_SHARED_FIRST);
+
+    // Keep the matches ordered by distance, and then by the number of shared trigrams.
+    List<List<String>> byDistance = Lists.newArrayList();
+    for (int distance = 0; distance <= maxDistance; distance++) {
+      byDistance.add(Lists.<String>newArrayList());
+    }
+    for (Candidate candidate : ordered.subList(0, Math.min(MAX_CANDIDATES, ordered.size()))) {
+      String keyword = keywords.get(candidate.id);
+      int distance = distance(word, keyword, maxDistance);
+      if (distance <= maxDistance) {
+        byDistance.get(distance).add(keyword);
+      }
+    }
+
+    List<String> matches = Lists.newArrayList();
+    for (List<String> atDistance : byDistance) {
+      matches.addAll(atDistance);
+    }
+    return matches.subList(0, Math.min(limit, matches.size()));
+  }
+
+  /**
+   * Returns the queries in which the words of the query which are not keywords are replaced by
+   * their closest matches, or no queries if every word is a keyword or a word has no match.
+   */
+  public List<String> correctQuery(String query) {
+    List<List<String>> alternatives = Lists.newArrayList();
+    boolean corrected = false;
+    for (String word : tokenizer.asSet(query)) {
+      if (known.contains(word)) {
+        alternatives.add(ImmutableList.of(word));
+        continue;
+      }
+
+      List<String> matches = match(word, MAX_MATCHES_PER_WORD);
+      if (matches.isEmpty()) {
+        return ImmutableList.of();
+      }
+      alternatives.add(matches);
+      corrected = true;
+    }
+    if (!corrected) {
+      return ImmutableList.of();
+    }
+
+    // Combine the alternatives of every word, best matches first, up to the maximum.
+    List<List<String>> queries = Lists.newArrayList();
+    queries.add(ImmutableList.<String>of());
+    for (List<String> wordAlternatives : alternatives) {
+      List<List<String>> extended = Lists.newArrayList();
+      for (String alternative : wordAlternatives) {
+        for (List<String> prefix : queries) {
+          if (extended.size() < MAX_CORRECTED_QUERIES) {
+            List<String> words = Lists.newArrayList(prefix);
+            words.add(alternative);
+            extended.add(words);
+          }
+        }
+      }
+      queries = extended;
+    }
+
+    List<String> correctedQueries = Lists.newArrayListWithCapacity(queries.size());
+    for (List<String> words : queries) {
+      correctedQueries.add(SPACE_JOINER.join(words));
+    }
+    return correctedQueries;
+  }
+
+  /**
+   * Returns the results of a query followed by the results of its corrected queries, so that
+   * exact matches come first.
+   */
+  public List<SearchResult> withFuzzyMatches(
+      Iterable<SearchResult> exactResults, String query, SearchResultIndex index) {
+    Set<SearchResult> results = Sets.newLinkedHashSet(exactResults);
+    for (String correctedQuery : correctQuery(query)) {
+      for (SearchResult result : index.search(correctedQuery)) {
+        results.add(result);
+      }
+    }
+    return ImmutableList.copyOf(results);
+  }
+
+  /**
+   * Returns the optimal string alignment distance between two words, which counts insertions,
+   * deletions, substitutions and transpositions of adjacent characters, or any value larger than
+   * the maximum once the distance is known to exceed it.
+   */
+  static int distance(String a, String b, int maxDistance) {
+    if (Math.abs(a.length() - b.length()) > maxDistance) {
+      return maxDistance + 1;
+    }
+
+    // Only the last three rows of the table are kept.
+    int[] beforePrevious = new int[b.length() + 1];
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      current[j] = j;
+    }
+
+    for (int i = 1; i <= a.length(); i++) {
+      int[] reused = beforePrevious;
+      beforePrevious = previous;
+      previous = current;
+      current = reused;
+
+      current[0] = i;
+      int rowMinimum = i;
+      for (int j = 1; j <= b.length(); j++) {
+        int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        int value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+        if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2)
+            && a.charAt(i - 2) == b.charAt(j - 1)) {
+          value = Math.min(value, beforePrevious[j - 2] + 1);
+        }
+        current[j] = value;
+        rowMinimum = Math.min(rowMinimum, value);
+      }
+
+      if (rowMinimum > maxDistance) {
+        return maxDistance + 1;
+      }
+    }
+    return current[b.length()];
+  }
+
+  /**
+   * Returns the trigrams of a word, which is padded so that its first and last characters are in
+   * trigrams of their own and even short words with transposed letters share some trigrams.
+   */
+  static List<String> getTrigrams(String word) {
+    String padded = BOUNDARY + word + BOUNDARY;
+    List<String> result = Lists.newArrayListWithCapacity(Math.max(0, padded.length() - 2));
+    for (int i = 0; i + 3 <= padded.length(); i++) {
+      result.add(padded.substring(i, i + 3));
+    }
+    return result;
+  }
+}
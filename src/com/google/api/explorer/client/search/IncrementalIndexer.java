@@ -0,0 +1,164 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
+import com.google.api.explorer.client.base.ApiService;
+import com.google.api.explorer.client.base.ServiceLoader.ServiceLoadFailureDelegate;
+import com.google.api.explorer.client.base.ServiceLoader.ServiceLoaderDelegate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service loader delegate which queues the services that are loaded, and hands them on to the
+ * delegate which indexes them a short slice at a time, so that hundreds of discovery documents
+ * arriving at once do not freeze the page while they are indexed.
+ *
+ * <p>
+ * The services of the last directory are counted as they are indexed, so that the search box can
+ * show how much of the directory is searchable and results can be marked as partial until every
+ * service has been indexed. Services which fail to load are counted as done, since they will never
+ * be indexed.
+ * </p>
+ *
+ */
+public class IncrementalIndexer implements ServiceLoaderDelegate, ServiceLoadFailureDelegate {
+
+  /**
+   * Observer of the progress of indexing.
+   */
+  public interface IndexingProgressCallback {
+    /**
+     * Invoked after services of the directory have been indexed.
+     *
+     * @param indexed Number of services of the directory which have been indexed.
+     * @param total Number of services of the directory which are to be indexed.
+     */
+    void indexingProgress(int indexed, int total);
+  }
+
+  /** Milliseconds to spend indexing before yielding to the browser. */
+  private static final int SLICE_MILLIS = 10;
+
+  private final ServiceLoaderDelegate indexer;
+  private final List<IndexingProgressCallback> callbacks = Lists.newArrayList();
+
+  private final LinkedList<ApiService> pending = Lists.newLinkedList();
+  /** Services which were indexed or failed to load, keyed by "name:version". */
+  private final Set<String> doneIds = Sets.newHashSet();
+  private final Set<String> expected = Sets.newHashSet();
+  private int indexed = 0;
+  private int total = 0;
+  private boolean scheduled = false;
+
+  /**
+   * Create an instance.
+   *
+   * @param indexer Delegate which indexes the services, one at a time.
+   */
+  public IncrementalIndexer(ServiceLoaderDelegate indexer) {
+    this.indexer = indexer;
+  }
+
+  public void addCallback(IndexingProgressCallback callback) {
+    callbacks.add(callback);
+  }
+
+  /**
+   * Returns whether every service of the directory has been indexed.
+   */
+  public boolean isComplete() {
+    return indexed == total;
+  }
+
+  @Override
+  public void directoryLoaded(Set<ServiceDefinition> directoryServices) {
+    // Services which were indexed before the directory arrived already count.
+    expected.clear();
+    for (ServiceDefinition service : directoryServices) {
+      if (!doneIds.contains(service.getId())) {
+        expected.add(service.getId());
+      }
+    }
+    total = directoryServices.size();
+    indexed = total - expected.size();
+    reportProgress();
+
+    indexer.directoryLoaded(directoryServices);
+  }
+
+  @Override
+  public void serviceLoaded(ApiService service) {
+    enqueue(service);
+    scheduleIndexing();
+  }
+
+  @Override
+  public void serviceLoadFailed(String name, String version, String reason) {
+    done(name + ":" + version);
+  }
+
+  /**
+   * Queue a service to be indexed.
+   */
+  void enqueue(ApiService service) {
+    pending.add(service);
+  }
+
+  /**
+   * Index the oldest of the pending services.
+   *
+   * @return Whether there are more services to index.
+   */
+  boolean step() {
+    ApiService service = pending.poll();
+    if (service != null) {
+      indexer.serviceLoaded(service);
+      done(service.getName() + ":" + service.getVersion());
+    }
+    return !pending.isEmpty();
+  }
+
+  /**
+   * Count a service of the directory as done, whether it was indexed or failed to load.
+   */
+  private void done(String serviceId) {
+    doneIds.add(serviceId);
+    if (expected.remove(serviceId)) {
+      indexed++;
+      reportProgress();
+    }
+  }
+
+  private void scheduleIndexing() {
+    if (scheduled) {
+      return;
+    }
+    scheduled = true;
+    Scheduler.get().scheduleIncremental(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        Duration duration = new Duration();
+        boolean more = true;
+        while (more && duration.elapsedMillis() < SLICE_MILLIS) {
+          more = step();
+        }
+        scheduled = more;
+        return more;
+      }
+    });
+  }
+
+  private void reportProgress() {
+    for (IndexingProgressCallback callback : callbacks) {
+      callback.indexingProgress(indexed, total);
+    }
+  }
+}
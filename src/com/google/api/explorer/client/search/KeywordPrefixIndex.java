@@ -0,0 +1,157 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Distinct keywords kept in sorted order, so that the keywords which start with a prefix can be
+ * found with a binary search and then read off in order.
+ *
+ * <p>
+ * Keywords are held in a sorted array, which is compact but costly to insert into, and a small
+ * sorted buffer which takes new keywords. The buffer is merged into the array once it grows past a
+ * fraction of the array, so adding a keyword costs a constant amount of copying on average.
+ * Finding k completions of a prefix takes one binary search in each and then k steps.
+ * </p>
+ *
+ */
+public class KeywordPrefixIndex {
+
+  /** Smallest number of keywords buffered before they are merged into the sorted array. */
+  static final int MIN_MERGE_SIZE = 256;
+
+  /** The buffer is merged once it holds more than this fraction of the sorted keywords. */
+  private static final int MERGE_DIVISOR = 8;
+
+  private static final String[] NO_KEYWORDS = new String[0];
+
+  private String[] sorted = NO_KEYWORDS;
+  private final TreeSet<String> buffered = Sets.newTreeSet();
+
+  /**
+   * Add the keywords, ignoring those which are already held.
+   */
+  public void addAll(Iterable<String> keywords) {
+    for (String keyword : keywords) {
+      if (!keyword.isEmpty() && Arrays.binarySearch(sorted, keyword) < 0) {
+        buffered.add(keyword);
+      }
+    }
+    if (buffered.size() > Math.max(MIN_MERGE_SIZE, sorted.length / MERGE_DIVISOR)) {
+      merge();
+    }
+  }
+
+  /**
+   * Returns whether the keyword is held.
+   */
+  public boolean contains(String keyword) {
+    return Arrays.binarySearch(sorted, keyword) >= 0 || buffered.contains(keyword);
+  }
+
+  /** Returns the number of keywords held. */
+  public int size() {
+    return sorted.length + buffered.size();
+  }
+
+  /**
+   * Returns the first keywords, in sorted order, which start with the specified prefix.
+   *
+   * @param prefix Prefix which the keywords must start with, every keyword starts with an empty
+   *        prefix.
+   * @param limit Maximum number of keywords to return.
+   */
+  public List<String> complete(String prefix, int limit) {
+    Preconditions.checkArgument(limit >= 0);
+    if (limit == 0) {
+      return ImmutableList.of();
+    }
+
+    List<String> completions = Lists.newArrayListWithCapacity(Math.min(limit, size()));
+    int next = lowerBound(prefix);
+    Iterator<String> bufferedKeywords = buffered.tailSet(prefix).iterator();
+    String nextBuffered = nextWithPrefix(bufferedKeywords, prefix);
+
+    while (completions.size() < limit) {
+      String nextSorted =
+          next < sorted.length && sorted[next].startsWith(prefix) ? sorted[next] : null;
+      if (nextSorted == null && nextBuffered == null) {
+        break;
+      }
+
+      // The array and the buffer never hold the same keyword, so the smaller one goes first.
+      if (nextBuffered == null || (nextSorted != null && nextSorted.compareTo(nextBuffered) < 0)) {
+        completions.add(nextSorted);
+        next++;
+      } else {
+        completions.add(nextBuffered);
+        nextBuffered = nextWithPrefix(bufferedKeywords, prefix);
+      }
+    }
+    return completions;
+  }
+
+  /**
+   * Merge the buffered keywords into the sorted array.
+   */
+  void merge() {
+    if (buffered.isEmpty()) {
+      return;
+    }
+
+    String[] merged = new String[sorted.length + buffered.size()];
+    int read = 0;
+    int write = 0;
+    for (String keyword : buffered) {
+      while (read < sorted.length && sorted[read].compareTo(keyword) < 0) {
+        merged[write++] = sorted[read++];
+      }
+      merged[write++] = keyword;
+    }
+    System.arraycopy(sorted, read, merged, write, sorted.length - read);
+
+    sorted = merged;
+    buffered.clear();
+  }
+
+  /** Returns the number of keywords which have not been merged into the sorted array. */
+  int getBufferedCount() {
+    return buffered.size();
+  }
+
+  /**
+   * Returns the position of the first sorted keyword which is not smaller than the key.
+   */
+  private int lowerBound(String key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (sorted[middle].compareTo(key) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static String nextWithPrefix(Iterator<String> keywords, String prefix) {
+    if (keywords.hasNext()) {
+      String keyword = keywords.next();
+      if (keyword.startsWith(prefix)) {
+        return keyword;
+      }
+    }
+    return null;
+  }
+}
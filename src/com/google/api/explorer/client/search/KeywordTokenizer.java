@@ -0,0 +1,211 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tokenizer which splits text into lower case search keywords in a single pass over its
+ * characters, with the semantics of {@link KeywordExtractor}: keywords are runs of letters, digits
+ * and periods without leading or trailing periods, so that identifiers such as "v1.2" and
+ * "a.method.name" are kept whole while sentence punctuation is dropped.
+ *
+ * <p>
+ * Characters are lowercased into a buffer which is reused from token to token, so the only
+ * allocation per keyword is the keyword itself. Letters and digits are the ASCII ones, classified
+ * and lowercased with range checks on the character code rather than through {@link Character},
+ * whose emulation in compiled JavaScript builds a string and runs a regular expression for every
+ * character. Stop words can optionally be dropped, and plural words reduced to their singular
+ * form.
+ * </p>
+ *
+ */
+public class KeywordTokenizer {
+
+  /**
+   * Receiver of the keywords of a text, in order and with repetitions.
+   */
+  public interface TokenSink {
+    void token(String token);
+  }
+
+  /** Common English words which can be dropped from descriptions. */
+  public static final Set<String> DEFAULT_STOP_WORDS = ImmutableSet.of("a", "an", "and", "are",
+      "as", "at", "be", "by", "for", "from", "in", "is", "it", "of", "on", "or", "that", "the",
+      "this", "to", "with");
+
+  /** Words shorter than this are never stemmed. */
+  private static final int MIN_STEM_LENGTH = 4;
+
+  /** Difference between the codes of a lower case letter and of its upper case form. */
+  private static final int LOWER_CASE_OFFSET = 'a' - 'A';
+
+  private final Set<String> stopWords;
+  private final boolean stem;
+
+  private char[] buffer = new char[32];
+
+  /**
+   * Create a tokenizer which keeps every keyword as it is.
+   */
+  public KeywordTokenizer() {
+    this(ImmutableSet.<String>of(), false);
+  }
+
+  /**
+   * Create a tokenizer.
+   *
+   * @param stopWords Lower case keywords to drop.
+   * @param stem Whether to reduce plural keywords to their singular form.
+   */
+  public KeywordTokenizer(Set<String> stopWords, boolean stem) {
+    this.stopWords = stopWords;
+    this.stem = stem;
+  }
+
+  /**
+   * Returns the distinct keywords of the text, in order of their first occurrence.
+   */
+  public Set<String> asSet(String text) {
+    final Set<String> keywords = Sets.newLinkedHashSet();
+    tokenize(text, new TokenSink() {
+      @Override
+      public void token(String token) {
+        keywords.add(token);
+      }
+    });
+    return keywords;
+  }
+
+  /**
+   * Split a search query into its words at whitespace. If the query ends with whitespace the last
+   * word is empty, which is the word that is being typed.
+   *
+   * @param query Query to split.
+   * @param stripPunctuation Whether to split the words into keywords, rather than keeping them
+   *        as they were typed.
+   */
+  public List<String> split(String query, boolean stripPunctuation) {
+    final List<String> words = Lists.newArrayList();
+    if (stripPunctuation) {
+      tokenize(query, new TokenSink() {
+        @Override
+        public void token(String token) {
+          words.add(token);
+        }
+      });
+    } else {
+      int start = -1;
+      for (int i = 0; i < query.length(); i++) {
+        if (isWhitespace(query.charAt(i))) {
+          if (start >= 0) {
+            words.add(query.substring(start, i));
+            start = -1;
+          }
+        } else if (start < 0) {
+          start = i;
+        }
+      }
+      if (start >= 0) {
+        words.add(query.substring(start));
+      }
+    }
+
+    if (query.length() > 0 && isWhitespace(query.charAt(query.length() - 1))) {
+      words.add("");
+    }
+    return words;
+  }
+
+  /**
+   * Returns whether the character is ASCII whitespace, which separates the words of a query.
+   * {@link Character#isWhitespace} is not emulated in compiled script.
+   */
+  static boolean isWhitespace(char c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+  /**
+   * Hand every keyword of the text to the sink, in order and with repetitions.
+   */
+  public void tokenize(String text, TokenSink sink) {
+    int length = 0;
+    int lastNonPeriod = 0;
+    boolean hasDigit = false;
+    for (int i = 0; i <= text.length(); i++) {
+      char c = i < text.length() ? text.charAt(i) : ' ';
+      if (c >= 'a' && c <= 'z') {
+        append(length++, c);
+        lastNonPeriod = length;
+      } else if (c >= 'A' && c <= 'Z') {
+        append(length++, (char) (c + LOWER_CASE_OFFSET));
+        lastNonPeriod = length;
+      } else if (c >= '0' && c <= '9') {
+        append(length++, c);
+        lastNonPeriod = length;
+        hasDigit = true;
+      } else if (c == '.' && length > 0) {
+        // Periods are kept inside of a keyword, leading ones are never added.
+        append(length++, c);
+      } else if (length > 0) {
+        // Trailing periods are dropped.
+        emit(lastNonPeriod, hasDigit, sink);
+        length = 0;
+        lastNonPeriod = 0;
+        hasDigit = false;
+      }
+    }
+  }
+
+  private void append(int position, char c) {
+    if (position == buffer.length) {
+      char[] grown = new char[buffer.length * 2];
+      System.arraycopy(buffer, 0, grown, 0, position);
+      buffer = grown;
+    }
+    buffer[position] = c;
+  }
+
+  private void emit(int length, boolean hasDigit, TokenSink sink) {
+    // Identifiers and version numbers are never stemmed.
+    boolean identifier = hasDigit;
+    for (int i = 0; i < length && !identifier; i++) {
+      identifier = buffer[i] == '.';
+    }
+    if (stem && !identifier && length >= MIN_STEM_LENGTH) {
+      length = stemmedLength(length);
+    }
+
+    String token = new String(buffer, 0, length);
+    if (!stopWords.contains(token)) {
+      sink.token(token);
+    }
+  }
+
+  /**
+   * Reduce a plural word in the buffer to its singular form, i.e. "entries" to "entry" and
+   * "lists" to "list", leaving words such as "status" and "analysis" alone.
+   *
+   * @return The length of the stemmed word.
+   */
+  private int stemmedLength(int length) {
+    if (buffer[length - 1] != 's') {
+      return length;
+    }
+
+    char beforeLast = buffer[length - 2];
+    if (length > MIN_STEM_LENGTH && beforeLast == 'e' && buffer[length - 3] == 'i') {
+      buffer[length - 3] = 'y';
+      return length - 2;
+    }
+    if (beforeLast == 's' || beforeLast == 'u' || beforeLast == 'i') {
+      return length;
+    }
+    return length - 1;
+  }
+}
@@ -0,0 +1,220 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Sorted list of distinct non-negative integer identifiers, kept as the gaps between consecutive
+ * identifiers in variable length codes. Each character of the encoding holds 14 bits of a gap and a
+ * continuation bit, so characters never reach the surrogate range and small gaps take a single
+ * character, which is two bytes in compiled script instead of an object per posting.
+ *
+ * <p>
+ * Every {@link #SKIP_INTERVAL} postings the identifier and the position in the encoding are
+ * recorded, so that a {@link Cursor} can gallop over the skips to a target and only decode the
+ * postings of a single interval.
+ * </p>
+ *
+ * <p>
+ * Codes are appended to a builder while identifiers are added, and the list is frozen into a
+ * string when it is next read, so that adding identifiers does not copy the codes added before.
+ * </p>
+ *
+ */
+public class PostingList {
+
+  /** Number of postings between recorded skips. */
+  static final int SKIP_INTERVAL = 32;
+
+  private static final int PAYLOAD_BITS = 14;
+  private static final int PAYLOAD_MASK = (1 << PAYLOAD_BITS) - 1;
+  private static final int CONTINUATION = 1 << PAYLOAD_BITS;
+
+  /** Codes of the identifiers, as of the last time the list was frozen. */
+  private String encoded = "";
+
+  /** Codes of all of the identifiers while some were added since the list was frozen. */
+  private StringBuilder appended = null;
+
+  private int size = 0;
+  private int last = -1;
+
+  // The first identifier of every interval, and the offset of its code.
+  private int[] skipIds = new int[1];
+  private int[] skipOffsets = new int[1];
+
+  /**
+   * Append an identifier, which must be larger than the last one.
+   */
+  public void add(int id) {
+    Preconditions.checkArgument(id > last, "Identifiers must be added in increasing order.");
+    if (appended == null) {
+      appended = new StringBuilder(encoded);
+    }
+    if (size % SKIP_INTERVAL == 0) {
+      int skip = size / SKIP_INTERVAL;
+      if (skip == skipIds.length) {
+        skipIds = grow(skipIds);
+        skipOffsets = grow(skipOffsets);
+      }
+      skipIds[skip] = id;
+      skipOffsets[skip] = appended.length();
+    }
+
+    int gap = id - last;
+    while (gap > PAYLOAD_MASK) {
+      appended.append((char) ((gap & PAYLOAD_MASK) | CONTINUATION));
+      gap >>>= PAYLOAD_BITS;
+    }
+    appended.append((char) gap);
+    last = id;
+    size++;
+  }
+
+  /**
+   * Make the identifiers added so far readable by cursors. Lists are frozen when a cursor is
+   * created, and may be frozen once indexing is done so that the first query does not pay for it.
+   */
+  public void freeze() {
+    if (appended != null) {
+      encoded = appended.toString();
+      appended = null;
+    }
+  }
+
+  /** Returns the number of identifiers in the list. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the largest identifier in the list, or -1 if it is empty. */
+  public int getLast() {
+    return last;
+  }
+
+  /** Returns the number of characters used by the encoding. */
+  int getEncodedLength() {
+    return appended != null ? appended.length() : encoded.length();
+  }
+
+  /**
+   * Returns a cursor positioned before the first identifier, over the identifiers which have been
+   * added so far.
+   */
+  public Cursor cursor() {
+    freeze();
+    return new Cursor(encoded, size);
+  }
+
+  /**
+   * Forward only position in the list.
+   */
+  public class Cursor {
+    private final String codes;
+    private final int count;
+
+    private int index = -1;
+    private int offset = 0;
+    private int current = -1;
+
+    private Cursor(String codes, int count) {
+      this.codes = codes;
+      this.count = count;
+    }
+
+    /**
+     * Move to the next identifier.
+     *
+     * @return The identifier, or -1 if the end of the list was reached.
+     */
+    public int next() {
+      if (index + 1 >= count) {
+        index = count;
+        current = -1;
+        return -1;
+      }
+
+      int gap = 0;
+      int shift = 0;
+      char c;
+      do {
+        c = codes.charAt(offset++);
+        gap |= (c & PAYLOAD_MASK) << shift;
+        shift += PAYLOAD_BITS;
+      } while ((c & CONTINUATION) != 0);
+
+      index++;
+      current += gap;
+      return current;
+    }
+
+    /**
+     * Move to the first identifier which is at least the target, galloping over the skips and then
+     * decoding the postings of one interval. The cursor never moves backwards.
+     *
+     * @return The identifier, or -1 if the end of the list was reached.
+     */
+    public int advanceTo(int target) {
+      if (index >= 0 && index < count && current >= target) {
+        return current;
+      }
+
+      // Gallop over the skips which start after the current position, then search between the
+      // last two probes for the last skip which does not pass the target.
+      int skipCount = (count + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+      int low = index < 0 ? 0 : index / SKIP_INTERVAL + 1;
+      if (low < skipCount && skipIds[low] <= target) {
+        int step = 1;
+        int high = low + step;
+        while (high < skipCount && skipIds[high] <= target) {
+          low = high;
+          step <<= 1;
+          high = low + step;
+        }
+        high = Math.min(high, skipCount);
+        while (high - low > 1) {
+          int middle = (low + high) >>> 1;
+          if (skipIds[middle] <= target) {
+            low = middle;
+          } else {
+            high = middle;
+          }
+        }
+
+        // Jump to the identifier just before the skip, so that the next one decoded is the skip.
+        index = low * SKIP_INTERVAL - 1;
+        offset = skipOffsets[low];
+        current = low == 0 ? -1 : skipIds[low] - firstGap(low);
+      }
+
+      int id;
+      do {
+        id = next();
+      } while (id != -1 && id < target);
+      return id;
+    }
+
+    /**
+     * Returns the gap before the first identifier of the interval of a skip.
+     */
+    private int firstGap(int skip) {
+      int gap = 0;
+      int shift = 0;
+      int position = skipOffsets[skip];
+      char c;
+      do {
+        c = codes.charAt(position++);
+        gap |= (c & PAYLOAD_MASK) << shift;
+        shift += PAYLOAD_BITS;
+      } while ((c & CONTINUATION) != 0);
+      return gap;
+    }
+  }
+
+  private static int[] grow(int[] array) {
+    int[] grown = new int[array.length * 2];
+    System.arraycopy(array, 0, grown, 0, array.length);
+    return grown;
+  }
+}
@@ -0,0 +1,219 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
+import com.google.api.explorer.client.base.ApiService;
+import com.google.api.explorer.client.base.Config;
+import com.google.api.explorer.client.base.ServiceLoader.ServiceLoaderDelegate;
+import com.google.api.explorer.client.search.SearchManager.SearchReadyCallback;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.MetaElement;
+import com.google.gwt.dom.client.NodeList;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Service loader delegate which searches the services of the directory with a prebuilt
+ * {@link SearchIndexArtifact} as soon as it is loaded, and only hands the services which the
+ * artifact does not cover on to the delegate which loads and indexes discovery documents.
+ *
+ * <p>
+ * Until a covered service is loaded, its service result carries the keywords of all of its
+ * methods, so that a search for a method leads to its service. Services which are loaded are
+ * always handed on, and are then indexed in full, so their coarse service result is removed from
+ * the index as they are handed on, or never added if they were loaded before the artifact.
+ * </p>
+ *
+ * <p>
+ * The artifact is only requested if the host page names the revision of the directory which it
+ * was generated from, see {@link #getDeployedRevision()}, and that revision is the one of the
+ * loaded directory. Otherwise every service is handed on without a request.
+ * </p>
+ *
+ */
+public class PrebuiltSearchIndex implements ServiceLoaderDelegate {
+
+  /**
+   * Strategy which indexes the covered services of a directory with the keywords of the artifact,
+   * except for those which were already loaded.
+   */
+  static class ArtifactIndexingStrategy implements IndexingStrategy<Set<ServiceDefinition>> {
+    private final SearchIndexArtifact artifact;
+    private final Set<String> loadedIds;
+    private final Map<String, SearchResult> coarseResults;
+
+    /**
+     * Create an instance.
+     *
+     * @param loadedIds Identifiers of the services which were loaded, and are indexed in full.
+     * @param coarseResults Receives the service results which are indexed, by service identifier.
+     */
+    ArtifactIndexingStrategy(SearchIndexArtifact artifact, Set<String> loadedIds,
+        Map<String, SearchResult> coarseResults) {
+      this.artifact = artifact;
+      this.loadedIds = loadedIds;
+      this.coarseResults = coarseResults;
+    }
+
+    @Override
+    public Iterable<SearchEntry> index(Set<ServiceDefinition> directory) {
+      List<SearchEntry> entries = Lists.newArrayList();
+      for (ServiceDefinition service : directory) {
+        if (artifact.covers(service.getId()) && !loadedIds.contains(service.getId())) {
+          SearchResult result = SearchResult.createServiceResult(service);
+          coarseResults.put(service.getId(), result);
+          entries.add(new SearchEntry(result, artifact.getKeywords(service.getId())));
+        }
+      }
+      return entries;
+    }
+  }
+
+  private final String deployedRevision;
+  private final CompactSearchResultIndex searchIndex;
+  private final ServiceLoaderDelegate fallback;
+  private final List<SearchReadyCallback> readyCallbacks;
+
+  /** Services which were loaded, keyed by "name:version". */
+  private final Set<String> loadedIds = Sets.newHashSet();
+
+  /** Service results indexed from the artifact for services which were not loaded. */
+  private final Map<String, SearchResult> coarseResults = Maps.newHashMap();
+
+  /**
+   * Create an instance.
+   *
+   * @param deployedRevision Directory revision of the deployed artifact, or {@code null} if none
+   *        was deployed.
+   * @param searchIndex Index to which the services of the artifact are added, and from which
+   *        they are removed once loaded.
+   * @param fallback Delegate which indexes the services which the artifact does not cover.
+   * @param readyCallbacks Callbacks to notify once the artifact has been indexed.
+   */
+  public PrebuiltSearchIndex(@Nullable String deployedRevision,
+      CompactSearchResultIndex searchIndex, ServiceLoaderDelegate fallback,
+      Iterable<? extends SearchReadyCallback> readyCallbacks) {
+    this.deployedRevision = deployedRevision;
+    this.searchIndex = searchIndex;
+    this.fallback = fallback;
+    this.readyCallbacks = ImmutableList.copyOf(readyCallbacks);
+  }
+
+  /**
+   * Returns the directory revision of the artifact which was deployed with the host page, as
+   * named by its meta tag, or {@code null} if the build did not generate one.
+   */
+  @Nullable
+  public static String getDeployedRevision() {
+    NodeList<Element> metaTags = Document.get().getElementsByTagName("meta");
+    for (int i = 0; i < metaTags.getLength(); i++) {
+      MetaElement metaTag = MetaElement.as(metaTags.getItem(i));
+      if (Config.SEARCH_INDEX_META_NAME.equals(metaTag.getName())) {
+        return Strings.emptyToNull(metaTag.getContent());
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void serviceLoaded(ApiService service) {
+    String serviceId = service.getName() + ":" + service.getVersion();
+    loadedIds.add(serviceId);
+
+    // The service is handed on to be indexed in full, which its coarse result would duplicate.
+    SearchResult coarseResult = coarseResults.remove(serviceId);
+    if (coarseResult != null) {
+      searchIndex.removeResult(coarseResult);
+    }
+    fallback.serviceLoaded(service);
+  }
+
+  @Override
+  public void directoryLoaded(final Set<ServiceDefinition> directoryServices) {
+    final String revision = SearchIndexArtifact.directoryRevision(directoryServices);
+    if (!revision.equals(deployedRevision)) {
+      // Requesting an artifact which was never generated would only fail.
+      GWT.log("No prebuilt search index for directory revision " + revision);
+      fallback.directoryLoaded(directoryServices);
+      return;
+    }
+
+    String url = GWT.getHostPageBaseURL() + Config.SEARCH_INDEX_PATH + revision + ".txt";
+    RequestBuilder builder = new RequestBuilder(RequestBuilder.GET, url);
+    try {
+      builder.sendRequest(null, new RequestCallback() {
+        @Override
+        public void onResponseReceived(Request request, Response response) {
+          if (response.getStatusCode() != Response.SC_OK) {
+            GWT.log("No prebuilt search index for directory revision " + revision);
+            fallback.directoryLoaded(directoryServices);
+            return;
+          }
+
+          SearchIndexArtifact artifact;
+          try {
+            artifact = SearchIndexArtifact.parse(response.getText());
+          } catch (IllegalArgumentException e) {
+            GWT.log("Unable to parse the prebuilt search index", e);
+            fallback.directoryLoaded(directoryServices);
+            return;
+          }
+          artifactLoaded(artifact, revision, directoryServices);
+        }
+
+        @Override
+        public void onError(Request request, Throwable exception) {
+          GWT.log("Unable to load the prebuilt search index", exception);
+          fallback.directoryLoaded(directoryServices);
+        }
+      });
+    } catch (RequestException e) {
+      GWT.log("Unable to request the prebuilt search index", e);
+      fallback.directoryLoaded(directoryServices);
+    }
+  }
+
+  /**
+   * Index the services which the artifact covers, report that search is ready, and hand the rest
+   * of the services on to the fallback delegate.
+   */
+  void artifactLoaded(
+      SearchIndexArtifact artifact, String revision, Set<ServiceDefinition> directoryServices) {
+    if (!revision.equals(artifact.getRevision())) {
+      GWT.log("Ignoring prebuilt search index of directory revision " + artifact.getRevision());
+      fallback.directoryLoaded(directoryServices);
+      return;
+    }
+
+    searchIndex.addDocument(
+        directoryServices, new ArtifactIndexingStrategy(artifact, loadedIds, coarseResults));
+    for (SearchReadyCallback callback : readyCallbacks) {
+      callback.searchReady();
+    }
+
+    Set<ServiceDefinition> uncovered = Sets.newHashSet();
+    for (ServiceDefinition service : directoryServices) {
+      if (!artifact.covers(service.getId())) {
+        uncovered.add(service);
+      }
+    }
+    fallback.directoryLoaded(uncovered);
+  }
+}
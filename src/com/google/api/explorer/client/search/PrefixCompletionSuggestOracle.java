@@ -0,0 +1,64 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.search.SearchResultIndex.KeywordCallback;
+import com.google.common.collect.Lists;
+import com.google.gwt.user.client.ui.SuggestOracle;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Suggestion oracle which completes the last word of the search query with the keywords of the
+ * search index, which it learns as documents are added to the index.
+ *
+ */
+public class PrefixCompletionSuggestOracle extends SuggestOracle implements KeywordCallback {
+
+  /**
+   * Suggestion of the query with its last word completed.
+   */
+  private static class CompletedQuery implements Suggestion {
+    private final String query;
+
+    CompletedQuery(String query) {
+      this.query = query;
+    }
+
+    @Override
+    public String getDisplayString() {
+      return query;
+    }
+
+    @Override
+    public String getReplacementString() {
+      return query;
+    }
+  }
+
+  private final KeywordPrefixIndex keywords = new KeywordPrefixIndex();
+
+  @Override
+  public void newKeywordsAdded(Set<String> newKeywords) {
+    keywords.addAll(newKeywords);
+  }
+
+  @Override
+  public void requestSuggestions(Request request, Callback callback) {
+    String query = request.getQuery().toLowerCase();
+    int wordStart = query.length();
+    while (wordStart > 0 && !KeywordTokenizer.isWhitespace(query.charAt(wordStart - 1))) {
+      wordStart--;
+    }
+
+    List<Suggestion> suggestions = Lists.newArrayList();
+    if (wordStart < query.length()) {
+      String previousWords = query.substring(0, wordStart);
+      for (String keyword : keywords.complete(query.substring(wordStart), request.getLimit())) {
+        suggestions.add(new CompletedQuery(previousWords + keyword));
+      }
+    }
+    callback.onSuggestionsReady(request, new Response(suggestions));
+  }
+}
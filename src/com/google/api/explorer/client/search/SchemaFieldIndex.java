@@ -0,0 +1,468 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
+import com.google.api.explorer.client.base.ApiMethod;
+import com.google.api.explorer.client.base.ApiService;
+import com.google.api.explorer.client.base.Schema;
+import com.google.api.explorer.client.base.ServiceLoader;
+import com.google.api.explorer.client.base.ServiceLoader.ServiceLoaderDelegate;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gwt.core.client.Callback;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the properties of the request and response schemas of services, so that a search can
+ * answer which methods return an "etag" or which requests take a "labelFingerprint".
+ *
+ * <p>
+ * Every property of every schema of a service is a field, indexed under its name and the keywords
+ * of its description. A field is linked to the methods whose request or response refers to its
+ * schema, directly or through the properties of other schemas. A query matches a field whose name
+ * contains all of its keywords, or whose name and description together contain all of them.
+ * </p>
+ *
+ * <p>
+ * Walking the schemas is kept off the startup path: services are only recorded as they are loaded,
+ * and the first search starts indexing them in the background, a short slice at a time, as are
+ * services loaded after that. Searches are answered from the services indexed so far.
+ * </p>
+ *
+ * <p>
+ * Services of the directory which nothing else loads, such as those covered by a
+ * {@link PrebuiltSearchIndex}, are requested from the {@link ServiceLoader} after the first
+ * search, one at a time and only once the services loaded before have been indexed.
+ * </p>
+ *
+ */
+public class SchemaFieldIndex implements ServiceLoaderDelegate {
+
+  /** Milliseconds to spend indexing before yielding to the browser. */
+  private static final int SLICE_MILLIS = 10;
+
+  private static final String REF = "$ref";
+
+  /**
+   * Property of a schema which matched a search, in a method which uses the schema.
+   */
+  public static class FieldMatch {
+    private final Field field;
+    private final ApiMethod method;
+    private final boolean request;
+
+    private FieldMatch(Field field, ApiMethod method, boolean request) {
+      this.field = field;
+      this.method = method;
+      this.request = request;
+    }
+
+    public ApiService getService() {
+      return field.service;
+    }
+
+    public ApiMethod getMethod() {
+      return method;
+    }
+
+    /**
+     * Returns whether the field is part of the request of the method, rather than its response.
+     */
+    public boolean isRequest() {
+      return request;
+    }
+
+    /**
+     * Returns the identifier of the schema followed by the path of the property within it, i.e.
+     * "Task.links.href".
+     */
+    public String getLocation() {
+      return field.schemaId + "." + field.path;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof FieldMatch)) {
+        return false;
+      }
+      FieldMatch other = (FieldMatch) obj;
+      return field == other.field && method == other.method && request == other.request;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * field.hashCode() + method.hashCode()) + (request ? 1 : 0);
+    }
+  }
+
+  /** Property of a schema which was indexed. */
+  private static class Field {
+    final ApiService service;
+    final String schemaId;
+    final String path;
+
+    Field(ApiService service, String schemaId, String path) {
+      this.service = service;
+      this.schemaId = schemaId;
+      this.path = path;
+    }
+  }
+
+  /** Method which uses a schema in its request or response. */
+  private static class Usage {
+    final ApiMethod method;
+    final boolean request;
+
+    Usage(ApiMethod method, boolean request) {
+      this.method = method;
+      this.request = request;
+    }
+  }
+
+  private final ServiceLoaderDelegate delegate;
+  private final KeywordTokenizer tokenizer =
+      new KeywordTokenizer(KeywordTokenizer.DEFAULT_STOP_WORDS, true);
+
+  private final List<Field> fields = Lists.newArrayList();
+  private final Map<String, PostingList> byName = Maps.newHashMap();
+  private final Map<String, PostingList> byKeyword = Maps.newHashMap();
+
+  /** Methods which use each schema, keyed by the service and then by the schema identifier. */
+  private final Map<ApiService, Map<String, List<Usage>>> usages = Maps.newHashMap();
+
+  private final LinkedList<ApiService> pending = Lists.newLinkedList();
+  private boolean searched = false;
+  private boolean scheduled = false;
+
+  /** Loader from which services of the directory which were not loaded are requested. */
+  private ServiceLoader serviceLoader;
+
+  /** Services of the directory which may still need to be requested. */
+  private final LinkedList<ServiceDefinition> unrequested = Lists.newLinkedList();
+
+  /** Services which were loaded, keyed by "name:version". */
+  private final Set<String> loadedIds = Sets.newHashSet();
+  private boolean requesting = false;
+
+  /**
+   * Create an instance.
+   *
+   * @param delegate Delegate to which loaded services and directories are handed on.
+   */
+  public SchemaFieldIndex(ServiceLoaderDelegate delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Set the loader from which to request the services of the directory which were not loaded once
+   * fields are searched. Without one, only the services which are loaded otherwise are indexed.
+   */
+  public void setServiceLoader(ServiceLoader serviceLoader) {
+    this.serviceLoader = serviceLoader;
+  }
+
+  @Override
+  public void directoryLoaded(Set<ServiceDefinition> directoryServices) {
+    unrequested.clear();
+    unrequested.addAll(directoryServices);
+    if (searched && pending.isEmpty()) {
+      requestNextService();
+    }
+    delegate.directoryLoaded(directoryServices);
+  }
+
+  @Override
+  public void serviceLoaded(ApiService service) {
+    loadedIds.add(service.getName() + ":" + service.getVersion());
+    pending.add(service);
+    if (searched) {
+      scheduleIndexing();
+    }
+    delegate.serviceLoaded(service);
+  }
+
+  /**
+   * Returns the fields which match the query in the methods which use them, fields matched by
+   * name first, among the services which have been indexed so far. The first search starts
+   * indexing the services which were loaded before it.
+   *
+   * @param query Query as it was typed.
+   * @param limit Maximum number of matches to return.
+   */
+  public List<FieldMatch> search(String query, int limit) {
+    searched = true;
+    if (!pending.isEmpty()) {
+      scheduleIndexing();
+    } else {
+      requestNextService();
+    }
+
+    Set<String> keywords = tokenizer.asSet(query);
+    if (keywords.isEmpty() || limit <= 0) {
+      return ImmutableList.of();
+    }
+
+    Set<Integer> matched = Sets.newLinkedHashSet();
+    matched.addAll(intersect(byName, keywords));
+    matched.addAll(intersect(byKeyword, keywords));
+
+    Set<FieldMatch> matches = Sets.newLinkedHashSet();
+    for (int id : matched) {
+      Field field = fields.get(id);
+      List<Usage> fieldUsages = usages.get(field.service).get(field.schemaId);
+      if (fieldUsages == null) {
+        continue;
+      }
+      for (Usage usage : fieldUsages) {
+        matches.add(new FieldMatch(field, usage.method, usage.request));
+        if (matches.size() == limit) {
+          return ImmutableList.copyOf(matches);
+        }
+      }
+    }
+    return ImmutableList.copyOf(matches);
+  }
+
+  /**
+   * Returns the number of fields which have been indexed.
+   */
+  public int getFieldCount() {
+    return fields.size();
+  }
+
+  /**
+   * Returns whether every service which has been loaded has also been indexed, and no service of
+   * the directory is left to request, so that searches are no longer partial.
+   */
+  public boolean isComplete() {
+    return pending.isEmpty() && !requesting && (serviceLoader == null || unrequested.isEmpty());
+  }
+
+  /**
+   * Index the oldest of the pending services, and request the next service of the directory once
+   * there are none left.
+   *
+   * @return Whether there are more services to index.
+   */
+  boolean step() {
+    ApiService service = pending.poll();
+    if (service != null && !usages.containsKey(service)) {
+      index(service);
+    }
+    if (pending.isEmpty()) {
+      requestNextService();
+    }
+    return !pending.isEmpty();
+  }
+
+  /**
+   * Request the next service of the directory which was not loaded, unless one is being requested
+   * already. It is indexed when it arrives, and the one after it is requested once it is indexed.
+   */
+  private void requestNextService() {
+    if (serviceLoader == null || requesting) {
+      return;
+    }
+
+    ServiceDefinition next = unrequested.poll();
+    while (next != null && loadedIds.contains(next.getName() + ":" + next.getVersion())) {
+      next = unrequested.poll();
+    }
+    if (next == null) {
+      return;
+    }
+
+    requesting = true;
+    serviceLoader.loadService(next.getName(), next.getVersion(),
+        new Callback<ApiService, String>() {
+          @Override
+          public void onSuccess(ApiService result) {
+            // The loader hands the service to serviceLoaded, whose indexing requests the next.
+            requesting = false;
+          }
+
+          @Override
+          public void onFailure(String reason) {
+            requesting = false;
+            requestNextService();
+          }
+        });
+  }
+
+  @VisibleForTesting
+  void scheduleIndexing() {
+    if (scheduled) {
+      return;
+    }
+    scheduled = true;
+    Scheduler.get().scheduleIncremental(new RepeatingCommand() {
+      @Override
+      public boolean execute() {
+        Duration duration = new Duration();
+        boolean more = true;
+        while (more && duration.elapsedMillis() < SLICE_MILLIS) {
+          more = step();
+        }
+        scheduled = more;
+        return more;
+      }
+    });
+  }
+
+  private void index(ApiService service) {
+    Map<String, Schema> schemas = service.getSchemas();
+    if (schemas == null) {
+      schemas = Maps.newHashMap();
+    }
+
+    // Index the fields of every schema, and note which schemas each schema refers to.
+    Map<String, Set<String>> references = Maps.newHashMap();
+    for (Map.Entry<String, Schema> schema : schemas.entrySet()) {
+      Set<String> referenced = Sets.newHashSet();
+      references.put(schema.getKey(), referenced);
+      indexProperties(service, schema.getKey(), "", schema.getValue(), referenced);
+    }
+
+    // Link every schema which a request or response can contain to its method.
+    Map<String, List<Usage>> serviceUsages = Maps.newHashMap();
+    usages.put(service, serviceUsages);
+    for (ApiMethod method : service.allMethods().values()) {
+      addUsages(ref(method.getRequest()), new Usage(method, true), references, serviceUsages);
+      Map<String, String> response =
+          method.getResponse() != null ? method.getResponse() : method.getReturns();
+      addUsages(ref(response), new Usage(method, false), references, serviceUsages);
+    }
+  }
+
+  /**
+   * Index the properties of a schema, and of the objects declared inline within it, noting the
+   * schemas which they refer to.
+   */
+  private void indexProperties(ApiService service, String schemaId, String path, Schema schema,
+      Set<String> referenced) {
+    if (schema.getRef() != null) {
+      referenced.add(schema.getRef());
+    }
+    if (schema.getItems() != null) {
+      indexProperties(service, schemaId, path, schema.getItems(), referenced);
+    }
+    if (schema.getAdditionalProperties() != null) {
+      indexProperties(service, schemaId, path, schema.getAdditionalProperties(), referenced);
+    }
+    if (schema.getProperties() == null) {
+      return;
+    }
+
+    for (Map.Entry<String, Schema> property : schema.getProperties().entrySet()) {
+      String name = property.getKey();
+      String propertyPath = path.isEmpty() ? name : path + "." + name;
+      int id = fields.size();
+      fields.add(new Field(service, schemaId, propertyPath));
+
+      for (String keyword : tokenizer.asSet(name)) {
+        post(byName, keyword, id);
+        post(byKeyword, keyword, id);
+      }
+      String description = property.getValue().getDescription();
+      if (description != null) {
+        for (String keyword : tokenizer.asSet(description)) {
+          post(byKeyword, keyword, id);
+        }
+      }
+
+      indexProperties(service, schemaId, propertyPath, property.getValue(), referenced);
+    }
+  }
+
+  /**
+   * Add the usage to the schema and every schema which it refers to, however indirectly.
+   */
+  private static void addUsages(String schemaId, Usage usage, Map<String, Set<String>> references,
+      Map<String, List<Usage>> serviceUsages) {
+    Set<String> visited = Sets.newHashSet();
+    LinkedList<String> queue = Lists.newLinkedList();
+    if (schemaId != null) {
+      queue.add(schemaId);
+    }
+    while (!queue.isEmpty()) {
+      String id = queue.poll();
+      if (!visited.add(id)) {
+        continue;
+      }
+
+      List<Usage> schemaUsages = serviceUsages.get(id);
+      if (schemaUsages == null) {
+        schemaUsages = Lists.newArrayList();
+        serviceUsages.put(id, schemaUsages);
+      }
+      schemaUsages.add(usage);
+
+      Set<String> referenced = references.get(id);
+      if (referenced != null) {
+        queue.addAll(referenced);
+      }
+    }
+  }
+
+  /**
+   * Returns the fields which are indexed under every keyword, in the order they were indexed.
+   */
+  private static List<Integer> intersect(Map<String, PostingList> index, Set<String> keywords) {
+    List<PostingList.Cursor> cursors = Lists.newArrayList();
+    for (String keyword : keywords) {
+      PostingList postings = index.get(keyword);
+      if (postings == null) {
+        return ImmutableList.of();
+      }
+      cursors.add(postings.cursor());
+    }
+
+    List<Integer> result = Lists.newArrayList();
+    int candidate = 0;
+    while (true) {
+      // Advance every cursor to the candidate, restarting whenever one of them passes it.
+      boolean agreed = true;
+      for (PostingList.Cursor cursor : cursors) {
+        int id = cursor.advanceTo(candidate);
+        if (id == -1) {
+          return result;
+        }
+        if (id != candidate) {
+          candidate = id;
+          agreed = false;
+          break;
+        }
+      }
+      if (agreed) {
+        result.add(candidate);
+        candidate++;
+      }
+    }
+  }
+
+  private static void post(Map<String, PostingList> index, String keyword, int id) {
+    PostingList postings = index.get(keyword);
+    if (postings == null) {
+      postings = new PostingList();
+      index.put(keyword, postings);
+    }
+    if (postings.getLast() != id) {
+      postings.add(id);
+    }
+  }
+
+  private static String ref(Map<String, String> reference) {
+    return reference == null ? null : reference.get(REF);
+  }
+}
@@ -0,0 +1,258 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
+import com.google.api.explorer.client.base.ApiService;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search keywords of a snapshot of discovery documents, generated ahead of time so that the client
+ * can load one small artifact instead of every discovery document in order to search them.
+ *
+ * <p>
+ * The artifact is text with one record per line and fields separated by single spaces, which can
+ * be produced wherever discovery documents can be indexed and parsed without any JSON support:
+ * </p>
+ *
+ * <pre>
+ * apis-explorer-search-index 1 &lt;directory revision&gt;
+ * k &lt;keyword&gt; &lt;keyword&gt; ...
+ * s &lt;service id&gt; &lt;keyword reference&gt; ...
+ * m &lt;method id&gt; &lt;keyword reference&gt; ...
+ * </pre>
+ *
+ * <p>
+ * Every keyword is written once, in the dictionary line, and referenced by its position in base
+ * 36. Method lines belong to the service line above them. The artifact is keyed by the revision of
+ * the directory, see {@link #directoryRevision(Iterable)}, so that a client never uses the index
+ * of a different set of services or of older discovery documents.
+ * </p>
+ *
+ */
+public class SearchIndexArtifact {
+
+  /** First word of every artifact. */
+  static final String MAGIC = "apis-explorer-search-index";
+
+  /** Version of the format, which is bumped whenever the format changes incompatibly. */
+  static final int FORMAT_VERSION = 1;
+
+  private static final String KEYWORDS = "k";
+  private static final String SERVICE = "s";
+  private static final String METHOD = "m";
+
+  private static final Joiner SPACE_JOINER = Joiner.on(' ');
+  private static final int RADIX = 36;
+
+  /**
+   * Keywords of one service of the artifact.
+   */
+  static class ServiceKeywords {
+    final Set<String> serviceKeywords;
+    final Map<String, Set<String>> methodKeywords = Maps.newLinkedHashMap();
+
+    ServiceKeywords(Set<String> serviceKeywords) {
+      this.serviceKeywords = serviceKeywords;
+    }
+  }
+
+  private final String revision;
+  private final Map<String, ServiceKeywords> services;
+
+  private SearchIndexArtifact(String revision, Map<String, ServiceKeywords> services) {
+    this.revision = revision;
+    this.services = services;
+  }
+
+  /**
+   * Returns the revision of the directory which the artifact was generated from.
+   */
+  public String getRevision() {
+    return revision;
+  }
+
+  /**
+   * Returns the identifiers of the services in the artifact, such as "urlshortener:v1".
+   */
+  public Set<String> getServiceIds() {
+    return Collections.unmodifiableSet(services.keySet());
+  }
+
+  /**
+   * Returns whether the artifact contains the keywords of the specified service.
+   */
+  public boolean covers(String serviceId) {
+    return services.containsKey(serviceId);
+  }
+
+  /**
+   * Returns the keywords of the specified service, including those of all of its methods.
+   */
+  public Set<String> getKeywords(String serviceId) {
+    ServiceKeywords keywords = services.get(serviceId);
+    if (keywords == null) {
+      return ImmutableSet.of();
+    }
+
+    Set<String> all = Sets.newHashSet(keywords.serviceKeywords);
+    for (Set<String> methodKeywords : keywords.methodKeywords.values()) {
+      all.addAll(methodKeywords);
+    }
+    return all;
+  }
+
+  /**
+   * Returns the keywords of the methods of the specified service, by method identifier.
+   */
+  public Map<String, Set<String>> getMethodKeywords(String serviceId) {
+    ServiceKeywords keywords = services.get(serviceId);
+    return keywords == null ? Collections.<String, Set<String>>emptyMap()
+        : Collections.unmodifiableMap(keywords.methodKeywords);
+  }
+
+  /**
+   * Returns the revision of a directory listing, which depends on the identifiers of the services
+   * it lists and on the ETags of their discovery documents, but not on their order. A service
+   * whose discovery document is revised changes the revision, so a stale artifact is never used.
+   */
+  public static String directoryRevision(Iterable<ServiceDefinition> directory) {
+    List<String> versions = Lists.newArrayList();
+    for (ServiceDefinition service : directory) {
+      versions.add(service.getId() + "@" + Strings.nullToEmpty(service.getEtag()));
+    }
+    Collections.sort(versions);
+
+    // String hashing behaves the same in compiled script, so both sides agree on the revision.
+    return Integer.toHexString(SPACE_JOINER.join(versions).hashCode()) + "-" + versions.size();
+  }
+
+  /**
+   * Generate the artifact of a snapshot of services.
+   *
+   * @param revision Revision of the directory which lists the services.
+   * @param services Discovery documents of the services.
+   * @param strategy Strategy which extracts the keywords of a service and of its methods.
+   */
+  public static String write(
+      String revision, Iterable<ApiService> services, IndexingStrategy<ApiService> strategy) {
+    Preconditions.checkArgument(revision.indexOf(' ') == -1 && revision.indexOf('\n') == -1,
+        "Revision must be a single word.");
+
+    Map<String, Integer> dictionary = Maps.newLinkedHashMap();
+    List<String> records = Lists.newArrayList();
+    for (ApiService service : services) {
+      String serviceRecord = null;
+      List<String> methodRecords = Lists.newArrayList();
+      for (SearchEntry entry : strategy.index(service)) {
+        SearchResult result = entry.getSearchResult();
+        switch (result.getKind()) {
+          case SERVICE:
+            serviceRecord = record(SERVICE, service.getName() + ":" + service.getVersion(),
+                entry.getKeywords(), dictionary);
+            break;
+
+          case METHOD:
+            methodRecords.add(record(METHOD, result.getMethodBundle().getMethod().getId(),
+                entry.getKeywords(), dictionary));
+            break;
+
+          default:
+            throw new RuntimeException("Unexpected search result type: " + result.toString());
+        }
+      }
+
+      Preconditions.checkState(serviceRecord != null, "Strategy did not index the service.");
+      records.add(serviceRecord);
+      records.addAll(methodRecords);
+    }
+
+    StringBuilder artifact = new StringBuilder();
+    artifact.append(SPACE_JOINER.join(MAGIC, FORMAT_VERSION, revision)).append('\n');
+    artifact.append(KEYWORDS);
+    for (String keyword : dictionary.keySet()) {
+      artifact.append(' ').append(keyword);
+    }
+    artifact.append('\n');
+    for (String record : records) {
+      artifact.append(record).append('\n');
+    }
+    return artifact.toString();
+  }
+
+  /**
+   * Parse an artifact.
+   *
+   * @throws IllegalArgumentException if the text is not an artifact of the current format.
+   */
+  public static SearchIndexArtifact parse(String text) {
+    String[] lines = text.split("\n");
+    String[] header = lines[0].split(" ");
+    Preconditions.checkArgument(header.length == 3 && MAGIC.equals(header[0]),
+        "Not a search index artifact.");
+    Preconditions.checkArgument(String.valueOf(FORMAT_VERSION).equals(header[1]),
+        "Unsupported search index format: %s", header[1]);
+    Preconditions.checkArgument(lines.length > 1 && lines[1].startsWith(KEYWORDS),
+        "Missing keyword dictionary.");
+
+    String[] dictionary = lines[1].split(" ");
+    Map<String, ServiceKeywords> services = Maps.newLinkedHashMap();
+    ServiceKeywords current = null;
+    for (int i = 2; i < lines.length; i++) {
+      if (lines[i].isEmpty()) {
+        continue;
+      }
+
+      String[] fields = lines[i].split(" ");
+      Preconditions.checkArgument(fields.length >= 2, "Malformed record on line %s.", i + 1);
+      Set<String> keywords = Sets.newHashSetWithExpectedSize(fields.length - 2);
+      for (int field = 2; field < fields.length; field++) {
+        // Position zero of the dictionary is the record type.
+        int reference = Integer.parseInt(fields[field], RADIX) + 1;
+        Preconditions.checkArgument(reference < dictionary.length,
+            "Unknown keyword on line %s.", i + 1);
+        keywords.add(dictionary[reference]);
+      }
+
+      if (SERVICE.equals(fields[0])) {
+        current = new ServiceKeywords(keywords);
+        services.put(fields[1], current);
+      } else if (METHOD.equals(fields[0])) {
+        Preconditions.checkArgument(current != null, "Method before any service on line %s.",
+            i + 1);
+        current.methodKeywords.put(fields[1], keywords);
+      } else {
+        throw new IllegalArgumentException("Unknown record type on line " + (i + 1) + ".");
+      }
+    }
+    return new SearchIndexArtifact(header[2], services);
+  }
+
+  private static String record(
+      String type, String id, Set<String> keywords, Map<String, Integer> dictionary) {
+    StringBuilder record = new StringBuilder(type).append(' ').append(id);
+    for (String keyword : keywords) {
+      if (keyword.isEmpty()) {
+        continue;
+      }
+      Integer reference = dictionary.get(keyword);
+      if (reference == null) {
+        reference = dictionary.size();
+        dictionary.put(keyword, reference);
+      }
+      record.append(' ').append(Integer.toString(reference, RADIX));
+    }
+    return record.toString();
+  }
+}
@@ -0,0 +1,403 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
+import com.google.api.explorer.client.base.ApiMethod;
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.search.SearchResult.MethodBundle;
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Orders search results by relevance to the query, scoring them with BM25F over their fields: the
+ * identifier, the title, the parameter names and the description, in order of weight. A match in
+ * a short identifier counts for more than a match in a long description.
+ *
+ * <p>
+ * Field lengths and document frequencies are computed when an item is added to the ranker as it is
+ * indexed, and updated when it is removed. Only the field lengths are kept for each item, the
+ * frequencies of the query terms in the fields of a candidate are counted when it is scored, by
+ * scanning the text of its fields without splitting it into terms. Items which were never added
+ * score nothing and keep their original order.
+ * </p>
+ *
+ * @param <T> Type of the ranked items.
+ *
+ */
+public class SearchResultRanker<T> {
+
+  /** Positions of the fields of a result. */
+  static final int ID = 0;
+  static final int TITLE = 1;
+  static final int PARAMETERS = 2;
+  static final int DESCRIPTION = 3;
+
+  private static final double[] FIELD_WEIGHTS = {4.0, 2.0, 1.5, 1.0};
+
+  /** Saturation of the term frequency. */
+  private static final double K1 = 1.2;
+
+  /** Strength of the normalization by field length. */
+  private static final double B = 0.75;
+
+  private static final Joiner SPACE_JOINER = Joiner.on(' ').skipNulls();
+
+  private static final Function<SearchResult, String[]> SEARCH_RESULT_FIELDS =
+      new Function<SearchResult, String[]>() {
+        @Override
+        public String[] apply(SearchResult result) {
+          return getFields(result);
+        }
+      };
+
+  /**
+   * Result which has been scored, ordered by ascending score and then by descending position so
+   * that the head of a queue is the first one to drop.
+   */
+  private static class Scored<T> {
+    final T item;
+    final int position;
+    final double score;
+
+    Scored(T item, int position, double score) {
+      this.item = item;
+      this.position = position;
+      this.score = score;
+    }
+  }
+
+  private static final Comparator<Scored<?>> WORST_FIRST = new Comparator<Scored<?>>() {
+    @Override
+    public int compare(Scored<?> a, Scored<?> b) {
+      if (a.score != b.score) {
+        return a.score < b.score ? -1 : 1;
+      }
+      return b.position - a.position;
+    }
+  };
+
+  private final Function<? super T, String[]> fieldsFunction;
+
+  /** Number of terms in each field of every item which was added. */
+  private final Map<T, int[]> fieldLengths = Maps.newHashMap();
+
+  /** Number of items whose fields contain each term. */
+  private final Map<String, Integer> documentFrequencies = Maps.newHashMap();
+
+  private final long[] totalLengths = new long[FIELD_WEIGHTS.length];
+
+  /**
+   * Create a ranker of items whose fields are returned by the function.
+   *
+   * @param fieldsFunction Returns the text of the fields of an item, indexed by {@link #ID},
+   *        {@link #TITLE}, {@link #PARAMETERS} and {@link #DESCRIPTION}.
+   */
+  public SearchResultRanker(Function<? super T, String[]> fieldsFunction) {
+    this.fieldsFunction = fieldsFunction;
+  }
+
+  /**
+   * Returns a ranker of search results.
+   */
+  public static SearchResultRanker<SearchResult> forSearchResults() {
+    return new SearchResultRanker<SearchResult>(SEARCH_RESULT_FIELDS);
+  }
+
+  /**
+   * Compute the lengths of the fields of an item, and count its terms towards the document
+   * frequencies. Items which were already added are left as they are.
+   */
+  public void add(T item) {
+    if (fieldLengths.containsKey(item)) {
+      return;
+    }
+
+    int[] lengths = new int[FIELD_WEIGHTS.length];
+    for (String term : getTerms(item, lengths)) {
+      Integer count = documentFrequencies.get(term);
+      documentFrequencies.put(term, count == null ? 1 : count + 1);
+    }
+    for (int field = 0; field < FIELD_WEIGHTS.length; field++) {
+      totalLengths[field] += lengths[field];
+    }
+    fieldLengths.put(item, lengths);
+  }
+
+  /**
+   * Remove an item, whose terms no longer count towards the document frequencies.
+   */
+  public void remove(T item) {
+    int[] lengths = fieldLengths.remove(item);
+    if (lengths == null) {
+      return;
+    }
+
+    for (int field = 0; field < FIELD_WEIGHTS.length; field++) {
+      totalLengths[field] -= lengths[field];
+    }
+    for (String term : getTerms(item, new int[FIELD_WEIGHTS.length])) {
+      int count = documentFrequencies.get(term);
+      if (count == 1) {
+        documentFrequencies.remove(term);
+      } else {
+        documentFrequencies.put(term, count - 1);
+      }
+    }
+  }
+
+  /**
+   * Returns the distinct terms of the fields of an item.
+   *
+   * @param lengths Receives the number of terms in each field.
+   */
+  private Set<String> getTerms(T item, int[] lengths) {
+    String[] fields = fieldsFunction.apply(item);
+    Set<String> terms = Sets.newHashSet();
+    for (int field = 0; field < FIELD_WEIGHTS.length; field++) {
+      List<String> fieldTerms = tokenize(fields[field]);
+      lengths[field] = fieldTerms.size();
+      terms.addAll(fieldTerms);
+    }
+    return terms;
+  }
+
+  /** Returns the number of items which have been added and not removed. */
+  public int size() {
+    return fieldLengths.size();
+  }
+
+  /**
+   * Returns the most relevant items for the query, the most relevant first. Items which score the
+   * same keep their original order.
+   *
+   * @param items Items which matched the query.
+   * @param query Query which the items matched.
+   * @param limit Maximum number of items to return.
+   */
+  public List<T> top(Iterable<? extends T> items, String query, int limit) {
+    if (limit <= 0) {
+      return ImmutableList.of();
+    }
+
+    // Look up the inverse document frequency of every term once for all items.
+    List<String> queryTerms = Lists.newArrayList();
+    List<Double> idfs = Lists.newArrayList();
+    int itemCount = fieldLengths.size();
+    for (String term : splitQuery(query)) {
+      Integer documentFrequency = documentFrequencies.get(term);
+      if (documentFrequency != null) {
+        queryTerms.add(term);
+        idfs.add(Math.log(1 + (itemCount - documentFrequency + 0.5) / (documentFrequency + 0.5)));
+      }
+    }
+    double[] averageLengths = new double[FIELD_WEIGHTS.length];
+    for (int field = 0; field < FIELD_WEIGHTS.length; field++) {
+      averageLengths[field] = Math.max(1.0, (double) totalLengths[field] / itemCount);
+    }
+
+    // Keep the best items in a queue whose head is the worst of them.
+    PriorityQueue<Scored<T>> best = new PriorityQueue<Scored<T>>(limit + 1, WORST_FIRST);
+    int position = 0;
+    for (T item : items) {
+      int[] lengths = fieldLengths.get(item);
+      String[] fields = lengths == null || queryTerms.isEmpty() ? null : fieldsFunction.apply(item);
+      double score = 0;
+      for (int i = 0; fields != null && i < queryTerms.size(); i++) {
+        double weightedFrequency = 0;
+        for (int field = 0; field < FIELD_WEIGHTS.length; field++) {
+          int frequency = countTerm(fields[field], queryTerms.get(i));
+          if (frequency > 0) {
+            double normalization = 1 - B + B * lengths[field] / averageLengths[field];
+            weightedFrequency += FIELD_WEIGHTS[field] * frequency / normalization;
+          }
+        }
+        score += idfs.get(i) * weightedFrequency / (K1 + weightedFrequency);
+      }
+
+      best.add(new Scored<T>(item, position++, score));
+      if (best.size() > limit) {
+        best.poll();
+      }
+    }
+
+    List<T> ranked = Lists.newArrayListWithCapacity(best.size());
+    while (!best.isEmpty()) {
+      ranked.add(best.poll().item);
+    }
+    Collections.reverse(ranked);
+    return ranked;
+  }
+
+  /**
+   * Split a query into its distinct lower case words, without leading or trailing punctuation.
+   */
+  static List<String> splitQuery(String query) {
+    Set<String> terms = Sets.newLinkedHashSet();
+    for (String word : query.split("\\s+")) {
+      String term = trimPunctuation(word);
+      if (!term.isEmpty()) {
+        terms.add(term);
+      }
+    }
+    return ImmutableList.copyOf(terms);
+  }
+
+  /**
+   * Split the text of a field into lower case terms, in order and with repetitions. Words which
+   * contain punctuation, such as method identifiers, are kept whole and are also split into their
+   * runs of letters and digits, so that "urlshortener.url.list" matches both itself and "list".
+   */
+  static List<String> tokenize(String text) {
+    List<String> terms = Lists.newArrayList();
+    for (String word : text.split("\\s+")) {
+      String term = trimPunctuation(word);
+      if (term.isEmpty()) {
+        continue;
+      }
+
+      terms.add(term);
+      int start = -1;
+      for (int i = 0; i <= term.length(); i++) {
+        boolean termChar = i < term.length() && isTermChar(term.charAt(i));
+        if (termChar && start < 0) {
+          start = i;
+        } else if (!termChar && start >= 0) {
+          if (start > 0 || i < term.length()) {
+            terms.add(term.substring(start, i));
+          }
+          start = -1;
+        }
+      }
+    }
+    return terms;
+  }
+
+  /**
+   * Returns the number of times that {@link #tokenize} returns the lower case term for the text,
+   * counted without splitting the text or allocating its terms.
+   */
+  static int countTerm(String text, String term) {
+    int count = 0;
+    int position = 0;
+    while (position < text.length()) {
+      while (position < text.length() && KeywordTokenizer.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+      int start = position;
+      while (position < text.length() && !KeywordTokenizer.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+
+      // The word without leading or trailing punctuation.
+      int end = position;
+      while (start < end && !isTermChar(text.charAt(start))) {
+        start++;
+      }
+      while (end > start && !isTermChar(text.charAt(end - 1))) {
+        end--;
+      }
+      if (start == end) {
+        continue;
+      }
+      if (regionEquals(text, start, end, term)) {
+        count++;
+      }
+
+      // Its runs of letters and digits, if it contains punctuation.
+      int runStart = -1;
+      for (int i = start; i <= end; i++) {
+        boolean termChar = i < end && isTermChar(text.charAt(i));
+        if (termChar && runStart < 0) {
+          runStart = i;
+        } else if (!termChar && runStart >= 0) {
+          if ((runStart > start || i < end) && regionEquals(text, runStart, i, term)) {
+            count++;
+          }
+          runStart = -1;
+        }
+      }
+    }
+    return count;
+  }
+
+  private static boolean regionEquals(String text, int start, int end, String term) {
+    return end - start == term.length() && text.regionMatches(true, start, term, 0, end - start);
+  }
+
+  private static String trimPunctuation(String word) {
+    int start = 0;
+    int end = word.length();
+    while (start < end && !isTermChar(word.charAt(start))) {
+      start++;
+    }
+    while (end > start && !isTermChar(word.charAt(end - 1))) {
+      end--;
+    }
+    return word.substring(start, end).toLowerCase();
+  }
+
+  /**
+   * Returns whether the character is a letter or digit. ASCII characters are checked by code
+   * range, since {@link Character} runs a regular expression for each character in compiled
+   * script, and only the others are left to it.
+   */
+  private static boolean isTermChar(char c) {
+    if (c < 128) {
+      return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+    return Character.isLetterOrDigit(c);
+  }
+
+  /**
+   * Returns the text of the fields of a search result.
+   */
+  static String[] getFields(SearchResult result) {
+    String[] fields = new String[FIELD_WEIGHTS.length];
+    switch (result.getKind()) {
+      case SERVICE:
+        ServiceDefinition service = result.getService();
+        fields[ID] = SPACE_JOINER.join(service.getName(), service.getVersion());
+        fields[TITLE] = service.getTitle();
+        fields[DESCRIPTION] = service.getDescription();
+        break;
+
+      case METHOD:
+        MethodBundle bundle = result.getMethodBundle();
+        ApiMethod method = bundle.getMethod();
+        fields[ID] = method.getId();
+        fields[TITLE] = bundle.getService().displayTitle();
+        fields[PARAMETERS] = method.getParameters() == null
+            ? null : SPACE_JOINER.join(method.getParameters().keySet());
+        fields[DESCRIPTION] = method.getDescription();
+        break;
+
+      case HISTORY_ITEM:
+        ApiRequest request = result.getHistoryItem().getRequest();
+        fields[ID] = request.getMethod().getId();
+        fields[PARAMETERS] = SPACE_JOINER.join(request.getParamValues().keySet());
+        fields[DESCRIPTION] = request.getRequestPath();
+        break;
+
+      default:
+        throw new RuntimeException("Unknown search result type: " + result.toString());
+    }
+
+    for (int field = 0; field < fields.length; field++) {
+      fields[field] = Strings.nullToEmpty(fields[field]);
+    }
+    return fields;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.tools;
+
+import com.google.api.explorer.client.base.ApiDirectory;
+import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
+import com.google.api.explorer.client.base.ApiService;
+import com.google.api.explorer.client.base.rest.RestApiService;
+import com.google.api.explorer.client.search.DiscoveryFullTextIndexingStrategy;
+import com.google.api.explorer.client.search.SearchIndexArtifact;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.web.bindery.autobean.shared.AutoBean;
+import com.google.web.bindery.autobean.shared.AutoBeanCodex;
+import com.google.web.bindery.autobean.shared.AutoBeanFactory;
+import com.google.web.bindery.autobean.vm.AutoBeanFactorySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Command line tool which generates the {@link SearchIndexArtifact} of a snapshot of discovery
+ * documents, to be deployed with the explorer. Run by the searchindex.build target of the ant
+ * build.
+ *
+ * <p>
+ * The snapshot is a directory which holds the directory listing as "directory.json", and the REST
+ * discovery document of every service to cover as "&lt;name&gt;.&lt;version&gt;.json". Services
+ * of the listing without a document are left out of the artifact, and are loaded and indexed by
+ * the client as before. The artifact is written to the output directory as
+ * "&lt;revision&gt;.txt", and its revision to "revision.properties", from which the build names it
+ * in the host page.
+ * </p>
+ *
+ */
+public class SearchIndexGenerator {
+
+  static final String DIRECTORY_FILE = "directory.json";
+  static final String REVISION_FILE = "revision.properties";
+  static final String REVISION_PROPERTY = "searchindex.revision";
+
+  /** {@link AutoBeanFactory} for decoding the snapshot outside of compiled script. */
+  interface DiscoveryFactory extends AutoBeanFactory {
+    AutoBean<ApiDirectory> directory();
+
+    AutoBean<RestApiService> service();
+  }
+
+  private SearchIndexGenerator() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: SearchIndexGenerator <snapshot directory> <output directory>");
+      System.exit(1);
+    }
+    File snapshot = new File(args[0]);
+    File output = new File(args[1]);
+    DiscoveryFactory factory = AutoBeanFactorySource.create(DiscoveryFactory.class);
+
+    Set<ServiceDefinition> directory = AutoBeanCodex.decode(factory, ApiDirectory.class,
+        Files.toString(new File(snapshot, DIRECTORY_FILE), Charsets.UTF_8)).as().getItems();
+    List<ApiService> services = Lists.newArrayList();
+    for (ServiceDefinition definition : directory) {
+      File document =
+          new File(snapshot, definition.getName() + "." + definition.getVersion() + ".json");
+      if (!document.isFile()) {
+        System.err.println("No discovery document for " + definition.getId() + ", skipping it.");
+        continue;
+      }
+      services.add(AutoBeanCodex.decode(factory, RestApiService.class,
+          Files.toString(document, Charsets.UTF_8)).as());
+    }
+
+    String revision = SearchIndexArtifact.directoryRevision(directory);
+    Files.write(
+        SearchIndexArtifact.write(revision, services, new DiscoveryFullTextIndexingStrategy()),
+        new File(output, revision + ".txt"), Charsets.UTF_8);
+    Files.write(REVISION_PROPERTY + "=" + revision + "\n", new File(output, REVISION_FILE),
+        Charsets.UTF_8);
+    System.out.println("Indexed " + services.size() + " of " + directory.size()
+        + " services for directory revision " + revision);
+  }
+}
@@ -20,6 +20,7 @@ import com.google.api.explorer.client.auth.AuthPresenterTest;
 import com.google.api.explorer.client.base.ApiDirectoryTest;
 import com.google.api.explorer.client.base.ApiRequestTest;
 import com.google.api.explorer.client.base.ApiServiceHelperTest;
+import com.google.api.explorer.client.base.LruCacheTest;
 import com.google.api.explorer.client.base.SchemaTest;
 import com.google.api.explorer.client.base.ServiceLoaderTest;
 import com.google.api.explorer.client.base.rest.RestApiRequestTest;
@@ -27,15 +28,39 @@ import com.google.api.explorer.client.base.rest.RestApiServiceTest;
 import com.google.api.explorer.client.base.rpc.RpcApiServiceTest;
 import com.google.api.explorer.client.editors.EditorFactoryTest;
 import com.google.api.explorer.client.embedded.EmbeddedParameterFormPresenterTest;
+import com.google.api.explorer.client.embedded.RequestLifecycleTrackerTest;
+import com.google.api.explorer.client.history.HarWriterTest;
+import com.google.api.explorer.client.history.HistoryBodyIndexTest;
+import com.google.api.explorer.client.history.HistoryCacheTest;
+import com.google.api.explorer.client.history.JsonPathPatternTest;
 import com.google.api.explorer.client.history.JsonPrettifierTest;
+import com.google.api.explorer.client.history.JsonTableModelTest;
+import com.google.api.explorer.client.history.JsonTokenizerTest;
+import com.google.api.explorer.client.history.JsonWriterTest;
+import com.google.api.explorer.client.history.LatencyStatisticsTest;
+import com.google.api.explorer.client.history.LogHistogramTest;
+import com.google.api.explorer.client.history.LzCodecTest;
+import com.google.api.explorer.client.history.PersistentHistoryTest;
+import com.google.api.explorer.client.history.RawResponseIndexerTest;
+import com.google.api.explorer.client.history.ResponseIndexTest;
 import com.google.api.explorer.client.routing.RegexMatchRouterTest;
+import com.google.api.explorer.client.routing.RouteDispatcherTest;
 import com.google.api.explorer.client.routing.URLBuilderTest;
 import com.google.api.explorer.client.routing.URLFragmentTest;
 import com.google.api.explorer.client.routing.handler.HistoryManagerTest;
+import com.google.api.explorer.client.search.CompactSearchResultIndexTest;
 import com.google.api.explorer.client.search.DiscoveryFullTextIndexingStrategyTest;
+import com.google.api.explorer.client.search.FuzzyKeywordMatcherTest;
+import com.google.api.explorer.client.search.IncrementalIndexerTest;
 import com.google.api.explorer.client.search.KeywordExtractorTest;
+import com.google.api.explorer.client.search.KeywordPrefixIndexTest;
+import com.google.api.explorer.client.search.KeywordTokenizerTest;
+import com.google.api.explorer.client.search.PostingListTest;
+import com.google.api.explorer.client.search.SchemaFieldIndexTest;
 import com.google.api.explorer.client.search.SearchEntryTest;
+import com.google.api.explorer.client.search.SearchIndexArtifactTest;
 import com.google.api.explorer.client.search.SearchResultIndexTest;
+import com.google.api.explorer.client.search.SearchResultRankerTest;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -57,12 +82,37 @@ public class JUnitTests extends TestSuite {
     suite.addTestSuite(EditorFactoryTest.class);
     suite.addTestSuite(HistoryManagerTest.class);
     suite.addTestSuite(RegexMatchRouterTest.class);
+    suite.addTestSuite(RouteDispatcherTest.class);
     suite.addTestSuite(URLBuilderTest.class);
     suite.addTestSuite(URLFragmentTest.class);
     suite.addTestSuite(JsonPrettifierTest.class);
+    suite.addTestSuite(JsonTokenizerTest.class);
+    suite.addTestSuite(JsonTableModelTest.class);
+    suite.addTestSuite(JsonPathPatternTest.class);
+    suite.addTestSuite(ResponseIndexTest.class);
+    suite.addTestSuite(RawResponseIndexerTest.class);
+    suite.addTestSuite(LzCodecTest.class);
+    suite.addTestSuite(HistoryCacheTest.class);
+    suite.addTestSuite(PersistentHistoryTest.class);
+    suite.addTestSuite(LogHistogramTest.class);
+    suite.addTestSuite(JsonWriterTest.class);
+    suite.addTestSuite(LatencyStatisticsTest.class);
+    suite.addTestSuite(HarWriterTest.class);
     suite.addTestSuite(KeywordExtractorTest.class);
     suite.addTestSuite(ApiServiceHelperTest.class);
+    suite.addTestSuite(LruCacheTest.class);
     suite.addTestSuite(EmbeddedParameterFormPresenterTest.class);
+    suite.addTestSuite(RequestLifecycleTrackerTest.class);
+    suite.addTestSuite(HistoryBodyIndexTest.class);
+    suite.addTestSuite(KeywordPrefixIndexTest.class);
+    suite.addTestSuite(SearchResultRankerTest.class);
+    suite.addTestSuite(PostingListTest.class);
+    suite.addTestSuite(CompactSearchResultIndexTest.class);
+    suite.addTestSuite(SearchIndexArtifactTest.class);
+    suite.addTestSuite(IncrementalIndexerTest.class);
+    suite.addTestSuite(FuzzyKeywordMatcherTest.class);
+    suite.addTestSuite(KeywordTokenizerTest.class);
+    suite.addTestSuite(SchemaFieldIndexTest.class);
     suite.addTestSuite(SearchEntryTest.class);
     suite.addTestSuite(SearchResultIndexTest.class);
     suite.addTestSuite(ServiceLoaderTest.class);
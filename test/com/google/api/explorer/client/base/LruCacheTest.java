@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.base;
+
+import com.google.api.explorer.client.base.LruCache.Weigher;
+import com.google.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the {@link LruCache}.
+ *
+ */
+public class LruCacheTest extends TestCase {
+
+  private static final Weigher<String> LENGTH = new Weigher<String>() {
+    @Override
+    public int weigh(String value) {
+      return value.length();
+    }
+  };
+
+  private LruCache<Integer, String> cache;
+
+  @Override
+  public void setUp() {
+    cache = new LruCache<Integer, String>(LENGTH, 10);
+  }
+
+  public void testGetAndPut() {
+    assertNull(cache.get(1));
+    assertTrue(cache.put(1, "abc"));
+    assertTrue(cache.put(2, "de"));
+
+    assertEquals("abc", cache.get(1));
+    assertEquals("de", cache.get(2));
+    assertEquals(2, cache.size());
+    assertEquals(5, cache.getTotalWeight());
+  }
+
+  public void testLeastRecentlyUsedDropped() {
+    cache.put(1, "aaaa");
+    cache.put(2, "bbbb");
+    cache.get(1);
+
+    cache.put(3, "cccc");
+    assertNull(cache.get(2));
+    assertEquals("aaaa", cache.get(1));
+    assertEquals("cccc", cache.get(3));
+    assertEquals(8, cache.getTotalWeight());
+  }
+
+  public void testSeveralDroppedForHeavyValue() {
+    cache.put(1, "aaa");
+    cache.put(2, "bbb");
+    cache.put(3, "ccc");
+
+    cache.put(4, "dddddddd");
+    assertEquals(ImmutableList.of(4), cache.keys());
+    assertEquals(8, cache.getTotalWeight());
+  }
+
+  public void testReplaceValue() {
+    cache.put(1, "aaaa");
+    cache.put(2, "bbbb");
+    cache.put(1, "a");
+
+    assertEquals("a", cache.get(1));
+    assertEquals(5, cache.getTotalWeight());
+    assertEquals(ImmutableList.of(2, 1), cache.keys());
+  }
+
+  public void testTooHeavyNotCached() {
+    cache.put(1, "aaaa");
+    assertFalse(cache.put(2, "bbbbbbbbbbb"));
+
+    assertNull(cache.get(2));
+    assertEquals("aaaa", cache.get(1));
+
+    // The previous value of the key is dropped all the same.
+    assertFalse(cache.put(1, "aaaaaaaaaaa"));
+    assertNull(cache.get(1));
+    assertEquals(0, cache.getTotalWeight());
+  }
+
+  public void testRemoveAndClear() {
+    cache.put(1, "aaa");
+    cache.put(2, "bbb");
+
+    assertEquals("aaa", cache.remove(1));
+    assertNull(cache.remove(1));
+    assertEquals(3, cache.getTotalWeight());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getTotalWeight());
+  }
+}
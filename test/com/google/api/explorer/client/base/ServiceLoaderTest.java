@@ -18,6 +18,7 @@ package com.google.api.explorer.client.base;
 
 import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
 import com.google.api.explorer.client.base.ApiService.CallStyle;
+import com.google.api.explorer.client.base.ServiceLoader.ServiceLoadFailureDelegate;
 import com.google.api.explorer.client.base.rest.RestApiService;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
@@ -88,6 +89,27 @@ public class ServiceLoaderTest extends TestCase {
     assertEquals(0, googleApi.invocations);
   }
 
+  /**
+   * Test that a service which fails to load is reported to the failure delegate.
+   */
+  public void testLoadFailureReported() {
+    googleApi.failure = new RuntimeException("Not found");
+
+    @SuppressWarnings("unchecked")
+    Callback<ApiService, String> mockCallback = EasyMock.createMock(Callback.class);
+    mockCallback.onFailure("Not found");
+    ServiceLoadFailureDelegate failureDelegate =
+        EasyMock.createMock(ServiceLoadFailureDelegate.class);
+    failureDelegate.serviceLoadFailed("service", "version", "Not found");
+    EasyMock.replay(mockCallback, failureDelegate);
+
+    loader.failureDelegate = failureDelegate;
+    loader.loadService("service", "version", mockCallback);
+
+    EasyMock.verify(mockCallback, failureDelegate);
+    assertTrue(loader.cache.isEmpty());
+  }
+
   /**
    * Test that a blacklisted API doesn't show up in the directory list.
    */
@@ -144,6 +166,7 @@ public class ServiceLoaderTest extends TestCase {
    */
   private static class MockGoogleApi extends ApiServiceFactory {
     private RestApiService service;
+    private Throwable failure;
 
     int invocations = 0;
 
@@ -153,13 +176,17 @@ public class ServiceLoaderTest extends TestCase {
 
     /**
      * Mocks out real API requests by immediately calling the callback with the
-     * pre-defined service.
+     * pre-defined service, or with the pre-defined failure if there is one.
      */
     @Override
     public void createService(final String serviceName, final String version,
         final CallStyle callStyle, final AsyncCallback<ApiService> callback) {
       invocations++;
-      callback.onSuccess(service);
+      if (failure != null) {
+        callback.onFailure(failure);
+      } else {
+        callback.onSuccess(service);
+      }
     }
   }
 }
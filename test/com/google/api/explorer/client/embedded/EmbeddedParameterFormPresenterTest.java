@@ -27,6 +27,7 @@ import com.google.api.explorer.client.base.Schema.Type;
 import com.google.api.explorer.client.embedded.EmbeddedParameterFormPresenter.Display;
 import com.google.api.explorer.client.embedded.EmbeddedParameterFormPresenter.ParameterComparator;
 import com.google.api.explorer.client.embedded.EmbeddedParameterFormPresenter.RequestFinishedCallback;
+import com.google.api.explorer.client.embedded.RequestLifecycleTracker.Outcome;
 import com.google.api.explorer.client.routing.UrlBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -72,6 +73,12 @@ public class EmbeddedParameterFormPresenterTest extends TestCase {
           public void starting(ApiRequest request) {
             // Intentionally blank
           }
+
+          @Override
+          public void failed(ApiRequest request, Outcome outcome, String message, long startTime,
+              long endTime) {
+            // Intentionally blank
+          }
         });
   }
 
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.embedded;
+
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.base.http.TimeoutException;
+import com.google.api.explorer.client.embedded.EmbeddedParameterFormPresenter.RequestFinishedCallback;
+import com.google.api.explorer.client.embedded.RequestLifecycleTracker.Outcome;
+import com.google.api.explorer.client.embedded.RequestLifecycleTracker.TrackedRequest;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+/**
+ * Tests for the {@link RequestLifecycleTracker}.
+ *
+ */
+public class RequestLifecycleTrackerTest extends TestCase {
+
+  private RequestFinishedCallback callback;
+  private ApiRequest request;
+  private ApiResponse response;
+  private RequestLifecycleTracker tracker;
+
+  @Override
+  public void setUp() {
+    callback = EasyMock.createStrictMock(RequestFinishedCallback.class);
+    request = EasyMock.createMock(ApiRequest.class);
+    response = EasyMock.createMock(ApiResponse.class);
+    tracker = new RequestLifecycleTracker(callback);
+  }
+
+  public void testSuccessReportedOnce() {
+    callback.starting(request);
+    callback.finished(EasyMock.same(request), EasyMock.same(response), EasyMock.anyLong(),
+        EasyMock.anyLong());
+    EasyMock.replay(callback, request, response);
+
+    TrackedRequest tracked = tracker.track(request);
+    assertEquals(1, tracker.getInFlightCount());
+    tracked.reportStarting();
+    tracked.onSuccess(response);
+    tracked.onFailure(new TimeoutException());
+    tracked.onSuccess(response);
+
+    EasyMock.verify(callback, request, response);
+    assertTrue(tracked.isEnded());
+    assertEquals(0, tracker.getInFlightCount());
+    assertEquals(1, tracker.getCount(Outcome.SUCCEEDED));
+    assertEquals(0, tracker.getCount(Outcome.TIMED_OUT));
+  }
+
+  public void testTimeoutIgnoresLateResponse() {
+    callback.starting(request);
+    callback.failed(EasyMock.same(request), EasyMock.eq(Outcome.TIMED_OUT),
+        EasyMock.<String>notNull(), EasyMock.anyLong(), EasyMock.anyLong());
+    EasyMock.replay(callback, request, response);
+
+    TrackedRequest tracked = tracker.track(request);
+    tracked.reportStarting();
+    tracked.onFailure(new TimeoutException());
+    tracked.onSuccess(response);
+
+    EasyMock.verify(callback, request, response);
+    assertEquals(1, tracker.getCount(Outcome.TIMED_OUT));
+    assertEquals(0, tracker.getCount(Outcome.SUCCEEDED));
+  }
+
+  public void testFailureMessage() {
+    callback.starting(request);
+    callback.failed(EasyMock.same(request), EasyMock.eq(Outcome.FAILED),
+        EasyMock.eq("An error occurred: Unknown error"), EasyMock.anyLong(), EasyMock.anyLong());
+    EasyMock.replay(callback, request, response);
+
+    TrackedRequest tracked = tracker.track(request);
+    tracked.reportStarting();
+    tracked.onFailure(new RuntimeException("Unknown error"));
+
+    EasyMock.verify(callback, request, response);
+    assertEquals(1, tracker.getCount(Outcome.FAILED));
+  }
+
+  public void testEndBeforeStartReportedAfterStart() {
+    callback.starting(request);
+    callback.failed(EasyMock.same(request), EasyMock.eq(Outcome.FAILED),
+        EasyMock.<String>notNull(), EasyMock.anyLong(), EasyMock.anyLong());
+    EasyMock.replay(callback, request, response);
+
+    TrackedRequest tracked = tracker.track(request);
+    tracked.onFailure(new RuntimeException("No connection"));
+    assertEquals(0, tracker.getInFlightCount());
+    tracked.reportStarting();
+
+    EasyMock.verify(callback, request, response);
+  }
+
+  public void testInFlightCount() {
+    callback.starting(EasyMock.same(request));
+    EasyMock.expectLastCall().times(2);
+    callback.finished(EasyMock.same(request), EasyMock.same(response), EasyMock.anyLong(),
+        EasyMock.anyLong());
+    EasyMock.replay(callback, request, response);
+
+    TrackedRequest first = tracker.track(request);
+    TrackedRequest second = tracker.track(request);
+    first.reportStarting();
+    second.reportStarting();
+    assertEquals(2, tracker.getInFlightCount());
+
+    first.onSuccess(response);
+    assertEquals(1, tracker.getInFlightCount());
+
+    EasyMock.verify(callback, request, response);
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.ApiMethod;
+import com.google.api.explorer.client.base.ApiMethod.HttpMethod;
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.base.ApiResponse.HeaderValue;
+import com.google.api.explorer.client.base.ApiService;
+import com.google.api.explorer.client.base.TestIsoDateFormatter;
+import com.google.api.explorer.client.base.TestUrlEncoder;
+import com.google.api.explorer.client.history.HistoryItem.BodyState;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+/**
+ * Tests for the {@link HarWriter}.
+ *
+ */
+public class HarWriterTest extends TestCase {
+
+  private static final String BODY = "{\"kind\": \"plus#person\"}";
+  private static final String PATH = "/plus/v1/people/me?fields=id%2Ckind&key=abc";
+
+  private JsonWriter.StringSink sink;
+
+  @Override
+  public void setUp() {
+    HarWriter.urlEncoder = new TestUrlEncoder();
+    HarWriter.dateFormatter = new TestIsoDateFormatter();
+    sink = new JsonWriter.StringSink();
+  }
+
+  public void testLogStructure() {
+    HarWriter writer = new HarWriter(new JsonWriter(sink), false);
+    writer.beginLog();
+    writer.writeEntry(createItem());
+    writer.writeEntry(createItem());
+    writer.endLog();
+
+    String har = sink.toString();
+    assertTrue(har, har.startsWith("{\"log\":{\"version\":\"1.2\",\"creator\":{"));
+    assertTrue(har, har.endsWith("}]}}"));
+    assertEquals(2, count(har, "\"startedDateTime\":\"2012-03-04T05:06:07.089+00:00\""));
+  }
+
+  public void testEntryFields() {
+    new HarWriter(new JsonWriter(sink), false).writeEntry(createItem());
+    String har = sink.toString();
+
+    assertTrue(har, har.contains("\"time\":250,"));
+    assertTrue(har, har.contains("\"method\":\"GET\","
+        + "\"url\":\"https://www.googleapis.com/plus/v1/people/me?fields=id%2Ckind&key=abc\""));
+    assertTrue(har, har.contains("\"queryString\":[{\"name\":\"fields\",\"value\":\"id,kind\"},"
+        + "{\"name\":\"key\",\"value\":\"abc\"}]"));
+    assertTrue(har, har.contains("\"status\":200,\"statusText\":\"OK\""));
+    assertTrue(har, har.contains("{\"name\":\"Content-Type\",\"value\":\"application/json\"}"));
+    assertTrue(har, har.contains("\"content\":{\"size\":23,\"mimeType\":\"application/json\","
+        + "\"text\":\"{\\\"kind\\\": \\\"plus#person\\\"}\"}"));
+    assertTrue(har, har.contains("\"timings\":{\"send\":0,\"wait\":250,\"receive\":0}"));
+    assertTrue(har, har.contains("\"_explorer\":{\"serviceName\":\"plus\",\"serviceVersion\":\"v1\","
+        + "\"methodId\":\"plus.people.get\",\"params\":[{\"name\":\"userId\",\"value\":\"me\"}]}"));
+  }
+
+  public void testCredentialsRedacted() {
+    new HarWriter(new JsonWriter(sink), true).writeEntry(createItem());
+    String har = sink.toString();
+    assertTrue(har, har.contains(
+        "{\"name\":\"Authorization\",\"value\":\"" + HarWriter.REDACTED_VALUE + "\"}"));
+    assertTrue(har, har.contains(
+        "{\"name\":\"Cookie\",\"value\":\"" + HarWriter.REDACTED_VALUE + "\"}"));
+    assertTrue(har, har.contains("\"url\":\"https://www.googleapis.com/plus/v1/people/me"
+        + "?fields=id%2Ckind&key=" + HarWriter.REDACTED_VALUE + "\""));
+    assertTrue(har, har.contains(
+        "{\"name\":\"key\",\"value\":\"" + HarWriter.REDACTED_VALUE + "\"}"));
+    assertFalse(har, har.contains("secret"));
+    assertFalse(har, har.contains("abc"));
+  }
+
+  public void testCredentialsKept() {
+    new HarWriter(new JsonWriter(sink), false).writeEntry(createItem());
+    assertTrue(sink.toString().contains(
+        "{\"name\":\"Authorization\",\"value\":\"Bearer secret\"}"));
+    assertTrue(sink.toString().contains("{\"name\":\"Cookie\",\"value\":\"SID=secret\"}"));
+  }
+
+  public void testCompressedBodyLeftCompressed() {
+    HistoryItem item = createItem();
+    item.compressBody();
+    new HarWriter(new JsonWriter(sink), false).writeEntry(item);
+
+    assertTrue(sink.toString().contains("\"size\":23,"));
+    assertEquals(BodyState.COMPRESSED, item.getBodyState());
+  }
+
+  public void testEvictedBodyNoted() {
+    HistoryItem item = createItem();
+    item.evictBody();
+    new HarWriter(new JsonWriter(sink), false).writeEntry(item);
+
+    assertTrue(sink.toString().contains("\"content\":{\"size\":-1,"
+        + "\"mimeType\":\"application/json\",\"comment\":"));
+  }
+
+  private static int count(String text, String part) {
+    int count = 0;
+    for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+      count++;
+    }
+    return count;
+  }
+
+  private static HistoryItem createItem() {
+    ApiService service = EasyMock.createMock(ApiService.class);
+    EasyMock.expect(service.getName()).andReturn("plus").anyTimes();
+    EasyMock.expect(service.getVersion()).andReturn("v1").anyTimes();
+
+    ApiMethod method = EasyMock.createMock(ApiMethod.class);
+    EasyMock.expect(method.getId()).andReturn("plus.people.get").anyTimes();
+
+    ApiRequest request = EasyMock.createMock(ApiRequest.class);
+    EasyMock.expect(request.getService()).andReturn(service).anyTimes();
+    EasyMock.expect(request.getMethod()).andReturn(method).anyTimes();
+    EasyMock.expect(request.getHttpMethod()).andReturn(HttpMethod.GET).anyTimes();
+    EasyMock.expect(request.getRequestPath()).andReturn(PATH).anyTimes();
+    EasyMock.expect(request.getRequestBody()).andReturn(null).anyTimes();
+    EasyMock.expect(request.getHeaders())
+        .andReturn(ImmutableMap.of("Authorization", "Bearer secret", "Cookie", "SID=secret"))
+        .anyTimes();
+    EasyMock.expect(request.getParamValues())
+        .andReturn(ImmutableListMultimap.of("userId", "me")).anyTimes();
+
+    ApiResponse response = EasyMock.createMock(ApiResponse.class);
+    EasyMock.expect(response.getBodyAsString()).andReturn(BODY).anyTimes();
+    EasyMock.expect(response.getStatus()).andReturn(200).anyTimes();
+    EasyMock.expect(response.getStatusText()).andReturn("OK").anyTimes();
+    EasyMock.expect(response.getHeaders()).andReturn(ImmutableMap.of(
+        "content-type", new HeaderValue("Content-Type", "application/json"))).anyTimes();
+    response.setBody(null);
+    EasyMock.expectLastCall().anyTimes();
+
+    EasyMock.replay(service, method, request, response);
+    return new HistoryItem("1", request, response, 1330837567089L, 1330837567339L);
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.history.HistoryBodyIndex.Match;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link HistoryBodyIndex}.
+ *
+ */
+public class HistoryBodyIndexTest extends TestCase {
+
+  private static final String BODY = "{\"items\": [{\"id\": \"first\", \"name\": \"Alpha Beta\"},"
+      + " {\"id\": \"second\", \"name\": \"Beta Gamma\", \"count\": 42}]}";
+
+  /** Index which works through its background work when told to, instead of scheduling it. */
+  private static class TestHistoryBodyIndex extends HistoryBodyIndex {
+    int scheduled = 0;
+
+    TestHistoryBodyIndex() {
+    }
+
+    TestHistoryBodyIndex(int maxPostings) {
+      super(maxPostings);
+    }
+
+    @Override
+    void scheduleIndexing() {
+      scheduled++;
+    }
+
+    void runScheduled() {
+      while (step()) {
+        // Keep going until nothing is waiting.
+      }
+    }
+  }
+
+  private TestHistoryBodyIndex index;
+
+  @Override
+  public void setUp() {
+    index = new TestHistoryBodyIndex();
+  }
+
+  public void testResponseValues() {
+    HistoryItem item = createItem("1", "userId", "me", BODY);
+    index.indexItem(item);
+
+    List<Match> matches = index.search("gamma", 10);
+    assertEquals(1, matches.size());
+    assertSame(item, matches.get(0).getItem());
+    assertFalse(matches.get(0).isRequestParameter());
+    assertEquals("items[1].name", matches.get(0).getLocation());
+    assertEquals("Beta Gamma", matches.get(0).getSnippet());
+
+    assertEquals("items[1].count", index.search("42", 10).get(0).getLocation());
+    assertTrue(index.search("delta", 10).isEmpty());
+  }
+
+  public void testBestFieldReported() {
+    index.indexItem(createItem("1", "userId", "me", BODY));
+
+    // Both names contain "beta", only the second one contains both terms.
+    List<Match> matches = index.search("Beta gamma", 10);
+    assertEquals(1, matches.size());
+    assertEquals("items[1].name", matches.get(0).getLocation());
+  }
+
+  public void testTermsInDifferentFields() {
+    index.indexItem(createItem("1", "userId", "me", BODY));
+
+    assertEquals(1, index.search("alpha second", 10).size());
+    assertEquals(1, index.search("me gamma", 10).size());
+  }
+
+  public void testRequestParameters() {
+    index.indexItem(createItem("1", "userId", "someone", null));
+
+    List<Match> matches = index.search("someone", 10);
+    assertEquals(1, matches.size());
+    assertTrue(matches.get(0).isRequestParameter());
+    assertEquals("userId", matches.get(0).getLocation());
+    assertEquals("someone", matches.get(0).getSnippet());
+  }
+
+  public void testNewestFirstAndLimit() {
+    HistoryItem first = createItem("1", "userId", "me", BODY);
+    HistoryItem second = createItem("2", "userId", "me", BODY);
+    HistoryItem third = createItem("3", "userId", "me", BODY);
+    index.indexItem(first);
+    index.indexItem(second);
+    index.indexItem(third);
+
+    List<Match> matches = index.search("alpha", 2);
+    assertEquals(2, matches.size());
+    assertSame(third, matches.get(0).getItem());
+    assertSame(second, matches.get(1).getItem());
+  }
+
+  public void testBodyEvicted() {
+    HistoryItem item = createItem("1", "userId", "me", BODY);
+    index.indexItem(item);
+
+    index.historyItemBodyEvicted(item);
+    assertTrue(index.search("gamma", 10).isEmpty());
+    assertEquals(1, index.search("me", 10).size());
+    assertEquals(2, index.getPostingCount());
+
+    index.runScheduled();
+    assertTrue(index.search("gamma", 10).isEmpty());
+    assertEquals(1, index.search("me", 10).size());
+    assertEquals(2, index.getTermCount());
+  }
+
+  public void testItemRemoved() {
+    HistoryItem item = createItem("1", "userId", "me", BODY);
+    index.indexItem(item);
+
+    index.historyItemRemoved(item);
+    assertTrue(index.search("me", 10).isEmpty());
+    assertEquals(0, index.getPostingCount());
+    assertEquals(0, index.getItemCount());
+
+    // The postings are purged from the lists of their terms in the background.
+    assertTrue(index.getTermCount() > 0);
+    index.runScheduled();
+    assertEquals(0, index.getTermCount());
+  }
+
+  public void testBodiesReadInBackground() {
+    HistoryItem first = createItem("1", "userId", "me", BODY);
+    HistoryItem second = createItem("2", "userId", "you", BODY);
+    index.setEnabled(true, ImmutableList.of(first, second));
+
+    // Request parameters are indexed right away, the bodies once their turn comes.
+    assertEquals(2, index.getItemCount());
+    assertEquals(1, index.search("you", 10).size());
+    assertTrue(index.search("gamma", 10).isEmpty());
+    assertTrue(index.scheduled > 0);
+
+    index.runScheduled();
+    assertEquals(2, index.search("gamma", 10).size());
+  }
+
+  public void testOldestItemsDroppedOverBudget() {
+    // Every item holds at most 7 postings, so the fifth item does not fit next to the others.
+    index = new TestHistoryBodyIndex(30);
+    HistoryItem first = createItem("1", "userId", "me", BODY);
+    HistoryItem last = createItem("5", "userId", "me", BODY);
+    index.indexItem(first);
+    index.indexItem(createItem("2", "userId", "me", BODY));
+    index.indexItem(createItem("3", "userId", "me", BODY));
+    index.indexItem(createItem("4", "userId", "me", BODY));
+    assertEquals(28, index.getPostingCount());
+    index.indexItem(last);
+
+    assertTrue(index.getPostingCount() <= 30);
+    assertEquals(4, index.getItemCount());
+    List<Match> matches = index.search("me", 10);
+    assertSame(last, matches.get(0).getItem());
+    for (Match match : matches) {
+      assertNotSame(first, match.getItem());
+    }
+  }
+
+  public void testIndexingEndsOnceItemIsFull() {
+    // Every item holds at most 3 postings, which the parameter and the first value fill.
+    StringBuilder body = new StringBuilder("{\"items\": [\"alpha\"");
+    for (int i = 0; i < 1000; i++) {
+      body.append(", \"beta\"");
+    }
+    body.append("]}");
+    index = new TestHistoryBodyIndex(12);
+    index.setEnabled(true, ImmutableList.of(createItem("1", "userId", "me", body.toString())));
+
+    // The first step reads the body, the second ends the walk at the first value.
+    assertTrue(index.step());
+    assertFalse(index.step());
+    assertEquals(3, index.getPostingCount());
+    assertEquals(1, index.search("alpha", 10).size());
+    assertTrue(index.search("beta", 10).isEmpty());
+  }
+
+  public void testDisabledByDefault() {
+    HistoryItem item = createItem("1", "userId", "me", BODY);
+    index.newHistoryItem(item);
+    assertFalse(index.isEnabled());
+    assertEquals(0, index.getItemCount());
+  }
+
+  public void testExtractTerms() {
+    assertEquals(ImmutableList.of("plus", "people", "list", "2"),
+        HistoryBodyIndex.extractTerms("plus.people.list PLUS 2"));
+    assertTrue(HistoryBodyIndex.extractTerms(" ,.: ").isEmpty());
+  }
+
+  public void testUnquote() {
+    assertEquals("plain", HistoryBodyIndex.unquote("\"plain\""));
+    assertEquals("a \"b\" c d", HistoryBodyIndex.unquote("\"a \\\"b\\\" c\\nd\""));
+    assertEquals("caf\u00e9", HistoryBodyIndex.unquote("\"caf\\u00e9\""));
+  }
+
+  private static HistoryItem createItem(String key, String param, String value, String body) {
+    ApiRequest request = EasyMock.createMock(ApiRequest.class);
+    EasyMock.expect(request.getParamValues())
+        .andReturn(ImmutableListMultimap.of(param, value)).anyTimes();
+
+    ApiResponse response = EasyMock.createMock(ApiResponse.class);
+    EasyMock.expect(response.getBodyAsString()).andReturn(body).anyTimes();
+
+    EasyMock.replay(request, response);
+    return new HistoryItem(key, request, response, 1000L, 1250L);
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.history.HistoryCache.HistoryCacheEvictionObserver;
+import com.google.api.explorer.client.history.HistoryCache.HistoryCacheObserver;
+import com.google.api.explorer.client.history.HistoryItem.BodyState;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link HistoryCache}.
+ *
+ */
+public class HistoryCacheTest extends TestCase {
+
+  /** Body of roughly 4KB which compresses well. */
+  private static final String BODY;
+
+  static {
+    StringBuilder body = new StringBuilder("{\"items\": [");
+    for (int i = 0; i < 100; i++) {
+      body.append("{\"kind\": \"test#item\", \"id\": ").append(i).append("},");
+    }
+    BODY = body.append("]}").toString();
+  }
+
+  /**
+   * Cache which compresses bodies when told to, rather than in the background.
+   */
+  private static class ManualHistoryCache extends HistoryCache {
+    boolean budgetScheduled = false;
+
+    ManualHistoryCache(int maxItems, long bodyBudgetBytes) {
+      super(maxItems, bodyBudgetBytes);
+    }
+
+    ManualHistoryCache(long bodyBudgetBytes) {
+      this(DEFAULT_MAX_ITEMS, bodyBudgetBytes);
+    }
+
+    ManualHistoryCache() {
+      this(DEFAULT_BODY_BUDGET_BYTES);
+    }
+
+    @Override
+    void scheduleBodyBudget() {
+      budgetScheduled = true;
+    }
+
+    void runScheduled() {
+      budgetScheduled = false;
+      while (enforceBodyBudget()) {
+        // Keep compressing until the bodies are within the budget.
+      }
+    }
+  }
+
+  private HistoryCacheEvictionObserver observer;
+
+  @Override
+  public void setUp() {
+    observer = EasyMock.createMock(HistoryCacheEvictionObserver.class);
+  }
+
+  public void testOrderAndLookup() {
+    ManualHistoryCache cache = new ManualHistoryCache();
+    for (int i = 1; i <= 12; i++) {
+      assertEquals(Integer.toString(i), addItem(cache, BODY));
+    }
+
+    // Keys are ordered numerically, not as strings.
+    List<HistoryItem> items = cache.listHistoryItems();
+    assertEquals(12, items.size());
+    for (int i = 0; i < 12; i++) {
+      assertEquals(Integer.toString(12 - i), items.get(i).getKey());
+    }
+
+    assertEquals("9", cache.getHistoryItem("9").getKey());
+    assertNull(cache.getHistoryItem("0"));
+    assertNull(cache.getHistoryItem("13"));
+    assertNull(cache.getHistoryItem("nine"));
+  }
+
+  public void testKeysAreParsedStrictly() {
+    ManualHistoryCache cache = new ManualHistoryCache();
+    for (int i = 1; i <= 12; i++) {
+      addItem(cache, BODY);
+    }
+
+    assertEquals("9", cache.getHistoryItem("9").getKey());
+    assertNull(cache.getHistoryItem(""));
+    assertNull(cache.getHistoryItem("09"));
+    assertNull(cache.getHistoryItem("+9"));
+    assertNull(cache.getHistoryItem("-9"));
+    assertNull(cache.getHistoryItem(" 9"));
+    assertNull(cache.getHistoryItem("9 "));
+    assertNull(cache.getHistoryItem("9x"));
+    assertNull(cache.getHistoryItem("99999999999999999999"));
+  }
+
+  public void testPagedListing() {
+    ManualHistoryCache cache = new ManualHistoryCache();
+    for (int i = 0; i < 25; i++) {
+      addItem(cache, BODY);
+    }
+
+    List<HistoryItem> page = cache.listHistoryItems(10, 10);
+    assertEquals(10, page.size());
+    assertEquals("15", page.get(0).getKey());
+    assertEquals("6", page.get(9).getKey());
+
+    page = cache.listHistoryItems(20, 10);
+    assertEquals(5, page.size());
+    assertEquals("1", page.get(4).getKey());
+
+    assertTrue(cache.listHistoryItems(30, 10).isEmpty());
+  }
+
+  public void testOldestRemovedAtCapacity() {
+    ManualHistoryCache cache = new ManualHistoryCache(3, HistoryCache.DEFAULT_BODY_BUDGET_BYTES);
+    observer.newHistoryItem(EasyMock.<HistoryItem>anyObject());
+    EasyMock.expectLastCall().times(5);
+    observer.historyItemRemoved(EasyMock.<HistoryItem>anyObject());
+    EasyMock.expectLastCall().times(2);
+    EasyMock.replay(observer);
+    cache.addObserver(observer);
+
+    for (int i = 0; i < 5; i++) {
+      addItem(cache, BODY);
+    }
+
+    assertEquals(3, cache.size());
+    assertNull(cache.getHistoryItem("2"));
+    assertEquals("3", cache.getHistoryItem("3").getKey());
+    assertEquals("5", cache.listHistoryItems().get(0).getKey());
+    assertEquals("3", cache.listHistoryItems().get(2).getKey());
+    EasyMock.verify(observer);
+  }
+
+  public void testPlainObserversOnlySeeNewItems() {
+    // Room for about one compressed body, so that bodies are evicted as well as items removed.
+    long compressedBytes = LzCodec.compress(BODY).length() * 2;
+    ManualHistoryCache cache = new ManualHistoryCache(2, compressedBytes + compressedBytes / 2);
+    HistoryCacheObserver plainObserver = EasyMock.createMock(HistoryCacheObserver.class);
+    plainObserver.newHistoryItem(EasyMock.<HistoryItem>anyObject());
+    EasyMock.expectLastCall().times(4);
+    EasyMock.replay(plainObserver);
+    cache.addObserver(plainObserver);
+
+    for (int i = 0; i < 4; i++) {
+      addItem(cache, BODY);
+    }
+
+    assertEquals(2, cache.size());
+    assertEquals(BodyState.EVICTED, cache.listHistoryItems().get(1).getBodyState());
+    EasyMock.verify(plainObserver);
+  }
+
+  public void testWithinBudget() {
+    ManualHistoryCache cache = new ManualHistoryCache();
+    observer.newHistoryItem(EasyMock.<HistoryItem>anyObject());
+    EasyMock.expectLastCall().times(3);
+    EasyMock.replay(observer);
+    cache.addObserver(observer);
+
+    for (int i = 0; i < 3; i++) {
+      addItem(cache, BODY);
+    }
+
+    for (HistoryItem item : cache.listHistoryItems()) {
+      assertEquals(BodyState.RESIDENT, item.getBodyState());
+    }
+    assertEquals(3L * BODY.length() * 2, cache.getRetainedBodyBytes());
+    EasyMock.verify(observer);
+  }
+
+  public void testOldestCompressedFirst() {
+    // Room for two uncompressed bodies and a compressed one.
+    long compressedBytes = LzCodec.compress(BODY).length() * 2;
+    long budget = BODY.length() * 2 * 2 + compressedBytes;
+    ManualHistoryCache cache = new ManualHistoryCache(budget);
+    observer.newHistoryItem(EasyMock.<HistoryItem>anyObject());
+    EasyMock.expectLastCall().times(3);
+    EasyMock.replay(observer);
+    cache.addObserver(observer);
+
+    for (int i = 0; i < 3; i++) {
+      addItem(cache, BODY);
+    }
+
+    List<HistoryItem> items = cache.listHistoryItems();
+    assertEquals(BodyState.RESIDENT, items.get(0).getBodyState());
+    assertEquals(BodyState.RESIDENT, items.get(1).getBodyState());
+    assertEquals(BodyState.COMPRESSED, items.get(2).getBodyState());
+    assertTrue(cache.getRetainedBodyBytes() <= budget);
+
+    // Retrieving the response restores the body, which counts against the budget again.
+    assertEquals(BODY, items.get(2).getResponse().getBodyAsString());
+    assertEquals(BodyState.RESIDENT, items.get(2).getBodyState());
+    assertTrue(cache.budgetScheduled);
+    cache.runScheduled();
+    assertEquals(BodyState.COMPRESSED, items.get(2).getBodyState());
+    assertTrue(cache.getRetainedBodyBytes() <= budget);
+    EasyMock.verify(observer);
+  }
+
+  public void testOldestEvictedWhenCompressionIsNotEnough() {
+    // Room for about one compressed body.
+    long compressedBytes = LzCodec.compress(BODY).length() * 2;
+    ManualHistoryCache cache = new ManualHistoryCache(compressedBytes + compressedBytes / 2);
+    observer.newHistoryItem(EasyMock.<HistoryItem>anyObject());
+    EasyMock.expectLastCall().times(3);
+    observer.historyItemBodyEvicted(EasyMock.<HistoryItem>anyObject());
+    EasyMock.expectLastCall().times(2);
+    EasyMock.replay(observer);
+    cache.addObserver(observer);
+
+    for (int i = 0; i < 3; i++) {
+      addItem(cache, BODY);
+    }
+
+    List<HistoryItem> items = cache.listHistoryItems();
+    assertEquals(BodyState.COMPRESSED, items.get(0).getBodyState());
+    assertEquals(BodyState.EVICTED, items.get(1).getBodyState());
+    assertEquals(BodyState.EVICTED, items.get(2).getBodyState());
+    assertNull(items.get(2).getResponse().getBodyAsString());
+    assertEquals(0, items.get(2).getRetainedBodyBytes());
+    EasyMock.verify(observer);
+  }
+
+  public void testNewestNeverEvicted() {
+    ManualHistoryCache cache = new ManualHistoryCache(0);
+    observer.newHistoryItem(EasyMock.<HistoryItem>anyObject());
+    EasyMock.replay(observer);
+    cache.addObserver(observer);
+
+    addItem(cache, BODY);
+
+    HistoryItem item = cache.listHistoryItems().get(0);
+    assertEquals(BodyState.COMPRESSED, item.getBodyState());
+    assertEquals(BODY, item.getResponse().getBodyAsString());
+    EasyMock.verify(observer);
+  }
+
+  public void testRetainedBytesFollowBodies() {
+    // Room for about two compressed bodies, so that bodies are compressed, restored, discarded
+    // and dropped along with their items.
+    long compressedBytes = LzCodec.compress(BODY).length() * 2;
+    ManualHistoryCache cache = new ManualHistoryCache(4, compressedBytes * 2 + compressedBytes / 2);
+    for (int i = 0; i < 3; i++) {
+      addItem(cache, BODY);
+      assertEquals(sumRetainedBodyBytes(cache), cache.getRetainedBodyBytes());
+    }
+
+    HistoryItem restored = cache.listHistoryItems().get(0);
+    assertEquals(BodyState.COMPRESSED, restored.getBodyState());
+    restored.getResponse();
+    assertEquals(sumRetainedBodyBytes(cache), cache.getRetainedBodyBytes());
+    cache.runScheduled();
+    assertEquals(sumRetainedBodyBytes(cache), cache.getRetainedBodyBytes());
+
+    for (int i = 0; i < 5; i++) {
+      addItem(cache, BODY);
+      assertEquals(sumRetainedBodyBytes(cache), cache.getRetainedBodyBytes());
+    }
+    assertEquals(4, cache.size());
+    assertEquals(BodyState.EVICTED, cache.listHistoryItems().get(3).getBodyState());
+    assertTrue(cache.getRetainedBodyBytes() <= compressedBytes * 2 + compressedBytes / 2);
+  }
+
+  public void testBodyRestoredAfterItemDroppedIsNotCounted() {
+    ManualHistoryCache cache = new ManualHistoryCache(1, 0);
+    addItem(cache, BODY);
+    HistoryItem dropped = cache.listHistoryItems().get(0);
+    addItem(cache, BODY);
+
+    dropped.getResponse();
+    assertEquals(BodyState.RESIDENT, dropped.getBodyState());
+    assertEquals(sumRetainedBodyBytes(cache), cache.getRetainedBodyBytes());
+  }
+
+  public void testCompressionIsDeferred() {
+    ManualHistoryCache cache = new ManualHistoryCache(0);
+    cache.addHistoryItem(EasyMock.createMock(ApiRequest.class), createResponse(BODY), 0, 0);
+
+    HistoryItem item = cache.listHistoryItems().get(0);
+    assertEquals(BodyState.RESIDENT, item.getBodyState());
+    assertTrue(cache.budgetScheduled);
+
+    cache.runScheduled();
+    assertEquals(BodyState.COMPRESSED, item.getBodyState());
+  }
+
+  private static long sumRetainedBodyBytes(HistoryCache cache) {
+    long retainedBytes = 0;
+    for (HistoryItem item : cache.listHistoryItems()) {
+      retainedBytes += item.getRetainedBodyBytes();
+    }
+    return retainedBytes;
+  }
+
+  /**
+   * Add an item and compress the bodies as the background task would.
+   */
+  private static String addItem(ManualHistoryCache cache, String body) {
+    String key =
+        cache.addHistoryItem(EasyMock.createMock(ApiRequest.class), createResponse(body), 0, 0);
+    cache.runScheduled();
+    return key;
+  }
+
+  /**
+   * Create a response whose body can be replaced.
+   */
+  private static ApiResponse createResponse(String body) {
+    final String[] currentBody = {body};
+    ApiResponse response = EasyMock.createMock(ApiResponse.class);
+    EasyMock.expect(response.getBodyAsString()).andAnswer(new IAnswer<String>() {
+      @Override
+      public String answer() {
+        return currentBody[0];
+      }
+    }).anyTimes();
+    response.setBody(EasyMock.<String>anyObject());
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() {
+        currentBody[0] = (String) EasyMock.getCurrentArguments()[0];
+        return null;
+      }
+    }).anyTimes();
+    EasyMock.replay(response);
+    return response;
+  }
+}
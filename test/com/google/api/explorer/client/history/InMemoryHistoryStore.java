@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gwt.core.client.Callback;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link HistoryStore} which keeps everything in memory, used in place of IndexedDB in tests.
+ * Callbacks are invoked immediately, unless writes are held to simulate a slow store. Writes can
+ * also be made to fail.
+ *
+ */
+public class InMemoryHistoryStore implements HistoryStore {
+
+  public final Map<String, HistoryRecord> records = Maps.newLinkedHashMap();
+  public final Map<String, String> bodies = Maps.newHashMap();
+  public int writeCount = 0;
+
+  /** Whether writes wait for {@link #completeHeldWrites()} before they are applied. */
+  public boolean holdWrites = false;
+
+  /** Number of the following writes which fail without storing anything. */
+  public int failingWrites = 0;
+
+  private final List<Runnable> heldWrites = Lists.newArrayList();
+
+  @Override
+  public void write(final List<HistoryRecord> newRecords, final Map<String, String> newBodies,
+      final Callback<Void, String> callback) {
+    writeCount++;
+    if (failingWrites > 0) {
+      failingWrites--;
+      callback.onFailure("Write failed");
+      return;
+    }
+
+    Runnable write = new Runnable() {
+      @Override
+      public void run() {
+        for (HistoryRecord record : newRecords) {
+          records.put(record.getId(), record);
+        }
+        bodies.putAll(newBodies);
+        callback.onSuccess(null);
+      }
+    };
+
+    if (holdWrites) {
+      heldWrites.add(write);
+    } else {
+      write.run();
+    }
+  }
+
+  /**
+   * Apply the writes which were held, and any which they trigger.
+   */
+  public void completeHeldWrites() {
+    holdWrites = false;
+    while (!heldWrites.isEmpty()) {
+      heldWrites.remove(0).run();
+    }
+  }
+
+  @Override
+  public void loadRecords(Callback<List<HistoryRecord>, String> callback) {
+    callback.onSuccess(ImmutableList.copyOf(records.values()));
+  }
+
+  @Override
+  public void loadBody(String id, Callback<String, String> callback) {
+    callback.onSuccess(bodies.get(id));
+  }
+
+  @Override
+  public void delete(List<String> ids, Callback<Void, String> callback) {
+    for (String id : ids) {
+      records.remove(id);
+      bodies.remove(id);
+    }
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void clear(Callback<Void, String> callback) {
+    records.clear();
+    bodies.clear();
+    callback.onSuccess(null);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the {@link JsonPathPattern}.
+ *
+ */
+public class JsonPathPatternTest extends TestCase {
+
+  public void testParse() {
+    JsonPathPattern pattern = JsonPathPattern.parse("$.items[*].actor.*");
+    assertEquals(4, pattern.size());
+    assertTrue(pattern.matchesKey(0, "items"));
+    assertFalse(pattern.matchesKey(0, "kind"));
+    assertFalse(pattern.matchesIndex(0, 0));
+    assertTrue(pattern.matchesIndex(1, 5));
+    assertFalse(pattern.matchesKey(1, "items"));
+    assertTrue(pattern.matchesKey(2, "actor"));
+    assertTrue(pattern.matchesKey(3, "anything"));
+  }
+
+  public void testIndexes() {
+    JsonPathPattern pattern = JsonPathPattern.parse("items[2][ 0 ]");
+    assertEquals(3, pattern.size());
+    assertTrue(pattern.matchesIndex(1, 2));
+    assertFalse(pattern.matchesIndex(1, 3));
+    assertTrue(pattern.matchesIndex(2, 0));
+  }
+
+  public void testIndexOutOfRange() {
+    JsonPathPattern pattern = JsonPathPattern.parse("items[99999999999]");
+    assertEquals(2, pattern.size());
+    assertFalse(pattern.matchesIndex(1, Integer.MAX_VALUE));
+    assertFalse(pattern.matchesIndex(1, (int) 99999999999L));
+  }
+
+  public void testRootOnly() {
+    assertEquals(0, JsonPathPattern.parse("$").size());
+    assertEquals(1, JsonPathPattern.parse("kind").size());
+  }
+
+  public void testInvalid() {
+    assertNull(JsonPathPattern.parse("items[abc]"));
+    assertNull(JsonPathPattern.parse("items[0"));
+    assertNull(JsonPathPattern.parse("items..id"));
+    assertNull(JsonPathPattern.parse("items."));
+    assertNull(JsonPathPattern.parse(".items"));
+    assertNull(JsonPathPattern.parse("items[0]id"));
+  }
+}
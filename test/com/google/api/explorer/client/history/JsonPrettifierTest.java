@@ -22,6 +22,7 @@ import static org.easymock.EasyMock.replay;
 import com.google.api.explorer.client.base.ApiMethod;
 import com.google.api.explorer.client.base.ApiMethod.HttpMethod;
 import com.google.api.explorer.client.base.ApiService;
+import com.google.api.explorer.client.base.Schema;
 import com.google.api.explorer.client.base.TestUrlEncoder;
 import com.google.api.explorer.client.base.UrlEncoder;
 import com.google.api.explorer.client.base.rest.RestApiService;
@@ -91,4 +92,25 @@ public class JsonPrettifierTest extends TestCase {
     String link = JsonPrettifier.createExplorerLink(plusService, PLUS_LINK, method);
     assertEquals(EXPLORER_LINK, link);
   }
+
+  /**
+   * Test that only values which the schema declares as links are resolved.
+   */
+  public void testSchemaGuidedLinks() {
+    Schema uri = EasyMock.createMock(Schema.class);
+    expect(uri.getFormat()).andReturn("uri").anyTimes();
+    Schema plain = EasyMock.createMock(Schema.class);
+    expect(plain.getFormat()).andReturn(null).anyTimes();
+    replay(uri, plain);
+
+    // Without a schema every value is a candidate.
+    assertTrue(JsonPrettifier.mayBeLink("displayName", null));
+    assertTrue(JsonPrettifier.mayBeLink(null, null));
+
+    assertTrue(JsonPrettifier.mayBeLink("image", uri));
+    assertTrue(JsonPrettifier.mayBeLink("selfLink", plain));
+    assertTrue(JsonPrettifier.mayBeLink("url", plain));
+    assertFalse(JsonPrettifier.mayBeLink("displayName", plain));
+    assertFalse(JsonPrettifier.mayBeLink(null, plain));
+  }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.history.JsonTableModel.RowSource;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the {@link JsonTableModel}.
+ *
+ */
+public class JsonTableModelTest extends TestCase {
+
+  /** Row source backed by maps, where values which parse as numbers are numeric. */
+  private static class MapRowSource implements RowSource {
+    private final List<Map<String, String>> rows;
+    private int cellReads = 0;
+
+    MapRowSource(List<Map<String, String>> rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public int getRowCount() {
+      return rows.size();
+    }
+
+    @Override
+    public Iterable<String> getKeys(int row) {
+      return rows.get(row).keySet();
+    }
+
+    @Override
+    public String getCellText(int row, String column) {
+      cellReads++;
+      return rows.get(row).get(column);
+    }
+
+    @Override
+    public double getCellNumber(int row, String column) {
+      String text = rows.get(row).get(column);
+      try {
+        return text == null ? Double.NaN : Double.parseDouble(text);
+      } catch (NumberFormatException e) {
+        return Double.NaN;
+      }
+    }
+  }
+
+  private MapRowSource source;
+  private JsonTableModel model;
+
+  @Override
+  public void setUp() {
+    source = new MapRowSource(ImmutableList.<Map<String, String>>of(
+        ImmutableMap.of("id", "10", "name", "Zebra"),
+        ImmutableMap.of("id", "9", "name", "apple", "extra", "x"),
+        ImmutableMap.of("name", "Mango"),
+        ImmutableMap.of("id", "100", "name", "banana")));
+    model = new JsonTableModel(source);
+  }
+
+  public void testColumnsAreUnionInFirstSeenOrder() {
+    assertEquals(ImmutableList.of("id", "name", "extra"), model.getColumns());
+    assertEquals(4, model.getViewRowCount());
+    assertEquals(ImmutableList.of(0, 1, 2, 3), viewRows());
+
+    // Cells are not read until they are needed.
+    assertEquals(0, source.cellReads);
+  }
+
+  public void testNumericSort() {
+    model.setSort("id", true);
+    assertEquals(ImmutableList.of(1, 0, 3, 2), viewRows());
+
+    model.setSort("id", false);
+    assertEquals(ImmutableList.of(2, 3, 0, 1), viewRows());
+
+    model.setSort(null, true);
+    assertEquals(ImmutableList.of(0, 1, 2, 3), viewRows());
+  }
+
+  public void testColumnIndexBuiltOnce() {
+    model.setSort("name", true);
+    assertEquals(ImmutableList.of(2, 0, 1, 3), viewRows());
+    int reads = source.cellReads;
+
+    model.setSort("name", false);
+    model.setSort("name", true);
+    assertEquals(reads, source.cellReads);
+  }
+
+  public void testFilter() {
+    model.setFilter("AN");
+    assertEquals(ImmutableList.of(2, 3), viewRows());
+
+    // Narrowing the filter.
+    model.setFilter("ana");
+    assertEquals(ImmutableList.of(3), viewRows());
+
+    // Widening the filter again.
+    model.setFilter("a");
+    assertEquals(ImmutableList.of(0, 1, 2, 3), viewRows());
+
+    model.setFilter("10");
+    assertEquals(ImmutableList.of(0, 3), viewRows());
+
+    model.setFilter("");
+    assertEquals(4, model.getViewRowCount());
+  }
+
+  public void testFilterAndSort() {
+    model.setFilter("0");
+    model.setSort("id", false);
+    assertEquals(ImmutableList.of(3, 0), viewRows());
+  }
+
+  private List<Integer> viewRows() {
+    List<Integer> rows = Lists.newArrayList();
+    for (int i = 0; i < model.getViewRowCount(); i++) {
+      rows.add(model.getViewRow(i));
+    }
+    return rows;
+  }
+}
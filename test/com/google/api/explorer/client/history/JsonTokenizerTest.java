@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.history.JsonTokenizer.TokenType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link JsonTokenizer}.
+ *
+ */
+public class JsonTokenizerTest extends TestCase {
+
+  public void testTokenTypes() {
+    List<TokenType> types = Lists.newArrayList();
+    List<String> texts = Lists.newArrayList();
+    String json = "{\"a\" : [\"b\", -1.5e3, true, null]}";
+    JsonTokenizer tokenizer = new JsonTokenizer(json);
+    while (tokenizer.hasNext()) {
+      types.add(tokenizer.next());
+      texts.add(json.substring(tokenizer.getTokenStart(), tokenizer.getTokenEnd()));
+    }
+
+    assertEquals(ImmutableList.of(TokenType.OPEN_OBJECT, TokenType.KEY, TokenType.WHITESPACE,
+        TokenType.COLON, TokenType.WHITESPACE, TokenType.OPEN_ARRAY, TokenType.STRING,
+        TokenType.COMMA, TokenType.WHITESPACE, TokenType.NUMBER, TokenType.COMMA,
+        TokenType.WHITESPACE, TokenType.BOOLEAN, TokenType.COMMA, TokenType.WHITESPACE,
+        TokenType.NULL, TokenType.CLOSE_ARRAY, TokenType.CLOSE_OBJECT), types);
+    assertEquals("\"a\"", texts.get(1));
+    assertEquals("\"b\"", texts.get(6));
+    assertEquals("-1.5e3", texts.get(9));
+  }
+
+  public void testEscapedQuotes() {
+    String json = "\"a\\\"b\":\"\\\\\"";
+    JsonTokenizer tokenizer = new JsonTokenizer(json);
+
+    assertEquals(TokenType.KEY, tokenizer.next());
+    assertEquals("\"a\\\"b\"", json.substring(tokenizer.getTokenStart(), tokenizer.getTokenEnd()));
+    assertEquals(TokenType.COLON, tokenizer.next());
+    assertEquals(TokenType.STRING, tokenizer.next());
+    assertEquals("\"\\\\\"", json.substring(tokenizer.getTokenStart(), tokenizer.getTokenEnd()));
+    assertFalse(tokenizer.hasNext());
+  }
+
+  public void testUnknownAndUnterminated() {
+    JsonTokenizer tokenizer = new JsonTokenizer("x\"abc");
+
+    assertEquals(TokenType.UNKNOWN, tokenizer.next());
+    assertEquals(TokenType.STRING, tokenizer.next());
+    assertEquals(5, tokenizer.getTokenEnd());
+    assertFalse(tokenizer.hasNext());
+  }
+
+  public void testLinesAndFolds() {
+    String json = "{\n"
+        + "  \"a\": [1, 2],\n"
+        + "  \"b\": [{\n"
+        + "    \"c\": 1\n"
+        + "  }]\n"
+        + "}";
+    JsonTokenizer tokenizer = new JsonTokenizer(json);
+
+    int lastLine = 0;
+    while (tokenizer.hasNext()) {
+      TokenType type = tokenizer.next();
+      if (type == TokenType.KEY && json.startsWith("\"c\"", tokenizer.getTokenStart())) {
+        assertEquals(3, tokenizer.getLine());
+      }
+      lastLine = tokenizer.getLine();
+    }
+
+    assertEquals(5, lastLine);
+    assertEquals(5, tokenizer.getFoldEnd(0));
+    // The array on the second line fits on the line.
+    assertEquals(-1, tokenizer.getFoldEnd(1));
+    // The array and the object opened on the same line close together.
+    assertEquals(4, tokenizer.getFoldEnd(2));
+    assertEquals(-1, tokenizer.getFoldEnd(3));
+    assertEquals(-1, tokenizer.getFoldEnd(100));
+  }
+
+  public void testUnclosedFold() {
+    JsonTokenizer tokenizer = new JsonTokenizer("[\n1,\n");
+    while (tokenizer.hasNext()) {
+      tokenizer.next();
+    }
+    assertEquals(-1, tokenizer.getFoldEnd(0));
+  }
+}
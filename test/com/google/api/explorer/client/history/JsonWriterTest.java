@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the {@link JsonWriter}.
+ *
+ */
+public class JsonWriterTest extends TestCase {
+
+  public void testNestedValues() {
+    JsonWriter.StringSink sink = new JsonWriter.StringSink();
+    new JsonWriter(sink).beginObject()
+        .name("a").value(1)
+        .name("b").beginArray().value("x").value(true).nullValue().beginObject().endObject()
+        .endArray()
+        .name("c").value(2.5)
+        .name("d").value(3.0)
+        .name("e").value(Double.NaN)
+        .endObject();
+    assertEquals("{\"a\":1,\"b\":[\"x\",true,null,{}],\"c\":2.5,\"d\":3,\"e\":null}",
+        sink.toString());
+  }
+
+  public void testQuote() {
+    assertEquals("\"a\\\"b\\\\c\\nd\\u0001\\u2028\"",
+        JsonWriter.quote("a\"b\\c\nd\u0001\u2028"));
+  }
+
+  public void testValueWithoutNameRejected() {
+    JsonWriter writer = new JsonWriter(new JsonWriter.StringSink()).beginObject();
+    try {
+      writer.value("x");
+      fail("Values in objects need a name");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  public void testMismatchedCloseRejected() {
+    JsonWriter writer = new JsonWriter(new JsonWriter.StringSink()).beginArray();
+    try {
+      writer.endObject();
+      fail("Arrays cannot be closed as objects");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.ApiMethod;
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.history.LatencyStatistics.RequestStatistics;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+/**
+ * Tests for the {@link LatencyStatistics}.
+ *
+ */
+public class LatencyStatisticsTest extends TestCase {
+
+  private LatencyStatistics statistics;
+
+  @Override
+  public void setUp() {
+    statistics = new LatencyStatistics();
+  }
+
+  public void testGroupedByMethod() {
+    statistics.newHistoryItem(createItem("plus.people.get", 200, 100, "{}"));
+    statistics.newHistoryItem(createItem("plus.people.get", 200, 300, "{\"id\": 1}"));
+    statistics.newHistoryItem(createItem("plus.activities.list", 404, 50, null));
+
+    assertEquals(ImmutableList.of("plus.activities.list", "plus.people.get"),
+        ImmutableList.copyOf(statistics.getMethodIds()));
+
+    RequestStatistics people = statistics.getMethodStatistics("plus.people.get");
+    assertEquals(2, people.getRequestCount());
+    assertEquals(0, people.getErrorCount());
+    assertEquals(100, people.getLatencyMillis().getMin());
+    assertEquals(300, people.getLatencyMillis().getMax());
+    assertEquals(9, people.getResponseSize().getMax());
+
+    RequestStatistics activities = statistics.getMethodStatistics("plus.activities.list");
+    assertEquals(1.0, activities.getErrorRate());
+    assertEquals(0, activities.getResponseSize().getMax());
+
+    assertEquals(3, statistics.getOverall().getRequestCount());
+    assertEquals(1, statistics.getOverall().getErrorCount());
+  }
+
+  public void testGroupedByStatusClass() {
+    statistics.newHistoryItem(createItem("a", 200, 10, "{}"));
+    statistics.newHistoryItem(createItem("a", 204, 10, ""));
+    statistics.newHistoryItem(createItem("a", 503, 10, "{}"));
+    statistics.newHistoryItem(createItem("a", 0, 10, null));
+
+    assertEquals(ImmutableSet.of("2xx", "5xx", "other"), statistics.getStatusClasses());
+    assertEquals(2, statistics.getStatusClassStatistics("2xx").getRequestCount());
+    assertEquals(0.5, statistics.getOverall().getErrorRate());
+  }
+
+  public void testStatisticsKeptWhenItemsRemoved() {
+    HistoryItem item = createItem("a", 200, 10, "{}");
+    statistics.newHistoryItem(item);
+    statistics.historyItemBodyEvicted(item);
+    statistics.historyItemRemoved(item);
+    assertEquals(1, statistics.getOverall().getRequestCount());
+  }
+
+  public void testJsonExport() {
+    statistics.newHistoryItem(createItem("a", 200, 10, "{}"));
+    String json = statistics.toJson();
+
+    assertTrue(json, json.startsWith("{\"overall\":{\"requests\":1,\"errors\":0,\"errorRate\":0,"));
+    assertTrue(json, json.contains("\"methods\":{\"a\":{\"requests\":1,"));
+    assertTrue(json, json.contains("\"latencyMillis\":{\"min\":10,\"mean\":10,"
+        + "\"p50\":10,\"p90\":10,\"p99\":10,\"max\":10}"));
+    assertTrue(json, json.contains("\"buckets\":[{\"upTo\":2,\"count\":1}]"));
+    assertTrue(json, json.contains("\"statusClasses\":{\"2xx\":{"));
+  }
+
+  private static HistoryItem createItem(String methodId, int status, long latency, String body) {
+    ApiMethod method = EasyMock.createMock(ApiMethod.class);
+    EasyMock.expect(method.getId()).andReturn(methodId).anyTimes();
+
+    ApiRequest request = EasyMock.createMock(ApiRequest.class);
+    EasyMock.expect(request.getMethod()).andReturn(method).anyTimes();
+
+    ApiResponse response = EasyMock.createMock(ApiResponse.class);
+    EasyMock.expect(response.getBodyAsString()).andReturn(body).anyTimes();
+    EasyMock.expect(response.getStatus()).andReturn(status).anyTimes();
+
+    EasyMock.replay(method, request, response);
+    return new HistoryItem("1", request, response, 1000, 1000 + latency);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the {@link LogHistogram}.
+ *
+ */
+public class LogHistogramTest extends TestCase {
+
+  public void testEmpty() {
+    LogHistogram histogram = new LogHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(50));
+    assertEquals(0, histogram.getMax());
+    assertEquals(0.0, histogram.getMean());
+  }
+
+  public void testSmallValuesExact() {
+    LogHistogram histogram = new LogHistogram();
+    for (int value = 0; value < LogHistogram.SUB_BUCKETS; value++) {
+      histogram.record(value);
+    }
+    assertEquals(0, histogram.getPercentile(0));
+    assertEquals(3, histogram.getPercentile(50));
+    assertEquals(7, histogram.getPercentile(100));
+    assertEquals(3.5, histogram.getMean());
+  }
+
+  public void testBucketsContainTheirValues() {
+    for (long value = 0; value < 100000; value += 7) {
+      int bucket = LogHistogram.bucketOf(value);
+      LogHistogram histogram = new LogHistogram();
+      assertTrue(histogram.getUpperBound(bucket) >= value);
+      assertTrue(bucket == 0 || histogram.getUpperBound(bucket - 1) < value);
+    }
+  }
+
+  public void testPercentilesWithinRelativeError() {
+    LogHistogram histogram = new LogHistogram();
+    for (int value = 1; value <= 10000; value++) {
+      histogram.record(value);
+    }
+    assertEquals(10000, histogram.getCount());
+    assertWithin(5000, histogram.getPercentile(50));
+    assertWithin(9000, histogram.getPercentile(90));
+    assertWithin(9900, histogram.getPercentile(99));
+    assertEquals(10000, histogram.getPercentile(100));
+    assertEquals(1, histogram.getMin());
+    assertEquals(10000, histogram.getMax());
+  }
+
+  public void testPercentileNeverBeyondRecordedRange() {
+    LogHistogram histogram = new LogHistogram();
+    histogram.record(1000);
+    assertEquals(1000, histogram.getPercentile(50));
+    histogram.record(1030);
+    assertEquals(1030, histogram.getPercentile(100));
+  }
+
+  public void testHugeValuesClamped() {
+    LogHistogram histogram = new LogHistogram();
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(histogram.getBucketCount() - 1, LogHistogram.bucketOf(Long.MAX_VALUE));
+    assertEquals(Long.MAX_VALUE, histogram.getPercentile(50));
+  }
+
+  public void testNegativeValueRejected() {
+    try {
+      new LogHistogram().record(-1);
+      fail("Negative values should be rejected");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    double error = Math.abs(actual - expected) / (double) expected;
+    assertTrue("Expected about " + expected + " but was " + actual,
+        error <= 1.0 / LogHistogram.SUB_BUCKETS);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Tests for the {@link LzCodec}.
+ *
+ */
+public class LzCodecTest extends TestCase {
+
+  public void testEmptyAndShort() {
+    assertRoundTrip("");
+    assertRoundTrip("a");
+    assertRoundTrip("ab");
+    assertRoundTrip("aa");
+    assertRoundTrip("aaa");
+  }
+
+  public void testRepeatedPhrases() {
+    // Exercises codes which refer to the entry that is being added.
+    assertRoundTrip("abababababababab");
+    assertRoundTrip("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+  }
+
+  public void testUnicode() {
+    assertRoundTrip("caf\u00E9 \u65E5\u672C\u8A9E \uD83D\uDE00 \u0000\uFFFF");
+  }
+
+  public void testJsonShrinks() {
+    StringBuilder json = new StringBuilder("{\"kind\": \"plus#activityFeed\", \"items\": [");
+    for (int i = 0; i < 500; i++) {
+      json.append("{\"kind\": \"plus#activity\", \"id\": \"").append(i * 7919)
+          .append("\", \"title\": \"Activity number ").append(i).append("\"},\n");
+    }
+    json.append("]}");
+
+    String compressed = LzCodec.compress(json.toString());
+    assertTrue(compressed.length() * 4 < json.length());
+    assertEquals(json.toString(), LzCodec.decompress(compressed));
+  }
+
+  public void testRandomText() {
+    Random random = new Random(42);
+    for (int length = 1; length < 5000; length *= 3) {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < length; i++) {
+        // Mostly a small alphabet so that phrases repeat, with the occasional wide character.
+        text.append(random.nextInt(10) == 0
+            ? (char) random.nextInt(Character.MIN_SURROGATE) : (char) ('a' + random.nextInt(4)));
+      }
+      assertRoundTrip(text.toString());
+    }
+  }
+
+  public void testNoSurrogatesInOutput() {
+    String compressed = LzCodec.compress("\uFFFF\uFFFE\uFFFD" + "\uD7FF\uD7FF\uD7FF");
+    for (int i = 0; i < compressed.length(); i++) {
+      assertFalse(Character.isSurrogate(compressed.charAt(i)));
+    }
+  }
+
+  public void testInvalidInput() {
+    try {
+      LzCodec.decompress("");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  private static void assertRoundTrip(String text) {
+    assertEquals(text, LzCodec.decompress(LzCodec.compress(text)));
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.api.explorer.client.base.ApiMethod.HttpMethod;
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.base.mock.MockApiMethod;
+import com.google.api.explorer.client.base.mock.MockApiService;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Lists;
+import com.google.gwt.core.client.Callback;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link PersistentHistory}, backed by an {@link InMemoryHistoryStore}.
+ *
+ */
+public class PersistentHistoryTest extends TestCase {
+
+  private static final String BODY = "{\"kind\": \"test#item\", \"id\": \"1\"}";
+
+  /**
+   * Persistent history which counts flushes instead of scheduling them, and compresses bodies
+   * right away unless told to wait.
+   */
+  private static class TestPersistentHistory extends PersistentHistory {
+    int scheduledFlushes = 0;
+    int scheduledCompressions = 0;
+    boolean compressImmediately = true;
+
+    TestPersistentHistory(HistoryStore store, String sessionId) {
+      super(store, sessionId);
+    }
+
+    @Override
+    void scheduleFlush() {
+      scheduledFlushes++;
+    }
+
+    @Override
+    void scheduleCompression() {
+      scheduledCompressions++;
+      if (compressImmediately) {
+        while (compressNextBody()) {
+        }
+      }
+    }
+  }
+
+  private InMemoryHistoryStore store;
+  private TestPersistentHistory history;
+
+  @Override
+  public void setUp() {
+    store = new InMemoryHistoryStore();
+    history = new TestPersistentHistory(store, "2");
+  }
+
+  public void testItemsWrittenInBatches() {
+    for (int i = 1; i <= 3; i++) {
+      history.newHistoryItem(createItem(Integer.toString(i)));
+    }
+    assertEquals(1, history.scheduledFlushes);
+    assertEquals(0, store.writeCount);
+
+    history.flush();
+    assertEquals(1, store.writeCount);
+    assertEquals(3, store.records.size());
+    assertEquals(200, store.records.get("2-3").getStatus());
+
+    // Bodies are compressed, and stored apart from the records.
+    assertEquals(BODY, LzCodec.decompress(store.bodies.get("2-1")));
+  }
+
+  public void testFullBatchWrittenImmediately() {
+    for (int i = 1; i <= PersistentHistory.BATCH_SIZE; i++) {
+      history.newHistoryItem(createItem(Integer.toString(i)));
+    }
+    assertEquals(1, history.scheduledFlushes);
+    assertEquals(1, store.writeCount);
+    assertEquals(PersistentHistory.BATCH_SIZE, store.records.size());
+  }
+
+  public void testBodiesCompressedOneStepAtATime() {
+    history.compressImmediately = false;
+    for (int i = 1; i <= 3; i++) {
+      history.newHistoryItem(createItem(Integer.toString(i)));
+    }
+    history.flush();
+    assertEquals(1, history.scheduledCompressions);
+
+    assertTrue(history.compressNextBody());
+    assertTrue(history.compressNextBody());
+    assertEquals(0, store.writeCount);
+
+    // The batch is written once its last body is compressed.
+    assertFalse(history.compressNextBody());
+    assertEquals(1, store.writeCount);
+    assertEquals(3, store.bodies.size());
+  }
+
+  public void testCompressedAndEvictedBodies() {
+    HistoryItem compressed = createItem("1");
+    compressed.compressBody();
+    HistoryItem evicted = createItem("2");
+    evicted.evictBody();
+    history.newHistoryItem(compressed);
+    history.newHistoryItem(evicted);
+    history.flush();
+
+    assertEquals(2, store.records.size());
+    assertEquals(BODY, LzCodec.decompress(store.bodies.get("2-1")));
+    assertFalse(store.bodies.containsKey("2-2"));
+  }
+
+  public void testFailedBatchesRetried() {
+    store.failingWrites = 1;
+    history.newHistoryItem(createItem("1"));
+    history.flush();
+    assertEquals(1, store.writeCount);
+    assertTrue(store.records.isEmpty());
+    assertEquals(2, history.scheduledFlushes);
+
+    // The failed batch is written ahead of the items which arrived since.
+    history.newHistoryItem(createItem("2"));
+    history.flush();
+    assertEquals(2, store.writeCount);
+    assertEquals(ImmutableList.of("2-1", "2-2"), ImmutableList.copyOf(store.records.keySet()));
+    assertEquals(BODY, LzCodec.decompress(store.bodies.get("2-1")));
+  }
+
+  public void testFailedBatchesDroppedEventually() {
+    store.failingWrites = PersistentHistory.MAX_WRITE_ATTEMPTS;
+    history.newHistoryItem(createItem("1"));
+    for (int i = 0; i < PersistentHistory.MAX_WRITE_ATTEMPTS; i++) {
+      history.flush();
+    }
+    assertEquals(PersistentHistory.MAX_WRITE_ATTEMPTS, store.writeCount);
+
+    history.newHistoryItem(createItem("2"));
+    history.flush();
+    assertEquals(ImmutableList.of("2-2"), ImmutableList.copyOf(store.records.keySet()));
+  }
+
+  public void testOneBatchWrittenAtATime() {
+    store.holdWrites = true;
+    history.newHistoryItem(createItem("1"));
+    history.flush();
+    history.newHistoryItem(createItem("2"));
+    history.flush();
+    assertEquals(1, store.writeCount);
+
+    // The second item is written once the first batch completes.
+    store.completeHeldWrites();
+    assertEquals(2, store.writeCount);
+    assertEquals(2, store.records.size());
+  }
+
+  public void testRestoreOnlyPreviousSessions() {
+    store.records.put("1-2", createRecord("1-2", 20));
+    store.records.put("1-1", createRecord("1-1", 10));
+    store.bodies.put("1-1", LzCodec.compress(BODY));
+    history.newHistoryItem(createItem("1"));
+    history.flush();
+
+    final List<HistoryRecord> restored = Lists.newArrayList();
+    history.restore(new Callback<List<HistoryRecord>, String>() {
+      @Override
+      public void onSuccess(List<HistoryRecord> records) {
+        restored.addAll(records);
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        fail(reason);
+      }
+    });
+
+    assertEquals(2, restored.size());
+    assertEquals("1-1", restored.get(0).getId());
+    assertEquals("1-2", restored.get(1).getId());
+
+    assertEquals(BODY, loadBody("1-1"));
+    assertNull(loadBody("1-2"));
+  }
+
+  public void testOldestRecordsPruned() {
+    for (int i = 0; i < PersistentHistory.MAX_PERSISTED_RECORDS; i++) {
+      store.records.put("1-" + i, createRecord("1-" + i, i));
+    }
+    history.restore(new Callback<List<HistoryRecord>, String>() {
+      @Override
+      public void onSuccess(List<HistoryRecord> records) {
+        assertEquals(PersistentHistory.MAX_PERSISTED_RECORDS, records.size());
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        fail(reason);
+      }
+    });
+
+    history.newHistoryItem(createItem("1"));
+    history.flush();
+
+    assertEquals(PersistentHistory.MAX_PERSISTED_RECORDS, store.records.size());
+    assertFalse(store.records.containsKey("1-0"));
+    assertTrue(store.records.containsKey("1-1"));
+    assertTrue(store.records.containsKey("2-1"));
+  }
+
+  public void testClear() {
+    store.records.put("1-1", createRecord("1-1", 10));
+    store.bodies.put("1-1", LzCodec.compress(BODY));
+    history.newHistoryItem(createItem("1"));
+    history.flush();
+    history.newHistoryItem(createItem("2"));
+
+    final boolean[] cleared = {false};
+    history.clear(new Callback<Void, String>() {
+      @Override
+      public void onSuccess(Void result) {
+        cleared[0] = true;
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        fail(reason);
+      }
+    });
+
+    assertTrue(cleared[0]);
+    assertTrue(store.records.isEmpty());
+    assertTrue(store.bodies.isEmpty());
+
+    // Items which were waiting to be written are dropped as well.
+    history.flush();
+    assertTrue(store.records.isEmpty());
+  }
+
+  private String loadBody(String id) {
+    final String[] body = {"not loaded"};
+    history.loadBody(id, new Callback<String, String>() {
+      @Override
+      public void onSuccess(String result) {
+        body[0] = result;
+      }
+
+      @Override
+      public void onFailure(String reason) {
+        fail(reason);
+      }
+    });
+    return body[0];
+  }
+
+  private static HistoryRecord createRecord(String id, long startTime) {
+    return new HistoryRecord(id, "service", "v1", "service.method", "GET", "/path", null,
+        ImmutableListMultimap.<String, String>of(), 200, "OK", startTime, startTime + 1);
+  }
+
+  private static HistoryItem createItem(String key) {
+    ApiRequest request = EasyMock.createMock(ApiRequest.class);
+    EasyMock.expect(request.getService()).andReturn(new MockApiService()).anyTimes();
+    EasyMock.expect(request.getMethod()).andReturn(new MockApiMethod()).anyTimes();
+    EasyMock.expect(request.getHttpMethod()).andReturn(HttpMethod.GET).anyTimes();
+    EasyMock.expect(request.getRequestPath()).andReturn("/path").anyTimes();
+    EasyMock.expect(request.getRequestBody()).andReturn(null).anyTimes();
+    EasyMock.expect(request.getParamValues())
+        .andReturn(ArrayListMultimap.<String, String>create()).anyTimes();
+
+    ApiResponse response = EasyMock.createMock(ApiResponse.class);
+    EasyMock.expect(response.getBodyAsString()).andReturn(BODY).anyTimes();
+    EasyMock.expect(response.getStatus()).andReturn(200).anyTimes();
+    EasyMock.expect(response.getStatusText()).andReturn("OK").anyTimes();
+    response.setBody(null);
+    EasyMock.expectLastCall().anyTimes();
+
+    EasyMock.replay(request, response);
+    return new HistoryItem(key, request, response, 0, 0);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link RawResponseIndexer}.
+ *
+ */
+public class RawResponseIndexerTest extends TestCase {
+
+  private static final String RESPONSE = "{\n"
+      + " \"kind\": \"plus#activityFeed\",\n"
+      + " \"items\": [\n"
+      + "  {\"id\": \"abc\", \"name\": \"Plus\", \"count\": 3},\n"
+      + "  {\"id\": \"d\\\"e\\u0066\", \"tags\": [\"x\", null]}\n"
+      + " ]\n"
+      + "}\n";
+
+  public void testNodes() {
+    ResponseIndex index = index(RESPONSE);
+    assertTrue(index.isComplete());
+    assertEquals(11, index.size());
+
+    List<Integer> ids = index.match(JsonPathPattern.parse("items[*].id"), 10);
+    assertEquals(2, ids.size());
+    assertEquals("items[0].id", index.getPath(ids.get(0)));
+    assertEquals("items[1].id", index.getPath(ids.get(1)));
+    assertEquals(1, index.match(JsonPathPattern.parse("items[1].tags[1]"), 10).size());
+    assertEquals(1, index.match(JsonPathPattern.parse("items[0].count"), 10).size());
+  }
+
+  public void testTermsAreUnescaped() {
+    ResponseIndex index = index(RESPONSE);
+    assertEquals(ImmutableList.of(index.match(JsonPathPattern.parse("items[1].id"), 1).get(0)),
+        index.search("D\"EF", 10));
+    assertEquals(2, index.search("plus", 10).size());
+  }
+
+  public void testLines() {
+    ResponseIndex index = index(RESPONSE);
+    assertEquals(1, index.getLine(index.match(JsonPathPattern.parse("kind"), 1).get(0)));
+    assertEquals(2, index.getLine(index.match(JsonPathPattern.parse("items"), 1).get(0)));
+    assertEquals(3, index.getLine(index.match(JsonPathPattern.parse("items[0]"), 1).get(0)));
+    assertEquals(4, index.getLine(index.match(JsonPathPattern.parse("items[1].tags[0]"), 1)
+        .get(0)));
+  }
+
+  public void testMalformedValuesAreSkipped() {
+    ResponseIndex index = index("{\"a\": 1, \"b\" [\"lost\"], \"c\": \"kept\"} \"after\"");
+    assertTrue(index.isComplete());
+    assertEquals(ImmutableList.of(), index.search("lost", 10));
+    assertEquals(ImmutableList.of(), index.search("after", 10));
+    assertEquals(1, index.search("kept", 10).size());
+
+    assertEquals(0, index("\"text\"").size());
+    assertEquals(0, index("").size());
+  }
+
+  private static ResponseIndex index(String json) {
+    ResponseIndex index = new ResponseIndex();
+    RawResponseIndexer indexer = new RawResponseIndexer(json, index);
+    while (indexer.step()) {
+    }
+    return index;
+  }
+}
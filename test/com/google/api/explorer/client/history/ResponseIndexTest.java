@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.history;
+
+import com.google.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the {@link ResponseIndex}.
+ *
+ */
+public class ResponseIndexTest extends TestCase {
+
+  private ResponseIndex index;
+  private int kind;
+  private int items;
+  private int firstId;
+  private int firstName;
+  private int secondId;
+
+  /**
+   * Index the equivalent of:
+   *
+   * <pre>
+   * {"kind": "plus#activityFeed",
+   *  "items": [{"id": "abc", "name": "Plus"}, {"id": "def"}]}
+   * </pre>
+   */
+  @Override
+  public void setUp() {
+    index = new ResponseIndex();
+    kind = index.addNode(ResponseIndex.ROOT, "kind", 0);
+    index.addTerm(kind, "plus#activityFeed");
+    items = index.addNode(ResponseIndex.ROOT, "items", 1);
+    int first = index.addNode(items, null, 0);
+    firstId = index.addNode(first, "id", 0);
+    index.addTerm(firstId, "abc");
+    firstName = index.addNode(first, "name", 1);
+    index.addTerm(firstName, "Plus");
+    int second = index.addNode(items, null, 1);
+    secondId = index.addNode(second, "id", 0);
+    index.addTerm(secondId, "def");
+    index.setComplete();
+  }
+
+  public void testSearch() {
+    assertEquals(ImmutableList.of(kind, firstName), index.search("PLUS", 10));
+    assertEquals(ImmutableList.of(firstId, secondId), index.search("id", 10));
+    assertEquals(ImmutableList.of(firstId), index.search("id", 1));
+    assertEquals(ImmutableList.of(), index.search("missing", 10));
+  }
+
+  public void testSearchScansBoundedNumberOfTerms() {
+    ResponseIndex large = new ResponseIndex();
+    int array = large.addNode(ResponseIndex.ROOT, "values", 0);
+    int total = ResponseIndex.MAX_SCANNED_TERMS + 100;
+    for (int i = 0; i < total; i++) {
+      large.addTerm(large.addNode(array, null, i), "value" + i);
+    }
+
+    assertTrue(large.isSearchPartial());
+    assertFalse(index.isSearchPartial());
+
+    // The terms which are scanned are those which occur first, starting with the key "values".
+    List<Integer> matches = large.search("value", total);
+    assertEquals(ResponseIndex.MAX_SCANNED_TERMS, matches.size());
+    assertEquals("values", large.getPath(matches.get(0)));
+    assertEquals("values[" + (ResponseIndex.MAX_SCANNED_TERMS - 2) + "]",
+        large.getPath(matches.get(matches.size() - 1)));
+
+    // The term which equals the query is found even when it is not scanned.
+    for (int i = total - 10; i < total; i++) {
+      assertEquals(1, large.search("VALUE" + i, 1).size());
+    }
+  }
+
+  public void testMatch() {
+    assertEquals(ImmutableList.of(firstId, secondId),
+        index.match(JsonPathPattern.parse("items[*].id"), 10));
+    assertEquals(ImmutableList.of(secondId),
+        index.match(JsonPathPattern.parse("$.items[1].id"), 10));
+    assertEquals(ImmutableList.of(firstId, firstName),
+        index.match(JsonPathPattern.parse("items[0].*"), 10));
+    assertEquals(ImmutableList.of(items), index.match(JsonPathPattern.parse("items"), 10));
+    assertEquals(ImmutableList.of(), index.match(JsonPathPattern.parse("items.id"), 10));
+  }
+
+  public void testPaths() {
+    assertEquals("kind", index.getPath(kind));
+    assertEquals("items[1].id", index.getPath(secondId));
+    assertTrue(Arrays.equals(new int[] {1, 0, 1}, index.getOrdinals(firstName)));
+    assertTrue(Arrays.equals(new String[] {"items", null, "name"}, index.getKeys(firstName)));
+  }
+
+  public void testGrowth() {
+    ResponseIndex large = new ResponseIndex();
+    int array = large.addNode(ResponseIndex.ROOT, "items", 0);
+    int last = -1;
+    for (int i = 0; i < 1000; i++) {
+      last = large.addNode(array, null, i);
+      large.addTerm(last, "value" + i);
+    }
+    assertEquals(1001, large.size());
+    assertEquals("items[999]", large.getPath(last));
+    assertEquals(ImmutableList.of(last), large.search("value999", 10));
+  }
+}
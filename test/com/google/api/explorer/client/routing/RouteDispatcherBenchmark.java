@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.routing;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.gwt.regexp.shared.RegExp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Benchmark of routing URL fragments with the {@link RouteDispatcher} against trying the pattern
+ * of every route in turn, as the number of routes grows.
+ *
+ * <p>
+ * Run with the path of a file of fragments as argument, one per line, i.e. fragments collected
+ * from the address bar of the explorer. Without arguments a small corpus of typical fragments is
+ * used.
+ * </p>
+ *
+ */
+public class RouteDispatcherBenchmark {
+
+  private static final List<String> DEFAULT_CORPUS = ImmutableList.of(
+      "p/",
+      "p/plus/v1/",
+      "p/plus/v1/plus.activities.list",
+      "p/plus/v1/plus.activities.list?userId=me&collection=public",
+      "s/urlshortener/v1/",
+      "s/urlshortener/v1/urlshortener.url.get?shortUrl=http://goo.gl/fbsS",
+      "m/tasks/v1/tasks.tasks.list",
+      "h/",
+      "h/12",
+      "search/calendar/",
+      "search/list events/m/calendar/v3/calendar.events.list",
+      "_s=urlshortener&_v=v1&_m=url.get&shortUrl=http://goo.gl/fbsS");
+
+  private static final String SEGMENT = "[^/]+";
+  private static final String ANYTHING = ".*";
+
+  /** Numbers of extra routes under other prefixes which are measured. */
+  private static final int[] EXTRA_ROUTES = {0, 10, 100};
+
+  private static final int ROUNDS = 5;
+  private static final int REPETITIONS = 20000;
+
+  /** Route which is matched by its own pattern, as when every route is tried in turn. */
+  private static class LinearRoute {
+    final RegExp pattern;
+    final String target;
+
+    LinearRoute(RegExp pattern, String target) {
+      this.pattern = pattern;
+      this.target = target;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    List<String> fragments = args.length > 0
+        ? Files.readLines(new File(args[0]), Charsets.UTF_8) : DEFAULT_CORPUS;
+
+    for (int extra : EXTRA_ROUTES) {
+      RouteDispatcher<String> dispatcher = new RouteDispatcher<String>();
+      List<LinearRoute> linear = Lists.newArrayList();
+      for (int i = 0; i < extra; i++) {
+        addRoute("x" + i + "/{serviceName}/{serviceVersion}/{method}", "extra" + i, dispatcher,
+            linear, SEGMENT, SEGMENT, SEGMENT);
+      }
+      for (String prefix : ImmutableList.of("p/", "s/", "m/")) {
+        addRoute(prefix, prefix, dispatcher, linear);
+        addRoute(prefix + "{serviceName}/{serviceVersion}/", prefix + "service", dispatcher,
+            linear, SEGMENT, SEGMENT);
+        addRoute(prefix + "{serviceName}/{serviceVersion}/{method}", prefix + "method",
+            dispatcher, linear, SEGMENT, SEGMENT, ANYTHING);
+      }
+      addRoute("h/{historyItem}", "history", dispatcher, linear, ANYTHING);
+      addRoute("search/{query}/", "search", dispatcher, linear, SEGMENT);
+      addRoute("search/{query}/m/{serviceName}/{serviceVersion}/{method}", "searchMethod",
+          dispatcher, linear, SEGMENT, SEGMENT, SEGMENT, ANYTHING);
+      addRoute("{oldStyleQueryString}", "oldStyle", dispatcher, linear, ".+");
+
+      for (String fragment : fragments) {
+        RouteDispatcher.Match<String> match = dispatcher.dispatch(fragment);
+        String expected = routeLinearly(linear, fragment);
+        if (match == null ? expected != null : !match.getHandler().equals(expected)) {
+          throw new AssertionError("Routers disagree on " + fragment);
+        }
+      }
+
+      for (int round = 0; round < ROUNDS; round++) {
+        int checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+          for (String fragment : fragments) {
+            checksum += routeLinearly(linear, fragment).length();
+          }
+        }
+        long linearNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+          for (String fragment : fragments) {
+            checksum -= dispatcher.dispatch(fragment).getHandler().length();
+          }
+        }
+        long dispatcherNanos = System.nanoTime() - start;
+
+        long routed = (long) REPETITIONS * fragments.size();
+        System.out.printf(
+            "%d routes, round %d: linear %.0f ns, dispatcher %.0f ns per fragment (checksum %d)%n",
+            dispatcher.getRouteCount(), round, (double) linearNanos / routed,
+            (double) dispatcherNanos / routed, checksum);
+      }
+    }
+  }
+
+  private static void addRoute(String template, String target, RouteDispatcher<String> dispatcher,
+      List<LinearRoute> linear, String... identifierRegexes) {
+    dispatcher.addUrlDefinition(template, target, identifierRegexes);
+
+    // The pattern of the whole template, as the router builds it for every route.
+    StringBuilder pattern = new StringBuilder("^");
+    int identifier = 0;
+    for (String part : template.split("[{}]", -1)) {
+      pattern.append(identifier % 2 == 0 ? RegExp.quote(part)
+          : "(" + identifierRegexes[identifier / 2] + ")");
+      identifier++;
+    }
+    linear.add(new LinearRoute(RegExp.compile(pattern.append('$').toString()), target));
+  }
+
+  private static String routeLinearly(List<LinearRoute> routes, String fragment) {
+    for (LinearRoute route : routes) {
+      if (route.pattern.exec(fragment) != null) {
+        return route.target;
+      }
+    }
+    return null;
+  }
+}
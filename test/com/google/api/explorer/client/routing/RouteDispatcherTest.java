@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.explorer.client.routing;
+
+import com.google.api.explorer.client.routing.RouteDispatcher.Match;
+import com.google.common.collect.ImmutableMap;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the {@link RouteDispatcher}.
+ *
+ */
+public class RouteDispatcherTest extends TestCase {
+  private static final String SEGMENT = "[^/]+";
+  private static final String ANYTHING = ".*";
+
+  private RouteDispatcher<String> dispatcher;
+
+  @Override
+  public void setUp() {
+    dispatcher = new RouteDispatcher<String>();
+    dispatcher.addUrlDefinition("p/", "services");
+    dispatcher.addUrlDefinition("p/{serviceName}/{serviceVersion}/", "methods", SEGMENT, SEGMENT);
+    dispatcher.addUrlDefinition("p/{serviceName}/{serviceVersion}/{method}", "method", SEGMENT, SEGMENT,
+        SEGMENT);
+    dispatcher.addUrlDefinition("h/{historyItem}", "history", ANYTHING);
+    dispatcher.addUrlDefinition("search/{query}/", "search", SEGMENT);
+    dispatcher.addUrlDefinition("search/{query}/m/{serviceName}/{serviceVersion}/{method}",
+        "searchMethod", SEGMENT, SEGMENT, SEGMENT, SEGMENT);
+  }
+
+  public void testLiteralRoute() {
+    Match<String> match = dispatcher.dispatch("p/");
+    assertEquals("services", match.getHandler());
+    assertTrue(match.getIdentifiers().isEmpty());
+  }
+
+  public void testIdentifiers() {
+    assertMatch("methods", ImmutableMap.of("serviceName", "plus", "serviceVersion", "v1"),
+        "p/plus/v1/");
+    assertMatch("method", ImmutableMap.of("serviceName", "plus", "serviceVersion", "v1", "method",
+        "plus.activities.list"), "p/plus/v1/plus.activities.list");
+    assertMatch("history", ImmutableMap.of("historyItem", ""), "h/");
+    assertMatch("history", ImmutableMap.of("historyItem", "12"), "h/12");
+    assertMatch("search", ImmutableMap.of("query", "url shortener"), "search/url shortener/");
+    assertMatch("searchMethod", ImmutableMap.of("query", "list", "serviceName", "tasks",
+        "serviceVersion", "v1", "method", "tasks.tasks.list"),
+        "search/list/m/tasks/v1/tasks.tasks.list");
+  }
+
+  public void testNoMatch() {
+    assertNull(dispatcher.dispatch(""));
+    assertNull(dispatcher.dispatch("p"));
+    assertNull(dispatcher.dispatch("x/plus/v1/"));
+    assertNull(dispatcher.dispatch("p/plus/v1/a/b"));
+    assertNull(dispatcher.dispatch("search//"));
+  }
+
+  public void testRoutesAreTriedInOrderAdded() {
+    RouteDispatcher<String> ordered = new RouteDispatcher<String>();
+    ordered.addUrlDefinition("{oldStyleQueryString}", "catchAll", ".+");
+    ordered.addUrlDefinition("p/{anything}", "specific", ANYTHING);
+    assertEquals("catchAll", ordered.dispatch("p/plus").getHandler());
+    assertEquals("_m=athing&shortUrl=http://goo.gl/abc",
+        ordered.dispatch("_m=athing&shortUrl=http://goo.gl/abc").getIdentifiers()
+            .get("oldStyleQueryString"));
+
+    ordered = new RouteDispatcher<String>();
+    ordered.addUrlDefinition("p/{anything}", "specific", ANYTHING);
+    ordered.addUrlDefinition("{oldStyleQueryString}", "catchAll", ".+");
+    assertEquals("specific", ordered.dispatch("p/plus").getHandler());
+    assertEquals("catchAll", ordered.dispatch("s/plus").getHandler());
+  }
+
+  public void testRoutesOfAncestorsKeepOrderAdded() {
+    RouteDispatcher<String> nested = new RouteDispatcher<String>();
+    nested.addUrlDefinition("p/x{rest}", "deep", ANYTHING);
+    nested.addUrlDefinition("p/{rest}", "shallow", ANYTHING);
+    nested.addUrlDefinition("{rest}", "catchAll", ANYTHING);
+    nested.addUrlDefinition("p/xy{rest}", "deeper", ANYTHING);
+    assertEquals("deep", nested.dispatch("p/xyz").getHandler());
+    assertEquals("shallow", nested.dispatch("p/a").getHandler());
+    assertEquals("catchAll", nested.dispatch("q").getHandler());
+    assertEquals(4, nested.getRouteCount());
+  }
+
+  public void testLiteralsAreQuoted() {
+    RouteDispatcher<String> literal = new RouteDispatcher<String>();
+    literal.addUrlDefinition("a.b/{id}", "dotted", SEGMENT);
+    assertNotNull(literal.dispatch("a.b/1"));
+    assertNull(literal.dispatch("axb/1"));
+  }
+
+  public void testIdentifiersWithGroups() {
+    RouteDispatcher<String> grouped = new RouteDispatcher<String>();
+    grouped.addUrlDefinition("v/{first}/{second}", "grouped", "(a|b)+(?:c)", "(\\d)[(]");
+    assertMatch(grouped, "grouped", ImmutableMap.of("first", "abac", "second", "1("),
+        "v/abac/1(");
+  }
+
+  public void testCountGroups() {
+    assertEquals(0, RouteDispatcher.countGroups("[^/]+"));
+    assertEquals(1, RouteDispatcher.countGroups("(.+)"));
+    assertEquals(2, RouteDispatcher.countGroups("((a)|b)(?:c)"));
+    assertEquals(0, RouteDispatcher.countGroups("\\(a[(]"));
+  }
+
+  public void testInvalidTemplates() {
+    assertAddFails("p/{serviceName", SEGMENT);
+    assertAddFails("p/{serviceName}/{serviceVersion}", SEGMENT);
+    assertAddFails("p/{serviceName}", SEGMENT, SEGMENT);
+  }
+
+  private void assertMatch(String handler, ImmutableMap<String, String> identifiers,
+      String fragment) {
+    assertMatch(dispatcher, handler, identifiers, fragment);
+  }
+
+  private static void assertMatch(RouteDispatcher<String> dispatcher, String handler,
+      ImmutableMap<String, String> identifiers, String fragment) {
+    Match<String> match = dispatcher.dispatch(fragment);
+    assertNotNull("No match for " + fragment, match);
+    assertEquals(handler, match.getHandler());
+    assertEquals(identifiers, match.getIdentifiers());
+  }
+
+  private void assertAddFails(String template, String... identifierRegexes) {
+    try {
+      dispatcher.addUrlDefinition(template, "invalid", identifierRegexes);
+      fail("Expected the template to be rejected: " + template);
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+}
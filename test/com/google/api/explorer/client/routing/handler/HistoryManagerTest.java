@@ -31,10 +31,16 @@ import com.google.api.explorer.client.routing.HistoryWrapper;
 import com.google.api.explorer.client.routing.URLManipulator;
 import com.google.api.explorer.client.routing.UrlBuilder.RootNavigationItem;
 import com.google.api.explorer.client.routing.handler.HistoryManager.HistoryManagerDelegate;
+import com.google.api.explorer.client.search.CompactSearchResultIndex;
+import com.google.api.explorer.client.search.IndexingStrategy;
+import com.google.api.explorer.client.search.SearchEntry;
 import com.google.api.explorer.client.search.SearchResult;
 import com.google.api.explorer.client.search.SearchResultIndex;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.gwt.core.client.Callback;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
 
@@ -44,6 +50,7 @@ import org.easymock.Capture;
 import org.easymock.EasyMock;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -54,6 +61,40 @@ import java.util.Set;
  */
 public class HistoryManagerTest extends TestCase {
 
+  /**
+   * Indexing strategy which indexes every result of a document under the same keyword.
+   */
+  private static class KeywordStrategy implements IndexingStrategy<List<SearchResult>> {
+    private final String keyword;
+
+    KeywordStrategy(String keyword) {
+      this.keyword = keyword;
+    }
+
+    @Override
+    public Iterable<SearchEntry> index(List<SearchResult> results) {
+      List<SearchEntry> entries = Lists.newArrayList();
+      for (SearchResult result : results) {
+        entries.add(new SearchEntry(result, ImmutableSet.of(keyword)));
+      }
+      return entries;
+    }
+  }
+
+  /**
+   * Compact index which records every list of results which it returns.
+   */
+  private static class RecordingCompactIndex extends CompactSearchResultIndex {
+    final List<List<SearchResult>> returned = Lists.newArrayList();
+
+    @Override
+    public List<SearchResult> search(String query) {
+      List<SearchResult> results = super.search(query);
+      returned.add(results);
+      return results;
+    }
+  }
+
   private HistoryManager manager;
 
   private HistoryWrapper historyWrapper = EasyMock.createMock(HistoryWrapper.class);
@@ -213,6 +254,59 @@ public class HistoryManagerTest extends TestCase {
     EasyMock.verify(resultIndex, delegate);
   }
 
+  /**
+   * Test routing searches against the compact index, whose cached results are reused while it is
+   * unchanged, extended with the documents indexed since, and drop the results removed since.
+   */
+  public void testSearchRoutingWithCompactIndex() {
+    RecordingCompactIndex compactIndex = new RecordingCompactIndex();
+    manager = new HistoryManager(historyWrapper,
+        urlManipulator,
+        serviceLoader,
+        historyCache,
+        analyticsManager,
+        compactIndex);
+    manager.delegate = delegate;
+
+    SearchResult first = createSearchResult();
+    SearchResult second = createSearchResult();
+    compactIndex.addDocument(ImmutableList.of(first), new KeywordStrategy("shortener"));
+
+    Capture<ExplorerContext> contextCapture = new Capture<ExplorerContext>();
+    delegate.setContext(EasyMock.capture(contextCapture));
+    EasyMock.expectLastCall().times(4);
+    EasyMock.replay(delegate);
+
+    manager.processUrl("search/shortener/");
+    assertEquals(ImmutableList.of(first),
+        ImmutableList.copyOf(contextCapture.getValue().getSearchResults()));
+    List<SearchResult> routed = Iterables.getLast(compactIndex.returned);
+    int generation = compactIndex.getGeneration();
+
+    // The index is unchanged, so the cached list itself is routed again.
+    manager.searchReady();
+    assertEquals(ImmutableList.of(first),
+        ImmutableList.copyOf(contextCapture.getValue().getSearchResults()));
+    assertEquals(generation, compactIndex.getGeneration());
+    assertSame(routed, Iterables.getLast(compactIndex.returned));
+
+    compactIndex.addDocument(ImmutableList.of(second), new KeywordStrategy("shortener"));
+    assertTrue(compactIndex.getGeneration() != generation);
+    manager.searchReady();
+    assertEquals(ImmutableList.of(first, second),
+        ImmutableList.copyOf(contextCapture.getValue().getSearchResults()));
+    assertNotSame(routed, Iterables.getLast(compactIndex.returned));
+    generation = compactIndex.getGeneration();
+
+    compactIndex.removeResult(first);
+    assertTrue(compactIndex.getGeneration() != generation);
+    manager.searchReady();
+    assertEquals(ImmutableList.of(second),
+        ImmutableList.copyOf(contextCapture.getValue().getSearchResults()));
+
+    EasyMock.verify(delegate);
+  }
+
   public void testNestedSearchRouting() {
     Capture<Callback<ApiService, String>> cbCapture = new Capture<Callback<ApiService, String>>();
     serviceLoader.loadService(EasyMock.eq("plus"), EasyMock.eq("v1"), EasyMock.capture(cbCapture));
@@ -264,4 +358,10 @@ public class HistoryManagerTest extends TestCase {
     ApiResponse mockResponse = EasyMock.createMock(ApiResponse.class);
     return new HistoryItem("1", mockRequest, mockResponse, 0, 0);
   }
+
+  private static SearchResult createSearchResult() {
+    SearchResult result = EasyMock.createMock(SearchResult.class);
+    EasyMock.replay(result);
+    return result;
+  }
 }
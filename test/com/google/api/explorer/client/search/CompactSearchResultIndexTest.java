@@ -0,0 +1,284 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.ApiRequest;
+import com.google.api.explorer.client.base.ApiResponse;
+import com.google.api.explorer.client.history.HistoryItem;
+import com.google.api.explorer.client.search.SearchResultIndex.KeywordCallback;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the compact search result index.
+ *
+ */
+public class CompactSearchResultIndexTest extends TestCase {
+  /**
+   * Indexing strategy for documents which are already search entries.
+   */
+  private static class PassthroughIndex implements IndexingStrategy<List<SearchEntry>> {
+    @Override
+    public Iterable<SearchEntry> index(List<SearchEntry> entries) {
+      return entries;
+    }
+  }
+
+  private CompactSearchResultIndex index = new CompactSearchResultIndex();
+  private PassthroughIndex strategy = new PassthroughIndex();
+
+  /** Test the most basic query. */
+  public void testSingleWordQuery() {
+    SearchResult result1 = createUniqueSearchResult();
+    index.addDocument(ImmutableList.of(entry(result1, "keyword")), strategy);
+
+    assertEquals(ImmutableList.of(result1), index.search("keyword"));
+    assertTrue(index.search("notakeyword").isEmpty());
+    assertTrue(index.search("").isEmpty());
+  }
+
+  /** Test queries which match several documents, and documents indexed by separate calls. */
+  public void testMergeIndexes() {
+    SearchResult result1 = createUniqueSearchResult();
+    SearchResult result2 = createUniqueSearchResult();
+    index.addDocument(ImmutableList.of(entry(result1, "keyword", "commonkeyword")), strategy);
+    index.addDocument(ImmutableList.of(entry(result2, "keyword2", "commonkeyword")), strategy);
+
+    assertEquals(ImmutableList.of(result1), index.search("keyword"));
+    assertEquals(ImmutableList.of(result2), index.search("keyword2"));
+    assertEquals(ImmutableList.of(result1, result2), index.search("commonkeyword"));
+    assertEquals(ImmutableList.of(result1), index.search("keyword commonkeyword"));
+    assertEquals(ImmutableList.of(result2), index.search("commonkeyword keyword2"));
+    assertTrue(index.search("commonkeyword keyword keyword2").isEmpty());
+
+    assertEquals(2, index.getResultCount());
+    assertEquals(3, index.getKeywordCount());
+  }
+
+  /** Test that a result which gains keywords after later results were indexed is still found. */
+  public void testKeywordsAddedToEarlierResult() {
+    SearchResult result1 = createUniqueSearchResult();
+    SearchResult result2 = createUniqueSearchResult();
+    index.addDocument(ImmutableList.of(entry(result1, "first")), strategy);
+    index.addDocument(ImmutableList.of(entry(result2, "second", "shared")), strategy);
+    index.addDocument(ImmutableList.of(entry(result1, "shared")), strategy);
+
+    assertEquals(ImmutableList.of(result1, result2), index.search("shared"));
+    assertEquals(ImmutableList.of(result1), index.search("first shared"));
+    assertEquals(2, index.getResultCount());
+  }
+
+  /** Test that the results of a query are reused while the index is unchanged. */
+  public void testCachedResultsAreReused() {
+    SearchResult result1 = createUniqueSearchResult();
+    index.addDocument(ImmutableList.of(entry(result1, "keyword", "other")), strategy);
+
+    List<SearchResult> results = index.search("keyword other");
+    assertSame(results, index.search("  KEYWORD other "));
+    assertEquals(1, index.getCachedQueryCount());
+
+    int generation = index.getGeneration();
+    index.addDocument(ImmutableList.of(entry(createUniqueSearchResult(), "unrelated")), strategy);
+    assertTrue(index.getGeneration() != generation);
+    assertEquals(results, index.search("keyword other"));
+  }
+
+  /** Test that cached results are extended with the results indexed after them. */
+  public void testCachedResultsAreExtended() {
+    SearchResult result1 = createUniqueSearchResult();
+    SearchResult result2 = createUniqueSearchResult();
+    index.addDocument(ImmutableList.of(entry(result1, "shared")), strategy);
+    assertEquals(ImmutableList.of(result1), index.search("shared"));
+    assertTrue(index.search("later").isEmpty());
+
+    index.addDocument(ImmutableList.of(entry(result2, "shared", "later")), strategy);
+    assertEquals(ImmutableList.of(result1, result2), index.search("shared"));
+    assertEquals(ImmutableList.of(result2), index.search("later"));
+  }
+
+  /** Test that cached results are discarded when an earlier result gains a keyword. */
+  public void testCachedResultsWithKeywordsAddedToEarlierResult() {
+    SearchResult result1 = createUniqueSearchResult();
+    SearchResult result2 = createUniqueSearchResult();
+    index.addDocument(ImmutableList.of(entry(result1, "first")), strategy);
+    index.addDocument(ImmutableList.of(entry(result2, "shared")), strategy);
+    assertEquals(ImmutableList.of(result2), index.search("shared"));
+    assertTrue(index.search("new").isEmpty());
+
+    index.addDocument(ImmutableList.of(entry(result1, "shared", "new")), strategy);
+    assertEquals(ImmutableList.of(result1, result2), index.search("shared"));
+    assertEquals(ImmutableList.of(result1), index.search("new"));
+  }
+
+  /** Test that removed results are no longer found, including by cached queries. */
+  public void testRemoveResult() {
+    SearchResult result1 = createUniqueSearchResult();
+    SearchResult result2 = createUniqueSearchResult();
+    index.addDocument(
+        ImmutableList.of(entry(result1, "shared"), entry(result2, "shared")), strategy);
+    assertEquals(ImmutableList.of(result1, result2), index.search("shared"));
+
+    assertTrue(index.removeResult(result1));
+    assertFalse(index.removeResult(result1));
+    assertEquals(ImmutableList.of(result2), index.search("shared"));
+    assertEquals(1, index.getResultCount());
+
+    index.addDocument(ImmutableList.of(entry(result1, "shared")), strategy);
+    assertEquals(ImmutableList.of(result2, result1), index.search("shared"));
+  }
+
+  /** Test intersections of long lists against the result of filtering every result. */
+  public void testIntersectionOfLongLists() {
+    List<SearchResult> results = Lists.newArrayList();
+    List<SearchEntry> entries = Lists.newArrayList();
+    for (int i = 0; i < 1000; i++) {
+      SearchResult result = createUniqueSearchResult();
+      results.add(result);
+
+      Set<String> keywords = Sets.newHashSet("all");
+      if (i % 2 == 0) {
+        keywords.add("even");
+      }
+      if (i % 3 == 0) {
+        keywords.add("three");
+      }
+      if (i % 7 == 0) {
+        keywords.add("seven");
+      }
+      entries.add(new SearchEntry(result, keywords));
+    }
+    index.addDocument(entries, strategy);
+
+    List<SearchResult> expected = Lists.newArrayList();
+    for (int i = 0; i < results.size(); i += 42) {
+      expected.add(results.get(i));
+    }
+    assertEquals(expected, index.search("seven three even all"));
+    assertEquals(results, index.search("all"));
+  }
+
+  /** Test that querying an empty index works. */
+  public void testEmptyIndex() {
+    assertTrue(index.search("keyword").isEmpty());
+  }
+
+  /** Test that documents indexed after the lists were frozen are still found. */
+  public void testIndexingAfterCompletion() {
+    SearchResult result1 = createUniqueSearchResult();
+    SearchResult result2 = createUniqueSearchResult();
+    index.addDocument(ImmutableList.of(entry(result1, "keyword")), strategy);
+    index.indexingProgress(1, 2);
+    index.indexingProgress(2, 2);
+    assertEquals(ImmutableList.of(result1), index.search("keyword"));
+
+    index.addDocument(ImmutableList.of(entry(result2, "keyword")), strategy);
+    assertEquals(ImmutableList.of(result1, result2), index.search("keyword"));
+  }
+
+  /** Test that the ranker is handed every result once when indexed, and forgets removed ones. */
+  public void testRankerFollowsIndexedResults() {
+    SearchResult result1 = createUniqueSearchResult();
+    SearchResult result2 = createUniqueSearchResult();
+    final List<SearchResult> read = Lists.newArrayList();
+    SearchResultRanker<SearchResult> ranker = new SearchResultRanker<SearchResult>(
+        new Function<SearchResult, String[]>() {
+          @Override
+          public String[] apply(SearchResult result) {
+            read.add(result);
+            return new String[] {"keyword", "", "", ""};
+          }
+        });
+    index.setRanker(ranker);
+
+    index.addDocument(ImmutableList.of(entry(result1, "keyword")), strategy);
+    index.addDocument(ImmutableList.of(entry(result1, "other"), entry(result2, "keyword")),
+        strategy);
+    assertEquals(ImmutableList.of(result1, result2), read);
+    assertEquals(2, ranker.size());
+
+    index.removeResult(result1);
+    assertEquals(1, ranker.size());
+    assertEquals(ImmutableList.of(result2, result1),
+        ranker.top(ImmutableList.of(result1, result2), "keyword", 2));
+  }
+
+  /** Test that the result of a history item stops matching once the cache drops the item. */
+  public void testRemovedHistoryItemsStopMatching() {
+    SearchResult service = EasyMock.createMock(SearchResult.class);
+    EasyMock.expect(service.getKind()).andReturn(SearchResult.Kind.SERVICE).anyTimes();
+    EasyMock.replay(service);
+    HistoryItem item1 = createHistoryItem("1");
+    HistoryItem item2 = createHistoryItem("2");
+    SearchResult history1 = createHistoryResult(item1);
+    SearchResult history2 = createHistoryResult(item2);
+    index.addDocument(ImmutableList.of(entry(service, "keyword")), strategy);
+    index.addDocument(ImmutableList.of(entry(history1, "keyword")), strategy);
+    index.addDocument(ImmutableList.of(entry(history2, "keyword")), strategy);
+    assertEquals(ImmutableList.of(service, history1, history2), index.search("keyword"));
+
+    index.historyItemBodyEvicted(item1);
+    assertEquals(ImmutableList.of(service, history1, history2), index.search("keyword"));
+
+    index.historyItemRemoved(item1);
+    assertEquals(ImmutableList.of(service, history2), index.search("keyword"));
+    assertEquals(2, index.getResultCount());
+    assertFalse(index.removeHistoryItem(item1));
+  }
+
+  /** Test that our keyword update callback works properly. */
+  public void testKeywordUpdates() {
+    final Set<String> lastKeywords = Sets.newHashSet();
+    index.setKeywordCallback(new KeywordCallback() {
+      @Override
+      public void newKeywordsAdded(Set<String> keywords) {
+        lastKeywords.clear();
+        lastKeywords.addAll(keywords);
+      }
+    });
+
+    index.addDocument(
+        ImmutableList.of(entry(createUniqueSearchResult(), "keyword", "commonkeyword")), strategy);
+    assertEquals(ImmutableSet.of("keyword", "commonkeyword"), lastKeywords);
+
+    index.addDocument(
+        ImmutableList.of(entry(createUniqueSearchResult(), "keyword2", "commonkeyword")), strategy);
+    assertEquals(ImmutableSet.of("keyword2"), lastKeywords);
+
+    index.addDocument(
+        ImmutableList.of(entry(createUniqueSearchResult(), "commonkeyword")), strategy);
+    assertTrue(lastKeywords.isEmpty());
+  }
+
+  private static SearchEntry entry(SearchResult result, String... keywords) {
+    return new SearchEntry(result, ImmutableSet.copyOf(keywords));
+  }
+
+  private static HistoryItem createHistoryItem(String key) {
+    return new HistoryItem(key, EasyMock.createMock(ApiRequest.class),
+        EasyMock.createMock(ApiResponse.class), 0, 0);
+  }
+
+  private static SearchResult createHistoryResult(HistoryItem item) {
+    SearchResult result = EasyMock.createMock(SearchResult.class);
+    EasyMock.expect(result.getKind()).andReturn(SearchResult.Kind.HISTORY_ITEM).anyTimes();
+    EasyMock.expect(result.getHistoryItem()).andReturn(item).anyTimes();
+    EasyMock.replay(result);
+    return result;
+  }
+
+  private SearchResult createUniqueSearchResult() {
+    SearchResult result = EasyMock.createMock(SearchResult.class);
+    EasyMock.replay(result);
+    return result;
+  }
+}
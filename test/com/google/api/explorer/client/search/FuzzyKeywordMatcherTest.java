@@ -0,0 +1,85 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the fuzzy keyword matcher.
+ *
+ */
+public class FuzzyKeywordMatcherTest extends TestCase {
+
+  private FuzzyKeywordMatcher matcher;
+
+  @Override
+  public void setUp() {
+    matcher = new FuzzyKeywordMatcher();
+    matcher.newKeywordsAdded(ImmutableSet.of("urlshortener", "calendar", "calendars", "events",
+        "list", "lists", "insert", "tasks", "drive", "url", "urlshortener.url.get"));
+  }
+
+  public void testMisspellings() {
+    assertEquals(ImmutableList.of("urlshortener"), matcher.match("urlshortner", 5));
+    assertEquals(ImmutableList.of("calendar", "calendars"), matcher.match("calender", 5));
+    assertEquals(ImmutableList.of("events"), matcher.match("evnets", 5));
+    assertEquals(ImmutableList.of("list"), matcher.match("lsit", 5));
+    assertEquals(ImmutableList.of("calendar"), matcher.match("calender", 1));
+  }
+
+  public void testExactMatchFirst() {
+    assertEquals(ImmutableList.of("calendars", "calendar"), matcher.match("calendars", 5));
+  }
+
+  public void testUnrelatedWords() {
+    assertTrue(matcher.match("plus", 5).isEmpty());
+    assertTrue(matcher.match("unrelated", 5).isEmpty());
+
+    // Short words are only matched exactly.
+    assertTrue(matcher.match("ur", 5).isEmpty());
+  }
+
+  public void testDistance() {
+    assertEquals(0, FuzzyKeywordMatcher.distance("tasks", "tasks", 2));
+    assertEquals(1, FuzzyKeywordMatcher.distance("tasks", "taks", 2));
+    assertEquals(1, FuzzyKeywordMatcher.distance("tasks", "taskss", 2));
+    assertEquals(1, FuzzyKeywordMatcher.distance("tasks", "tesks", 2));
+    assertEquals(1, FuzzyKeywordMatcher.distance("tasks", "atsks", 2));
+    assertEquals(2, FuzzyKeywordMatcher.distance("calendar", "calnedra", 2));
+    assertEquals(3, FuzzyKeywordMatcher.distance("calendar", "drive", 2));
+    assertEquals(2, FuzzyKeywordMatcher.distance("abc", "", 1));
+  }
+
+  public void testCorrectQuery() {
+    List<String> queries = matcher.correctQuery("list calender");
+    assertEquals(2, queries.size());
+    assertEquals(ImmutableSet.of("list", "calendar"), words(queries.get(0)));
+    assertEquals(ImmutableSet.of("list", "calendars"), words(queries.get(1)));
+    assertTrue(matcher.correctQuery("list calendar").isEmpty());
+    assertTrue(matcher.correctQuery("calender plus").isEmpty());
+    assertTrue(matcher.correctQuery("").isEmpty());
+  }
+
+  public void testBoundedWork() {
+    // A vocabulary in which every keyword shares the trigrams of the query.
+    Set<String> keywords = Sets.newHashSet();
+    for (int i = 0; i < 50000; i++) {
+      keywords.add("method" + i);
+    }
+    matcher.newKeywordsAdded(keywords);
+
+    assertEquals(3, matcher.match("methd1", 3).size());
+    assertTrue(matcher.match("methods", 10).size() <= 10);
+  }
+
+  private static Set<String> words(String query) {
+    return ImmutableSet.copyOf(query.split(" "));
+  }
+}
@@ -0,0 +1,142 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
+import com.google.api.explorer.client.base.ApiService;
+import com.google.api.explorer.client.base.ServiceLoader.ServiceLoaderDelegate;
+import com.google.api.explorer.client.search.IncrementalIndexer.IndexingProgressCallback;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the incremental indexer.
+ *
+ */
+public class IncrementalIndexerTest extends TestCase {
+
+  /**
+   * Delegate which records the services it is handed.
+   */
+  private static class RecordingDelegate implements ServiceLoaderDelegate {
+    final List<ApiService> services = Lists.newArrayList();
+    Set<ServiceDefinition> directory;
+
+    @Override
+    public void serviceLoaded(ApiService service) {
+      services.add(service);
+    }
+
+    @Override
+    public void directoryLoaded(Set<ServiceDefinition> directoryServices) {
+      directory = directoryServices;
+    }
+  }
+
+  private RecordingDelegate delegate;
+  private IncrementalIndexer indexer;
+  private final List<String> progress = Lists.newArrayList();
+
+  @Override
+  public void setUp() {
+    delegate = new RecordingDelegate();
+    indexer = new IncrementalIndexer(delegate);
+    indexer.addCallback(new IndexingProgressCallback() {
+      @Override
+      public void indexingProgress(int indexed, int total) {
+        progress.add(indexed + "/" + total);
+      }
+    });
+  }
+
+  public void testServicesAreHandedOnInOrder() {
+    ApiService tasks = createService("tasks");
+    ApiService plus = createService("plus");
+    indexer.enqueue(tasks);
+    indexer.enqueue(plus);
+    assertTrue(delegate.services.isEmpty());
+
+    assertTrue(indexer.step());
+    assertEquals(ImmutableList.of(tasks), delegate.services);
+    assertFalse(indexer.step());
+    assertEquals(ImmutableList.of(tasks, plus), delegate.services);
+    assertFalse(indexer.step());
+  }
+
+  public void testProgress() {
+    Set<ServiceDefinition> directory = ImmutableSet.of(
+        createDefinition("tasks:v1"), createDefinition("plus:v1"), createDefinition("drive:v1"));
+    indexer.directoryLoaded(directory);
+    assertSame(directory, delegate.directory);
+    assertFalse(indexer.isComplete());
+
+    indexer.enqueue(createService("tasks"));
+    indexer.enqueue(createService("urlshortener"));
+    indexer.enqueue(createService("plus"));
+    indexer.enqueue(createService("drive"));
+    while (indexer.step()) {
+      // Index everything.
+    }
+
+    // Services which are not in the directory are indexed without counting.
+    assertEquals(ImmutableList.of("0/3", "1/3", "2/3", "3/3"), progress);
+    assertTrue(indexer.isComplete());
+  }
+
+  public void testFailedLoadCountsAsDone() {
+    indexer.directoryLoaded(ImmutableSet.of(createDefinition("tasks:v1"),
+        createDefinition("plus:v1"), createDefinition("drive:v1")));
+
+    indexer.enqueue(createService("tasks"));
+    indexer.step();
+    indexer.serviceLoadFailed("plus", "v1", "Not found");
+    assertEquals("2/3", progress.get(progress.size() - 1));
+    assertFalse(indexer.isComplete());
+
+    // Only the services which loaded are handed on to be indexed.
+    indexer.enqueue(createService("drive"));
+    indexer.step();
+    assertEquals(2, delegate.services.size());
+    assertEquals(ImmutableList.of("0/3", "1/3", "2/3", "3/3"), progress);
+    assertTrue(indexer.isComplete());
+
+    // Failures before the directory arrives count as well.
+    indexer.serviceLoadFailed("urlshortener", "v1", "Not found");
+    indexer.directoryLoaded(ImmutableSet.of(createDefinition("urlshortener:v1")));
+    assertTrue(indexer.isComplete());
+  }
+
+  public void testServicesIndexedBeforeDirectory() {
+    indexer.enqueue(createService("tasks"));
+    indexer.step();
+    assertTrue(indexer.isComplete());
+
+    indexer.directoryLoaded(
+        ImmutableSet.of(createDefinition("tasks:v1"), createDefinition("plus:v1")));
+    assertEquals("1/2", progress.get(progress.size() - 1));
+    assertFalse(indexer.isComplete());
+  }
+
+  private static ApiService createService(String name) {
+    ApiService service = EasyMock.createMock(ApiService.class);
+    EasyMock.expect(service.getName()).andReturn(name).anyTimes();
+    EasyMock.expect(service.getVersion()).andReturn("v1").anyTimes();
+    EasyMock.replay(service);
+    return service;
+  }
+
+  private static ServiceDefinition createDefinition(String id) {
+    ServiceDefinition service = EasyMock.createMock(ServiceDefinition.class);
+    EasyMock.expect(service.getId()).andReturn(id).anyTimes();
+    EasyMock.replay(service);
+    return service;
+  }
+}
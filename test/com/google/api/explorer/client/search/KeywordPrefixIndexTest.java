@@ -0,0 +1,71 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for the keyword prefix index.
+ *
+ */
+public class KeywordPrefixIndexTest extends TestCase {
+
+  private final KeywordPrefixIndex index = new KeywordPrefixIndex();
+
+  public void testEmptyIndex() {
+    assertTrue(index.complete("url", 10).isEmpty());
+    assertTrue(index.complete("", 10).isEmpty());
+  }
+
+  public void testCompletionsInOrder() {
+    index.addAll(ImmutableSet.of("urlshortener", "url", "plus", "urlshortener.url.get", "uri"));
+
+    assertEquals(ImmutableList.of("url", "urlshortener", "urlshortener.url.get"),
+        index.complete("url", 10));
+    assertEquals(ImmutableList.of("uri", "url"), index.complete("ur", 2));
+    assertEquals(ImmutableList.of("plus"), index.complete("plus", 10));
+    assertTrue(index.complete("plusone", 10).isEmpty());
+    assertTrue(index.complete("url", 0).isEmpty());
+  }
+
+  public void testDuplicatesIgnored() {
+    index.addAll(ImmutableSet.of("drive", "files"));
+    index.merge();
+    index.addAll(ImmutableSet.of("files", "drive", "", "insert"));
+
+    assertEquals(3, index.size());
+    assertEquals(1, index.getBufferedCount());
+    assertTrue(index.contains("insert"));
+    assertFalse(index.contains("delete"));
+  }
+
+  public void testSortedAndBufferedInterleaved() {
+    index.addAll(ImmutableSet.of("calendar", "calendars", "calendarlist"));
+    index.merge();
+    index.addAll(ImmutableSet.of("calendar.events", "calendarid", "call"));
+
+    assertEquals(ImmutableList.of("calendar", "calendar.events", "calendarid", "calendarlist",
+        "calendars"), index.complete("calendar", 10));
+    assertEquals(ImmutableList.of("calendar", "calendar.events", "calendarid"),
+        index.complete("cal", 3));
+  }
+
+  public void testBufferMerged() {
+    List<String> keywords = Lists.newArrayList();
+    for (int i = 0; i <= KeywordPrefixIndex.MIN_MERGE_SIZE; i++) {
+      keywords.add("keyword" + i);
+    }
+    index.addAll(keywords);
+
+    assertEquals(0, index.getBufferedCount());
+    assertEquals(keywords.size(), index.size());
+    assertEquals(ImmutableList.of("keyword1", "keyword10", "keyword100"),
+        index.complete("keyword1", 3));
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark of the throughput of the keyword tokenizer against splitting with regular
+ * expressions, over a corpus of discovery documents.
+ *
+ * <p>
+ * Run with the paths of discovery documents as arguments, or of directories of them. The
+ * documents of the tests which are used without arguments are a few kilobytes each and only
+ * check that the tokenizers agree. Throughput is measured over real discovery documents, i.e.
+ * every document of the directory fetched from the "discoveryRestUrl" of its items, which
+ * together are tens of megabytes of mostly English descriptions.
+ * </p>
+ *
+ * <p>
+ * This measures the JVM, whose {@link Character} methods are table lookups. The explorer runs as
+ * compiled JavaScript, where the emulated {@link Character} methods build a one character string
+ * and match it against a regular expression, so the range checks of the tokenizer save more
+ * there than these figures show. The compiled target is measured in the explorer built by the
+ * "explorer.gwtbuild" target, by timing the indexing of the real documents as the search manager
+ * loads every service of the directory.
+ * </p>
+ *
+ */
+public class KeywordTokenizerBenchmark {
+
+  private static final String[] DEFAULT_CORPUS = {
+      "test/com/google/api/explorer/client/base/directory-small.json",
+      "test/com/google/api/explorer/client/base/rest/discovery-small.json",
+      "test/com/google/api/explorer/client/base/rpc/discovery-small.json"};
+
+  /** Minimum number of characters tokenized per measurement. */
+  private static final int MIN_CHARACTERS = 50000000;
+
+  private static final int ROUNDS = 5;
+
+  private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9.]+");
+  private static final Pattern OUTER_PERIODS = Pattern.compile("^\\.+|\\.+$");
+
+  /**
+   * Keywords with regular expressions, which allocates a string for every fragment and every
+   * replacement.
+   */
+  static Set<String> regexKeywords(String text) {
+    Set<String> keywords = Sets.newLinkedHashSet();
+    for (String fragment : SEPARATORS.split(text.toLowerCase())) {
+      String keyword = OUTER_PERIODS.matcher(fragment).replaceAll("");
+      if (!keyword.isEmpty()) {
+        keywords.add(keyword);
+      }
+    }
+    return keywords;
+  }
+
+  public static void main(String[] args) throws IOException {
+    List<String> documents = Lists.newArrayList();
+    int characters = 0;
+    for (String path : args.length > 0 ? args : DEFAULT_CORPUS) {
+      File file = new File(path);
+      for (File document : file.isDirectory() ? file.listFiles() : new File[] {file}) {
+        String text = Files.toString(document, Charsets.UTF_8);
+        documents.add(text);
+        characters += text.length();
+      }
+    }
+    int repetitions = Math.max(1, MIN_CHARACTERS / Math.max(1, characters));
+
+    KeywordTokenizer tokenizer = new KeywordTokenizer();
+    for (String document : documents) {
+      if (!tokenizer.asSet(document).equals(regexKeywords(document))) {
+        throw new AssertionError("Tokenizers disagree on the corpus.");
+      }
+    }
+
+    System.out.println(documents.size() + " documents, " + characters + " characters, "
+        + repetitions + " repetitions");
+    for (int round = 0; round < ROUNDS; round++) {
+      int keywords = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < repetitions; i++) {
+        for (String document : documents) {
+          keywords += regexKeywords(document).size();
+        }
+      }
+      long regexNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < repetitions; i++) {
+        for (String document : documents) {
+          keywords -= tokenizer.asSet(document).size();
+        }
+      }
+      long tokenizerNanos = System.nanoTime() - start;
+
+      double megabytes = 2.0 * characters * repetitions / (1 << 20);
+      System.out.printf("round %d: regex %.1f MB/s, tokenizer %.1f MB/s (checksum %d)%n", round,
+          megabytes / (regexNanos / 1e9), megabytes / (tokenizerNanos / 1e9), keywords);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the keyword tokenizer, which has the semantics of the keyword extractor.
+ *
+ */
+public class KeywordTokenizerTest extends TestCase {
+  private static final boolean NO_STRIP_PUNCTUATION = false;
+
+  private final KeywordTokenizer tokenizer = new KeywordTokenizer();
+
+  public void testKeywords() {
+    assertParses(ImmutableSet.of("an", "indexable", "string"), "an indexable string");
+    assertParses(ImmutableSet.of("a.method.name"), "a.method.name");
+    assertParses(ImmutableSet.of("word"), ";;;;;;word;;;;;???");
+    assertParses(ImmutableSet.of("lll", "word", "help"), "lll;;;word???help!");
+    assertParses(ImmutableSet.of("case", "insensitivity", "test"), "CaSe InsenSITIVItY tEsT");
+    assertParses(ImmutableSet.of("v1.2"), "!!!!!v1.2?????");
+    assertParses(ImmutableSet.of("end", "sentence", "punctuation"), "End sentence punctuation.");
+    assertParses(ImmutableSet.of("middle", "punctuation"), "Middle. punctuation");
+    assertParses(ImmutableSet.<String>of(), "::;;''';';';;'");
+    assertParses(ImmutableSet.<String>of(), "");
+    assertParses(ImmutableSet.of("leading.period"), "...leading.period...");
+  }
+
+  public void testOnlyAsciiLettersAndDigits() {
+    // Other characters separate keywords, as they do in compiled JavaScript.
+    assertParses(ImmutableSet.of("caf", "r", "sum", "x", "2"),
+        "Caf\u00e9 R\u00c9sum\u00e9 X\u00b22");
+    assertParses(ImmutableSet.of("az", "09"), "@AZ[`az{/09:");
+  }
+
+  public void testLongKeyword() {
+    String keyword = Strings.repeat("abcdefghij", 10);
+    assertParses(ImmutableSet.of(keyword, "short"), keyword.toUpperCase() + " short");
+  }
+
+  public void testQuerySplitting() {
+    assertSplits(ImmutableList.of("query", "for", "urlshortener."), "query for urlshortener.");
+    assertSplits(ImmutableList.<String>of(), "");
+    assertSplits(ImmutableList.of("url", "short"), "url short");
+    assertSplits(ImmutableList.of("url", "short", "punctuation.", ""), "url short punctuation. ");
+    assertSplits(ImmutableList.of(".capture", "leading", "punctuation.", ""),
+        ".capture leading punctuation. ");
+    assertSplits(ImmutableList.of("tabs", "and", "lines", ""), "tabs\tand\r\nlines\t");
+
+    assertEquals(ImmutableList.of("url", "short", "url", ""),
+        tokenizer.split("URL short, (url) ", true));
+  }
+
+  public void testStopWordsAndStemming() {
+    KeywordTokenizer descriptions =
+        new KeywordTokenizer(KeywordTokenizer.DEFAULT_STOP_WORDS, true);
+
+    assertEquals(ImmutableSet.of("list", "entry", "task"),
+        descriptions.asSet("Lists the entries of the tasks."));
+    assertEquals(ImmutableSet.of("status", "analysis", "access", "bus"),
+        descriptions.asSet("Status of an analysis or access to a bus"));
+
+    // Identifiers and version numbers are kept as they are.
+    assertEquals(ImmutableSet.of("tasks.lists", "v1.2s"), descriptions.asSet("tasks.lists v1.2s"));
+  }
+
+  private void assertParses(Set<String> expected, String input) {
+    assertEquals(expected, tokenizer.asSet(input));
+  }
+
+  private void assertSplits(List<String> expectedFragments, String input) {
+    assertEquals(expectedFragments, tokenizer.split(input, NO_STRIP_PUNCTUATION));
+  }
+}
@@ -0,0 +1,124 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the posting list.
+ *
+ */
+public class PostingListTest extends TestCase {
+
+  public void testEmptyList() {
+    PostingList list = new PostingList();
+    assertEquals(0, list.size());
+    assertEquals(-1, list.getLast());
+    assertEquals(-1, list.cursor().next());
+    assertEquals(-1, list.cursor().advanceTo(0));
+  }
+
+  public void testIteration() {
+    PostingList list = createList(0, 1, 5, 16390, 16391, 3000000);
+    assertEquals(6, list.size());
+    assertEquals(3000000, list.getLast());
+    assertEquals(ImmutableList.of(0, 1, 5, 16390, 16391, 3000000), readAll(list.cursor()));
+
+    // Gaps up to 14 bits take a single character.
+    assertEquals(1 + 1 + 1 + 2 + 1 + 2, list.getEncodedLength());
+  }
+
+  public void testCursorsSeeIdentifiersAddedBeforeThem() {
+    PostingList list = createList(1, 2);
+    PostingList.Cursor before = list.cursor();
+    list.add(40000);
+    list.add(40001);
+
+    assertEquals(ImmutableList.of(1, 2), readAll(before));
+    assertEquals(ImmutableList.of(1, 2, 40000, 40001), readAll(list.cursor()));
+    assertEquals(1 + 1 + 2 + 1, list.getEncodedLength());
+
+    list.freeze();
+    list.add(40002);
+    assertEquals(ImmutableList.of(1, 2, 40000, 40001, 40002), readAll(list.cursor()));
+  }
+
+  public void testIdentifiersMustIncrease() {
+    PostingList list = createList(3);
+    try {
+      list.add(3);
+      fail("Identifiers which do not increase should be rejected.");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  public void testAdvanceTo() {
+    PostingList list = new PostingList();
+    for (int id = 0; id < 1000; id += 3) {
+      list.add(id);
+    }
+
+    PostingList.Cursor cursor = list.cursor();
+    assertEquals(0, cursor.advanceTo(0));
+    assertEquals(3, cursor.advanceTo(2));
+    assertEquals(3, cursor.advanceTo(3));
+    assertEquals(501, cursor.advanceTo(500));
+    assertEquals(504, cursor.next());
+
+    // The cursor never moves backwards.
+    assertEquals(504, cursor.advanceTo(10));
+    assertEquals(999, cursor.advanceTo(998));
+    assertEquals(-1, cursor.advanceTo(1000));
+    assertEquals(-1, cursor.next());
+  }
+
+  public void testAdvanceToMatchesLinearScan() {
+    Random random = new Random(42);
+    PostingList list = new PostingList();
+    List<Integer> ids = Lists.newArrayList();
+    for (int id = random.nextInt(5); ids.size() < 5000; id += 1 + random.nextInt(40)) {
+      list.add(id);
+      ids.add(id);
+    }
+
+    for (int run = 0; run < 50; run++) {
+      PostingList.Cursor cursor = list.cursor();
+      int position = 0;
+      int target = 0;
+      while (true) {
+        target += random.nextInt(run < 25 ? 20 : 5000);
+        while (position < ids.size() && ids.get(position) < target) {
+          position++;
+        }
+        int expected = position < ids.size() ? ids.get(position) : -1;
+        assertEquals(expected, cursor.advanceTo(target));
+        if (expected == -1) {
+          break;
+        }
+      }
+    }
+  }
+
+  private static PostingList createList(int... ids) {
+    PostingList list = new PostingList();
+    for (int id : ids) {
+      list.add(id);
+    }
+    return list;
+  }
+
+  private static List<Integer> readAll(PostingList.Cursor cursor) {
+    List<Integer> ids = Lists.newArrayList();
+    for (int id = cursor.next(); id != -1; id = cursor.next()) {
+      ids.add(id);
+    }
+    return ids;
+  }
+}
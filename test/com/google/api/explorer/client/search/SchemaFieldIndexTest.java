@@ -0,0 +1,347 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
+import com.google.api.explorer.client.base.ApiMethod;
+import com.google.api.explorer.client.base.ApiService;
+import com.google.api.explorer.client.base.Schema;
+import com.google.api.explorer.client.base.ServiceLoader;
+import com.google.api.explorer.client.base.ServiceLoader.ServiceLoaderDelegate;
+import com.google.api.explorer.client.search.SchemaFieldIndex.FieldMatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.gwt.core.client.Callback;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for the index of the fields of request and response schemas.
+ *
+ */
+public class SchemaFieldIndexTest extends TestCase {
+
+  /**
+   * Delegate which records the services it is handed.
+   */
+  private static class RecordingDelegate implements ServiceLoaderDelegate {
+    final List<ApiService> services = Lists.newArrayList();
+
+    @Override
+    public void serviceLoaded(ApiService service) {
+      services.add(service);
+    }
+
+    @Override
+    public void directoryLoaded(Set<ServiceDefinition> directoryServices) {
+    }
+  }
+
+  /**
+   * Index which runs the scheduled indexing on request.
+   */
+  private static class TestSchemaFieldIndex extends SchemaFieldIndex {
+    boolean indexingScheduled = false;
+
+    TestSchemaFieldIndex(ServiceLoaderDelegate delegate) {
+      super(delegate);
+    }
+
+    @Override
+    void scheduleIndexing() {
+      indexingScheduled = true;
+    }
+
+    void runScheduled() {
+      indexingScheduled = false;
+      while (step()) {
+        // Index every pending service.
+      }
+    }
+  }
+
+  /**
+   * Loader which records the services requested from it, to be answered by the test.
+   */
+  private static class RecordingServiceLoader extends ServiceLoader {
+    final List<String> requested = Lists.newArrayList();
+    final List<Callback<ApiService, String>> callbacks = Lists.newArrayList();
+
+    RecordingServiceLoader() {
+      super(null);
+    }
+
+    @Override
+    public void loadService(String name, String version, Callback<ApiService, String> callback) {
+      requested.add(name + ":" + version);
+      callbacks.add(callback);
+    }
+  }
+
+  private RecordingDelegate delegate;
+  private TestSchemaFieldIndex index;
+
+  private ApiMethod get;
+  private ApiMethod insert;
+  private ApiMethod list;
+  private ApiMethod delete;
+
+  @Override
+  public void setUp() {
+    delegate = new RecordingDelegate();
+    index = new TestSchemaFieldIndex(delegate);
+
+    Schema task = object(ImmutableMap.of(
+        "id", property("Unique identifier of the task."),
+        "etag", property("ETag of the resource."),
+        "title", property("Title of the task."),
+        "links", array(object(ImmutableMap.of(
+            "href", property("URL of the link."),
+            "type", property("Kind of the link."))))));
+    Schema taskList = object(ImmutableMap.of(
+        "items", array(ref("Task")),
+        "nextPageToken", property("Token used to access the next page of results.")));
+
+    get = method("tasks.tasks.get", null, "Task");
+    insert = method("tasks.tasks.insert", "Task", "Task");
+    list = method("tasks.tasks.list", null, "TaskList");
+    delete = method("tasks.tasks.delete", null, null);
+
+    index.serviceLoaded(service(ImmutableMap.of("Task", task, "TaskList", taskList),
+        ImmutableList.of(get, insert, list, delete)));
+  }
+
+  public void testServicesAreIndexedAfterFirstSearch() {
+    assertEquals(1, delegate.services.size());
+    assertEquals(0, index.getFieldCount());
+    assertFalse(index.indexingScheduled);
+
+    // The first search is answered from what has been indexed, which is nothing yet.
+    assertTrue(index.search("etag", 10).isEmpty());
+    assertEquals(0, index.getFieldCount());
+    assertFalse(index.isComplete());
+    assertTrue(index.indexingScheduled);
+
+    index.runScheduled();
+    assertEquals(8, index.getFieldCount());
+    assertTrue(index.isComplete());
+    assertEquals(4, index.search("etag", 10).size());
+    assertFalse(index.indexingScheduled);
+  }
+
+  public void testServicesLoadedAfterSearchAreScheduled() {
+    indexAll(index);
+    FieldMatch match = index.search("etag", 1).get(0);
+    assertEquals("Task.etag", match.getLocation());
+
+    ApiMethod getFile = method("drive.files.get", null, "File");
+    index.serviceLoaded(service(ImmutableMap.of("File",
+        object(ImmutableMap.of("labelFingerprint", property("Fingerprint of the labels.")))),
+        ImmutableList.of(getFile)));
+    assertTrue(index.indexingScheduled);
+    assertTrue(index.search("labelFingerprint", 10).isEmpty());
+
+    index.runScheduled();
+    assertEquals(getFile, index.search("labelFingerprint", 10).get(0).getMethod());
+  }
+
+  public void testUnloadedServicesAreRequestedAfterFirstSearch() {
+    RecordingServiceLoader loader = new RecordingServiceLoader();
+    index.setServiceLoader(loader);
+    index.directoryLoaded(ImmutableSet.of(
+        definition("tasks"), definition("drive"), definition("plus")));
+    assertTrue(loader.requested.isEmpty());
+
+    // Services are requested one at a time, once the loaded services have been indexed.
+    indexAll(index);
+    assertEquals(ImmutableList.of("drive:v1"), loader.requested);
+    assertFalse(index.isComplete());
+
+    ApiMethod getFile = method("drive.files.get", null, "File");
+    ApiService drive = service("drive", ImmutableMap.of("File",
+        object(ImmutableMap.of("labelFingerprint", property("Fingerprint of the labels.")))),
+        ImmutableList.of(getFile));
+    loader.callbacks.get(0).onSuccess(drive);
+    index.serviceLoaded(drive);
+    assertEquals(1, loader.requested.size());
+    assertTrue(index.indexingScheduled);
+
+    index.runScheduled();
+    assertEquals(getFile, index.search("labelFingerprint", 10).get(0).getMethod());
+    assertEquals(ImmutableList.of("drive:v1", "plus:v1"), loader.requested);
+
+    // Services which fail to load are not requested again.
+    loader.callbacks.get(1).onFailure("Not found");
+    assertTrue(index.isComplete());
+    index.search("etag", 10);
+    assertEquals(2, loader.requested.size());
+  }
+
+  public void testNameMatchesEveryMethodUsingTheSchema() {
+    indexAll(index);
+    List<FieldMatch> matches = index.search("etag", 10);
+
+    assertEquals(ImmutableSet.of("tasks.tasks.get response", "tasks.tasks.insert request",
+        "tasks.tasks.insert response", "tasks.tasks.list response"), describe(matches));
+    for (FieldMatch match : matches) {
+      assertEquals("Task.etag", match.getLocation());
+    }
+  }
+
+  public void testNestedFields() {
+    indexAll(index);
+    List<FieldMatch> matches = index.search("href", 10);
+
+    assertEquals(4, matches.size());
+    assertEquals("Task.links.href", matches.get(0).getLocation());
+    matches = index.search("nextPageToken", 10);
+    assertEquals("TaskList.nextPageToken", matches.get(0).getLocation());
+  }
+
+  public void testDescriptionMustContainEveryKeyword() {
+    indexAll(index);
+    Set<String> locations = Sets.newHashSet();
+    for (FieldMatch match : index.search("links URL", 10)) {
+      locations.add(match.getLocation());
+    }
+    assertEquals(ImmutableSet.of("Task.links.href"), locations);
+
+    assertTrue(index.search("url missing", 10).isEmpty());
+    assertTrue(index.search("", 10).isEmpty());
+  }
+
+  public void testNameMatchesComeFirst() {
+    indexAll(index);
+    List<FieldMatch> matches = index.search("links", 20);
+
+    assertEquals(12, matches.size());
+    assertEquals("Task.links", matches.get(0).getLocation());
+    assertEquals("Task.links.href", matches.get(4).getLocation());
+  }
+
+  public void testNameMustContainEveryKeyword() {
+    indexAll(index);
+    assertTrue(index.search("title etag", 10).isEmpty());
+    assertEquals(4, index.search("etag resource", 10).size());
+  }
+
+  public void testLimit() {
+    indexAll(index);
+    assertEquals(2, index.search("etag", 2).size());
+    assertTrue(index.search("etag", 0).isEmpty());
+  }
+
+  public void testCyclicReferences() {
+    TestSchemaFieldIndex cyclicIndex = new TestSchemaFieldIndex(delegate);
+    Schema folder = object(ImmutableMap.of(
+        "name", property("Name of the folder."),
+        "files", array(ref("File"))));
+    Schema file = object(ImmutableMap.of(
+        "parent", ref("Folder"),
+        "labelFingerprint", property("Fingerprint of the labels.")));
+    ApiMethod setLabels = method("drive.folders.get", null, "Folder");
+    cyclicIndex.serviceLoaded(service(ImmutableMap.of("Folder", folder, "File", file),
+        ImmutableList.of(setLabels)));
+    indexAll(cyclicIndex);
+
+    List<FieldMatch> matches = cyclicIndex.search("labelFingerprint", 10);
+    assertEquals(1, matches.size());
+    assertEquals("File.labelFingerprint", matches.get(0).getLocation());
+    assertEquals(setLabels, matches.get(0).getMethod());
+    assertFalse(matches.get(0).isRequest());
+  }
+
+  /**
+   * Search once, which starts indexing the loaded services, and index them all.
+   */
+  private static void indexAll(TestSchemaFieldIndex index) {
+    index.search("", 0);
+    index.runScheduled();
+  }
+
+  private static Set<String> describe(List<FieldMatch> matches) {
+    Set<String> descriptions = Sets.newHashSet();
+    for (FieldMatch match : matches) {
+      descriptions.add(
+          match.getMethod().getId() + (match.isRequest() ? " request" : " response"));
+    }
+    return descriptions;
+  }
+
+  private static ApiService service(Map<String, Schema> schemas, List<ApiMethod> methods) {
+    return service("tasks", schemas, methods);
+  }
+
+  private static ApiService service(
+      String name, Map<String, Schema> schemas, List<ApiMethod> methods) {
+    ImmutableMap.Builder<String, ApiMethod> allMethods = ImmutableMap.builder();
+    for (ApiMethod method : methods) {
+      allMethods.put(method.getId(), method);
+    }
+
+    ApiService service = EasyMock.createMock(ApiService.class);
+    EasyMock.expect(service.getName()).andReturn(name).anyTimes();
+    EasyMock.expect(service.getVersion()).andReturn("v1").anyTimes();
+    EasyMock.expect(service.getSchemas()).andReturn(schemas).anyTimes();
+    EasyMock.expect(service.allMethods()).andReturn(allMethods.build()).anyTimes();
+    EasyMock.replay(service);
+    return service;
+  }
+
+  private static ServiceDefinition definition(String name) {
+    ServiceDefinition definition = EasyMock.createMock(ServiceDefinition.class);
+    EasyMock.expect(definition.getName()).andReturn(name).anyTimes();
+    EasyMock.expect(definition.getVersion()).andReturn("v1").anyTimes();
+    EasyMock.replay(definition);
+    return definition;
+  }
+
+  private static ApiMethod method(String id, String requestRef, String responseRef) {
+    ApiMethod method = EasyMock.createMock(ApiMethod.class);
+    EasyMock.expect(method.getId()).andReturn(id).anyTimes();
+    EasyMock.expect(method.getRequest())
+        .andReturn(requestRef == null ? null : ImmutableMap.of("$ref", requestRef)).anyTimes();
+    EasyMock.expect(method.getResponse())
+        .andReturn(responseRef == null ? null : ImmutableMap.of("$ref", responseRef)).anyTimes();
+    EasyMock.expect(method.getReturns()).andReturn(null).anyTimes();
+    EasyMock.replay(method);
+    return method;
+  }
+
+  private static Schema property(String description) {
+    return schema(description, null, null, null);
+  }
+
+  private static Schema object(Map<String, Schema> properties) {
+    return schema(null, properties, null, null);
+  }
+
+  private static Schema array(Schema items) {
+    return schema(null, null, items, null);
+  }
+
+  private static Schema ref(String schemaId) {
+    return schema(null, null, null, schemaId);
+  }
+
+  private static Schema schema(
+      String description, Map<String, Schema> properties, Schema items, String ref) {
+    Schema schema = EasyMock.createMock(Schema.class);
+    EasyMock.expect(schema.getDescription()).andReturn(description).anyTimes();
+    EasyMock.expect(schema.getProperties()).andReturn(properties).anyTimes();
+    EasyMock.expect(schema.getItems()).andReturn(items).anyTimes();
+    EasyMock.expect(schema.getAdditionalProperties()).andReturn(null).anyTimes();
+    EasyMock.expect(schema.getRef()).andReturn(ref).anyTimes();
+    EasyMock.replay(schema);
+    return schema;
+  }
+}
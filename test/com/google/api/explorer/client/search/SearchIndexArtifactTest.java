@@ -0,0 +1,174 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.api.explorer.client.base.ApiDirectory.ServiceDefinition;
+import com.google.api.explorer.client.base.ApiMethod;
+import com.google.api.explorer.client.base.ApiService;
+import com.google.api.explorer.client.search.SearchResult.Kind;
+import com.google.api.explorer.client.search.SearchResult.MethodBundle;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for the prebuilt search index artifact.
+ *
+ */
+public class SearchIndexArtifactTest extends TestCase {
+
+  /**
+   * Strategy which returns the keywords of services and methods from fixed maps.
+   */
+  private static class FixedStrategy implements IndexingStrategy<ApiService> {
+    private final Map<String, Set<String>> serviceKeywords;
+    private final Map<String, Set<String>> methodKeywords;
+
+    FixedStrategy(
+        Map<String, Set<String>> serviceKeywords, Map<String, Set<String>> methodKeywords) {
+      this.serviceKeywords = serviceKeywords;
+      this.methodKeywords = methodKeywords;
+    }
+
+    @Override
+    public Iterable<SearchEntry> index(ApiService service) {
+      List<SearchEntry> entries = Lists.newArrayList();
+      entries.add(new SearchEntry(
+          createResult(Kind.SERVICE, null), serviceKeywords.get(service.getName())));
+      for (Map.Entry<String, Set<String>> method : methodKeywords.entrySet()) {
+        if (method.getKey().startsWith(service.getName() + ".")) {
+          entries.add(
+              new SearchEntry(createResult(Kind.METHOD, method.getKey()), method.getValue()));
+        }
+      }
+      return entries;
+    }
+  }
+
+  private static final FixedStrategy STRATEGY = new FixedStrategy(
+      ImmutableMap.<String, Set<String>>of(
+          "urlshortener", ImmutableSet.of("urlshortener", "v1", "short", "url"),
+          "tasks", ImmutableSet.of("tasks", "v1")),
+      ImmutableMap.<String, Set<String>>of(
+          "urlshortener.url.get", ImmutableSet.of("urlshortener.url.get", "expand", "url"),
+          "tasks.tasks.list", ImmutableSet.of("tasks.tasks.list", "list", "tasks")));
+
+  public void testRoundTrip() {
+    String text = SearchIndexArtifact.write("abc-2",
+        ImmutableList.of(createService("urlshortener"), createService("tasks")), STRATEGY);
+    SearchIndexArtifact artifact = SearchIndexArtifact.parse(text);
+
+    assertEquals("abc-2", artifact.getRevision());
+    assertEquals(ImmutableSet.of("urlshortener:v1", "tasks:v1"), artifact.getServiceIds());
+    assertTrue(artifact.covers("tasks:v1"));
+    assertFalse(artifact.covers("plus:v1"));
+
+    assertEquals(
+        ImmutableSet.of("urlshortener", "v1", "short", "url", "urlshortener.url.get", "expand"),
+        artifact.getKeywords("urlshortener:v1"));
+    assertEquals(ImmutableMap.of("tasks.tasks.list", ImmutableSet.of("tasks.tasks.list", "list",
+        "tasks")), artifact.getMethodKeywords("tasks:v1"));
+    assertTrue(artifact.getKeywords("plus:v1").isEmpty());
+    assertTrue(artifact.getMethodKeywords("plus:v1").isEmpty());
+  }
+
+  public void testKeywordsAreWrittenOnce() {
+    String text = SearchIndexArtifact.write("abc-2",
+        ImmutableList.of(createService("urlshortener"), createService("tasks")), STRATEGY);
+    String[] lines = text.split("\n");
+
+    assertEquals(SearchIndexArtifact.MAGIC + " 1 abc-2", lines[0]);
+    assertEquals(1, count(lines[1].split(" "), "v1"));
+    assertEquals(1, count(lines[1].split(" "), "url"));
+    assertEquals(6, lines.length);
+  }
+
+  public void testRejectsOtherFormats() {
+    assertParseFails("");
+    assertParseFails("something else\n");
+    assertParseFails(SearchIndexArtifact.MAGIC + " 2 abc-2\nk\n");
+    assertParseFails(SearchIndexArtifact.MAGIC + " 1 abc-2\n");
+    assertParseFails(SearchIndexArtifact.MAGIC + " 1 abc-2\nk a\nm tasks.tasks.list 0\n");
+    assertParseFails(SearchIndexArtifact.MAGIC + " 1 abc-2\nk a\ns tasks:v1 1\n");
+    assertParseFails(SearchIndexArtifact.MAGIC + " 1 abc-2\nk a\nx tasks:v1 0\n");
+  }
+
+  public void testDirectoryRevision() {
+    ServiceDefinition tasks = createDefinition("tasks:v1", "\"etag/1\"");
+    ServiceDefinition plus = createDefinition("plus:v1", null);
+    ServiceDefinition drive = createDefinition("drive:v2", "\"etag/2\"");
+
+    String revision = SearchIndexArtifact.directoryRevision(ImmutableList.of(tasks, plus));
+    assertEquals(revision, SearchIndexArtifact.directoryRevision(ImmutableList.of(plus, tasks)));
+    assertFalse(revision.equals(
+        SearchIndexArtifact.directoryRevision(ImmutableList.of(plus, tasks, drive))));
+    assertFalse(revision.equals(SearchIndexArtifact.directoryRevision(ImmutableList.of(plus))));
+    assertEquals(-1, revision.indexOf(' '));
+
+    // A revised discovery document changes the revision, though the services are the same.
+    ServiceDefinition revisedTasks = createDefinition("tasks:v1", "\"etag/3\"");
+    assertFalse(revision.equals(
+        SearchIndexArtifact.directoryRevision(ImmutableList.of(revisedTasks, plus))));
+    assertEquals(revision, SearchIndexArtifact.directoryRevision(
+        ImmutableList.of(createDefinition("tasks:v1", "\"etag/1\""), plus)));
+  }
+
+  private static void assertParseFails(String text) {
+    try {
+      SearchIndexArtifact.parse(text);
+      fail("Expected the artifact to be rejected: " + text);
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  private static int count(String[] words, String word) {
+    int count = 0;
+    for (String candidate : words) {
+      if (candidate.equals(word)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static ApiService createService(String name) {
+    ApiService service = EasyMock.createMock(ApiService.class);
+    EasyMock.expect(service.getName()).andReturn(name).anyTimes();
+    EasyMock.expect(service.getVersion()).andReturn("v1").anyTimes();
+    EasyMock.replay(service);
+    return service;
+  }
+
+  private static ServiceDefinition createDefinition(String id, String etag) {
+    ServiceDefinition service = EasyMock.createMock(ServiceDefinition.class);
+    EasyMock.expect(service.getId()).andReturn(id).anyTimes();
+    EasyMock.expect(service.getEtag()).andReturn(etag).anyTimes();
+    EasyMock.replay(service);
+    return service;
+  }
+
+  private static SearchResult createResult(Kind kind, String methodId) {
+    SearchResult result = EasyMock.createMock(SearchResult.class);
+    EasyMock.expect(result.getKind()).andReturn(kind).anyTimes();
+    if (methodId != null) {
+      ApiMethod method = EasyMock.createMock(ApiMethod.class);
+      EasyMock.expect(method.getId()).andReturn(methodId).anyTimes();
+      MethodBundle bundle = EasyMock.createMock(MethodBundle.class);
+      EasyMock.expect(bundle.getMethod()).andReturn(method).anyTimes();
+      EasyMock.expect(result.getMethodBundle()).andReturn(bundle).anyTimes();
+      EasyMock.replay(method, bundle);
+    }
+    EasyMock.replay(result);
+    return result;
+  }
+}
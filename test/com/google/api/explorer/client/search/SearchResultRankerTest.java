@@ -0,0 +1,147 @@
+// Copyright 2012 Google Inc. All Rights Reserved.
+
+package com.google.api.explorer.client.search;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for the search result ranker.
+ *
+ */
+public class SearchResultRankerTest extends TestCase {
+
+  private static final List<String> METHODS = ImmutableList.of(
+      "urlshortener.url.get", "plus.activities.list", "drive.files.insert", "tasks.tasks.list");
+
+  private static final List<String[]> FIELDS = ImmutableList.of(
+      new String[] {"urlshortener.url.get", "URL Shortener API", "shortUrl projection",
+          "Expands a short URL or gets creation time and analytics, including a list of referrers."},
+      new String[] {"plus.activities.list", "Google+ API", "userId collection maxResults",
+          "List all of the activities in the specified collection for a particular user."},
+      new String[] {"drive.files.insert", "Drive API", "convert ocr",
+          "Insert a new file."},
+      new String[] {"tasks.tasks.list", "Tasks API", "tasklist maxResults",
+          "Returns all tasks in the specified task list."});
+
+  private SearchResultRanker<String> ranker;
+
+  @Override
+  public void setUp() {
+    ImmutableMap.Builder<String, String[]> fields = ImmutableMap.builder();
+    for (int i = 0; i < METHODS.size(); i++) {
+      fields.put(METHODS.get(i), FIELDS.get(i));
+    }
+    ranker = new SearchResultRanker<String>(Functions.forMap(fields.build()));
+    for (String method : METHODS) {
+      ranker.add(method);
+    }
+  }
+
+  public void testIdentifierMatchesFirst() {
+    List<String> ranked = ranker.top(METHODS, "list", 10);
+    assertEquals(4, ranked.size());
+
+    // Both list methods match in their identifier, the getter only in its description.
+    assertEquals(ImmutableSet.of("plus.activities.list", "tasks.tasks.list"),
+        ImmutableSet.copyOf(ranked.subList(0, 2)));
+    assertEquals("urlshortener.url.get", ranked.get(2));
+    assertEquals("drive.files.insert", ranked.get(3));
+  }
+
+  public void testTopK() {
+    assertEquals(ImmutableList.of("drive.files.insert"),
+        ranker.top(METHODS, "insert file", 1));
+    assertEquals(ImmutableList.of("tasks.tasks.list", "plus.activities.list"),
+        ranker.top(METHODS, "tasks list", 2));
+    assertTrue(ranker.top(METHODS, "list", 0).isEmpty());
+  }
+
+  public void testEqualScoresKeepOrder() {
+    assertEquals(METHODS, ranker.top(METHODS, "", 10));
+    assertEquals(METHODS.subList(0, 3), ranker.top(METHODS, "nothing", 3));
+  }
+
+  public void testWholeIdentifierQuery() {
+    assertEquals("urlshortener.url.get",
+        ranker.top(METHODS, "urlshortener.url.get", 1).get(0));
+  }
+
+  public void testFieldsAreOnlyReadForCandidates() {
+    final int[] reads = {0};
+    SearchResultRanker<String> counting = new SearchResultRanker<String>(
+        new Function<String, String[]>() {
+          @Override
+          public String[] apply(String method) {
+            reads[0]++;
+            return FIELDS.get(METHODS.indexOf(method));
+          }
+        });
+    for (String method : METHODS) {
+      counting.add(method);
+    }
+    counting.add(METHODS.get(0));
+    assertEquals(4, reads[0]);
+    assertEquals(4, counting.size());
+
+    // Term frequencies are counted from the fields of each candidate when it is scored.
+    assertEquals("drive.files.insert", counting.top(METHODS, "insert file", 1).get(0));
+    assertEquals(8, reads[0]);
+    assertEquals("tasks.tasks.list", counting.top(METHODS.subList(2, 4), "tasks list", 1).get(0));
+    assertEquals(10, reads[0]);
+
+    // Unless no query term occurs in any item.
+    counting.top(METHODS, "unknown", 1);
+    assertEquals(10, reads[0]);
+  }
+
+  public void testRemovedItemsScoreNothing() {
+    ranker.remove("drive.files.insert");
+    assertEquals(3, ranker.size());
+
+    // No other method has either term, so every method scores the same.
+    assertEquals(METHODS.subList(0, 2), ranker.top(METHODS, "insert file", 2));
+    assertEquals("tasks.tasks.list", ranker.top(METHODS, "tasks", 1).get(0));
+
+    ranker.add("drive.files.insert");
+    assertEquals("drive.files.insert", ranker.top(METHODS, "insert file", 1).get(0));
+  }
+
+  public void testItemsWhichWereNotAddedScoreNothing() {
+    assertEquals(ImmutableList.of("tasks.tasks.list", "tasks.tasklists.list"),
+        ranker.top(ImmutableList.of("tasks.tasklists.list", "tasks.tasks.list"), "list", 10));
+  }
+
+  public void testSplitQuery() {
+    assertEquals(ImmutableList.of("url", "short", "v1.2"),
+        SearchResultRanker.splitQuery("  URL short, url (v1.2) "));
+    assertTrue(SearchResultRanker.splitQuery("").isEmpty());
+  }
+
+  public void testTokenize() {
+    assertEquals(ImmutableList.of("plus.activities.list", "plus", "activities", "list", "list"),
+        SearchResultRanker.tokenize("plus.activities.list List."));
+    assertEquals(ImmutableList.of("v1.2", "v1", "2"), SearchResultRanker.tokenize("v1.2"));
+    assertTrue(SearchResultRanker.tokenize("").isEmpty());
+  }
+
+  public void testCountTerm() {
+    String text = "plus.activities.list List. (list) v1.2\tV1\n-- list-";
+    for (String term : ImmutableList.of("plus.activities.list", "plus", "list", "v1.2", "v1", "2",
+        "activities", "unknown", "")) {
+      int expected = 0;
+      for (String token : SearchResultRanker.tokenize(text)) {
+        expected += token.equals(term) ? 1 : 0;
+      }
+      assertEquals(term, expected, SearchResultRanker.countTerm(text, term));
+    }
+    assertEquals(0, SearchResultRanker.countTerm("", "list"));
+  }
+}